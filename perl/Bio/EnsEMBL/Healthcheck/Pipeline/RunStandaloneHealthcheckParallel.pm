@@ -11,6 +11,7 @@ use Carp qw/croak/;
 use Data::Dumper;
 use File::Slurp qw/read_file/;
 use File::Temp qw/tempfile/;
+use IO::Socket::INET;
 use JSON;
 use Log::Log4perl qw/:easy/;
 use Bio::EnsEMBL::ApiVersion;
@@ -35,23 +36,31 @@ sub run {
 
     my $fail_file = sprintf("./%s_%s.json", $db, $hc_name);
 
-    my $command = sprintf("java $java_opts -jar %s --output_format json --output_file %s --release %s --t %s", $hc_jar, $fail_file, software_version(), $hc_name);
+    my $args = sprintf("--release %s --t %s", software_version(), $hc_name);
 
-    $command .= get_db_str( $self->param_required('db_uri'));
-    $command .= get_db_str($self->param('production_uri'), 'prod_');
-    $command .= get_db_str($self->param('compara_uri'), 'compara_');
-    $command .= get_db_str($self->param('live_uri'), 'secondary_');
-    $command .= get_db_str($self->param('staging_uri'), 'staging_');
-    $command .= sprintf(" --data_files_path %s",$self->param('data_files_path'));
+    $args .= get_db_str( $self->param_required('db_uri'));
+    $args .= get_db_str($self->param('production_uri'), 'prod_');
+    $args .= get_db_str($self->param('compara_uri'), 'compara_');
+    $args .= get_db_str($self->param('live_uri'), 'secondary_');
+    $args .= get_db_str($self->param('staging_uri'), 'staging_');
+    $args .= sprintf(" --data_files_path %s",$self->param('data_files_path'));
     my $release = $self->param('release');
     if(!defined $release) {
 		$release = software_version();    	
     }
-    $command .= sprintf(" --release %d", $release);
+    $args .= sprintf(" --release %d", $release);
     if(defined $self->param('master_schema')) {
-    		$command .= sprintf(" --master_schema %s",$self->param('master_schema'));
+    		$args .= sprintf(" --master_schema %s",$self->param('master_schema'));
     }
 
+    # hand the job to a running StandaloneTestDaemon if there is one
+    if(defined $self->param('daemon_port')) {
+      $self->run_on_daemon($self->param('daemon_port'), $args, $db_uri, $db, $hc_name);
+      return;
+    }
+
+    my $command = sprintf("java $java_opts -jar %s --output_format json --output_file %s %s", $hc_jar, $fail_file, $args);
+
     my (undef,$log_file) = tempfile('_HealthcheckDatabase_XXXXXX',  SUFFIX => '.log', TMPDIR => 1, OPEN=>0);
     $command .= " >& $log_file";
 
@@ -93,6 +102,39 @@ sub run {
 
 }
 
+# Run a single HC on a StandaloneTestDaemon listening on the local host
+sub run_on_daemon {
+  my ($self, $port, $args, $db_uri, $db, $hc_name) = @_;
+
+  my $hive_dbc = $self->dbc;
+  $hive_dbc->disconnect_if_idle() if defined $hive_dbc;
+
+  $logger->info("Running $hc_name on $db with daemon on port $port");
+  my $socket = IO::Socket::INET->new(PeerAddr => 'localhost', PeerPort => $port, Proto => 'tcp')
+    or croak "Could not connect to healthcheck daemon on port $port: $!";
+  print $socket encode_json({args => [split(/\s+/, $args)]}) . "\n";
+  my $line = <$socket>;
+  close $socket;
+  croak "No response from healthcheck daemon on port $port" unless defined $line;
+
+  my $response = decode_json($line);
+  my $output = {
+			       db_uri=>$db_uri,
+			       hc_name=>$hc_name,
+			       status=>$response->{status}
+			      };
+  if($response->{status} eq 'failed') {
+    $output->{messages} = $response->{failures}->{$db}->{$hc_name};
+  } elsif($response->{status} ne 'passed') {
+    croak "Could not execute $hc_name on $db: $response->{message}";
+  }
+  $logger->debug(Dumper($output));
+  $self->dataflow_output_id({
+			       hc_output=>$output
+			      }, 2);
+  return;
+}
+
 sub get_db_str {
   my ($uri, $suffix) = @_;
   return '' unless defined $uri;
@@ -0,0 +1,56 @@
+-- Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+-- Copyright [2016-2018] EMBL-European Bioinformatics Institute
+-- 
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+-- 
+--      http://www.apache.org/licenses/LICENSE-2.0
+-- 
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+
+-- Aggregate tables filled in when a session ends
+
+-- Reports per session, database, test, result and team, maintained by
+-- SessionSummaryBuilder when a session ends. Recurring reports were first
+-- reported in an earlier session.
+
+CREATE TABLE session_summary (
+
+  session_id                      INT(10) UNSIGNED NOT NULL,
+  database_name                   VARCHAR(255) NOT NULL,
+  testcase                        VARCHAR(255) NOT NULL,
+  result                          ENUM("PROBLEM", "CORRECT", "WARNING", "INFO") NOT NULL,
+  team_responsible                VARCHAR(255) NOT NULL DEFAULT '',
+  new_reports                     INT(10) UNSIGNED NOT NULL DEFAULT 0,
+  recurring_reports               INT(10) UNSIGNED NOT NULL DEFAULT 0,
+
+  PRIMARY KEY (session_id, database_name, testcase, result, team_responsible),
+  KEY testcase_idx(testcase),
+  KEY team_idx(team_responsible)
+
+);
+
+-- Reports per session and database, for summary pages.
+
+CREATE TABLE session_database_summary (
+
+  session_id                      INT(10) UNSIGNED NOT NULL,
+  database_name                   VARCHAR(255) NOT NULL,
+  species                         VARCHAR(255),
+  database_type                   VARCHAR(255),
+  problems                        INT(10) UNSIGNED NOT NULL DEFAULT 0,
+  warnings                        INT(10) UNSIGNED NOT NULL DEFAULT 0,
+  infos                           INT(10) UNSIGNED NOT NULL DEFAULT 0,
+  corrects                        INT(10) UNSIGNED NOT NULL DEFAULT 0,
+  new_problems                    INT(10) UNSIGNED NOT NULL DEFAULT 0,
+  failed_tests                    INT(10) UNSIGNED NOT NULL DEFAULT 0,
+
+  PRIMARY KEY (session_id, database_name),
+  KEY database_name_idx(database_name)
+
+);
@@ -54,7 +54,9 @@ CREATE TABLE report (
   KEY database_name_idx(database_name),
   KEY species_idx(species),
   KEY result_idx(result),
-  KEY text_idx(text(255))
+  KEY text_idx(text(255)),
+  KEY report_lookup_idx(database_name, testcase, result),
+  KEY last_session_result_idx(last_session_id, result)
 
 );
 
@@ -65,7 +67,48 @@ CREATE TABLE report_session (
   session_id                      INT(10) UNSIGNED NOT NULL,
   report_id                       INT(10) UNSIGNED NOT NULL,
 
-  KEY session_idx(session_id)
+  KEY session_idx(session_id),
+  KEY report_idx(report_id)
+
+);
+
+-- Reports per session, database, test, result and team, maintained by
+-- SessionSummaryBuilder when a session ends. Recurring reports were first
+-- reported in an earlier session.
+
+CREATE TABLE session_summary (
+
+  session_id                      INT(10) UNSIGNED NOT NULL,
+  database_name                   VARCHAR(255) NOT NULL,
+  testcase                        VARCHAR(255) NOT NULL,
+  result                          ENUM("PROBLEM", "CORRECT", "WARNING", "INFO") NOT NULL,
+  team_responsible                VARCHAR(255) NOT NULL DEFAULT '',
+  new_reports                     INT(10) UNSIGNED NOT NULL DEFAULT 0,
+  recurring_reports               INT(10) UNSIGNED NOT NULL DEFAULT 0,
+
+  PRIMARY KEY (session_id, database_name, testcase, result, team_responsible),
+  KEY testcase_idx(testcase),
+  KEY team_idx(team_responsible)
+
+);
+
+-- Reports per session and database, for summary pages.
+
+CREATE TABLE session_database_summary (
+
+  session_id                      INT(10) UNSIGNED NOT NULL,
+  database_name                   VARCHAR(255) NOT NULL,
+  species                         VARCHAR(255),
+  database_type                   VARCHAR(255),
+  problems                        INT(10) UNSIGNED NOT NULL DEFAULT 0,
+  warnings                        INT(10) UNSIGNED NOT NULL DEFAULT 0,
+  infos                           INT(10) UNSIGNED NOT NULL DEFAULT 0,
+  corrects                        INT(10) UNSIGNED NOT NULL DEFAULT 0,
+  new_problems                    INT(10) UNSIGNED NOT NULL DEFAULT 0,
+  failed_tests                    INT(10) UNSIGNED NOT NULL DEFAULT 0,
+
+  PRIMARY KEY (session_id, database_name),
+  KEY database_name_idx(database_name)
 
 );
 
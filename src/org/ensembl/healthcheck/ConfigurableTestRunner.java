@@ -43,6 +43,7 @@ import org.ensembl.healthcheck.configurationmanager.ConfigurationDumper;
 import org.ensembl.healthcheck.configurationmanager.ConfigurationException;
 import org.ensembl.healthcheck.configurationmanager.ConfigurationFactory;
 import org.ensembl.healthcheck.configurationmanager.ConfigurationFactory.ConfigurationType;
+import org.ensembl.healthcheck.reporter.StreamingReporter;
 import org.ensembl.healthcheck.testcase.EnsTestCase;
 import org.ensembl.healthcheck.testcase.MultiDatabaseTestCase;
 import org.ensembl.healthcheck.testcase.OrderedDatabaseTestCase;
@@ -50,6 +51,7 @@ import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
 import org.ensembl.healthcheck.util.ConnectionBasedSqlTemplateImpl;
 import org.ensembl.healthcheck.util.CreateHealthCheckDB;
 import org.ensembl.healthcheck.util.DBUtils;
+import org.ensembl.healthcheck.util.ReferenceDataCache;
 import org.ensembl.healthcheck.util.SqlTemplate;
 
 /**
@@ -357,6 +359,9 @@ public class ConfigurableTestRunner extends TestRunner {
                 setOutputLevel(outputLevelString);
                 ReportManager.setOutputLevel(outputLevel);
 
+		if (reporter instanceof StreamingReporter) {
+			((StreamingReporter) reporter).setOutputLevel(outputLevel);
+		}
 		ReportManager.setReporter(reporter);
 
 		DatabaseServer ds = connectToDatabase(configuration);
@@ -424,6 +429,12 @@ public class ConfigurableTestRunner extends TestRunner {
 				logger.info("Reporting database "
 						+ configuration.getOutputDatabase()
 						+ " already exists, will reuse.");
+
+				// Old reports are removed before a new session starts, not
+				// by each part of a parallel run adding to a session.
+				if (c.isRetentionConfigured() && !configuration.isSessionID()) {
+					c.maintain();
+				}
 			} else {
 				logger.info("Reporting database "
 						+ configuration.getOutputDatabase()
@@ -545,9 +556,12 @@ public class ConfigurableTestRunner extends TestRunner {
 			        ReportManager.endDatabaseSession();
 			        logger.info("Finished reporter session");
                         }
-		} else {
+		} else if (this.reporterType == ReporterType.TEXT) {
                         logger.info("Printing output by test");
                         printReportsByTest(outputLevel, printFailureText);
+                } else {
+                        // results have already been streamed as the tests finished
+                        ((StreamingReporter) reporter).flush();
                 }
 	}
 
@@ -656,6 +670,12 @@ public class ConfigurableTestRunner extends TestRunner {
 			List<DatabaseRegistryEntry>
 		>();
 
+		// the databases may have changed since an earlier run in this JVM
+		ReferenceDataCache.getInstance().clear();
+		for (DatabaseRegistryEntry database : databaseRegistry.getAll()) {
+			database.invalidateCaches();
+		}
+
 		// --------------------------------
 		// Single-database tests
 
@@ -21,6 +21,7 @@ package org.ensembl.healthcheck;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.ensembl.healthcheck.configuration.ConfigureTestGroups;
@@ -52,38 +53,38 @@ public class ConfigurationBasedTestRegistry implements TestRegistry {
 		this.userDefinedGroupOfTests = userDefinedGroupOfTests;
 	}
 
-	private List<SingleDatabaseTestCase> getSingleDatabaseTestCaseList() {
+	private List<TestDescriptor> getSingleDatabaseTestCaseList() {
 		return singleDatabaseTestCaseList;
 	}
 
 	private void setSingleDatabaseTestCaseList(
-			List<SingleDatabaseTestCase> singleDatabaseTestCaseList) {
+			List<TestDescriptor> singleDatabaseTestCaseList) {
 		this.singleDatabaseTestCaseList = singleDatabaseTestCaseList;
 	}
 
-	private List<MultiDatabaseTestCase> getMultiDatabaseTestCaseList() {
+	private List<TestDescriptor> getMultiDatabaseTestCaseList() {
 		return multiDatabaseTestCaseList;
 	}
 
 	private void setMultiDatabaseTestCaseList(
-			List<MultiDatabaseTestCase> multiDatabaseTestCaseList) {
+			List<TestDescriptor> multiDatabaseTestCaseList) {
 		this.multiDatabaseTestCaseList = multiDatabaseTestCaseList;
 	}
 
-	private List<OrderedDatabaseTestCase> getOrderedDatabaseTestCaseList() {
+	private List<TestDescriptor> getOrderedDatabaseTestCaseList() {
 		return orderedDatabaseTestCaseList;
 	}
 
 	private void setOrderedDatabaseTestCaseList(
-			List<OrderedDatabaseTestCase> orderedDatabaseTestCaseList) {
+			List<TestDescriptor> orderedDatabaseTestCaseList) {
 		this.orderedDatabaseTestCaseList = orderedDatabaseTestCaseList;
 	}
 
-	private List<EnsTestCase> getDatabaseTestCaseList() {
+	private List<TestDescriptor> getDatabaseTestCaseList() {
 		return databaseTestCaseList;
 	}
 
-	private void setDatabaseTestCaseList(List<EnsTestCase> databaseTestCaseList) {
+	private void setDatabaseTestCaseList(List<TestDescriptor> databaseTestCaseList) {
 		this.databaseTestCaseList = databaseTestCaseList;
 	}
 
@@ -92,10 +93,10 @@ public class ConfigurationBasedTestRegistry implements TestRegistry {
 	//
 
 	private GroupOfTests userDefinedGroupOfTests;
-	private List<EnsTestCase>             databaseTestCaseList;
-	private List<SingleDatabaseTestCase>  singleDatabaseTestCaseList;
-	private List<MultiDatabaseTestCase>   multiDatabaseTestCaseList;
-	private List<OrderedDatabaseTestCase> orderedDatabaseTestCaseList;
+	private List<TestDescriptor> databaseTestCaseList;
+	private List<TestDescriptor> singleDatabaseTestCaseList;
+	private List<TestDescriptor> multiDatabaseTestCaseList;
+	private List<TestDescriptor> orderedDatabaseTestCaseList;
 
 	/**
 	 * @param params ConfigurationUserParameters object
@@ -109,10 +110,25 @@ public class ConfigurationBasedTestRegistry implements TestRegistry {
 			ClassNotFoundException {
 		
 		initGroupSet(params);		
-		this.setDatabaseTestCaseList(new ArrayList<EnsTestCase>(userDefinedGroupOfTests.getTests()));		
+		initDatabaseTestCaseList();
 		initDatabaseLists();		
 	}
 
+	/**
+	 * Describes each selected test class. No tests are instantiated here;
+	 * that happens when a test is asked for by one of the TestRegistry
+	 * methods or through {@link TestDescriptor#getInstance()}.
+	 */
+	private void initDatabaseTestCaseList() {
+		
+		List<TestDescriptor> descriptors = new ArrayList<TestDescriptor>();
+		
+		for (Class<? extends EnsTestCase> testClass : userDefinedGroupOfTests.getListOfTests()) {
+			descriptors.add(new TestDescriptor(testClass));
+		}
+		this.setDatabaseTestCaseList(descriptors);
+	}
+
 	protected boolean isEmptyList(List<String> l) {		
 		return l.size()==1 && l.get(0).equals("");
 	}
@@ -203,26 +219,26 @@ public class ConfigurationBasedTestRegistry implements TestRegistry {
 	 */
 	private void initDatabaseLists() throws UnknownTestTypeException {
 		
-		List<EnsTestCase> listOfTests = this.getDatabaseTestCaseList();
+		List<TestDescriptor> listOfTests = this.getDatabaseTestCaseList();
 		
-		List<SingleDatabaseTestCase>  single  = new ArrayList<SingleDatabaseTestCase>();
-		List<MultiDatabaseTestCase>   multi   = new ArrayList<MultiDatabaseTestCase>();
-		List<OrderedDatabaseTestCase> ordered = new ArrayList<OrderedDatabaseTestCase>();
+		List<TestDescriptor> single  = new ArrayList<TestDescriptor>();
+		List<TestDescriptor> multi   = new ArrayList<TestDescriptor>();
+		List<TestDescriptor> ordered = new ArrayList<TestDescriptor>();
 		
-		for (EnsTestCase currentTest : listOfTests) {
+		for (TestDescriptor currentTest : listOfTests) {
 			
 			boolean testWasAddedToAList = false;
 			
-			if (currentTest instanceof SingleDatabaseTestCase) {
-				single.add((SingleDatabaseTestCase) currentTest);
+			if (currentTest.isSingle()) {
+				single.add(currentTest);
 				testWasAddedToAList = true;
 			}
-			if (currentTest instanceof MultiDatabaseTestCase) {
-				multi.add((MultiDatabaseTestCase) currentTest);
+			if (currentTest.isMulti()) {
+				multi.add(currentTest);
 				testWasAddedToAList = true;
 			}
-			if (currentTest instanceof OrderedDatabaseTestCase) {
-				ordered.add((OrderedDatabaseTestCase) currentTest);
+			if (currentTest.isOrdered()) {
+				ordered.add(currentTest);
 				testWasAddedToAList = true;
 			}
 			
@@ -236,40 +252,79 @@ public class ConfigurationBasedTestRegistry implements TestRegistry {
 		this.setOrderedDatabaseTestCaseList(ordered);
 	}
 	
+	/**
+	 * Instances of the described tests for the current thread. Tests which
+	 * can't be created are logged and left out.
+	 */
+	protected <T extends EnsTestCase> List<T> instancesOf(List<TestDescriptor> descriptors, Class<T> type) {
+		
+		List<T> tests = new ArrayList<T>(descriptors.size());
+		
+		for (TestDescriptor descriptor : descriptors) {
+			try {
+				tests.add(type.cast(descriptor.getInstance()));
+			} catch (RuntimeException e) {
+				logger.log(Level.WARNING, "Skipping " + descriptor.getName() + ", it could not be created", e);
+			}
+		}
+		return tests;
+	}
+	
 	public String toString() {
 		
 		StringBuffer result = new StringBuffer();
 		
-		result.append( "DatabaseTestCaseList: \n"        + listToString(this.getDatabaseTestCaseList()) + "\n" );
-		result.append( "Single database testcases: \n"   + listToString(this.getAllSingle(null, null))  + "\n" );
-		result.append( "Multi database testcases: \n"    + listToString(this.getAllMulti(null))         + "\n" );
-		result.append( "Ordered database testcases: \n"  + listToString(this.getAllOrdered(null))       + "\n" );
+		result.append( "DatabaseTestCaseList: \n"        + listToString(this.getDatabaseTestCaseList())        + "\n" );
+		result.append( "Single database testcases: \n"   + listToString(this.getSingleDatabaseTestCaseList())  + "\n" );
+		result.append( "Multi database testcases: \n"    + listToString(this.getMultiDatabaseTestCaseList())   + "\n" );
+		result.append( "Ordered database testcases: \n"  + listToString(this.getOrderedDatabaseTestCaseList()) + "\n" );
 		
 		return result.toString();
 	}
 	
-	protected String listToString(List<? extends EnsTestCase> l) {
+	protected String listToString(List<TestDescriptor> l) {
 
 		StringBuffer s = new StringBuffer(); 
 		
 		if (l.size()==0) return " - none - ";
 		
-		for (EnsTestCase e : l) {
-			s.append("  - " + e.getClass().getName() + "\n");
+		for (TestDescriptor e : l) {
+			s.append("  - " + e.getName() + "\n");
 		}
 		return s.toString();
 	}
 	
+	/**
+	 * @return descriptors of all the selected tests
+	 */
+	public List<TestDescriptor> getDescriptors() {
+		return new ArrayList<TestDescriptor>(this.getDatabaseTestCaseList());
+	}
+
+	/**
+	 * @return descriptors of the multi-database tests
+	 */
+	public List<TestDescriptor> getMultiDescriptors() {
+		return new ArrayList<TestDescriptor>(this.getMultiDatabaseTestCaseList());
+	}
+
+	/**
+	 * @return descriptors of the ordered database tests
+	 */
+	public List<TestDescriptor> getOrderedDescriptors() {
+		return new ArrayList<TestDescriptor>(this.getOrderedDatabaseTestCaseList());
+	}
+
 	public List<EnsTestCase> getAll() {
-		return new ArrayList<EnsTestCase>(this.getUserDefinedGroupOfTests().getTests());
+		return instancesOf(this.getDatabaseTestCaseList(), EnsTestCase.class);
 	}
 
 	public List<MultiDatabaseTestCase> getAllMulti(List<String> groupsToRun) {
-		return new ArrayList<MultiDatabaseTestCase>(this.getMultiDatabaseTestCaseList());
+		return instancesOf(this.getMultiDatabaseTestCaseList(), MultiDatabaseTestCase.class);
 	}
 
 	public List<OrderedDatabaseTestCase> getAllOrdered(List<String> groups) {
-		return new ArrayList<OrderedDatabaseTestCase>(this.getOrderedDatabaseTestCaseList());
+		return instancesOf(this.getOrderedDatabaseTestCaseList(), OrderedDatabaseTestCase.class);
 	}
 
 	public List<SingleDatabaseTestCase> getAllSingle(List<String> groupsToRun,
@@ -280,13 +335,20 @@ public class ConfigurationBasedTestRegistry implements TestRegistry {
 		return getSingle(type);
 	}
 	
-	private Map<DatabaseType,List<SingleDatabaseTestCase>> singleTestsByType;
-	protected Map<DatabaseType,List<SingleDatabaseTestCase>> getSingleTestsByType() {
+	private Map<DatabaseType,List<TestDescriptor>> singleTestsByType;
+	protected synchronized Map<DatabaseType,List<TestDescriptor>> getSingleTestsByType() {
 		if(singleTestsByType==null) {
 			singleTestsByType = CollectionUtils.createHashMap();
-			for(SingleDatabaseTestCase test: this.getSingleDatabaseTestCaseList()) {
-				for(DatabaseType type: test.getAppliesToTypes()) {
-					List<SingleDatabaseTestCase> tests = singleTestsByType.get(type);
+			for(TestDescriptor test: this.getSingleDatabaseTestCaseList()) {
+				List<DatabaseType> types;
+				try {
+					types = test.getAppliesToTypes();
+				} catch (RuntimeException e) {
+					logger.log(Level.WARNING, "Skipping " + test.getName() + ", it could not be created", e);
+					continue;
+				}
+				for(DatabaseType type: types) {
+					List<TestDescriptor> tests = singleTestsByType.get(type);
 					if(tests==null) {
 						tests = CollectionUtils.createArrayList();
 						singleTestsByType.put(type,tests);
@@ -297,11 +359,16 @@ public class ConfigurationBasedTestRegistry implements TestRegistry {
 		}
 		return singleTestsByType;
 	}
-	public List<SingleDatabaseTestCase> getSingle(DatabaseType type) {
+
+	/**
+	 * @return descriptors of the single-database tests that apply to the
+	 *         type, or all of them if type is null
+	 */
+	public List<TestDescriptor> getSingleDescriptors(DatabaseType type) {
 		if(type==null) {
 			return this.getSingleDatabaseTestCaseList();
 		} else {
-			List<SingleDatabaseTestCase> ts = getSingleTestsByType().get(type);
+			List<TestDescriptor> ts = getSingleTestsByType().get(type);
 			if(ts==null) {
 				logger.warning("Couldn't find any tests for database type "+type.getName());
 				ts = CollectionUtils.createArrayList();
@@ -310,6 +377,10 @@ public class ConfigurationBasedTestRegistry implements TestRegistry {
 		}
 	}
 
+	public List<SingleDatabaseTestCase> getSingle(DatabaseType type) {
+		return instancesOf(getSingleDescriptors(type), SingleDatabaseTestCase.class);
+	}
+
 	public String[] getGroups(DatabaseType type) {
 		throw new UnsupportedOperationException(this.getClass().getName()+".getGroups() not yet implemented");
 	}
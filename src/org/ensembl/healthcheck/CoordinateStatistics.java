@@ -0,0 +1,397 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Logger;
+
+import org.ensembl.healthcheck.util.DBUtils;
+import org.ensembl.healthcheck.util.SqlTemplate;
+import org.ensembl.healthcheck.util.SqlUncheckedException;
+import org.ensembl.healthcheck.util.TemplateBuilder;
+import org.ensembl.healthcheck.util.UtilUncheckedException;
+
+/**
+ * <p>
+ * 	Coordinate statistics of the feature tables of a database, so that the
+ * tests checking feature coordinates (FeatureCoords, MetaCoord,
+ * DensityFeatures etc.) share one aggregated scan of each table instead of
+ * each running its own queries per table, seq_region or coordinate system.
+ * Held by {@link DatabaseRegistryEntry#getCoordinateStatistics()}.
+ * </p>
+ *
+ * <p>
+ * 	Each table is scanned the first time it is asked for, with one
+ * <code>GROUP BY seq_region_id</code> query giving the number of features,
+ * the largest start and length and the number of features starting before 1
+ * or after their end on each seq_region. Statistics per coordinate system
+ * and for the whole table are summed from those and kept. The statistics
+ * per seq_region can be large for assemblies with many seq_regions, so once
+ * more than a maximum number of them are held, those of the least recently
+ * used tables are dropped and scanned again if they are asked for. The
+ * coordinate system, length and toplevel flag of every seq_region are read
+ * once, also when first needed.
+ * </p>
+ *
+ * <p>
+ * 	Tables are scanned without holding any lock, so different tables can be
+ * scanned at the same time. Threads asking for a table which is being
+ * scanned wait for that scan.
+ * </p>
+ */
+public class CoordinateStatistics {
+
+	/**
+	 * Statistics of the features on one seq_region, one coordinate system or
+	 * a whole table
+	 */
+	public static class Stats {
+
+		private long count;
+		private long maxStart;
+		private long maxLength;
+		private long startBelowOne;
+		private long startAfterEnd;
+
+		Stats() {
+		}
+
+		Stats(long count, long maxStart, long maxLength, long startBelowOne, long startAfterEnd) {
+			this.count = count;
+			this.maxStart = maxStart;
+			this.maxLength = maxLength;
+			this.startBelowOne = startBelowOne;
+			this.startAfterEnd = startAfterEnd;
+		}
+
+		void add(Stats other) {
+			maxStart = count == 0 ? other.maxStart : Math.max(maxStart, other.maxStart);
+			maxLength = count == 0 ? other.maxLength : Math.max(maxLength, other.maxLength);
+			count += other.count;
+			startBelowOne += other.startBelowOne;
+			startAfterEnd += other.startAfterEnd;
+		}
+
+		/**
+		 * @return number of features
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * @return largest seq_region_start, or 0 if there are no features
+		 */
+		public long getMaxStart() {
+			return maxStart;
+		}
+
+		/**
+		 * @return largest seq_region_end - seq_region_start + 1, which may be
+		 *         negative if every feature starts after its end
+		 */
+		public long getMaxLength() {
+			return maxLength;
+		}
+
+		/**
+		 * @return number of features with seq_region_start &lt; 1
+		 */
+		public long getStartBelowOne() {
+			return startBelowOne;
+		}
+
+		/**
+		 * @return number of features with seq_region_start &gt; seq_region_end
+		 */
+		public long getStartAfterEnd() {
+			return startAfterEnd;
+		}
+	}
+
+	public static final int DEFAULT_MAX_REGIONS = 1000000;
+
+	private static final Stats EMPTY = new Stats();
+
+	private static final String SEQ_REGION_SQL = "SELECT seq_region_id, coord_system_id, length FROM seq_region";
+
+	private static final String TOPLEVEL_SQL = "SELECT sra.seq_region_id FROM seq_region_attrib sra "
+			+ "JOIN attrib_type at ON sra.attrib_type_id = at.attrib_type_id WHERE at.code = 'toplevel'";
+
+	private static final String TABLE_SQL = "SELECT seq_region_id, COUNT(*), MAX(seq_region_start), "
+			+ "MAX(CAST(seq_region_end AS SIGNED) - CAST(seq_region_start AS SIGNED) + 1), "
+			+ "SUM(CASE WHEN seq_region_start < 1 THEN 1 ELSE 0 END), "
+			+ "SUM(CASE WHEN seq_region_start > seq_region_end THEN 1 ELSE 0 END) "
+			+ "FROM $table$ GROUP BY seq_region_id";
+
+	private static Logger logger = Logger.getLogger("HealthCheckLogger");
+
+	private final DatabaseRegistryEntry dbre;
+
+	private final int maxRegions;
+
+	// seq_region_id -> { coord_system_id, length }
+	private Map<Long, long[]> seqRegions;
+
+	private Set<Long> topLevel;
+
+	private final Object seqRegionLock = new Object();
+
+	// access ordered, so iteration starts at the least recently used
+	private final LinkedHashMap<String, FutureTask<Map<Long, Stats>>> bySeqRegion = new LinkedHashMap<String, FutureTask<Map<Long, Stats>>>(
+			16, 0.75f, true);
+
+	// number of seq_regions of each table counted in cachedRegions
+	private final Map<String, Integer> regionCounts = new HashMap<String, Integer>();
+
+	private int cachedRegions;
+
+	private final Map<String, Map<Long, Stats>> byCoordSystem = new ConcurrentHashMap<String, Map<Long, Stats>>();
+
+	private final Map<String, Stats> totals = new ConcurrentHashMap<String, Stats>();
+
+	public CoordinateStatistics(DatabaseRegistryEntry dbre) {
+		this(dbre, DEFAULT_MAX_REGIONS);
+	}
+
+	/**
+	 * @param maxRegions
+	 *          most statistics per seq_region to hold, over all tables
+	 */
+	public CoordinateStatistics(DatabaseRegistryEntry dbre, int maxRegions) {
+		this.dbre = dbre;
+		this.maxRegions = maxRegions;
+	}
+
+	/**
+	 * @return statistics of the features of the table on each seq_region
+	 *         that has any
+	 */
+	public Map<Long, Stats> getBySeqRegion(final String table) {
+		FutureTask<Map<Long, Stats>> task;
+		boolean load = false;
+		synchronized (this) {
+			task = bySeqRegion.get(table);
+			if (task == null) {
+				task = new FutureTask<Map<Long, Stats>>(new Callable<Map<Long, Stats>>() {
+					@Override
+					public Map<Long, Stats> call() {
+						return scan(table);
+					}
+				});
+				bySeqRegion.put(table, task);
+				load = true;
+			}
+		}
+		if (load) {
+			task.run();
+		}
+		try {
+			Map<Long, Stats> stats = task.get();
+			if (load) {
+				added(table, stats.size());
+			}
+			return stats;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new UtilUncheckedException("Interrupted while waiting for coordinate statistics of " + table, e);
+		} catch (ExecutionException e) {
+			// don't keep failures, so the next caller tries again
+			synchronized (this) {
+				if (bySeqRegion.get(table) == task) {
+					bySeqRegion.remove(table);
+				}
+			}
+			if (e.getCause() instanceof SqlUncheckedException) {
+				throw (SqlUncheckedException) e.getCause();
+			}
+			throw new UtilUncheckedException("Could not collect coordinate statistics of " + table, e.getCause());
+		}
+	}
+
+	/**
+	 * @return statistics of the features of the table on one seq_region,
+	 *         with a count of 0 if there are none
+	 */
+	public Stats getSeqRegion(String table, long seqRegionId) {
+		Stats stats = getBySeqRegion(table).get(seqRegionId);
+		return stats == null ? EMPTY : stats;
+	}
+
+	/**
+	 * @return statistics of the features of the table in each coordinate
+	 *         system that has any. Features on seq_regions which are not in
+	 *         the seq_region table are not included.
+	 */
+	public Map<Long, Stats> getByCoordSystem(String table) {
+		Map<Long, Stats> stats = byCoordSystem.get(table);
+		if (stats == null) {
+			getBySeqRegion(table);
+			stats = byCoordSystem.get(table);
+		}
+		return stats;
+	}
+
+	/**
+	 * @return statistics of all the features of the table
+	 */
+	public Stats getTotal(String table) {
+		Stats stats = totals.get(table);
+		if (stats == null) {
+			getBySeqRegion(table);
+			stats = totals.get(table);
+		}
+		return stats;
+	}
+
+	/**
+	 * @return the coordinate system of the seq_region, or null if there is
+	 *         no such seq_region
+	 */
+	public Long getCoordSystemId(long seqRegionId) {
+		long[] info = getSeqRegions().get(seqRegionId);
+		return info == null ? null : info[0];
+	}
+
+	/**
+	 * @return the length of the seq_region, or null if there is no such
+	 *         seq_region
+	 */
+	public Long getSeqRegionLength(long seqRegionId) {
+		long[] info = getSeqRegions().get(seqRegionId);
+		return info == null ? null : info[1];
+	}
+
+	/**
+	 * @return true if the seq_region has the toplevel attribute
+	 */
+	public boolean isTopLevel(long seqRegionId) {
+		synchronized (seqRegionLock) {
+			if (topLevel == null) {
+				topLevel = new HashSet<Long>(DBUtils.getSqlTemplate(dbre).queryForDefaultObjectList(TOPLEVEL_SQL,
+						Long.class));
+			}
+			return topLevel.contains(seqRegionId);
+		}
+	}
+
+	/**
+	 * @return number of seq_regions whose statistics are held, over all
+	 *         tables
+	 */
+	public synchronized int getCachedRegions() {
+		return cachedRegions;
+	}
+
+	private Map<Long, long[]> getSeqRegions() {
+		synchronized (seqRegionLock) {
+			if (seqRegions == null) {
+				final Map<Long, long[]> regions = new HashMap<Long, long[]>();
+				DBUtils.getSqlTemplate(dbre).execute(SEQ_REGION_SQL, new SqlTemplate.ResultSetCallback<Void>() {
+					@Override
+					public Void process(ResultSet rs) throws SQLException {
+						while (rs.next()) {
+							regions.put(rs.getLong(1), new long[] { rs.getLong(2), rs.getLong(3) });
+						}
+						return null;
+					}
+				});
+				seqRegions = regions;
+			}
+			return seqRegions;
+		}
+	}
+
+	/**
+	 * Collect the statistics of the table per seq_region, and sum them per
+	 * coordinate system and for the whole table
+	 */
+	private Map<Long, Stats> scan(String table) {
+		logger.fine("Collecting coordinate statistics for " + table + " in " + dbre.getName());
+		final Map<Long, Stats> stats = new HashMap<Long, Stats>();
+		DBUtils.getSqlTemplate(dbre).execute(TemplateBuilder.template(TABLE_SQL, "table", table),
+				new SqlTemplate.ResultSetCallback<Void>() {
+					@Override
+					public Void process(ResultSet rs) throws SQLException {
+						while (rs.next()) {
+							stats.put(rs.getLong(1), new Stats(rs.getLong(2), rs.getLong(3), rs.getLong(4),
+									rs.getLong(5), rs.getLong(6)));
+						}
+						return null;
+					}
+				});
+
+		if (!totals.containsKey(table)) {
+			Map<Long, long[]> regions = getSeqRegions();
+			Map<Long, Stats> csStats = new HashMap<Long, Stats>();
+			Stats total = new Stats();
+			for (Map.Entry<Long, Stats> region : stats.entrySet()) {
+				total.add(region.getValue());
+				long[] info = regions.get(region.getKey());
+				if (info == null) {
+					continue;
+				}
+				Stats cs = csStats.get(info[0]);
+				if (cs == null) {
+					cs = new Stats();
+					csStats.put(info[0], cs);
+				}
+				cs.add(region.getValue());
+			}
+			byCoordSystem.put(table, Collections.unmodifiableMap(csStats));
+			totals.put(table, total);
+		}
+		return Collections.unmodifiableMap(stats);
+	}
+
+	/**
+	 * Count the seq_regions of a newly scanned table and drop the statistics
+	 * per seq_region of the least recently used tables (never the new one)
+	 * until no more than the maximum are held
+	 */
+	private synchronized void added(String table, int regions) {
+		if (!bySeqRegion.containsKey(table)) {
+			return;
+		}
+		regionCounts.put(table, regions);
+		cachedRegions += regions;
+		Iterator<Map.Entry<String, FutureTask<Map<Long, Stats>>>> it = bySeqRegion.entrySet().iterator();
+		while (cachedRegions > maxRegions && it.hasNext()) {
+			Map.Entry<String, FutureTask<Map<Long, Stats>>> eldest = it.next();
+			if (eldest.getKey().equals(table) || !regionCounts.containsKey(eldest.getKey())) {
+				// still being scanned, or not counted yet
+				continue;
+			}
+			cachedRegions -= regionCounts.remove(eldest.getKey());
+			logger.fine("Dropping coordinate statistics per seq_region of " + eldest.getKey() + " in " + dbre.getName());
+			it.remove();
+		}
+	}
+}
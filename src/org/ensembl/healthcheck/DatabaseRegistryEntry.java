@@ -33,6 +33,7 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -47,6 +48,7 @@ import org.ensembl.healthcheck.util.DBUtils;
 import org.ensembl.healthcheck.util.RowMapper;
 import org.ensembl.healthcheck.util.SqlTemplate;
 import org.ensembl.healthcheck.util.SqlUncheckedException;
+import org.ensembl.healthcheck.util.TableStatistics;
 import org.ensembl.healthcheck.util.UtilUncheckedException;
 
 /**
@@ -363,6 +365,12 @@ public class DatabaseRegistryEntry implements Comparable<DatabaseRegistryEntry>
 
 	private Connection connection;
 
+	private MetaSnapshot meta;
+
+	private TableStatistics tableStatistics;
+
+	private CoordinateStatistics coordinateStatistics;
+
 	/** The logger to use */
 	private static Logger logger = Logger.getLogger("HealthCheckLogger");
 
@@ -553,7 +561,7 @@ public class DatabaseRegistryEntry implements Comparable<DatabaseRegistryEntry>
 		return server;
 	}
 
-	public Connection getConnection() {
+	public synchronized Connection getConnection() {
 
 		if (
 			(connection == null) 
@@ -604,11 +612,93 @@ public class DatabaseRegistryEntry implements Comparable<DatabaseRegistryEntry>
 	 */
 	public List<Integer> getSpeciesIds() {
 		if (speciesIds == null) {
-			speciesIds = getSpeciesIds(getConnection(), getSpecies(), getType());
+			// only generic databases have a coord_system table
+			if (getType() == null || !getType().isGeneric()) {
+				speciesIds = CollectionUtils.createArrayList();
+			} else {
+				speciesIds = new ArrayList<Integer>(getMeta().getSpeciesIds());
+			}
 		}
 		return speciesIds;
 	}
 
+	/**
+	 * Contents of the meta table, read the first time they are asked for and
+	 * shared by all tests run on this database.
+	 * 
+	 * @return snapshot of the meta table
+	 */
+	public synchronized MetaSnapshot getMeta() {
+		if (meta == null) {
+			meta = MetaSnapshot.load(getConnection());
+		}
+		return meta;
+	}
+
+	/**
+	 * Discard the meta snapshot, e.g. after a repair which may have changed
+	 * the meta table, so the next call to {@link #getMeta()} reads it again.
+	 */
+	public synchronized void invalidateMeta() {
+		meta = null;
+		speciesIds = null;
+	}
+
+	/**
+	 * Row counts and sizes of the tables in this database, read the first
+	 * time they are asked for and shared by all tests run on this database.
+	 * 
+	 * @return statistics from information_schema
+	 */
+	public synchronized TableStatistics getTableStatistics() {
+		if (tableStatistics == null) {
+			tableStatistics = TableStatistics.load(this);
+		}
+		return tableStatistics;
+	}
+
+	/**
+	 * Discard the table statistics, e.g. after a repair which may have added
+	 * or deleted rows.
+	 */
+	public synchronized void invalidateTableStatistics() {
+		tableStatistics = null;
+	}
+
+	/**
+	 * Coordinate statistics of the feature tables in this database, shared
+	 * by all tests run on this database. Each table is scanned the first time
+	 * it is asked for.
+	 * 
+	 * @return coordinate statistics
+	 */
+	public synchronized CoordinateStatistics getCoordinateStatistics() {
+		if (coordinateStatistics == null) {
+			coordinateStatistics = new CoordinateStatistics(this);
+		}
+		return coordinateStatistics;
+	}
+
+	/**
+	 * Discard the coordinate statistics, e.g. after a repair which may have
+	 * changed feature coordinates.
+	 */
+	public synchronized void invalidateCoordinateStatistics() {
+		coordinateStatistics = null;
+	}
+
+	/**
+	 * Discard everything read from this database and kept for later tests:
+	 * the meta snapshot, the table statistics and the coordinate statistics.
+	 * Called after a repair, and at the start of each run since the data may
+	 * have been changed since the last one.
+	 */
+	public void invalidateCaches() {
+		invalidateMeta();
+		invalidateTableStatistics();
+		invalidateCoordinateStatistics();
+	}
+
 	public String toString() {
 		return getName();
 	}
@@ -18,6 +18,7 @@
 package org.ensembl.healthcheck;
 
 import java.sql.Connection;
+import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.logging.Logger;
 
@@ -98,6 +99,24 @@ public class DatabaseServer {
 
 	}
 
+	// -------------------------------------------------------------------------
+	/**
+	 * Open a new connection to a named database without going through the
+	 * connection pool, which only holds one connection per database. Use this
+	 * for worker threads that need to query the database concurrently; the
+	 * caller is responsible for closing the connection.
+	 */
+	public Connection getUnpooledDatabaseConnection(String databaseName) throws SQLException {
+
+		try {
+			Class.forName(driver);
+		} catch (ClassNotFoundException e) {
+			throw new SQLException("Can't load class " + driver, e);
+		}
+		return DriverManager.getConnection(databaseURL + databaseName, user, pass);
+
+	}
+
 	// -------------------------------------------------------------------------
 
 	public Connection getServerConnection() throws SQLException {
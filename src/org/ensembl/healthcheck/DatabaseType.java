@@ -29,6 +29,9 @@
  */
 package org.ensembl.healthcheck;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.ensembl.healthcheck.util.Utils;
 
 /**
@@ -36,6 +39,9 @@ import org.ensembl.healthcheck.util.Utils;
  */
 public final class DatabaseType {
 
+	/** All types by name; declared first so the constructor can register each type */
+	private static final Map<String, DatabaseType> BY_NAME = new HashMap<String, DatabaseType>();
+
 	/** A core database */
 	public static final DatabaseType CORE = new DatabaseType("core");
 
@@ -122,6 +128,7 @@ public final class DatabaseType {
 	private DatabaseType(final String name) {
 
 		this.name = name;
+		BY_NAME.put(name, this);
 	}
 
 	/**
@@ -140,6 +147,21 @@ public final class DatabaseType {
 		return this.name;
 	}
 
+	// -----------------------------------------------------------------
+	/**
+	 * Look up a DatabaseType by its exact name, as returned by {@link #getName()}.
+	 * 
+	 * @param name
+	 *          The name of the type.
+	 * @return The DatabaseType with that name, or DatabaseType.UNKNOWN if there is none.
+	 */
+	public static DatabaseType forName(final String name) {
+
+		DatabaseType type = BY_NAME.get(name);
+		return type == null ? UNKNOWN : type;
+
+	}
+
 	// -----------------------------------------------------------------
 	/**
 	 * Resolve an alias to a DatabaseType object.
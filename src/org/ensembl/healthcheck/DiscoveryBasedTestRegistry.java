@@ -21,8 +21,11 @@ import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.logging.Level;
@@ -44,15 +47,24 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 
 	private List<EnsTestCase> allTests; // a list of EnsTestCase objects
 
+	private final TestIndex index;
+
+	// tests instantiated from the index, by class name
+	private final Map<String, EnsTestCase> indexedTests = new HashMap<String, EnsTestCase>();
+
 	private static final String BASE_TESTCASE_PACKAGE = "org.ensembl.healthcheck.testcase";
 
 	// -----------------------------------------------------------------
 	/**
-	 * Create a new TestRegistry.
+	 * Create a new TestRegistry. If there is a test index, tests are only
+	 * instantiated once they are asked for.
 	 */
 	public DiscoveryBasedTestRegistry() {
 
-		allTests = findAllTests();
+		index = TestIndex.getInstance();
+		if (index == null) {
+			allTests = findAllTests();
+		}
 
 	}
 
@@ -62,6 +74,9 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 	 */
 	public List<EnsTestCase> getAll() {
 
+		if (allTests == null) {
+			allTests = findTestsInIndex(index, BASE_TESTCASE_PACKAGE);
+		}
 		return allTests;
 
 	} // getAll
@@ -73,7 +88,7 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 	public List<SingleDatabaseTestCase> getAllSingle() {
 
 		List<SingleDatabaseTestCase> allSingle = new ArrayList<SingleDatabaseTestCase>();
-		for(EnsTestCase test: allTests) {
+		for(EnsTestCase test: getAll()) {
 			if (test instanceof SingleDatabaseTestCase) {
 				allSingle.add((SingleDatabaseTestCase) test);
 			}
@@ -90,7 +105,7 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 	public List<MultiDatabaseTestCase> getAllMulti() {
 
 		List<MultiDatabaseTestCase> allMulti = new ArrayList<MultiDatabaseTestCase>();
-		for(EnsTestCase test: allTests) {
+		for(EnsTestCase test: getAll()) {
 			if (test instanceof MultiDatabaseTestCase) {
 				allMulti.add((MultiDatabaseTestCase) test);
 			}
@@ -107,7 +122,7 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 	public List<OrderedDatabaseTestCase> getAllOrdered() {
 
 		List<OrderedDatabaseTestCase> allOrdered = new ArrayList<OrderedDatabaseTestCase>();
-		for(EnsTestCase test: allTests) {
+		for(EnsTestCase test: getAll()) {
 			if (test instanceof OrderedDatabaseTestCase) {
 				allOrdered.add((OrderedDatabaseTestCase) test);
 			}
@@ -131,9 +146,9 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 
 		List<SingleDatabaseTestCase> result = new ArrayList<SingleDatabaseTestCase>();
 
-		for(SingleDatabaseTestCase test: getAllSingle()) {
-			if (test.inGroups(groups) && test.appliesToType(type)) {
-				result.add(test);
+		for(EnsTestCase test: getSelected(groups, type)) {
+			if (test instanceof SingleDatabaseTestCase && test.inGroups(groups) && test.appliesToType(type)) {
+				result.add((SingleDatabaseTestCase) test);
 			}
 		}
 
@@ -154,9 +169,9 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 
 		List<MultiDatabaseTestCase> result = new ArrayList<MultiDatabaseTestCase>();
 
-		for(MultiDatabaseTestCase test: getAllMulti()) {
-			if (test.inGroups(groups)) {
-				result.add(test);
+		for(EnsTestCase test: getSelected(groups, null)) {
+			if (test instanceof MultiDatabaseTestCase && test.inGroups(groups)) {
+				result.add((MultiDatabaseTestCase) test);
 			}
 		}
 		return result;
@@ -175,14 +190,28 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 
 		List<OrderedDatabaseTestCase> result = new ArrayList<OrderedDatabaseTestCase>();
 
-		for(OrderedDatabaseTestCase test: getAllOrdered()) {
-			if (test.inGroups(groups)) {
-				result.add(test);
+		for(EnsTestCase test: getSelected(groups, null)) {
+			if (test instanceof OrderedDatabaseTestCase && test.inGroups(groups)) {
+				result.add((OrderedDatabaseTestCase) test);
 			}
 		}
 		return result;
 	}
 
+	// -----------------------------------------------------------------
+	/**
+	 * @return the tests in the groups which apply to the type (if not null),
+	 *         only instantiating those if they can be found in the test index
+	 */
+	private List<EnsTestCase> getSelected(List<String> groups, DatabaseType type) {
+
+		if (allTests != null) {
+			return allTests;
+		}
+		return findTestsInIndex(index, BASE_TESTCASE_PACKAGE, groups, type);
+
+	}
+
 	// -----------------------------------------------------------------
 
 	/**
@@ -194,6 +223,13 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 	 */
 	public List<EnsTestCase> findAllTests() {
 
+		TestIndex index = TestIndex.getInstance();
+		if (index != null) {
+			allTests = findTestsInIndex(index, BASE_TESTCASE_PACKAGE, null, null);
+			logger.finer("Found " + allTests.size() + " test case classes in the test index");
+			return allTests;
+		}
+
 		allTests = new ArrayList<EnsTestCase>();
 
 		// --------------------------------------
@@ -241,6 +277,88 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 
 	} // findAllTests
 
+	// -------------------------------------------------------------------------
+	/**
+	 * Instantiate the tests listed in the build-time test index, rather than looking for class files.
+	 * 
+	 * @param index
+	 *          The index to read.
+	 * @param packageName
+	 *          The base package of the tests.
+	 * @return The tests in the index below the base package.
+	 */
+	public List<EnsTestCase> findTestsInIndex(TestIndex index, String packageName) {
+
+		return findTestsInIndex(index, packageName, null, null);
+
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * Instantiate the tests listed in the build-time test index which are in
+	 * any of the groups and apply to the type. Tests not selected are not
+	 * instantiated. Each test is only instantiated once by this registry.
+	 * 
+	 * @param index
+	 *          The index to read.
+	 * @param packageName
+	 *          The base package of the tests.
+	 * @param groups
+	 *          The groups to select tests from, or null for all groups.
+	 * @param type
+	 *          The type of database the tests must apply to, or null for any.
+	 * @return The selected tests in the index below the base package.
+	 */
+	public List<EnsTestCase> findTestsInIndex(TestIndex index, String packageName, List<String> groups,
+			DatabaseType type) {
+
+		List<EnsTestCase> tests = new ArrayList<EnsTestCase>();
+
+		for (TestIndex.Entry entry : index.getTests()) {
+
+			String[] bits = entry.getClassName().split("\\.");
+			String dirName = bits[bits.length - 2];
+
+			// as for the jar, skip anything directly in the base package
+			if (!entry.inPackages(packageName) || dirName.equals("testcase")) {
+				continue;
+			}
+			if ((groups != null && Collections.disjoint(groups, entry.getGroups()))
+					|| (type != null && !entry.appliesToType(type))) {
+				continue;
+			}
+
+			EnsTestCase testCase = getIndexedTest(entry.getClassName(), dirName);
+			if (testCase != null) {
+				tests.add(testCase);
+			}
+		}
+
+		return tests;
+
+	} // findTestsInIndex
+
+	private synchronized EnsTestCase getIndexedTest(String className, String dirName) {
+
+		if (indexedTests.containsKey(className)) {
+			return indexedTests.get(className);
+		}
+		EnsTestCase testCase = null;
+		try {
+			testCase = (EnsTestCase) Class.forName(className).getDeclaredConstructor().newInstance();
+			testCase.setTypeFromDirName(dirName);
+			testCase.types();
+		} catch (Exception e) {
+			logger.log(Level.WARNING, className + " is in the test index but could not be instantiated", e);
+		} catch (LinkageError e) {
+			logger.log(Level.WARNING, className + " is in the test index but could not be loaded", e);
+		}
+		// remember failures too, so they are only reported once
+		indexedTests.put(className, testCase);
+		return testCase;
+
+	}
+
 	// -------------------------------------------------------------------------
 	/**
 	 * Find all the tests (ie classes that extend EnsTestCase) in a directory.
@@ -462,7 +580,7 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 
 		List<DatabaseType> types = new ArrayList<DatabaseType>();
 
-		for(EnsTestCase test: allTests) {
+		for(EnsTestCase test: getAll()) {
 			DatabaseType[] testTypes = test.getAppliesToTypes();
 			for (int i = 0; i < testTypes.length; i++) {
 				if (!types.contains(testTypes[i])) {
@@ -485,7 +603,7 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 
 		List<String> groups = new ArrayList<String>();
 
-		for(EnsTestCase test: allTests) {
+		for(EnsTestCase test: getAll()) {
 			for(String group: test.getGroups()) {
 				// filter out test names
 				if (!isTestName(group) && !groups.contains(group)) {
@@ -510,7 +628,7 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 
 		List<EnsTestCase> result = new ArrayList<EnsTestCase>();
 
-		for(EnsTestCase test: allTests) {
+		for(EnsTestCase test: getAll()) {
 			if (test.inGroup(group)) {
 				result.add(test);
 			}
@@ -532,7 +650,7 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 
 		List<String> groups = new ArrayList<String>();
 
-		for(EnsTestCase test: allTests) {
+		for(EnsTestCase test: getAll()) {
 			if (test.appliesToType(type)) {
 				for(String group: test.getGroups()) {
 					// filter out test names
@@ -561,7 +679,7 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 
 		List<EnsTestCase> result = new ArrayList<EnsTestCase>();
 
-		for(EnsTestCase test: allTests) {
+		for(EnsTestCase test: getAll()) {
 			if (test.inGroup(group) && test.appliesToType(type)) {
 				result.add(test);
 			}
@@ -577,7 +695,7 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 	 */
 	private boolean isTestName(String s) {
 
-		for(EnsTestCase test: allTests) {
+		for(EnsTestCase test: getAll()) {
 			if (test.getShortTestName().equals(s)) {
 				return true;
 			}
@@ -0,0 +1,63 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.ensembl.healthcheck.configuration.ConfigurationUserParameters;
+import org.ensembl.healthcheck.configurationmanager.ConfigurationException;
+import org.ensembl.healthcheck.util.CreateHealthCheckDB;
+
+/**
+ * <p>
+ * 	Removes old reports from the healthcheck output database, as configured
+ * by the output.retainMinorSessions, output.retainSessions and 
+ * output.archiveDir options, without running any tests. Takes the same 
+ * arguments and property files as the {@link ConfigurableTestRunner}.
+ * </p>
+ */
+public class MaintainHealthCheckDB {
+
+	static final Logger logger = Logger.getLogger("HealthCheckLogger");
+
+	public static void main(String[] args) {
+
+		try {
+			ConfigurationUserParameters configuration = ConfigurableTestRunner.createConfigurationObj(args);
+			CreateHealthCheckDB c = new CreateHealthCheckDB(configuration);
+
+			if (!c.isRetentionConfigured()) {
+				throw new ConfigurationException(
+						"Neither output.retainMinorSessions nor output.retainSessions has been set, nothing to do.");
+			}
+			if (!c.databaseExists(configuration.getOutputDatabase())) {
+				throw new ConfigurationException(
+						"Reporting database " + configuration.getOutputDatabase() + " does not exist.");
+			}
+
+			int removed = c.maintain();
+			logger.info("Removed " + removed + " reports from " + configuration.getOutputDatabase());
+
+		} catch (ConfigurationException e) {
+
+			logger.log(Level.SEVERE, e.getMessage());
+			System.exit(1);
+		}
+	}
+}
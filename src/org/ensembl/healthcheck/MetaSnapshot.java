@@ -0,0 +1,159 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang.StringUtils;
+import org.ensembl.healthcheck.util.DBUtils;
+import org.ensembl.healthcheck.util.SqlTemplate;
+
+/**
+ * <p>
+ * 	Immutable copy of the meta table of a database, read in one query so that
+ * the many tests looking up meta keys don't each go back to the database.
+ * Held by {@link DatabaseRegistryEntry#getMeta()}.
+ * </p>
+ *
+ * <p>
+ * 	Values are kept in meta_id order, so the first value of a key is the one
+ * <code>SELECT meta_value FROM meta WHERE meta_key = ?</code> would usually
+ * return first. Keys are matched exactly, whereas MySQL would ignore case.
+ * </p>
+ */
+public class MetaSnapshot {
+
+	private final Map<String, List<String>> valuesByKey = new HashMap<String, List<String>>();
+
+	private final Map<Integer, Map<String, List<String>>> valuesBySpecies = new HashMap<Integer, Map<String, List<String>>>();
+
+	private final Set<Integer> speciesIds = new LinkedHashSet<Integer>();
+
+	/**
+	 * Read the meta table of the database on the connection
+	 */
+	public static MetaSnapshot load(Connection con) {
+		final MetaSnapshot meta = new MetaSnapshot();
+		SqlTemplate t = DBUtils.getSqlTemplate(con);
+		t.execute("SELECT species_id, meta_key, meta_value FROM meta ORDER BY meta_id",
+				new SqlTemplate.ResultSetCallback<Void>() {
+					@Override
+					public Void process(ResultSet rs) throws SQLException {
+						while (rs.next()) {
+							int speciesId = rs.getInt(1);
+							meta.add(rs.wasNull() ? null : speciesId, rs.getString(2), rs.getString(3));
+						}
+						return null;
+					}
+				});
+		return meta;
+	}
+
+	private void add(Integer speciesId, String key, String value) {
+		addTo(valuesByKey, key, value);
+		Map<String, List<String>> speciesValues = valuesBySpecies.get(speciesId);
+		if (speciesValues == null) {
+			speciesValues = new HashMap<String, List<String>>();
+			valuesBySpecies.put(speciesId, speciesValues);
+		}
+		addTo(speciesValues, key, value);
+		if (speciesId != null) {
+			speciesIds.add(speciesId);
+		}
+	}
+
+	private static void addTo(Map<String, List<String>> map, String key, String value) {
+		List<String> values = map.get(key);
+		if (values == null) {
+			values = new ArrayList<String>(1);
+			map.put(key, values);
+		}
+		values.add(value);
+	}
+
+	/**
+	 * @return all values of the key, for any species
+	 */
+	public List<String> getValues(String key) {
+		return unmodifiable(valuesByKey.get(key));
+	}
+
+	/**
+	 * @return the values of the key for one species, or for no species if
+	 *         speciesId is null
+	 */
+	public List<String> getValues(Integer speciesId, String key) {
+		Map<String, List<String>> speciesValues = valuesBySpecies.get(speciesId);
+		return unmodifiable(speciesValues == null ? null : speciesValues.get(key));
+	}
+
+	/**
+	 * @return the first value of the key, or an empty string if there is
+	 *         none, as {@link DBUtils#getMetaValue(Connection, String)}
+	 */
+	public String getValue(String key) {
+		List<String> values = valuesByKey.get(key);
+		return values == null ? StringUtils.EMPTY : values.get(0);
+	}
+
+	public boolean hasKey(String key) {
+		return valuesByKey.containsKey(key);
+	}
+
+	/**
+	 * @return the distinct meta keys
+	 */
+	public Set<String> getKeys() {
+		return Collections.unmodifiableSet(valuesByKey.keySet());
+	}
+
+	/**
+	 * @return the distinct meta keys for one species, or for no species if
+	 *         speciesId is null
+	 */
+	public Set<String> getKeys(Integer speciesId) {
+		Map<String, List<String>> speciesValues = valuesBySpecies.get(speciesId);
+		if (speciesValues == null) {
+			return Collections.emptySet();
+		}
+		return Collections.unmodifiableSet(speciesValues.keySet());
+	}
+
+	/**
+	 * @return the distinct non-null species_ids, in meta_id order
+	 */
+	public Set<Integer> getSpeciesIds() {
+		return Collections.unmodifiableSet(speciesIds);
+	}
+
+	private static List<String> unmodifiable(List<String> values) {
+		if (values == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(values);
+	}
+}
@@ -113,6 +113,25 @@ public class ReportLine {
 
 	} // constructor
 
+	/**
+	 * Creates a new instance of ReportLine from its parts, without a test case
+	 * or looking up the species and type of the database. Used to rebuild
+	 * lines held by a {@link ReportStore}.
+	 */
+	public ReportLine(String testCaseName, String databaseName, String speciesName, DatabaseType type, int level,
+			String message, Team teamResponsible, Team secondTeamResponsible) {
+
+		this.testCaseName = testCaseName;
+		this.databaseName = databaseName;
+		this.speciesName = speciesName;
+		this.type = type;
+		this.level = level;
+		this.message = message;
+		this.teamResponsible = teamResponsible;
+		this.secondTeamResponsible = secondTeamResponsible;
+
+	} // constructor
+
 	// -------------------------------------------------------------------------
 	/**
 	 * Get the level of this ReportLine.
@@ -19,26 +19,24 @@
 package org.ensembl.healthcheck;
 
 import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Map;
-import java.util.Set;
 import java.util.logging.Logger;
 
 import org.ensembl.healthcheck.testcase.EnsTestCase;
 import org.ensembl.healthcheck.util.DBUtils;
-import org.ensembl.healthcheck.util.Utils;
 
 /**
  * ReportManager is the main class for reporting in the Ensj Healthcheck system. It provides methods for storing reports - single
  * items of information - and retrieving them in various formats.
+ * 
+ * <p>
+ * The reports themselves belong to a {@link ReportRun}. Each call is passed on to the run bound to the current thread with
+ * {@link #bindRun(ReportRun)}, or to a default run shared by threads with none bound, so separate runs can go on at the same
+ * time in one JVM. Threads inherit the run bound to the thread that created them.
+ * </p>
  */
 public class ReportManager {
 
@@ -52,19 +50,9 @@ public class ReportManager {
 	 */
 	public static void initialise() {
 
-		reportsByTest = new HashMap<String,List<ReportLine>>();
-		reportsByDatabase = new HashMap<String,List<ReportLine>>();
-
-		outputDatabaseConnection = null;
-		sessionID = -1;
+		getRun().reset();
 	}
 
-	/** A hash of lists keyed on the test name. */
-	protected static Map<String,List<ReportLine>> reportsByTest = new HashMap<String,List<ReportLine>>();
-
-	/** A hash of lists keyed on the database name */
-	protected static Map<String,List<ReportLine>> reportsByDatabase = new HashMap<String,List<ReportLine>>();
-
 	/** The logger to use for this class */
 	protected static Logger logger = Logger.getLogger("HealthCheckLogger");
 
@@ -73,20 +61,47 @@ public class ReportManager {
 	 */
 	protected static final int MAX_BUFFER_SIZE = 2000;
 
-	private static boolean bufferSizeWarningPrinted = false;
+	/** The run used by threads which have none bound */
+	private static final ReportRun defaultRun = new ReportRun();
 
-	private static Reporter reporter;
+	private static final InheritableThreadLocal<ReportRun> boundRun = new InheritableThreadLocal<ReportRun>();
 
-	private static boolean usingDatabase = false;
+	// hide constructor to stop instantiation
+	private ReportManager() {
 
-        private static int outputLevel = 0;
+	}
 
-	private static Connection outputDatabaseConnection;
+	// -------------------------------------------------------------------------
+	/**
+	 * Get the run that reports from this thread go to.
+	 * 
+	 * @return The run bound to this thread, or the default run.
+	 */
+	public static ReportRun getRun() {
 
-	private static long sessionID = -1;
+		ReportRun run = boundRun.get();
+		return run == null ? defaultRun : run;
 
-	// hide constructor to stop instantiation
-	private ReportManager() {
+	}
+
+	/**
+	 * Send reports from this thread, and threads it creates from now on, to a run of their own.
+	 * 
+	 * @param run
+	 *          The run to bind.
+	 */
+	public static void bindRun(ReportRun run) {
+
+		boundRun.set(run);
+
+	}
+
+	/**
+	 * Send reports from this thread to the default run again.
+	 */
+	public static void unbindRun() {
+
+		boundRun.remove();
 
 	}
 
@@ -98,12 +113,13 @@ public class ReportManager {
 	 */
 	public static void setReporter(Reporter rep) {
 
-		reporter = rep;
+		getRun().setReporter(rep);
 	}
 
-        public static void setOutputLevel(int level) {
-                outputLevel = level;
-        }
+	public static void setOutputLevel(int level) {
+
+		getRun().setOutputLevel(level);
+	}
 
 	/**
 	 * Should be called before a test case is run.
@@ -115,9 +131,7 @@ public class ReportManager {
 	 */
 	public static void startTestCase(EnsTestCase testCase, DatabaseRegistryEntry dbre) {
 
-		if (reporter != null) {
-			reporter.startTestCase(testCase, dbre);
-		}
+		getRun().startTestCase(testCase, dbre);
 	}
 
 	/**
@@ -132,79 +146,21 @@ public class ReportManager {
 	 */
 	public static void finishTestCase(EnsTestCase testCase, boolean result, DatabaseRegistryEntry dbre) {
 
-		if (reporter != null) {
-			reporter.finishTestCase(testCase, result, dbre);
-		}
+		getRun().finishTestCase(testCase, result, dbre);
 	}
 
 	// -------------------------------------------------------------------------
 	/**
-	 * Add a test case report.
+	 * Add a test case report. Safe to call from tests running concurrently; lines reported while a test is running are passed on
+	 * when it finishes.
 	 * 
 	 * @param report
 	 *          The ReportLine to add.
 	 */
 	public static void add(ReportLine report) {
 
-		if (usingDatabase) {
-
-			checkAndAddToDatabase(report);
-			return;
-
-		}
-
-		String testCaseName = report.getTestCaseName();
-		String databaseName = report.getDatabaseName();
-
-		List<ReportLine> lines;
-
-		// add to each hash
-		if (testCaseName != null && testCaseName.length() > 0) {
-			// create the lists if they're not there already
-			if (reportsByTest.get(testCaseName) == null) {
-				lines = new ArrayList<ReportLine>();
-				lines.add(report);
-				reportsByTest.put(testCaseName, lines);
-			} else {
-				// get the relevant list, update it, and re-add it
-				lines = reportsByTest.get(testCaseName);
-
-				// prevent the buffer getting too big
-				if (lines.size() > MAX_BUFFER_SIZE) {
-					if (!bufferSizeWarningPrinted) {
-						System.err.println("\n\nReportManager has reached its maximum buffer size (" + MAX_BUFFER_SIZE + " lines) - no more output will be stored\n");
-						bufferSizeWarningPrinted = true;
-					}
-				} else {
-					// buffer small enough, add it
-					lines.add(report);
-					reportsByTest.put(testCaseName, lines);
-				}
-
-			}
-
-		} else {
-			logger.warning("Cannot add report with test case name not set");
-		}
-
-		if (databaseName != null && databaseName.length() > 0) {
-			// create the lists if they're not there already
-			if (reportsByDatabase.get(databaseName) == null) {
-				lines = new ArrayList<ReportLine>();
-				lines.add(report);
-				reportsByDatabase.put(databaseName, lines);
-			} else {
-				// get the relevant list, update it, and re-add it
-				lines = reportsByDatabase.get(databaseName);
-				lines.add(report);
-				reportsByDatabase.put(databaseName, lines);
-			}
+		getRun().add(report);
 
-		}
-
-		if (reporter != null) {
-			reporter.message(report);
-		}
 	} // add
 
 	// -------------------------------------------------------------------------
@@ -385,7 +341,7 @@ public class ReportManager {
 	 */
 	public static Map<String,List<ReportLine>> getAllReportsByTestCase() {
 
-		return reportsByTest;
+		return getAllReportsByTestCase(ReportLine.ALL);
 
 	} // getAllReportsByTestCase
 
@@ -399,7 +355,7 @@ public class ReportManager {
 	 */
 	public static Map<String,List<ReportLine>> getAllReportsByTestCase(int level) {
 
-		return filterMap(reportsByTest, level);
+		return getRun().getAllReportsByTestCase(level);
 
 	} // getAllReportsByTestCase
 
@@ -411,7 +367,7 @@ public class ReportManager {
 	 */
 	public static Map<String,List<ReportLine>> getAllReportsByDatabase() {
 
-		return reportsByDatabase;
+		return getAllReportsByDatabase(ReportLine.ALL);
 
 	} // getReportsByDatabase
 
@@ -425,7 +381,7 @@ public class ReportManager {
 	 */
 	public static Map<String,List<ReportLine>> getAllReportsByDatabase(int level) {
 
-		return filterMap(reportsByDatabase, level);
+		return getRun().getAllReportsByDatabase(level);
 
 	} // getAllReportsByTestCase
 
@@ -441,9 +397,7 @@ public class ReportManager {
 	 */
 	public static List<ReportLine> getReportsByTestCase(String testCaseName, int level) {
 
-		List<ReportLine> allReports = reportsByTest.get(testCaseName);
-
-		return filterList(allReports, level);
+		return getRun().getReportsByTestCase(testCaseName, level);
 
 	} // getReportsByTestCase
 
@@ -459,7 +413,7 @@ public class ReportManager {
 	 */
 	public static List<ReportLine> getReportsByDatabase(String databaseName, int level) {
 
-		return filterList(reportsByDatabase.get(databaseName), level);
+		return getRun().getReportsByDatabase(databaseName, level);
 
 	} // getReportsByDatabase
 
@@ -523,34 +477,7 @@ public class ReportManager {
 	 */
 	public static int[] countPassesAndFailsDatabase(String database) {
 
-		int[] result = new int[2];
-
-		List<String> testsRun = new ArrayList<String>();
-
-		// get all of them to build a list of the tests that were run
-		List<ReportLine> reports = getReportsByDatabase(database, ReportLine.ALL);
-		for(ReportLine line: reports) {
-			String test = line.getTestCaseName();
-			if (!testsRun.contains(test)) {
-				testsRun.add(test);
-			}
-		}
-
-		// count those that failed
-		List<String> testsFailed = new ArrayList<String>();
-		reports = getReportsByDatabase(database, ReportLine.PROBLEM);
-		for(ReportLine line: reports) {
-			String test = line.getTestCaseName();
-			if (!testsFailed.contains(test)) {
-				testsFailed.add(test);
-			}
-		}
-
-		result[1] = testsFailed.size();
-		result[0] = testsRun.size() - testsFailed.size(); // if it didn't
-		// fail, it passed
-
-		return result;
+		return getRun().countPassesAndFailsDatabase(database);
 
 	}
 
@@ -565,34 +492,7 @@ public class ReportManager {
 	 */
 	public static int[] countPassesAndFailsTest(String test) {
 
-		int[] result = new int[2];
-
-		List<String> allDBs = new ArrayList<String>();
-
-		// get all of them to build a list of the tests that were run
-		List<ReportLine> reports = getReportsByTestCase(test, ReportLine.ALL);
-		for(ReportLine line: reports) {
-			String database = line.getDatabaseName();
-			if (!allDBs.contains(database)) {
-				allDBs.add(database);
-			}
-		}
-
-		// count those that failed
-		List<String> dbsFailed = new ArrayList<String>();
-		reports = getReportsByTestCase(test, ReportLine.PROBLEM);
-		for(ReportLine line: reports) {
-			String database = line.getDatabaseName();
-			if (!dbsFailed.contains(database)) {
-				dbsFailed.add(database);
-			}
-		}
-
-		result[1] = dbsFailed.size();
-		result[0] = allDBs.size() - dbsFailed.size(); // if it didn't fail, it
-		// passed
-
-		return result;
+		return getRun().countPassesAndFailsTest(test);
 
 	}
 
@@ -606,15 +506,7 @@ public class ReportManager {
 	 */
 	public static int[] countPassesAndFailsAll() {
 
-		int[] result = new int[2];
-
-		for(String database: getAllReportsByDatabase().keySet()) {
-			int[] dbResult = countPassesAndFailsDatabase(database);
-			result[0] += dbResult[0];
-			result[1] += dbResult[1];
-		}
-
-		return result;
+		return getRun().countPassesAndFailsAll();
 
 	}
 
@@ -631,14 +523,7 @@ public class ReportManager {
 	 */
 	public static boolean databasePassed(String test, String database) {
 
-		List<ReportLine> reports = getReportsByTestCase(test, ReportLine.PROBLEM);
-		for(ReportLine line: reports) {
-			if (database.equals(line.getDatabaseName())) {
-				return false;
-			}
-		}
-
-		return true;
+		return getRun().databasePassed(test, database);
 
 	}
 
@@ -652,12 +537,7 @@ public class ReportManager {
 	 */
 	public static boolean allDatabasesPassed(String test) {
 
-		List reports = getReportsByTestCase(test, ReportLine.PROBLEM);
-		if (reports.size() > 0) {
-			return false;
-		}
-
-		return true;
+		return getRun().allDatabasesPassed(test);
 
 	}
 
@@ -673,41 +553,38 @@ public class ReportManager {
 	 */
 	public static List<ReportLine> getReports(String test, String database) {
 
-		List<ReportLine> result = new ArrayList<ReportLine>();
-
-		for(ReportLine line: reportsByTest.get(test)) {
-			if (database.equals(line.getDatabaseName())) {
-				result.add(line);
-			}
-		}
-
-		return result;
+		return getRun().getReports(test, database);
 
 	} // getReports
 
+	// -------------------------------------------------------------------------
+	/**
+	 * Check if a test case has reported anything.
+	 * 
+	 * @param testCaseName
+	 *          The test case.
+	 * @return true if there are reports for the test case.
+	 */
+	public static boolean hasReports(String testCaseName) {
 
-        // -------------------------------------------------------------------------
-        /**
-         * Check if reports for a given database have been propagated for the release
-         * 
-         * @return boolean true if propagation has been run, false else
-         * 
-         * @param database
-         *          The database.
-         */
-        public static boolean hasPropagated(DatabaseRegistryEntry database) {
+		return getRun().hasReports(testCaseName);
 
-                boolean result = true;
-                String sql = "SELECT count(*) FROM propagated WHERE database_name = '" + database.getName() + "'";
-                int rows = DBUtils.getRowCount(outputDatabaseConnection, sql);
-                if (rows == 0) {
-                        result = false;
-                }
+	} // hasReports
 
-                return result;
+	// -------------------------------------------------------------------------
+	/**
+	 * Check if reports for a given database have been propagated for the release
+	 * 
+	 * @return boolean true if propagation has been run, false else
+	 * 
+	 * @param database
+	 *          The database.
+	 */
+	public static boolean hasPropagated(DatabaseRegistryEntry database) {
 
-        } // getReports
+		return getRun().hasPropagated(database);
 
+	}
 
 	// -------------------------------------------------------------------------
 	/**
@@ -715,7 +592,7 @@ public class ReportManager {
 	 */
 	public static boolean usingDatabase() {
 
-		return usingDatabase;
+		return getRun().usingDatabase();
 
 	}
 
@@ -725,21 +602,7 @@ public class ReportManager {
 	 */
 	public static void connectToOutputDatabase() {
 
-		logger.info("Connecting to " + System.getProperty("output.databaseURL") + System.getProperty("output.database") + " as " + System.getProperty("output.user"));
-
-		try {
-			outputDatabaseConnection = DBUtils.openConnection(
-				System.getProperty("output.driver"), 
-				System.getProperty("output.databaseURL") + 
-				System.getProperty("output.database"),
-				System.getProperty("output.user"), 
-				System.getProperty("output.password")
-			);
-		} catch(SQLException e) {			
-			throw new RuntimeException(e);			
-		}
-
-		usingDatabase = true;
+		getRun().connectToOutputDatabase();
 
 	}
 
@@ -749,109 +612,19 @@ public class ReportManager {
 	 */
 	public static void createDatabaseSession() {
 
-		// build comma-separated list of hosts
-		StringBuffer buf = new StringBuffer();
-		Iterator<DatabaseServer> it = DBUtils.getMainDatabaseServers().iterator();
-
-		while (it.hasNext()) {
-
-			DatabaseServer server = (DatabaseServer) it.next();
-			buf.append(String.format("%s:%s", server.getHost(), server.getPort()));
-			if (it.hasNext()) {
-				buf.append(",");
-			}
-
-		}
-
-		String hosts = buf.toString();
-
-                String outputDatabases = System.getProperty("test_groups") + " " + System.getProperty("test_databases");
-
-		String release = System.getProperty("release");
-
-		String sql = String.format("INSERT INTO session (host, config, db_release, start_time) VALUES (" + "\"" + hosts.toString() + "\", " + "\"" + outputDatabases + "\", " + "\"" + release
-				+ "\", " + "NOW())");
-
-		try {
-			Statement stmt = outputDatabaseConnection.createStatement();
-			stmt.executeUpdate(sql, Statement.RETURN_GENERATED_KEYS);
-			ResultSet rs = stmt.getGeneratedKeys();
-			if (rs.next()) {
-				sessionID = rs.getLong(1);
-				logger.fine("Created new session with ID " + sessionID);
-			}
-			stmt.close();
-
-		} catch (SQLException e) {
-
-			System.err.println("Error executing:\n" + sql);
-			e.printStackTrace();
-
-		}
-
-		if (sessionID == -1) {
-			logger.severe("Could not get new session ID");
-			logger.severe(sql);
-		}
+		getRun().createDatabaseSession();
 
 	}
 
-        // -------------------------------------------------------------------------
-        /**
-         * Reuse an existing entry in the session table.
-         */
-        public static void reuseDatabaseSession(long sessionID) {
-
-                // build comma-separated list of hosts
-                StringBuffer buf = new StringBuffer();
-                Iterator<DatabaseServer> it = DBUtils.getMainDatabaseServers().iterator();
-
-                while (it.hasNext()) {
-
-                        DatabaseServer server = (DatabaseServer) it.next();
-                        buf.append(String.format("%s:%s", server.getHost(), server.getPort()));
-                        if (it.hasNext()) {
-                                buf.append(",");
-                        }
-
-                }
-
-                String hosts = buf.toString();
-
-                String sql = "SELECT session_id FROM session WHERE session_id=?";
-
-                long newSessionID = -1;
-
-                try {
-
-                        PreparedStatement stmt = outputDatabaseConnection.prepareStatement(sql);
-                        stmt.setLong(1, sessionID);
-                        ResultSet rs = stmt.executeQuery();
-                        if (rs != null) {
-                                if (rs.first()) {
-                                        newSessionID = rs.getLong(1);
-                                } else {
-                                        newSessionID = -1; // probably signifies an empty ResultSet
-                                }
-                        }
-                        rs.close();
-                        stmt.close();
-
-                } catch (SQLException e) {
-
-                        System.err.println("Error executing:\n" + sql);
-                        e.printStackTrace();
-
-                }
+	// -------------------------------------------------------------------------
+	/**
+	 * Reuse an existing entry in the session table.
+	 */
+	public static void reuseDatabaseSession(long sessionID) {
 
-                if (newSessionID == -1) {
-                        logger.severe("Could not reuse " + newSessionID);
-                        logger.severe(sql);
-                }
-                logger.info("Reusing session ID "+sessionID);
-                setSessionID(sessionID);
-        }
+		getRun().reuseDatabaseSession(sessionID);
 
+	}
 
 	// -------------------------------------------------------------------------
 	/**
@@ -859,20 +632,7 @@ public class ReportManager {
 	 */
 	public static void endDatabaseSession() {
 
-		String sql = "UPDATE session SET end_time=NOW() WHERE session_id=" + sessionID;
-
-		try {
-
-			Statement stmt = outputDatabaseConnection.createStatement();
-			stmt.executeUpdate(sql, Statement.RETURN_GENERATED_KEYS);
-			stmt.close();
-
-		} catch (SQLException e) {
-
-			System.err.println("Error executing:\n" + sql);
-			e.printStackTrace();
-
-		}
+		getRun().endDatabaseSession();
 
 	}
 
@@ -882,27 +642,8 @@ public class ReportManager {
 	 */
 	public static void deletePrevious() {
 
-		String[] tables = { "session", "report", "annotation" };
-
-		for (int i = 0; i < tables.length; i++) {
-
-			String sql = "DELETE FROM " + tables[i];
-
-			try {
+		getRun().deletePrevious();
 
-				Statement stmt = outputDatabaseConnection.createStatement();
-				stmt.executeUpdate(sql, Statement.RETURN_GENERATED_KEYS);
-
-				stmt.close();
-
-			} catch (SQLException e) {
-
-				System.err.println("Error executing:\n" + sql);
-				e.printStackTrace();
-
-			}
-
-		}
 	}
 
 	// -------------------------------------------------------------------------
@@ -912,20 +653,7 @@ public class ReportManager {
 	 */
 	public static void checkAndAddToDatabase(ReportLine report) {
 
-		long reportID = reportExistsInDatabase(report);
-
-                if (report.getLevel() >= outputLevel) {
-
-		        if (reportID > -1) {
-
-			          updateReportInDatabase(report, reportID);
-
-		        } else {
-
-			          addReportToDatabase(report);
-                        }
-
-		}
+		getRun().checkAndAddToDatabase(report);
 
 	}
 
@@ -937,42 +665,7 @@ public class ReportManager {
 	 */
 	public static long reportExistsInDatabase(ReportLine report) {
 
-		String sql = "SELECT report_id FROM report WHERE database_name=? AND testcase=? AND result=? AND BINARY(text)=BINARY(?)";
-
-		long reportID = -1;
-
-		try {
-
-			PreparedStatement stmt = outputDatabaseConnection.prepareStatement(sql);
-			stmt.setString(1, report.getDatabaseName());
-			stmt.setString(2, report.getShortTestCaseName());
-			stmt.setString(3, report.getLevelAsString());
-			stmt.setString(4, report.getMessage());
-			ResultSet rs = stmt.executeQuery();
-			if (rs != null) {
-				if (rs.first()) {
-					reportID = rs.getLong(1);
-				} else {
-					reportID = -1; // probably signifies an empty ResultSet
-				}
-			}
-			rs.close();
-			stmt.close();
-
-		} catch (SQLException e) {
-
-			System.err.println("Error executing:\n" + sql);
-			e.printStackTrace();
-
-		}
-
-		if (reportID > -1) {
-			logger.finest("Report already exists (ID " + reportID + "): " + report.getDatabaseName() + " " + report.getTestCaseName() + " " + report.getLevelAsString() + " " + report.getMessage());
-		} else {
-			logger.finest("Report does not already exist: " + report.getDatabaseName() + " " + report.getTestCaseName() + " " + report.getLevelAsString() + " " + report.getMessage());
-		}
-
-		return reportID;
+		return getRun().reportExistsInDatabase(report);
 
 	}
 
@@ -982,38 +675,7 @@ public class ReportManager {
 	 */
 	public static void addReportToDatabase(ReportLine report) {
 
-		if (outputDatabaseConnection == null) {
-			logger.severe("No connection to output database!");
-			return;
-		}
-
-		logger.fine("Adding report for: " + report.getDatabaseName() + " " + report.getTestCaseName() + " " + report.getLevelAsString() + " " + report.getMessage());
-
-		String sql = "INSERT INTO report (first_session_id, last_session_id, database_name, species, database_type, testcase, result, text, timestamp, team_responsible, created) VALUES (?, ?, ?, ?, ?, ?, ?, ?, NOW(), ?, NOW())";
-
-		try {
-
-			PreparedStatement stmt = outputDatabaseConnection.prepareStatement(sql);
-			stmt.setLong(1, sessionID);
-			stmt.setLong(2, sessionID);
-			stmt.setString(3, report.getDatabaseName());
-			// EG Store species name and db type from explicit report line, not from database
-			stmt.setString(4, report.getSpeciesName());
-			stmt.setString(5, report.getType().toString());
-			stmt.setString(6, report.getShortTestCaseName());
-			stmt.setString(7, report.getLevelAsString());
-			stmt.setString(8, report.getMessage());
-			stmt.setString(9, report.getPrintableTeamResponsibleString());
-			stmt.executeUpdate();
-
-			stmt.close();
-
-		} catch (SQLException e) {
-
-			System.err.println("Error executing:\n" + sql);
-			e.printStackTrace();
-
-		}
+		getRun().addReportToDatabase(report);
 
 	}
 
@@ -1023,41 +685,18 @@ public class ReportManager {
 	 */
 	public static void updateReportInDatabase(ReportLine report, long reportID) {
 
-		if (outputDatabaseConnection == null) {
-			logger.severe("No connection to output database!");
-			return;
-		}
-
-		logger.fine("Updating report for: " + report.getDatabaseName() + " " + report.getTestCaseName() + " " + report.getLevelAsString() + " " + report.getMessage() + ", new last_session_id="
-				+ sessionID);
-
-		String sql = "UPDATE report SET last_session_id=?, timestamp=NOW() WHERE report_id=?";
-
-		try {
-
-			PreparedStatement stmt = outputDatabaseConnection.prepareStatement(sql);
-			stmt.setLong(1, sessionID);
-			stmt.setLong(2, reportID);
-			stmt.executeUpdate();
-			stmt.close();
-
-		} catch (SQLException e) {
-
-			System.err.println("Error executing:\n" + sql);
-			e.printStackTrace();
-
-		}
+		getRun().updateReportInDatabase(report, reportID);
 
 	}
 
 	// -------------------------------------------------------------------------
 
 	public static long getSessionID() {
-		return sessionID;
+		return getRun().getSessionID();
 	}
 
 	public static void setSessionID(long sessionID) {
-		ReportManager.sessionID = sessionID;
+		getRun().setSessionID(sessionID);
 	}
 
 } // ReportManager
@@ -0,0 +1,678 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Logger;
+
+import org.ensembl.healthcheck.testcase.EnsTestCase;
+import org.ensembl.healthcheck.util.DBUtils;
+import org.ensembl.healthcheck.util.SqlUncheckedException;
+
+/**
+ * <p>
+ * 	The reports of one run of healthchecks, and where they are sent: a
+ * {@link ReportStore}, or the output database if one is connected, and the
+ * {@link Reporter}. {@link ReportManager} passes its calls on to the run bound
+ * to the current thread, so several runs can go on in one JVM.
+ * </p>
+ *
+ * <p>
+ * 	Each line is passed to the reporter as soon as it is added. Reporters
+ * keep state between calls (e.g. the last database printed) and are not
+ * written to be called concurrently, so the calls are made holding a lock
+ * of their own, which is only held for the call.
+ * </p>
+ *
+ * <p>
+ * 	Lines reported on a thread between {@link #startTestCase} and
+ * {@link #finishTestCase} are held in a buffer belonging to that thread
+ * before they are added to the store, so tests running concurrently don't
+ * contend with each other for it on every line. The buffer is passed to the
+ * store, or the output database, when the test finishes, or earlier if the
+ * reports are read in the meantime. Lines reported outside a test go
+ * straight through.
+ * </p>
+ */
+public class ReportRun {
+
+	private static Logger logger = Logger.getLogger("HealthCheckLogger");
+
+	/**
+	 * Lines reported on one thread since its test case started
+	 */
+	private static class Buffer {
+
+		private List<ReportLine> lines = new ArrayList<ReportLine>();
+
+		private boolean active;
+
+		/** Whether the buffer is in {@link ReportRun#buffers} */
+		private boolean registered;
+	}
+
+	/**
+	 * The buffers of the threads running a test, so that they can be flushed
+	 * when the reports are read. A buffer is only in here from the start of its
+	 * thread's test until it is drained at the end.
+	 */
+	private final Queue<Buffer> buffers = new ConcurrentLinkedQueue<Buffer>();
+
+	private final ThreadLocal<Buffer> buffer = new ThreadLocal<Buffer>() {
+		@Override
+		protected Buffer initialValue() {
+			return new Buffer();
+		}
+	};
+
+	private ReportStore reports = new ReportStore(ReportManager.MAX_BUFFER_SIZE, ReportStore.DEFAULT_SPILL_THRESHOLD);
+
+	private boolean bufferSizeWarningPrinted = false;
+
+	private volatile Reporter reporter;
+
+	private final Object reporterLock = new Object();
+
+	private volatile boolean usingDatabase = false;
+
+	private volatile int outputLevel = 0;
+
+	private Connection outputDatabaseConnection;
+
+	private volatile long sessionID = -1;
+
+	/**
+	 * Forget the reports and output database session, so the run can be used
+	 * again. The reporter and output level are kept.
+	 */
+	public void reset() {
+		for (Buffer threadBuffer : buffers) {
+			synchronized (threadBuffer) {
+				threadBuffer.lines.clear();
+			}
+		}
+		synchronized (this) {
+			reports.close();
+			reports = new ReportStore(ReportManager.MAX_BUFFER_SIZE, ReportStore.DEFAULT_SPILL_THRESHOLD);
+			bufferSizeWarningPrinted = false;
+			outputDatabaseConnection = null;
+			sessionID = -1;
+		}
+	}
+
+	/**
+	 * Delete any file the reports have been written to. The reports can't be
+	 * read afterwards.
+	 */
+	public synchronized void close() {
+		reports.close();
+	}
+
+	public void setReporter(Reporter reporter) {
+		this.reporter = reporter;
+	}
+
+	public Reporter getReporter() {
+		return reporter;
+	}
+
+	public void setOutputLevel(int outputLevel) {
+		this.outputLevel = outputLevel;
+	}
+
+	/**
+	 * Start buffering the lines reported on this thread, and tell the reporter
+	 */
+	public void startTestCase(EnsTestCase testCase, DatabaseRegistryEntry dbre) {
+		Buffer threadBuffer = buffer.get();
+		// a test which never finished, e.g. because it threw an exception
+		flush(threadBuffer, false);
+		synchronized (threadBuffer) {
+			threadBuffer.active = true;
+			if (!threadBuffer.registered) {
+				buffers.add(threadBuffer);
+				threadBuffer.registered = true;
+			}
+		}
+		if (testCase != null) {
+			TestMetadata.forTest(testCase);
+		}
+		Reporter current = reporter;
+		if (current != null) {
+			synchronized (reporterLock) {
+				current.startTestCase(testCase, dbre);
+			}
+		}
+	}
+
+	/**
+	 * Pass on the lines reported on this thread since the test started, then
+	 * tell the reporter the test has finished
+	 */
+	public void finishTestCase(EnsTestCase testCase, boolean result, DatabaseRegistryEntry dbre) {
+		Buffer threadBuffer = buffer.get();
+		flush(threadBuffer, false);
+		// drained, and lines added until the next test go straight through
+		synchronized (threadBuffer) {
+			if (threadBuffer.registered) {
+				buffers.remove(threadBuffer);
+				threadBuffer.registered = false;
+			}
+		}
+		buffer.remove();
+		Reporter current = reporter;
+		if (current != null) {
+			synchronized (reporterLock) {
+				current.finishTestCase(testCase, result, dbre);
+			}
+		}
+	}
+
+	/**
+	 * Pass a line to the reporter, and add it to this thread's buffer if a
+	 * test is running on it
+	 */
+	public void add(ReportLine report) {
+		Reporter current = reporter;
+		if (current != null && !usingDatabase) {
+			synchronized (reporterLock) {
+				current.message(report);
+			}
+		}
+		Buffer threadBuffer = buffer.get();
+		synchronized (threadBuffer) {
+			if (threadBuffer.active) {
+				threadBuffer.lines.add(report);
+				return;
+			}
+		}
+		store(Collections.singletonList(report));
+	}
+
+	/**
+	 * Pass on the lines in every thread's buffer, so that reading the reports
+	 * sees all the lines added so far
+	 */
+	public void flush() {
+		for (Buffer threadBuffer : buffers) {
+			flush(threadBuffer, true);
+		}
+	}
+
+	/**
+	 * @return number of threads with a test running
+	 */
+	int countBuffers() {
+		return buffers.size();
+	}
+
+	private void flush(Buffer threadBuffer, boolean keepActive) {
+		synchronized (threadBuffer) {
+			threadBuffer.active &= keepActive;
+			if (threadBuffer.lines.isEmpty()) {
+				return;
+			}
+			List<ReportLine> lines = threadBuffer.lines;
+			threadBuffer.lines = new ArrayList<ReportLine>();
+			// still holding the buffer, so lines from one thread stay in order
+			store(lines);
+		}
+	}
+
+	private synchronized void store(List<ReportLine> lines) {
+		for (ReportLine report : lines) {
+			if (usingDatabase) {
+				checkAndAddToDatabase(report);
+				continue;
+			}
+			String testCaseName = report.getTestCaseName();
+			if (testCaseName != null && testCaseName.length() > 0) {
+				// the store still counts lines it has no room to keep
+				if (!reports.add(report) && !bufferSizeWarningPrinted) {
+					System.err.println("\n\nReportManager has reached its maximum buffer size (" + ReportManager.MAX_BUFFER_SIZE
+							+ " lines) for a test - its further output will only be stored by database\n");
+					bufferSizeWarningPrinted = true;
+				}
+			} else {
+				logger.warning("Cannot add report with test case name not set");
+			}
+		}
+	}
+
+	private ReportStore getReports() {
+		flush();
+		synchronized (this) {
+			return reports;
+		}
+	}
+
+	public Map<String, List<ReportLine>> getAllReportsByTestCase(int level) {
+		ReportStore store = getReports();
+		Map<String, List<ReportLine>> result = new HashMap<String, List<ReportLine>>();
+		for (String test : store.getTestCaseNames()) {
+			result.put(test, store.getReportsByTestCase(test, level));
+		}
+		return result;
+	}
+
+	public Map<String, List<ReportLine>> getAllReportsByDatabase(int level) {
+		ReportStore store = getReports();
+		Map<String, List<ReportLine>> result = new HashMap<String, List<ReportLine>>();
+		for (String database : store.getDatabaseNames()) {
+			result.put(database, store.getReportsByDatabase(database, level));
+		}
+		return result;
+	}
+
+	public List<ReportLine> getReportsByTestCase(String testCaseName, int level) {
+		return getReports().getReportsByTestCase(testCaseName, level);
+	}
+
+	public List<ReportLine> getReportsByDatabase(String databaseName, int level) {
+		return getReports().getReportsByDatabase(databaseName, level);
+	}
+
+	public List<ReportLine> getReports(String test, String database) {
+		return getReports().getReports(test, database);
+	}
+
+	public boolean hasReports(String testCaseName) {
+		return getReports().hasReports(testCaseName);
+	}
+
+	public int[] countPassesAndFailsDatabase(String database) {
+		return getReports().countPassesAndFailsDatabase(database);
+	}
+
+	public int[] countPassesAndFailsTest(String test) {
+		return getReports().countPassesAndFailsTest(test);
+	}
+
+	public int[] countPassesAndFailsAll() {
+		return getReports().countPassesAndFailsAll();
+	}
+
+	public boolean databasePassed(String test, String database) {
+		return getReports().passed(test, database);
+	}
+
+	public boolean allDatabasesPassed(String test) {
+		return getReports().allPassed(test);
+	}
+
+	// -------------------------------------------------------------------------
+	// Output database
+
+	public boolean usingDatabase() {
+		return usingDatabase;
+	}
+
+	public long getSessionID() {
+		return sessionID;
+	}
+
+	public void setSessionID(long sessionID) {
+		this.sessionID = sessionID;
+	}
+
+	/**
+	 * Check if reports for a given database have been propagated for the
+	 * release
+	 */
+	public synchronized boolean hasPropagated(DatabaseRegistryEntry database) {
+		String sql = "SELECT count(*) FROM propagated WHERE database_name = '" + database.getName() + "'";
+		return DBUtils.getRowCount(outputDatabaseConnection, sql) != 0;
+	}
+
+	/**
+	 * Set up connection to a database for output. Sets usingDatabase to true.
+	 */
+	public synchronized void connectToOutputDatabase() {
+
+		logger.info("Connecting to " + System.getProperty("output.databaseURL") + System.getProperty("output.database") + " as "
+				+ System.getProperty("output.user"));
+
+		try {
+			outputDatabaseConnection = DBUtils.openConnection(System.getProperty("output.driver"),
+					System.getProperty("output.databaseURL") + System.getProperty("output.database"),
+					System.getProperty("output.user"), System.getProperty("output.password"));
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+
+		usingDatabase = true;
+
+	}
+
+	/**
+	 * Create a new entry in the session table. Store the ID of the created
+	 * session in sessionID.
+	 */
+	public synchronized void createDatabaseSession() {
+
+		String hosts = getHosts();
+
+		String outputDatabases = System.getProperty("test_groups") + " " + System.getProperty("test_databases");
+
+		String release = System.getProperty("release");
+
+		String sql = "INSERT INTO session (host, config, db_release, start_time) VALUES (" + "\"" + hosts + "\", " + "\""
+				+ outputDatabases + "\", " + "\"" + release + "\", " + "NOW())";
+
+		try {
+			Statement stmt = outputDatabaseConnection.createStatement();
+			stmt.executeUpdate(sql, Statement.RETURN_GENERATED_KEYS);
+			ResultSet rs = stmt.getGeneratedKeys();
+			if (rs.next()) {
+				sessionID = rs.getLong(1);
+				logger.fine("Created new session with ID " + sessionID);
+			}
+			stmt.close();
+
+		} catch (SQLException e) {
+
+			System.err.println("Error executing:\n" + sql);
+			e.printStackTrace();
+
+		}
+
+		if (sessionID == -1) {
+			logger.severe("Could not get new session ID");
+			logger.severe(sql);
+		}
+
+	}
+
+	private static String getHosts() {
+		// build comma-separated list of hosts
+		StringBuffer buf = new StringBuffer();
+		Iterator<DatabaseServer> it = DBUtils.getMainDatabaseServers().iterator();
+
+		while (it.hasNext()) {
+
+			DatabaseServer server = it.next();
+			buf.append(String.format("%s:%s", server.getHost(), server.getPort()));
+			if (it.hasNext()) {
+				buf.append(",");
+			}
+
+		}
+		return buf.toString();
+	}
+
+	/**
+	 * Reuse an existing entry in the session table.
+	 */
+	public synchronized void reuseDatabaseSession(long sessionID) {
+
+		String sql = "SELECT session_id FROM session WHERE session_id=?";
+
+		long newSessionID = -1;
+
+		try {
+
+			PreparedStatement stmt = outputDatabaseConnection.prepareStatement(sql);
+			stmt.setLong(1, sessionID);
+			ResultSet rs = stmt.executeQuery();
+			if (rs != null) {
+				if (rs.first()) {
+					newSessionID = rs.getLong(1);
+				} else {
+					newSessionID = -1; // probably signifies an empty ResultSet
+				}
+			}
+			rs.close();
+			stmt.close();
+
+		} catch (SQLException e) {
+
+			System.err.println("Error executing:\n" + sql);
+			e.printStackTrace();
+
+		}
+
+		if (newSessionID == -1) {
+			logger.severe("Could not reuse " + newSessionID);
+			logger.severe(sql);
+		}
+		logger.info("Reusing session ID " + sessionID);
+		setSessionID(sessionID);
+	}
+
+	/**
+	 * End a database session. Write any buffered lines, then the end time, into
+	 * the database, and summarise the reports of the session.
+	 */
+	public void endDatabaseSession() {
+
+		flush();
+
+		synchronized (this) {
+			String sql = "UPDATE session SET end_time=NOW() WHERE session_id=" + sessionID;
+
+			try {
+
+				Statement stmt = outputDatabaseConnection.createStatement();
+				stmt.executeUpdate(sql, Statement.RETURN_GENERATED_KEYS);
+				stmt.close();
+
+			} catch (SQLException e) {
+
+				System.err.println("Error executing:\n" + sql);
+				e.printStackTrace();
+
+			}
+
+			SessionSummaryBuilder summaries = new SessionSummaryBuilder(outputDatabaseConnection);
+			try {
+				if (summaries.hasSummaryTables()) {
+					summaries.build(sessionID);
+				} else {
+					// output databases created before the summary tables were added
+					logger.warning("Not summarising session " + sessionID
+							+ ", the summary tables are missing (apply sql/patch_02_session_summary.sql)");
+				}
+			} catch (SqlUncheckedException e) {
+				logger.warning("Could not summarise session " + sessionID + ": " + e.getMessage());
+			}
+		}
+
+	}
+
+	/**
+	 * Delete all previous data.
+	 */
+	public synchronized void deletePrevious() {
+
+		String[] tables = { "session", "report", "annotation" };
+
+		for (int i = 0; i < tables.length; i++) {
+
+			String sql = "DELETE FROM " + tables[i];
+
+			try {
+
+				Statement stmt = outputDatabaseConnection.createStatement();
+				stmt.executeUpdate(sql, Statement.RETURN_GENERATED_KEYS);
+
+				stmt.close();
+
+			} catch (SQLException e) {
+
+				System.err.println("Error executing:\n" + sql);
+				e.printStackTrace();
+
+			}
+
+		}
+	}
+
+	/**
+	 * Update a report in the database. Two possible actions: 1. If the report
+	 * already exists and hasn't changed, just update it. 2. If the report is
+	 * new, add a new record.
+	 */
+	public synchronized void checkAndAddToDatabase(ReportLine report) {
+
+		long reportID = reportExistsInDatabase(report);
+
+		if (report.getLevel() >= outputLevel) {
+
+			if (reportID > -1) {
+
+				updateReportInDatabase(report, reportID);
+
+			} else {
+
+				addReportToDatabase(report);
+			}
+
+		}
+
+	}
+
+	/**
+	 * Check if a report exists (i.e. same database, testcase, result and text).
+	 * 
+	 * @return -1 if the report does not exist, report_id if it does.
+	 */
+	public synchronized long reportExistsInDatabase(ReportLine report) {
+
+		String sql = "SELECT report_id FROM report WHERE database_name=? AND testcase=? AND result=? AND BINARY(text)=BINARY(?)";
+
+		long reportID = -1;
+
+		try {
+
+			PreparedStatement stmt = outputDatabaseConnection.prepareStatement(sql);
+			stmt.setString(1, report.getDatabaseName());
+			stmt.setString(2, report.getShortTestCaseName());
+			stmt.setString(3, report.getLevelAsString());
+			stmt.setString(4, report.getMessage());
+			ResultSet rs = stmt.executeQuery();
+			if (rs != null) {
+				if (rs.first()) {
+					reportID = rs.getLong(1);
+				} else {
+					reportID = -1; // probably signifies an empty ResultSet
+				}
+			}
+			rs.close();
+			stmt.close();
+
+		} catch (SQLException e) {
+
+			System.err.println("Error executing:\n" + sql);
+			e.printStackTrace();
+
+		}
+
+		if (reportID > -1) {
+			logger.finest("Report already exists (ID " + reportID + "): " + report.getDatabaseName() + " " + report.getTestCaseName() + " " + report.getLevelAsString() + " " + report.getMessage());
+		} else {
+			logger.finest("Report does not already exist: " + report.getDatabaseName() + " " + report.getTestCaseName() + " " + report.getLevelAsString() + " " + report.getMessage());
+		}
+
+		return reportID;
+
+	}
+
+	/**
+	 * Store a report in the database.
+	 */
+	public synchronized void addReportToDatabase(ReportLine report) {
+
+		if (outputDatabaseConnection == null) {
+			logger.severe("No connection to output database!");
+			return;
+		}
+
+		logger.fine("Adding report for: " + report.getDatabaseName() + " " + report.getTestCaseName() + " " + report.getLevelAsString() + " " + report.getMessage());
+
+		String sql = "INSERT INTO report (first_session_id, last_session_id, database_name, species, database_type, testcase, result, text, timestamp, team_responsible, created) VALUES (?, ?, ?, ?, ?, ?, ?, ?, NOW(), ?, NOW())";
+
+		try {
+
+			PreparedStatement stmt = outputDatabaseConnection.prepareStatement(sql);
+			stmt.setLong(1, sessionID);
+			stmt.setLong(2, sessionID);
+			stmt.setString(3, report.getDatabaseName());
+			// EG Store species name and db type from explicit report line, not from database
+			stmt.setString(4, report.getSpeciesName());
+			stmt.setString(5, report.getType().toString());
+			stmt.setString(6, report.getShortTestCaseName());
+			stmt.setString(7, report.getLevelAsString());
+			stmt.setString(8, report.getMessage());
+			stmt.setString(9, report.getPrintableTeamResponsibleString());
+			stmt.executeUpdate();
+
+			stmt.close();
+
+		} catch (SQLException e) {
+
+			System.err.println("Error executing:\n" + sql);
+			e.printStackTrace();
+
+		}
+
+	}
+
+	/**
+	 * Update the last_session_id of a report in the database.
+	 */
+	public synchronized void updateReportInDatabase(ReportLine report, long reportID) {
+
+		if (outputDatabaseConnection == null) {
+			logger.severe("No connection to output database!");
+			return;
+		}
+
+		logger.fine("Updating report for: " + report.getDatabaseName() + " " + report.getTestCaseName() + " " + report.getLevelAsString() + " " + report.getMessage() + ", new last_session_id="
+				+ sessionID);
+
+		String sql = "UPDATE report SET last_session_id=?, timestamp=NOW() WHERE report_id=?";
+
+		try {
+
+			PreparedStatement stmt = outputDatabaseConnection.prepareStatement(sql);
+			stmt.setLong(1, sessionID);
+			stmt.setLong(2, reportID);
+			stmt.executeUpdate();
+			stmt.close();
+
+		} catch (SQLException e) {
+
+			System.err.println("Error executing:\n" + sql);
+			e.printStackTrace();
+
+		}
+
+	}
+}
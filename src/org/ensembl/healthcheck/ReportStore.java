@@ -0,0 +1,463 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import org.ensembl.healthcheck.util.UtilUncheckedException;
+
+/**
+ * <p>
+ * 	Compact store for the report lines of a run, used by {@link ReportManager}
+ * when not writing to an output database.
+ * </p>
+ *
+ * <p>
+ * 	Test and database names are interned to ids and each line is held as a
+ * few columns of primitives: the test id, database id, level and where its
+ * message is. Messages are appended to a buffer which is written out to a
+ * temporary file once it holds more than a threshold number of bytes, so
+ * memory stays bounded however many databases are checked. The lines do not
+ * hold on to the test cases which reported them; {@link ReportLine}s are
+ * built again when they are asked for.
+ * </p>
+ *
+ * <p>
+ * 	Which tests passed and failed on which databases is counted as lines are
+ * added, so the counts do not need to look at the lines. Lines beyond a
+ * maximum per test are left out of the lines of the test, but still kept for
+ * their database, so that a verbose test can't hide what was reported on the
+ * databases it checked last. Lines beyond the maximum which are not about a
+ * database are counted but not kept.
+ * </p>
+ */
+public class ReportStore {
+
+	/** Default number of lines kept in the lines of each test */
+	public static final int DEFAULT_MAX_LINES_PER_TEST = 2000;
+
+	/** Default number of bytes of messages kept in memory */
+	public static final int DEFAULT_SPILL_THRESHOLD = 16 * 1024 * 1024;
+
+	private static Logger logger = Logger.getLogger("HealthCheckLogger");
+
+	/**
+	 * Growable array of ints
+	 */
+	private static class IntList {
+
+		private int[] values = new int[16];
+		private int size;
+
+		void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+
+		int get(int i) {
+			return values[i];
+		}
+
+		void set(int i, int value) {
+			values[i] = value;
+		}
+
+		void increment(int i) {
+			values[i]++;
+		}
+
+		int size() {
+			return size;
+		}
+	}
+
+	/**
+	 * Interned names, with the teams of each test and the index of each
+	 * line reported for it
+	 */
+	private static class Names {
+
+		private final Map<String, Integer> ids = new LinkedHashMap<String, Integer>();
+		private final List<String> names = new ArrayList<String>();
+		private final List<IntList> lines = new ArrayList<IntList>();
+		private final IntList runs = new IntList();
+		private final IntList fails = new IntList();
+
+		int intern(String name) {
+			Integer id = ids.get(name);
+			if (id == null) {
+				id = names.size();
+				ids.put(name, id);
+				names.add(name);
+				lines.add(new IntList());
+				runs.add(0);
+				fails.add(0);
+			}
+			return id;
+		}
+
+		int getId(String name) {
+			Integer id = ids.get(name);
+			return id == null ? -1 : id;
+		}
+	}
+
+	private final int maxLinesPerTest;
+
+	private final int spillThreshold;
+
+	private final Names tests = new Names();
+
+	private final Names databases = new Names();
+
+	private final List<Team[]> teams = new ArrayList<Team[]>();
+
+	private final List<String> species = new ArrayList<String>();
+
+	private final List<DatabaseType> types = new ArrayList<DatabaseType>();
+
+	// one entry per line
+	private final IntList lineTests = new IntList();
+	private final IntList lineDatabases = new IntList();
+	private byte[] lineLevels = new byte[16];
+	private long[] lineOffsets = new long[16];
+	private final IntList lineLengths = new IntList();
+
+	// report levels, indexed by the byte stored for each line
+	private final List<Integer> levels = new ArrayList<Integer>(Arrays.asList(ReportLine.LOG_MESSAGE,
+			ReportLine.ALL, ReportLine.CORRECT, ReportLine.INFO, ReportLine.WARNING, ReportLine.PROBLEM,
+			ReportLine.NONE));
+
+	// for each test and database pair which has reported: true if it failed
+	private final Map<Long, Boolean> results = new HashMap<Long, Boolean>();
+	private int totalRuns;
+	private int totalFails;
+
+	// messages not yet written to the spill file
+	private byte[] buffer = new byte[8192];
+	private int buffered;
+	private long spilled;
+	private File spillFile;
+	private RandomAccessFile spill;
+
+	public ReportStore() {
+		this(DEFAULT_MAX_LINES_PER_TEST, DEFAULT_SPILL_THRESHOLD);
+	}
+
+	/**
+	 * @param maxLinesPerTest
+	 *          number of lines to keep in the lines of each test
+	 * @param spillThreshold
+	 *          number of bytes of messages to keep in memory before writing
+	 *          them to a temporary file
+	 */
+	public ReportStore(int maxLinesPerTest, int spillThreshold) {
+		this.maxLinesPerTest = maxLinesPerTest;
+		this.spillThreshold = spillThreshold;
+	}
+
+	/**
+	 * Add a line and update the counts of passes and failures.
+	 *
+	 * @return false if the line was left out of the lines of its test,
+	 *         because the test already has the maximum number of lines. The
+	 *         line is still kept for its database, if it has one.
+	 */
+	public synchronized boolean add(ReportLine report) {
+		int test = tests.intern(report.getTestCaseName());
+		if (test == teams.size()) {
+			teams.add(new Team[] { report.getTeamResponsible(), report.getSecondTeamResponsible() });
+		}
+		String databaseName = report.getDatabaseName();
+		boolean hasDatabase = databaseName != null && databaseName.length() > 0;
+		int database = databases.intern(hasDatabase ? databaseName : "");
+		if (database == species.size()) {
+			species.add(report.getSpeciesName());
+			types.add(report.getType());
+		}
+
+		count(test, database, report.getLevel() >= ReportLine.PROBLEM, hasDatabase);
+
+		boolean byTest = tests.lines.get(test).size() <= maxLinesPerTest;
+		if (!byTest && !hasDatabase) {
+			return false;
+		}
+
+		int line = lineTests.size();
+		lineTests.add(test);
+		lineDatabases.add(database);
+		if (line == lineLevels.length) {
+			lineLevels = Arrays.copyOf(lineLevels, line * 2);
+			lineOffsets = Arrays.copyOf(lineOffsets, line * 2);
+		}
+		lineLevels[line] = levelCode(report.getLevel());
+		byte[] message = report.getMessage() == null ? new byte[0]
+				: report.getMessage().getBytes(StandardCharsets.UTF_8);
+		lineOffsets[line] = append(message);
+		lineLengths.add(message.length);
+
+		if (byTest) {
+			tests.lines.get(test).add(line);
+		}
+		if (hasDatabase) {
+			databases.lines.get(database).add(line);
+		}
+		return byTest;
+	}
+
+	private void count(int test, int database, boolean failed, boolean total) {
+		Long key = ((long) test << 32) | database;
+		Boolean previous = results.get(key);
+		if (previous == null) {
+			results.put(key, failed);
+			tests.runs.increment(test);
+			databases.runs.increment(database);
+			if (total) {
+				totalRuns++;
+			}
+		} else if (previous || !failed) {
+			return;
+		} else {
+			results.put(key, true);
+		}
+		if (failed) {
+			tests.fails.increment(test);
+			databases.fails.increment(database);
+			if (total) {
+				totalFails++;
+			}
+		}
+	}
+
+	private byte levelCode(int level) {
+		int code = levels.indexOf(level);
+		if (code < 0) {
+			code = levels.size();
+			levels.add(level);
+		}
+		return (byte) code;
+	}
+
+	/**
+	 * Append a message to the buffer, writing the buffer to the spill file
+	 * first if the message would take it over the threshold
+	 *
+	 * @return offset of the message
+	 */
+	private long append(byte[] message) {
+		if (buffered > 0 && buffered + message.length > spillThreshold) {
+			try {
+				if (spill == null) {
+					spillFile = File.createTempFile("healthcheck-reports", ".dat");
+					spillFile.deleteOnExit();
+					spill = new RandomAccessFile(spillFile, "rw");
+					logger.fine("Writing report messages to " + spillFile);
+				}
+				spill.seek(spilled);
+				spill.write(buffer, 0, buffered);
+			} catch (IOException e) {
+				throw new UtilUncheckedException("Could not write report messages to " + spillFile, e);
+			}
+			spilled += buffered;
+			buffered = 0;
+		}
+		if (buffered + message.length > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, buffered + message.length));
+		}
+		System.arraycopy(message, 0, buffer, buffered, message.length);
+		long offset = spilled + buffered;
+		buffered += message.length;
+		return offset;
+	}
+
+	private String getMessage(int line) {
+		long offset = lineOffsets[line];
+		int length = lineLengths.get(line);
+		if (offset >= spilled) {
+			return new String(buffer, (int) (offset - spilled), length, StandardCharsets.UTF_8);
+		}
+		byte[] message = new byte[length];
+		try {
+			spill.seek(offset);
+			spill.readFully(message);
+		} catch (IOException e) {
+			throw new UtilUncheckedException("Could not read report messages from " + spillFile, e);
+		}
+		return new String(message, StandardCharsets.UTF_8);
+	}
+
+	private ReportLine getLine(int line) {
+		int test = lineTests.get(line);
+		Team[] testTeams = teams.get(test);
+		int database = lineDatabases.get(line);
+		return new ReportLine(tests.names.get(test), databases.names.get(database), species.get(database),
+				types.get(database), levels.get(lineLevels[line]), getMessage(line), testTeams[0], testTeams[1]);
+	}
+
+	private List<ReportLine> getLines(IntList lines, int level, int test) {
+		ArrayList<ReportLine> result = new ArrayList<ReportLine>();
+		if (lines != null) {
+			for (int i = 0; i < lines.size(); i++) {
+				int line = lines.get(i);
+				if (levels.get(lineLevels[line]) >= level && (test < 0 || lineTests.get(line) == test)) {
+					result.add(getLine(line));
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the names of the tests which have reported, in the order they
+	 *         first reported
+	 */
+	public synchronized Set<String> getTestCaseNames() {
+		return Collections.unmodifiableSet(new LinkedHashSet<String>(tests.ids.keySet()));
+	}
+
+	/**
+	 * @return the names of the databases which have been reported on, in the
+	 *         order they were first reported on
+	 */
+	public synchronized Set<String> getDatabaseNames() {
+		Set<String> names = new LinkedHashSet<String>(databases.ids.keySet());
+		names.remove("");
+		return Collections.unmodifiableSet(names);
+	}
+
+	/**
+	 * @return true if the test has reported anything
+	 */
+	public synchronized boolean hasReports(String test) {
+		return tests.getId(test) >= 0;
+	}
+
+	/**
+	 * @return the lines kept for the test with at least the level
+	 */
+	public synchronized List<ReportLine> getReportsByTestCase(String test, int level) {
+		int id = tests.getId(test);
+		return getLines(id < 0 ? null : tests.lines.get(id), level, -1);
+	}
+
+	/**
+	 * @return the lines kept for the database with at least the level
+	 */
+	public synchronized List<ReportLine> getReportsByDatabase(String database, int level) {
+		int id = databases.getId(database);
+		return getLines(id < 0 ? null : databases.lines.get(id), level, -1);
+	}
+
+	/**
+	 * @return the lines kept for the test on the database, including those
+	 *         beyond the maximum for the test
+	 */
+	public synchronized List<ReportLine> getReports(String test, String database) {
+		int testId = tests.getId(test);
+		int databaseId = databases.getId(database);
+		if (testId < 0 || databaseId < 0) {
+			return new ArrayList<ReportLine>();
+		}
+		return getLines(databases.lines.get(databaseId), ReportLine.ALL, testId);
+	}
+
+	/**
+	 * @return number of tests which passed [0] and failed [1] on the database
+	 */
+	public synchronized int[] countPassesAndFailsDatabase(String database) {
+		return counts(databases, database);
+	}
+
+	/**
+	 * @return number of databases which passed [0] and failed [1] the test
+	 */
+	public synchronized int[] countPassesAndFailsTest(String test) {
+		return counts(tests, test);
+	}
+
+	/**
+	 * @return number of test and database pairs which passed [0] and failed
+	 *         [1]
+	 */
+	public synchronized int[] countPassesAndFailsAll() {
+		return new int[] { totalRuns - totalFails, totalFails };
+	}
+
+	private static int[] counts(Names names, String name) {
+		int id = names.getId(name);
+		if (id < 0) {
+			return new int[2];
+		}
+		int fails = names.fails.get(id);
+		return new int[] { names.runs.get(id) - fails, fails };
+	}
+
+	/**
+	 * @return true if the test reported no problems on the database
+	 */
+	public synchronized boolean passed(String test, String database) {
+		Boolean failed = results.get(((long) tests.getId(test) << 32) | databases.getId(database));
+		return failed == null || !failed;
+	}
+
+	/**
+	 * @return true if the test reported no problems on any database
+	 */
+	public synchronized boolean allPassed(String test) {
+		int id = tests.getId(test);
+		return id < 0 || tests.fails.get(id) == 0;
+	}
+
+	/**
+	 * @return number of lines kept
+	 */
+	public synchronized int size() {
+		return lineTests.size();
+	}
+
+	/**
+	 * Delete the spill file, if there is one. The store can't be read
+	 * afterwards.
+	 */
+	public synchronized void close() {
+		if (spill != null) {
+			try {
+				spill.close();
+			} catch (IOException e) {
+				// ignore
+			}
+			spillFile.delete();
+			spill = null;
+		}
+	}
+}
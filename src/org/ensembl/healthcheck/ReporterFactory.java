@@ -17,7 +17,11 @@
 
 package org.ensembl.healthcheck;
 
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
 import org.ensembl.healthcheck.reporter.DatabaseReporter;
+import org.ensembl.healthcheck.reporter.StreamingReporter;
 import org.ensembl.healthcheck.reporter.TextReporter;
 
 public class ReporterFactory {
@@ -28,12 +32,13 @@ public class ReporterFactory {
 	 *
 	 */
 	public static enum ReporterType {
-		TEXT, DATABASE
+		TEXT, DATABASE, JSON, TSV
 	}
 
 	/**
 	 * 
-	 * @param reporterType One of "Text",  "Database"
+	 * @param reporterType One of "Text",  "Database", "Json", "Tsv". Json and
+	 *   Tsv stream records to standard output as tests finish.
 	 * @return An implementation of a Reporter
 	 * 
 	 */
@@ -46,7 +51,11 @@ public class ReporterFactory {
 		}
 		if (reporterType == ReporterType.DATABASE) {
 			r = new DatabaseReporter();
-		}		
+		}
+		if (reporterType == ReporterType.JSON || reporterType == ReporterType.TSV) {
+			r = new StreamingReporter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8),
+					StreamingReporter.Format.valueOf(reporterType.name()));
+		}
 		return r;
 	}
 }
@@ -0,0 +1,143 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.logging.Logger;
+
+import org.ensembl.healthcheck.util.ConnectionBasedSqlTemplateImpl;
+import org.ensembl.healthcheck.util.DBUtils;
+import org.ensembl.healthcheck.util.SqlTemplate;
+import org.ensembl.healthcheck.util.SqlUncheckedException;
+
+/**
+ * Maintains the aggregate tables of the healthcheck output database, which
+ * summarise the reports of each session:
+ * <ul>
+ * <li><code>session_summary</code>: the number of reports per database,
+ * test, result and team, split into new ones (first reported in the session)
+ * and recurring ones</li>
+ * <li><code>session_database_summary</code>: one row per database with the
+ * number of reports of each result and of failed tests</li>
+ * </ul>
+ * Only the reports last seen in the session are read, through the index on
+ * <code>last_session_id</code>, so building a summary does not get slower as
+ * the report table grows. Building the summary of a session again replaces
+ * it, e.g. after a session has been reused. The old summary is replaced in
+ * one transaction, holding a lock on the session row, so parts of a parallel
+ * run ending the same session at once don't collide.
+ * <p>
+ * Reports without a database, test or result are left out of
+ * <code>session_summary</code>, as these columns are part of its key.
+ */
+public class SessionSummaryBuilder {
+
+	private static Logger logger = Logger.getLogger("HealthCheckLogger");
+
+	private final Connection connection;
+
+	private final SqlTemplate template;
+
+	public SessionSummaryBuilder(Connection connection) {
+		this.connection = connection;
+		this.template = new ConnectionBasedSqlTemplateImpl(connection);
+	}
+
+	/**
+	 * @return whether the output database has the summary tables, which
+	 *         databases created before they were added don't
+	 */
+	public boolean hasSummaryTables() {
+		return tableExists("session_summary") && tableExists("session_database_summary");
+	}
+
+	private boolean tableExists(String table) {
+		try {
+			// e.g. H2 keeps unquoted names in upper case
+			if (connection.getMetaData().storesUpperCaseIdentifiers()) {
+				table = table.toUpperCase(Locale.ROOT);
+			}
+		} catch (SQLException e) {
+			throw new SqlUncheckedException("Could not check for table " + table, e);
+		}
+		return DBUtils.tableExists(connection, table);
+	}
+
+	/**
+	 * (Re)build the summaries of a session.
+	 */
+	public void build(long sessionID) {
+
+		boolean autoCommit;
+		try {
+			autoCommit = connection.getAutoCommit();
+			connection.setAutoCommit(false);
+		} catch (SQLException e) {
+			throw new SqlUncheckedException("Could not start a transaction to summarise session " + sessionID, e);
+		}
+		boolean committed = false;
+		try {
+			template.queryForDefaultObjectList("SELECT session_id FROM session WHERE session_id=? FOR UPDATE", Long.class,
+					sessionID);
+			replace(sessionID);
+			connection.commit();
+			committed = true;
+		} catch (SQLException e) {
+			throw new SqlUncheckedException("Could not commit the summary of session " + sessionID, e);
+		} finally {
+			try {
+				if (!committed) {
+					connection.rollback();
+				}
+				connection.setAutoCommit(autoCommit);
+			} catch (SQLException e) {
+				logger.warning("Could not end the transaction summarising session " + sessionID + ": " + e.getMessage());
+			}
+		}
+	}
+
+	private void replace(long sessionID) {
+
+		template.update("DELETE FROM session_summary WHERE session_id=?", sessionID);
+		int rows = template.update("INSERT INTO session_summary "
+				+ "(session_id, database_name, testcase, result, team_responsible, new_reports, recurring_reports) "
+				+ "SELECT last_session_id, database_name, testcase, result, COALESCE(team_responsible, ''), "
+				+ "SUM(CASE WHEN first_session_id=last_session_id THEN 1 ELSE 0 END), "
+				+ "SUM(CASE WHEN first_session_id=last_session_id THEN 0 ELSE 1 END) "
+				+ "FROM report WHERE last_session_id=? AND database_name IS NOT NULL AND testcase IS NOT NULL "
+				+ "AND result IS NOT NULL "
+				+ "GROUP BY last_session_id, database_name, testcase, result, COALESCE(team_responsible, '')", sessionID);
+
+		template.update("DELETE FROM session_database_summary WHERE session_id=?", sessionID);
+		int databases = template.update("INSERT INTO session_database_summary "
+				+ "(session_id, database_name, species, database_type, problems, warnings, infos, corrects, new_problems, failed_tests) "
+				+ "SELECT last_session_id, database_name, MAX(species), MAX(database_type), "
+				+ "SUM(CASE WHEN result='PROBLEM' THEN 1 ELSE 0 END), "
+				+ "SUM(CASE WHEN result='WARNING' THEN 1 ELSE 0 END), "
+				+ "SUM(CASE WHEN result='INFO' THEN 1 ELSE 0 END), "
+				+ "SUM(CASE WHEN result='CORRECT' THEN 1 ELSE 0 END), "
+				+ "SUM(CASE WHEN result='PROBLEM' AND first_session_id=last_session_id THEN 1 ELSE 0 END), "
+				+ "COUNT(DISTINCT CASE WHEN result='PROBLEM' THEN testcase END) "
+				+ "FROM report WHERE last_session_id=? AND database_name IS NOT NULL "
+				+ "GROUP BY last_session_id, database_name", sessionID);
+
+		logger.fine("Summarised session " + sessionID + " in " + rows + " rows for " + databases + " databases");
+	}
+}
@@ -67,7 +67,7 @@ public class StandaloneReporter implements Reporter {
      * testcase.EnsTestCase, boolean, org.ensembl.healthcheck.DatabaseRegistryEntry)
      */
     @Override
-    public void finishTestCase(EnsTestCase testCase, boolean result, DatabaseRegistryEntry dbre) {
+    public synchronized void finishTestCase(EnsTestCase testCase, boolean result, DatabaseRegistryEntry dbre) {
         if (result) {
             List<String> dbSuccess = successes.get(dbre.getName());
             if (dbSuccess == null) {
@@ -104,7 +104,7 @@ public class StandaloneReporter implements Reporter {
      * ReportLine)
      */
     @Override
-    public void message(ReportLine reportLine) {
+    public synchronized void message(ReportLine reportLine) {
         logger.fine(reportLine.toString());
         if (reportLine.getLevel() != ReportLine.CORRECT) {
             Map<String, List<String>> dbOutput = output.get(reportLine.getDatabaseName());
@@ -128,7 +128,7 @@ public class StandaloneReporter implements Reporter {
      * testcase.EnsTestCase, org.ensembl.healthcheck.DatabaseRegistryEntry)
      */
     @Override
-    public void startTestCase(EnsTestCase testCase, DatabaseRegistryEntry dbre) {
+    public synchronized void startTestCase(EnsTestCase testCase, DatabaseRegistryEntry dbre) {
         Map<String, List<String>> dbOutput = output.get(dbre.getName());
         if (dbOutput == null) {
             dbOutput = CollectionUtils.createHashMap();
@@ -152,7 +152,7 @@ public class StandaloneReporter implements Reporter {
         }
     }
 
-    public void writeFailures(Writer writer, OutputFormat format) throws IOException {
+    public synchronized void writeFailures(Writer writer, OutputFormat format) throws IOException {
         switch (format) {
         case TEXT:
             writeFailuresText(writer);
@@ -178,6 +178,13 @@ public class StandaloneReporter implements Reporter {
 
     
     public void writeFailuresJson(Writer writer) throws IOException {
+        writer.write(new Gson().toJson(getFailureMessages()));
+    }
+
+    /**
+     * @return messages from each failed test, keyed by database and test name
+     */
+    public synchronized Map<String,Map<String,List<String>>> getFailureMessages() {
         Map<String,Map<String,List<String>>> oMap = new HashMap<>();
         for (Entry<String, List<String>> e : this.getFailures().entrySet()) {
             Map<String,List<String>> fMap = new HashMap<>();
@@ -186,7 +193,7 @@ public class StandaloneReporter implements Reporter {
             }
             oMap.put(e.getKey(), fMap);
         }
-        writer.write(new Gson().toJson(oMap));
+        return oMap;
     }
 
 }
@@ -0,0 +1,287 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.ensembl.healthcheck.StandaloneTestRunner.StandaloneTestOptions;
+import org.ensembl.healthcheck.util.PoorLruMap;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+
+import uk.co.flamingpenguin.jewel.cli.ArgumentValidationException;
+import uk.co.flamingpenguin.jewel.cli.Cli;
+import uk.co.flamingpenguin.jewel.cli.CliFactory;
+import uk.co.flamingpenguin.jewel.cli.Option;
+
+/**
+ * Long running server for {@link StandaloneTestRunner}, so that pipelines
+ * running many short healthchecks don't pay for JVM startup, finding the
+ * tests and connecting to the servers on every one.
+ * <p>
+ * The daemon listens on a local port. Each connection sends one request as a
+ * single line of JSON and gets one line of JSON back, e.g.
+ *
+ * <pre>
+ * {"args": ["--host", "localhost", "--port", "3306", "--user", "ensro", "--dbname", "homo_sapiens_core_93_38", "--t", "AssemblyMapping"]}
+ *
+ * {"status": "failed", "failures": {"homo_sapiens_core_93_38": {"org.ensembl...AssemblyMapping": ["PROBLEM: ..."]}}}
+ * </pre>
+ *
+ * where <code>args</code> are the same as the command line arguments to
+ * {@link StandaloneTestRunner} (the output options are ignored) and
+ * <code>status</code> is one of passed, failed or error. Sending
+ * <code>{"command": "shutdown"}</code> stops the daemon.
+ * <p>
+ * Requests are run one at a time, since {@link ReportManager} and the
+ * database overrides in {@link org.ensembl.healthcheck.util.DBUtils} are
+ * shared by the whole JVM. The test registries for the most recent
+ * {@value #MAX_REGISTRIES} selections of tests and groups are kept between
+ * requests, as are the pooled connections.
+ */
+public class StandaloneTestDaemon {
+
+	public interface StandaloneTestDaemonOptions {
+
+		@Option(helpRequest = true, description = "display help")
+		boolean getHelp();
+
+		@Option(shortName = "P", longName = "port", defaultValue = "9020", description = "Port to listen on")
+		int getPort();
+
+		@Option(shortName = "b", longName = "bind", defaultValue = "127.0.0.1", description = "Address to listen on")
+		String getBind();
+
+		@Option(shortName = "v", longName = "verbose", description = "Show detailed debugging output")
+		boolean isVerbose();
+
+	}
+
+	public static final String PASSED = "passed";
+
+	public static final String FAILED = "failed";
+
+	public static final String ERROR = "error";
+
+	public static final String SHUTDOWN = "shutdown";
+
+	/**
+	 * How long to wait for a connected client to send its request
+	 */
+	public static final int READ_TIMEOUT_MILLIS = 30000;
+
+	/**
+	 * Most test registries kept between requests
+	 */
+	public static final int MAX_REGISTRIES = 32;
+
+	/**
+	 * Body of a request
+	 */
+	static class Request {
+		String command;
+		List<String> args;
+	}
+
+	/**
+	 * Body of a response
+	 */
+	static class Response {
+		String status;
+		String message;
+		Map<String, Map<String, List<String>>> failures;
+
+		Response(String status, String message) {
+			this.status = status;
+			this.message = message;
+		}
+	}
+
+	private static Logger logger = Logger.getLogger(StandaloneTestDaemon.class.getCanonicalName());
+
+	private final Gson gson = new Gson();
+
+	private final Cli<StandaloneTestOptions> cli = CliFactory.createCli(StandaloneTestOptions.class);
+
+	private final Map<String, ConfigurationBasedTestRegistry> registries = new PoorLruMap<String, ConfigurationBasedTestRegistry>(
+			MAX_REGISTRIES);
+
+	private volatile boolean running = true;
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+
+		StandaloneTestDaemonOptions options = null;
+		try {
+			options = CliFactory.parseArguments(StandaloneTestDaemonOptions.class, args);
+		} catch (ArgumentValidationException e) {
+			System.err.println(e.getMessage());
+			System.exit(2);
+		}
+		if (options.isVerbose()) {
+			logger.setLevel(Level.ALL);
+		}
+
+		ServerSocket server = null;
+		try {
+			server = new ServerSocket(options.getPort(), 50, InetAddress.getByName(options.getBind()));
+			logger.info("Listening for healthcheck requests on " + options.getBind() + ":" + server.getLocalPort());
+			new StandaloneTestDaemon().serve(server);
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, "Could not listen on " + options.getBind() + ":" + options.getPort(), e);
+			System.exit(1);
+		} finally {
+			closeQuietly(server);
+		}
+		System.exit(0);
+	}
+
+	/**
+	 * Handle connections one at a time until a shutdown request is received. A
+	 * client which sends no request within {@link #READ_TIMEOUT_MILLIS} is
+	 * disconnected, so it can't hold up the others.
+	 */
+	public void serve(ServerSocket server) throws IOException {
+		while (running) {
+			Socket socket = server.accept();
+			try {
+				socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+				handle(socket);
+			} catch (IOException e) {
+				logger.log(Level.WARNING, "Could not handle request from " + socket.getRemoteSocketAddress(), e);
+			} finally {
+				closeQuietly(socket);
+			}
+		}
+	}
+
+	private void handle(Socket socket) throws IOException {
+		BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+		Writer out = new OutputStreamWriter(socket.getOutputStream(), "UTF-8");
+		String line = in.readLine();
+		if (line == null) {
+			return;
+		}
+		Response response;
+		try {
+			response = process(gson.fromJson(line, Request.class));
+		} catch (JsonSyntaxException e) {
+			response = new Response(ERROR, "Could not parse request: " + e.getMessage());
+		}
+		out.write(gson.toJson(response));
+		out.write("\n");
+		out.flush();
+	}
+
+	/**
+	 * Run a single request
+	 */
+	public Response process(Request request) {
+
+		if (request == null) {
+			return new Response(ERROR, "Empty request");
+		}
+		if (SHUTDOWN.equals(request.command)) {
+			logger.info("Shutting down");
+			running = false;
+			return new Response(PASSED, "Shutting down");
+		}
+		if (request.args == null) {
+			return new Response(ERROR, "No args given");
+		}
+
+		StandaloneTestOptions options;
+		try {
+			options = cli.parseArguments(request.args.toArray(new String[request.args.size()]));
+		} catch (ArgumentValidationException e) {
+			return new Response(ERROR, e.getMessage());
+		}
+		if (!StandaloneTestRunner.hasRequiredOptions(options)) {
+			return new Response(ERROR, StandaloneTestRunner.REQUIRED_OPTIONS_MESSAGE);
+		}
+
+		long start = System.currentTimeMillis();
+		// each request keeps its reports apart from earlier ones
+		ReportRun run = new ReportRun();
+		ReportManager.bindRun(run);
+		try {
+			StandaloneTestRunner runner = new StandaloneTestRunner(options, getRegistry(options));
+			StandaloneReporter reporter = new StandaloneReporter(runner.getLogger());
+			run.setReporter(reporter);
+
+			boolean result = runner.runAll();
+
+			Response response = new Response(result ? PASSED : FAILED, null);
+			if (!result) {
+				response.failures = reporter.getFailureMessages();
+			}
+			return response;
+		} catch (Exception e) {
+			logger.log(Level.WARNING, "Could not run healthchecks on " + StandaloneTestRunner.describeDatabases(options), e);
+			return new Response(ERROR, e.toString());
+		} finally {
+			ReportManager.unbindRun();
+			run.close();
+			logger.fine("Ran healthchecks on " + StandaloneTestRunner.describeDatabases(options) + " in "
+					+ (System.currentTimeMillis() - start) + "ms");
+		}
+	}
+
+	/**
+	 * @return the registry for the tests and groups in the options, reusing
+	 *         the one from an earlier request if the selection is the same
+	 */
+	private ConfigurationBasedTestRegistry getRegistry(StandaloneTestOptions options) throws Exception {
+		String key = (options.isGroups() ? options.getGroups() : "") + "\t"
+				+ (options.isTests() ? options.getTests() : "") + "\t"
+				+ (options.isExcludeGroups() ? options.getExcludeGroups() : "") + "\t"
+				+ (options.isExcludeTests() ? options.getExcludeTests() : "");
+		ConfigurationBasedTestRegistry registry = registries.get(key);
+		if (registry == null) {
+			registry = new ConfigurationBasedTestRegistry(options);
+			registries.put(key, registry);
+		}
+		return registry;
+	}
+
+	private static void closeQuietly(Closeable closeable) {
+		if (closeable != null) {
+			try {
+				closeable.close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+	}
+
+}
@@ -16,22 +16,33 @@
 
 package org.ensembl.healthcheck;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.Writer;
+import java.sql.SQLException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
-import java.util.logging.ConsoleHandler;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Formatter;
+import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
@@ -43,7 +54,11 @@ import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
 import org.ensembl.healthcheck.testcase.funcgen.CompareFuncgenSchema;
 import org.ensembl.healthcheck.testcase.generic.CompareSchema;
 import org.ensembl.healthcheck.testcase.variation.CompareVariationSchema;
+import org.ensembl.healthcheck.util.AsyncHandler;
 import org.ensembl.healthcheck.util.DBUtils;
+import org.ensembl.healthcheck.util.MyStreamHandler;
+import org.ensembl.healthcheck.util.ReferenceDataCache;
+import org.ensembl.healthcheck.util.SqlUncheckedException;
 
 import com.google.gson.Gson;
 import com.mysql.jdbc.Driver;
@@ -54,7 +69,11 @@ import uk.co.flamingpenguin.jewel.cli.CliFactory;
 import uk.co.flamingpenguin.jewel.cli.Option;
 
 /**
- * Simple class to run one or more tests or groups on a single database
+ * Simple class to run one or more tests or groups on a single database, or
+ * on a batch of databases given by --dbnames or --dbname_pattern. In batch
+ * mode up to --threads databases are tested at once, sharing the production
+ * and compara master connections, and all failures are written to a single
+ * output file keyed by database.
  * 
  * @author dstaines
  *
@@ -91,6 +110,19 @@ public class StandaloneTestRunner {
 
 		boolean isDbname();
 
+		@Option(longName = "dbnames", description = "Databases to test (alternative to --dbname)")
+		List<String> getDbnames();
+
+		boolean isDbnames();
+
+		@Option(longName = "dbname_pattern", description = "Regular expression matching the databases on the test host to test (alternative to --dbname)")
+		String getDbnamePattern();
+
+		boolean isDbnamePattern();
+
+		@Option(longName = "threads", defaultValue = "1", description = "Number of databases to test at once")
+		int getThreads();
+
 		@Option(shortName = "u", longName = "user", description = "Username for test database")
 		String getUser();
 
@@ -239,8 +271,8 @@ public class StandaloneTestRunner {
 			System.exit(listTests(options));
 		}
 
-		if (!options.isDbname() || !options.isHost() || !options.isPort() || !options.isUser()) {
-			System.err.println("--dbname, --host, --port and --user are required options");
+		if (!hasRequiredOptions(options)) {
+			System.err.println(REQUIRED_OPTIONS_MESSAGE);
 			System.err.println(cli.getHelpMessage());
 			System.exit(2);
 		}
@@ -271,12 +303,32 @@ public class StandaloneTestRunner {
 
 	}
 
+	static final String REQUIRED_OPTIONS_MESSAGE = "--host, --port, --user and one of --dbname, --dbnames or --dbname_pattern are required options";
+
+	static boolean hasRequiredOptions(StandaloneTestOptions options) {
+		return (options.isDbname() || options.isDbnames() || options.isDbnamePattern()) && options.isHost()
+				&& options.isPort() && options.isUser();
+	}
+
+	/**
+	 * @return the databases selected by the options, for logging
+	 */
+	static String describeDatabases(StandaloneTestOptions options) {
+		if (options.isDbname()) {
+			return options.getDbname();
+		} else if (options.isDbnames()) {
+			return StringUtils.join(options.getDbnames(), ",");
+		} else {
+			return "databases matching " + options.getDbnamePattern();
+		}
+	}
+
 	private static int listTests(StandaloneTestOptions options) {
 		Writer w = null;
 		try {
-			TestRegistry testRegistry = new ConfigurationBasedTestRegistry(options);
+			ConfigurationBasedTestRegistry testRegistry = new ConfigurationBasedTestRegistry(options);
 			Set<String> testCases = new HashSet<>();
-			for (EnsTestCase test : testRegistry.getAll()) {
+			for (TestDescriptor test : testRegistry.getDescriptors()) {
 				testCases.add(test.getName());
 			}
 			if (options.getOutputFile().equals(WRITE_STDOUT)) {
@@ -330,13 +382,24 @@ public class StandaloneTestRunner {
 	private final StandaloneTestOptions options;
 	private DatabaseRegistryEntry productionDb;
 	private DatabaseRegistryEntry comparaMasterDb;
-	private DatabaseRegistryEntry testDb;
+	private List<String> testDbNames;
+	private List<DatabaseRegistryEntry> testDbs;
 	private DatabaseServer primaryServer;
 	private DatabaseServer secondaryServer;
 	private DatabaseServer stagingServer;
 
 	public StandaloneTestRunner(StandaloneTestOptions options) {
+		this(options, null);
+	}
+
+	/**
+	 * Create a runner which uses an existing test registry, e.g. one kept by
+	 * {@link StandaloneTestDaemon} from an earlier run with the same tests
+	 * and groups. If testRegistry is null one is created from the options.
+	 */
+	public StandaloneTestRunner(StandaloneTestOptions options, ConfigurationBasedTestRegistry testRegistry) {
 		this.options = options;
+		this.testRegistry = testRegistry;
 		getLogger().fine("Connecting to primary server " + options.getHost());
 		DBUtils.overrideMainDatabaseServer(getPrimaryServer(), true);
 		if (options.isSecondaryHost()) {
@@ -345,8 +408,9 @@ public class StandaloneTestRunner {
 		}
 		String release = null;
 		if (!options.isRelease()) {
-			getLogger().fine("Release not specified, inferring from " + options.getDbname());
-			release = DatabaseRegistryEntry.getInfoFromName(options.getDbname()).getSchemaVersion();
+			String dbname = getTestDbNames().get(0);
+			getLogger().fine("Release not specified, inferring from " + dbname);
+			release = DatabaseRegistryEntry.getInfoFromName(dbname).getSchemaVersion();
 		} else {
 			release = options.getRelease();
 		}
@@ -363,18 +427,26 @@ public class StandaloneTestRunner {
 		}
 		System.setProperty("compara_master.database", options.getComparaMasterDbname());
 
+		// the master schemas are held in a different property for each type
+		// of database, so a batch of mixed types can share them
+		for (String dbname : getTestDbNames()) {
+			setMasterSchema(dbname, release);
+		}
+	}
+
+	private void setMasterSchema(String dbname, String release) {
 		String masterSchema = options.isMasterSchema() ? options.getMasterSchema() : null;
-		if (options.getDbname().matches(".*_compara_.*")) {
+		if (dbname.matches(".*_compara_.*")) {
 			if (StringUtils.isEmpty(masterSchema)) {
 				masterSchema = "master_schema_compara_" + release;
 			}
 			System.setProperty("master_compara.schema", masterSchema);
-		} else if (options.getDbname().matches(".*_funcgen_.*")) {
+		} else if (dbname.matches(".*_funcgen_.*")) {
 			if (StringUtils.isEmpty(masterSchema)) {
 				masterSchema = "master_schema_funcgen_" + release;
 			}
 			System.setProperty(CompareFuncgenSchema.MASTER_FUNCGEN_SCHEMA, masterSchema);
-		} else if (options.getDbname().matches(".*_variation_.*")) {
+		} else if (dbname.matches(".*_variation_.*")) {
 			if (StringUtils.isEmpty(masterSchema)) {
 				masterSchema = "master_schema_variation_" + release;
 			}
@@ -390,8 +462,16 @@ public class StandaloneTestRunner {
 	public Logger getLogger() {
 		if (logger == null) {
 			logger = Logger.getLogger(StandaloneTestRunner.class.getCanonicalName());
-			ConsoleHandler localConsoleHandler = new ConsoleHandler();
-			localConsoleHandler.setFormatter(new Formatter() {
+			// the logger is shared by every runner in the JVM, so only add the
+			// handler once
+			for (Handler handler : logger.getHandlers()) {
+				logger.removeHandler(handler);
+				handler.close();
+			}
+			// Unlike a ConsoleHandler, this doesn't flush stderr after every
+			// record; the AsyncHandler flushes it once per batch. System.err
+			// flushes on every write, so it is buffered in front.
+			MyStreamHandler consoleHandler = new MyStreamHandler(new BufferedOutputStream(System.err), new Formatter() {
 				DateFormat format = new SimpleDateFormat("dd-M-yyyy hh:mm:ss");
 
 				@Override
@@ -400,20 +480,25 @@ public class StandaloneTestRunner {
 							record.getSourceClassName(), record.getLevel().toString(), record.getMessage());
 				}
 			});
+			consoleHandler.setAutoFlush(false);
 			if (options.isVerbose()) {
-				localConsoleHandler.setLevel(Level.ALL);
+				consoleHandler.setLevel(Level.ALL);
 				logger.setLevel(Level.ALL);
 			} else {
-				localConsoleHandler.setLevel(Level.INFO);
+				consoleHandler.setLevel(Level.INFO);
 				logger.setLevel(Level.INFO);
 			}
 			logger.setUseParentHandlers(false);
-			logger.addHandler(localConsoleHandler);
+			// write on a thread of its own, so tests running in parallel do
+			// not wait for the console
+			AsyncHandler asyncHandler = new AsyncHandler(consoleHandler);
+			asyncHandler.setLevel(consoleHandler.getLevel());
+			logger.addHandler(asyncHandler);
 		}
 		return logger;
 	}
 
-	public DatabaseRegistryEntry getProductionDb() {
+	public synchronized DatabaseRegistryEntry getProductionDb() {
 		if (productionDb == null && options.isProductionHost()) {
 			getLogger().info("Connecting to production database " + options.getProductionDbname());
 			productionDb = new DatabaseRegistryEntry(new DatabaseServer(options.getProductionHost(),
@@ -424,7 +509,7 @@ public class StandaloneTestRunner {
 		return productionDb;
 	}
 
-	public DatabaseRegistryEntry getComparaMasterDb() {
+	public synchronized DatabaseRegistryEntry getComparaMasterDb() {
 		if (comparaMasterDb == null && options.isComparaHost()) {
 			getLogger().info("Connecting to compara master database " + options.getComparaMasterDbname());
 			comparaMasterDb = new DatabaseRegistryEntry(new DatabaseServer(options.getComparaHost(),
@@ -435,15 +520,71 @@ public class StandaloneTestRunner {
 		return comparaMasterDb;
 	}
 
+	/**
+	 * @return the first database to test
+	 */
 	public DatabaseRegistryEntry getTestDb() {
-		if (testDb == null) {
-			getLogger().info("Connecting to test database " + options.getDbname());
-			testDb = new DatabaseRegistryEntry(getPrimaryServer(), options.getDbname(), null, null);
-			if (testDb.getConnection() == null) {
-				throw new ConfigurationException("Test database " + options.getDbname() + " not found");
+		return getTestDbs().get(0);
+	}
+
+	/**
+	 * @return the databases to test, connecting to each of them
+	 */
+	public synchronized List<DatabaseRegistryEntry> getTestDbs() {
+		if (testDbs == null) {
+			List<DatabaseRegistryEntry> dbs = new ArrayList<DatabaseRegistryEntry>();
+			for (String dbname : getTestDbNames()) {
+				getLogger().info("Connecting to test database " + dbname);
+				DatabaseRegistryEntry testDb = new DatabaseRegistryEntry(getPrimaryServer(), dbname, null, null);
+				if (testDb.getConnection() == null) {
+					throw new ConfigurationException("Test database " + dbname + " not found");
+				}
+				dbs.add(testDb);
+			}
+			testDbs = Collections.unmodifiableList(dbs);
+		}
+		return testDbs;
+	}
+
+	/**
+	 * @return the names of the databases to test, from --dbname, --dbnames or
+	 *         the databases on the primary server matching --dbname_pattern
+	 */
+	public synchronized List<String> getTestDbNames() {
+		if (testDbNames == null) {
+			List<String> names = new ArrayList<String>();
+			if (options.isDbname()) {
+				names.add(options.getDbname());
+			}
+			if (options.isDbnames()) {
+				names.addAll(options.getDbnames());
+			}
+			if (options.isDbnamePattern()) {
+				names.addAll(findDatabases(options.getDbnamePattern()));
+			}
+			if (names.isEmpty()) {
+				throw new ConfigurationException("No test databases found for " + describeDatabases(options));
 			}
+			testDbNames = Collections.unmodifiableList(names);
 		}
-		return testDb;
+		return testDbNames;
+	}
+
+	private List<String> findDatabases(String regexp) {
+		Pattern pattern = Pattern.compile(regexp);
+		List<String> names = new ArrayList<String>();
+		try {
+			for (String name : DBUtils.getSqlTemplate(getPrimaryServer().getServerConnection())
+					.queryForDefaultObjectList("SHOW DATABASES", String.class)) {
+				if (pattern.matcher(name).matches()) {
+					names.add(name);
+				}
+			}
+		} catch (SQLException e) {
+			throw new SqlUncheckedException("Could not list databases on " + options.getHost(), e);
+		}
+		getLogger().info("Found " + names.size() + " databases matching " + regexp);
+		return names;
 	}
 
 	public DatabaseServer getPrimaryServer() {
@@ -471,9 +612,9 @@ public class StandaloneTestRunner {
 		return stagingServer;
 	}
 
-	private TestRegistry testRegistry;
+	private ConfigurationBasedTestRegistry testRegistry;
 
-	private TestRegistry getTestRegistry() {
+	ConfigurationBasedTestRegistry getTestRegistry() {
 		if (testRegistry == null) {
 			try {
 				this.testRegistry = new ConfigurationBasedTestRegistry(options);
@@ -491,28 +632,115 @@ public class StandaloneTestRunner {
 	}
 
 	public boolean runAll() {
+		// reference data may have changed since an earlier run in this JVM
+		ReferenceDataCache.getInstance().clear();
+		for (DatabaseRegistryEntry testDb : getTestDbs()) {
+			testDb.invalidateCaches();
+		}
+		// only single-database tests are run, so don't instantiate the others
+		List<TestDescriptor> tests = new ArrayList<TestDescriptor>();
+		for (TestDescriptor test : getTestRegistry().getDescriptors()) {
+			if (test.isSingle()) {
+				tests.add(test);
+			} else {
+				getLogger().fine("Skipping non-single testcase " + test.getName());
+			}
+		}
+		if (options.getThreads() > 1) {
+			return runConcurrently(tests);
+		}
 		boolean success = true;
-		for (EnsTestCase testCase : getTestRegistry().getAll()) {
-			success &= runTestCase(testCase);
+		for (DatabaseRegistryEntry testDb : getTestDbs()) {
+			success &= runTestCases(tests, testDb);
 		}
 		return success;
 	}
 
+	/**
+	 * Run the tests on a fixed number of threads, one database per thread at
+	 * a time. Tests on the same database run one after the other, since they
+	 * share its single pooled connection and a test streaming a result from
+	 * MySQL blocks any other use of it until the result has been read.
+	 */
+	private boolean runConcurrently(final List<TestDescriptor> tests) {
+		int threads = Math.min(options.getThreads(), getTestDbs().size());
+		getLogger().info("Running " + tests.size() + " testcases on " + getTestDbs().size() + " databases using "
+				+ threads + " threads");
+		// connect to the shared databases before the workers need them
+		getProductionDb();
+		getComparaMasterDb();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+		boolean success = true;
+		try {
+			for (final DatabaseRegistryEntry testDb : getTestDbs()) {
+				results.add(executor.submit(new Callable<Boolean>() {
+					@Override
+					public Boolean call() {
+						return runTestCases(tests, testDb);
+					}
+				}));
+			}
+			for (Future<Boolean> result : results) {
+				success &= result.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while running healthchecks", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Could not run healthchecks", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		return success;
+	}
+
+	/**
+	 * Run each test on the database. Every run gets its own instance of the
+	 * test, since tests keep state in fields.
+	 */
+	private boolean runTestCases(List<TestDescriptor> tests, DatabaseRegistryEntry testDb) {
+		boolean success = true;
+		for (TestDescriptor test : tests) {
+			success &= runTestCaseSafely(test.newInstance(), testDb);
+		}
+		return success;
+	}
+
+	/**
+	 * Run a test, recording an exception as a failure of that test so the
+	 * other tests in the batch still run and are reported.
+	 */
+	private boolean runTestCaseSafely(EnsTestCase test, DatabaseRegistryEntry testDb) {
+		try {
+			return runTestCase(test, testDb);
+		} catch (RuntimeException e) {
+			getLogger().log(Level.SEVERE, test.getName() + " threw an exception on " + testDb.getName(), e);
+			ReportManager.problem(test, testDb.getName(), "Test threw exception: " + e);
+			ReportManager.finishTestCase(test, false, testDb);
+			return false;
+		}
+	}
+
 	public boolean runTestCase(EnsTestCase test) {
+		return runTestCase(test, getTestDb());
+	}
+
+	public boolean runTestCase(EnsTestCase test, DatabaseRegistryEntry testDb) {
 		boolean success = true;
 		if (SingleDatabaseTestCase.class.isAssignableFrom(test.getClass())) {
-			getLogger().info("Executing testcase " + test.getName());
+			getLogger().info("Executing testcase " + test.getName() + " on " + testDb.getName());
 			test.setProductionDatabase(getProductionDb());
 			test.setComparaMasterDatabase(getComparaMasterDb());
-			ReportManager.startTestCase(test, getTestDb());
-			if (test.appliesToType(getTestDb().getType())) {
-				boolean result = ((SingleDatabaseTestCase) test).run(getTestDb());
-				ReportManager.finishTestCase(test, result, getTestDb());
-				getLogger().info(test.getName() + " " + (result ? "succeeded" : "failed"));
+			ReportManager.startTestCase(test, testDb);
+			if (test.appliesToType(testDb.getType())) {
+				boolean result = ((SingleDatabaseTestCase) test).run(testDb);
+				ReportManager.finishTestCase(test, result, testDb);
+				getLogger().info(test.getName() + " " + (result ? "succeeded" : "failed") + " on " + testDb.getName());
 				success &= result;
 			} else {
-				getLogger().info("Skipping testcase " + test.getName() + " for database " + getTestDb().getName()
-						+ " of type " + getTestDb().getType().getName());
+				getLogger().info("Skipping testcase " + test.getName() + " for database " + testDb.getName()
+						+ " of type " + testDb.getType().getName());
 			}
 		} else {
 			getLogger().fine("Skipping non-single testcase " + test.getName());
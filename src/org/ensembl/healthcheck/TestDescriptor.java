@@ -0,0 +1,142 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.ensembl.healthcheck.testcase.EnsTestCase;
+import org.ensembl.healthcheck.testcase.MultiDatabaseTestCase;
+import org.ensembl.healthcheck.testcase.OrderedDatabaseTestCase;
+import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
+
+/**
+ * <p>
+ * 	Lightweight description of a test class, used by registries to select
+ * tests without constructing them.
+ * </p>
+ *
+ * <p>
+ * 	The types a test applies to and its long-running flag are read from the
+ * {@link TestIndex} when it is available. Otherwise they are taken from an
+ * instance of the test, created the first time they are asked for.
+ * </p>
+ *
+ * <p>
+ * 	{@link #getInstance()} returns one instance per thread, so tests which
+ * keep state in fields can be run on several databases concurrently.
+ * {@link #newInstance()} always creates a new one.
+ * </p>
+ */
+public class TestDescriptor {
+
+	private final Class<? extends EnsTestCase> testClass;
+
+	private final TestIndex.Entry entry;
+
+	private final ThreadLocal<EnsTestCase> instances = new ThreadLocal<EnsTestCase>();
+
+	public TestDescriptor(Class<? extends EnsTestCase> testClass) {
+		this.testClass = testClass;
+		TestIndex index = TestIndex.getInstance();
+		this.entry = index == null ? null : index.getEntry(testClass.getName());
+	}
+
+	public Class<? extends EnsTestCase> getTestClass() {
+		return testClass;
+	}
+
+	public String getName() {
+		return testClass.getName();
+	}
+
+	public String getShortTestName() {
+		return testClass.getSimpleName();
+	}
+
+	public boolean isSingle() {
+		return SingleDatabaseTestCase.class.isAssignableFrom(testClass);
+	}
+
+	public boolean isMulti() {
+		return MultiDatabaseTestCase.class.isAssignableFrom(testClass);
+	}
+
+	public boolean isOrdered() {
+		return OrderedDatabaseTestCase.class.isAssignableFrom(testClass);
+	}
+
+	/**
+	 * @return the types of database this test applies to
+	 */
+	public List<DatabaseType> getAppliesToTypes() {
+		if (entry != null) {
+			return entry.getTypes();
+		}
+		return Arrays.asList(getInstance().getAppliesToTypes());
+	}
+
+	public boolean appliesToType(DatabaseType type) {
+		return getAppliesToTypes().contains(type);
+	}
+
+	public boolean isLongRunning() {
+		if (entry != null) {
+			return entry.isLongRunning();
+		}
+		return getInstance().isLongRunning();
+	}
+
+	/**
+	 * @return the instance of this test for the current thread, creating it
+	 *         if required
+	 */
+	public EnsTestCase getInstance() {
+		EnsTestCase test = instances.get();
+		if (test == null) {
+			test = newInstance();
+			instances.set(test);
+		}
+		return test;
+	}
+
+	/**
+	 * Create and set up a new instance of the test in the same way as
+	 * {@link GroupOfTests#getTests()}.
+	 *
+	 * @throws RuntimeException
+	 *           if the test can't be created, which
+	 *           {@link ConfigurationBasedTestRegistry} logs before skipping the
+	 *           test
+	 */
+	public EnsTestCase newInstance() {
+		EnsTestCase test;
+		try {
+			test = testClass.getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new RuntimeException("Could not create " + getName(), e);
+		}
+		test.setTypeFromPackageName();
+		test.types();
+		return test;
+	}
+
+	public String toString() {
+		return getName();
+	}
+}
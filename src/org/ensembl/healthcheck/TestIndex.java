@@ -0,0 +1,441 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.reflect.Modifier;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.logging.Logger;
+
+import org.ensembl.PackageScan;
+import org.ensembl.healthcheck.testcase.EnsTestCase;
+import org.ensembl.healthcheck.util.InputOutputUtils;
+import org.ensembl.healthcheck.util.UtilUncheckedException;
+
+/**
+ * <p>
+ * 	Index of the tests and groups of tests, written once at build time so
+ * that startup does not have to scan the classpath and instantiate every
+ * test to find out what it is called.
+ * </p>
+ *
+ * <p>
+ * 	The index is the resource {@value #RESOURCE}, one tab separated line per
+ * class:
+ * </p>
+ *
+ * <pre>
+ * kind  class  aliases  groups  types  longRunning
+ * </pre>
+ *
+ * <p>
+ * 	where kind is <code>test</code> or <code>group</code> and aliases, groups
+ * and types are comma separated. Types are those the test applies to after
+ * {@link EnsTestCase#setTypeFromPackageName()} and
+ * {@link EnsTestCase#types()} have been called.
+ * </p>
+ *
+ * <p>
+ * 	Aliases and groups are only known once a test has been instantiated, so
+ * the index is produced by running {@link #main(String[])} over the compiled
+ * classes rather than by an annotation processor. If the resource is missing
+ * (e.g. when running from an IDE), or any test class in the same directory
+ * or jar is newer than it, {@link #getInstance()} returns null and callers
+ * fall back to scanning.
+ * </p>
+ */
+public class TestIndex {
+
+	static final Logger log = Logger.getLogger(TestIndex.class.getCanonicalName());
+
+	public static final String RESOURCE = "org/ensembl/healthcheck/test_index.tsv";
+
+	public static final String TEST = "test";
+
+	public static final String GROUP = "group";
+
+	private static final String[] PACKAGES = {
+		"org.ensembl.healthcheck.testcase",
+		"org.ensembl.healthcheck.testgroup"
+	};
+
+	/**
+	 * One test or group of tests in the index
+	 */
+	public static class Entry {
+
+		private final String kind;
+		private final String className;
+		private final List<String> aliases;
+		private final List<String> groups;
+		private final List<DatabaseType> types;
+		private final boolean longRunning;
+
+		public Entry(String kind, String className, List<String> aliases,
+				List<String> groups, List<DatabaseType> types, boolean longRunning) {
+			this.kind = kind;
+			this.className = className;
+			this.aliases = aliases;
+			this.groups = groups;
+			this.types = types;
+			this.longRunning = longRunning;
+		}
+
+		public boolean isTest() {
+			return TEST.equals(kind);
+		}
+
+		public boolean isGroup() {
+			return GROUP.equals(kind);
+		}
+
+		public String getClassName() {
+			return className;
+		}
+
+		public List<String> getAliases() {
+			return aliases;
+		}
+
+		public List<String> getGroups() {
+			return groups;
+		}
+
+		public List<DatabaseType> getTypes() {
+			return types;
+		}
+
+		public boolean isLongRunning() {
+			return longRunning;
+		}
+
+		public boolean appliesToType(DatabaseType type) {
+			return types.contains(type);
+		}
+
+		/**
+		 * @return true if the class is in one of the packages or their
+		 *         subpackages
+		 */
+		public boolean inPackages(String... packages) {
+			for (String p : packages) {
+				if (className.startsWith(p + ".")) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	private static TestIndex instance;
+
+	private static boolean loaded;
+
+	/**
+	 * @return the index on the classpath, or null if there is none or it is
+	 *         out of date
+	 */
+	public static synchronized TestIndex getInstance() {
+		if (!loaded) {
+			loaded = true;
+			URL url = TestIndex.class.getClassLoader().getResource(RESOURCE);
+			if (url == null) {
+				log.config("No test index found at " + RESOURCE + ", tests will be found by scanning");
+			} else if (isStale(url)) {
+				log.warning("The test index " + url + " is older than the tests, tests will be found by scanning."
+						+ " Rebuild to bring it up to date.");
+			} else {
+				InputStream in = null;
+				try {
+					in = url.openStream();
+					instance = read(in);
+					log.config("Read " + instance.getEntries().size() + " entries from the test index");
+				} catch (IOException e) {
+					log.warning("Could not read test index " + RESOURCE + ": " + e.getMessage());
+				} finally {
+					InputOutputUtils.closeQuietly(in);
+				}
+			}
+		}
+		return instance;
+	}
+
+	/**
+	 * The index is only rewritten by a full build, so classes compiled since
+	 * (e.g. by an IDE) may have been added, removed or given other groups.
+	 *
+	 * @return true if a class in the test packages next to the index, in the
+	 *         same directory tree or jar, was modified after it
+	 */
+	static boolean isStale(URL url) {
+		try {
+			if ("file".equals(url.getProtocol())) {
+				File index = new File(url.toURI());
+				File root = index;
+				for (int i = RESOURCE.split("/").length; i > 0; i--) {
+					root = root.getParentFile();
+				}
+				for (String p : PACKAGES) {
+					if (hasNewerClass(new File(root, p.replace('.', File.separatorChar)), index.lastModified())) {
+						return true;
+					}
+				}
+			} else if ("jar".equals(url.getProtocol())) {
+				JarURLConnection con = (JarURLConnection) url.openConnection();
+				long indexTime = con.getJarEntry().getTime();
+				Enumeration<JarEntry> jarEntries = con.getJarFile().entries();
+				while (jarEntries.hasMoreElements()) {
+					JarEntry jarEntry = jarEntries.nextElement();
+					if (jarEntry.getName().endsWith(".class") && inPackages(jarEntry.getName())
+							&& jarEntry.getTime() > indexTime) {
+						return true;
+					}
+				}
+			}
+		} catch (IOException e) {
+			log.config("Could not check the age of " + url + ": " + e.getMessage());
+		} catch (URISyntaxException e) {
+			log.config("Could not check the age of " + url + ": " + e.getMessage());
+		}
+		return false;
+	}
+
+	private static boolean hasNewerClass(File dir, long time) {
+		File[] files = dir.listFiles();
+		if (files == null) {
+			return false;
+		}
+		for (File file : files) {
+			if (file.isDirectory() ? hasNewerClass(file, time)
+					: file.getName().endsWith(".class") && file.lastModified() > time) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean inPackages(String resourceName) {
+		for (String p : PACKAGES) {
+			if (resourceName.startsWith(p.replace('.', '/') + "/")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private final List<Entry> entries;
+
+	private final Map<String, Entry> byClassName = new HashMap<String, Entry>();
+
+	public TestIndex(List<Entry> entries) {
+		this.entries = entries;
+		for (Entry entry : entries) {
+			byClassName.put(entry.getClassName(), entry);
+		}
+	}
+
+	public List<Entry> getEntries() {
+		return entries;
+	}
+
+	/**
+	 * @return the entry for the class or null if it is not in the index
+	 */
+	public Entry getEntry(String className) {
+		return byClassName.get(className);
+	}
+
+	/**
+	 * @return all tests (not groups) in the index
+	 */
+	public List<Entry> getTests() {
+		List<Entry> tests = new ArrayList<Entry>();
+		for (Entry entry : entries) {
+			if (entry.isTest()) {
+				tests.add(entry);
+			}
+		}
+		return tests;
+	}
+
+	/**
+	 * Build the same alias map as {@link TestInstantiator#createMap(String[])}
+	 * for the classes in the given packages.
+	 */
+	public Map<String, String> createAliasMap(String... packages) {
+		Map<String, String> aliasToClassName = new HashMap<String, String>();
+		for (Entry entry : entries) {
+			if (entry.inPackages(packages)) {
+				for (String alias : entry.getAliases()) {
+					TestInstantiator.addToMapWithCheck(aliasToClassName,
+							new TestInstantiator.KeyValuePair(alias, entry.getClassName()));
+				}
+			}
+		}
+		return aliasToClassName;
+	}
+
+	/**
+	 * Read an index in the format written by {@link #write(PrintWriter)}
+	 */
+	public static TestIndex read(InputStream in) throws IOException {
+		List<Entry> entries = new ArrayList<Entry>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			if (line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+			String[] cols = line.split("\t", -1);
+			if (cols.length != 6) {
+				throw new IOException("Malformed test index line: " + line);
+			}
+			List<DatabaseType> types = new ArrayList<DatabaseType>();
+			for (String type : split(cols[4])) {
+				types.add(DatabaseType.forName(type));
+			}
+			entries.add(new Entry(cols[0], cols[1], split(cols[2]), split(cols[3]),
+					types, Boolean.parseBoolean(cols[5])));
+		}
+		return new TestIndex(entries);
+	}
+
+	/**
+	 * Write the index, one line per entry
+	 */
+	public void write(PrintWriter out) {
+		out.println("# kind\tclass\taliases\tgroups\ttypes\tlongRunning");
+		for (Entry entry : entries) {
+			List<String> types = new ArrayList<String>();
+			for (DatabaseType type : entry.getTypes()) {
+				types.add(type.getName());
+			}
+			out.println((entry.isTest() ? TEST : GROUP) + "\t" + entry.getClassName()
+					+ "\t" + join(entry.getAliases()) + "\t" + join(entry.getGroups())
+					+ "\t" + join(types) + "\t" + entry.isLongRunning());
+		}
+	}
+
+	/**
+	 * Scan the test packages and instantiate each class to find its aliases,
+	 * groups and types. This is the slow path the index exists to avoid.
+	 */
+	public static TestIndex scan(String... packages) {
+		List<Entry> entries = new ArrayList<Entry>();
+		for (String p : packages) {
+			List<Class<?>> classes;
+			try {
+				classes = PackageScan.getClassesForPackage(p, true);
+			} catch (ClassNotFoundException e) {
+				throw new UtilUncheckedException("Could not scan package " + p, e);
+			}
+			for (Class<?> c : classes) {
+				Entry entry = describe(c);
+				if (entry != null) {
+					entries.add(entry);
+				}
+			}
+		}
+		return new TestIndex(entries);
+	}
+
+	private static Entry describe(Class<?> c) {
+		if (Modifier.isAbstract(c.getModifiers()) || c.getName().indexOf('$') > 0) {
+			return null;
+		}
+		boolean isTest = EnsTestCase.class.isAssignableFrom(c);
+		if (!isTest && !GroupOfTests.class.isAssignableFrom(c)) {
+			return null;
+		}
+		Object instance;
+		try {
+			instance = c.getDeclaredConstructor().newInstance();
+		} catch (Exception e) {
+			log.config("Could not instantiate " + c + ", not adding it to the index: " + e);
+			return null;
+		} catch (LinkageError e) {
+			log.config("Could not load " + c + ", not adding it to the index: " + e);
+			return null;
+		}
+		if (isTest) {
+			EnsTestCase test = (EnsTestCase) instance;
+			test.setTypeFromPackageName();
+			test.types();
+			return new Entry(TEST, c.getName(), TestInstantiator.knownNamesForEnsTestCase(test),
+					new ArrayList<String>(test.getGroups()), Arrays.asList(test.getAppliesToTypes()),
+					test.isLongRunning());
+		}
+		return new Entry(GROUP, c.getName(),
+				TestInstantiator.knownNamesForGroupOfTests((GroupOfTests) instance),
+				Collections.<String> emptyList(), Collections.<DatabaseType> emptyList(), false);
+	}
+
+	private static List<String> split(String s) {
+		if (s.isEmpty()) {
+			return Collections.emptyList();
+		}
+		return Arrays.asList(s.split(","));
+	}
+
+	private static String join(List<String> values) {
+		StringBuilder sb = new StringBuilder();
+		for (String value : values) {
+			if (sb.length() > 0) {
+				sb.append(',');
+			}
+			sb.append(value);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Build step: scan the compiled tests and write the index under the
+	 * supplied class output directory.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.err.println("Usage: TestIndex <class output directory>");
+			System.exit(1);
+		}
+		TestIndex index = scan(PACKAGES);
+		File file = new File(args[0], RESOURCE);
+		file.getParentFile().mkdirs();
+		PrintWriter out = new PrintWriter(file, "UTF-8");
+		try {
+			index.write(out);
+		} finally {
+			out.close();
+		}
+		System.out.println("Wrote " + index.getEntries().size() + " entries to " + file);
+	}
+}
@@ -75,10 +75,24 @@ public class TestInstantiator {
 		return aliasToClassName;
 	}
 
+	/**
+	 * <p>
+	 * 	Uses the build-time {@link TestIndex} to map aliases to classes if it
+	 * is on the classpath, otherwise scans the packages and instantiates every
+	 * class in them.
+	 * </p>
+	 */
 	public TestInstantiator(String... packageToScan) {
 		
 		this.packageToScan = packageToScan;
-		aliasToClassName   = createMap(packageToScan);
+		
+		TestIndex index = TestIndex.getInstance();
+		
+		if (index != null) {
+			aliasToClassName = index.createAliasMap(packageToScan);
+		} else {
+			aliasToClassName = createMap(packageToScan);
+		}
 	}
 
 	/**
@@ -312,18 +326,18 @@ public class TestInstantiator {
 	
 	/**
 	 * <p>
-	 * Adds a {@see: keyValuePair} to a map like the aliasToClassName 
+	 * Adds a {@link KeyValuePair} to a map like the aliasToClassName 
 	 * attribute of this class.
 	 * </p>
 	 * 
 	 * <p>
-	 * It checks, if the keyValuePair has already been added and if so, if
+	 * It checks, if the KeyValuePair has already been added and if so, if
 	 * it contradicts what has already been stored. If so, prints out a 
 	 * warning, but adds it anyway.
 	 * </p> 
 	 * 
 	 */
-	public static void addToMapWithCheck(Map simpleNameToClass, keyValuePair currentKeyValuePair) {
+	public static void addToMapWithCheck(Map simpleNameToClass, KeyValuePair currentKeyValuePair) {
 		
 		boolean aliasAlreadyMappedToOtherClass 
 			= 
@@ -410,7 +424,7 @@ public class TestInstantiator {
 					
 					addToMapWithCheck(
 						simpleNameToClass, 
-						new keyValuePair(
+						new KeyValuePair(
 							testName, 
 							s.getName()
 						)
@@ -462,17 +476,19 @@ public class TestInstantiator {
 		}
 		return result.toString();
 	}
-}
 
-class keyValuePair {
+	/**
+	 * An alias and the name of the class it stands for
+	 */
+	public static class KeyValuePair {
+
+		public KeyValuePair(String key, String value) {
+			this.key   = key;
+			this.value = value;
+		}
+
+		public String key;
+		public String value;
 
-	public keyValuePair(String key, String value) {
-		this.key   = key;
-		this.value = value;
 	}
-	
-	public String key;
-	public String value;	
-	
 }
-
@@ -0,0 +1,118 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.ensembl.healthcheck.testcase.EnsTestCase;
+
+/**
+ * <p>
+ * 	What the reports of a test need to say about it: its teams and the text
+ * explaining a failure. Kept in a registry keyed on the test's class name,
+ * filled from the tests as they run, so printing or streaming the results
+ * doesn't have to create an instance of every test again.
+ * </p>
+ */
+public class TestMetadata {
+
+	private static Logger logger = Logger.getLogger("HealthCheckLogger");
+
+	private static final ConcurrentMap<String, TestMetadata> registry = new ConcurrentHashMap<String, TestMetadata>();
+
+	private final String name;
+
+	private final String shortName;
+
+	private final String teamResponsible;
+
+	private final String failureText;
+
+	private TestMetadata(EnsTestCase test) {
+		this.name = test.getTestName();
+		this.shortName = test.getShortTestName();
+		this.teamResponsible = test.getTeamResponsible() == null ? null : test.getPrintableTeamResponsibleString();
+		String text = test.getFailureText() == null ? "" : test.getFailureText();
+		if (test.getEffect() != null) {
+			text += test.getEffect() + "\n";
+		}
+		if (test.getFix() != null) {
+			text += test.getFix() + "\n";
+		}
+		this.failureText = text;
+	}
+
+	/**
+	 * @return the metadata of the test, registering it if it is the first
+	 *         instance of its class seen
+	 */
+	public static TestMetadata forTest(EnsTestCase test) {
+		TestMetadata metadata = registry.get(test.getTestName());
+		if (metadata == null) {
+			metadata = new TestMetadata(test);
+			TestMetadata existing = registry.putIfAbsent(metadata.getName(), metadata);
+			if (existing != null) {
+				metadata = existing;
+			}
+		}
+		return metadata;
+	}
+
+	/**
+	 * @return the metadata of the test class, creating an instance of it if
+	 *         none has been registered, or null if it can't be created
+	 */
+	public static TestMetadata forName(String name) {
+		TestMetadata metadata = registry.get(name);
+		if (metadata != null) {
+			return metadata;
+		}
+		try {
+			return forTest((EnsTestCase) Class.forName(name).getDeclaredConstructor().newInstance());
+		} catch (Exception e) {
+			logger.log(Level.WARNING, "Can't create an instance of " + name, e);
+			return null;
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getShortName() {
+		return shortName;
+	}
+
+	/**
+	 * @return the teams responsible for the test, or null if not set
+	 */
+	public String getTeamResponsible() {
+		return teamResponsible;
+	}
+
+	/**
+	 * @return the failure text, effect and fix of the test, or an empty
+	 *         string if it has none
+	 */
+	public String getFailureText() {
+		return failureText;
+	}
+}
@@ -30,6 +30,7 @@ import org.ensembl.healthcheck.testcase.MultiDatabaseTestCase;
 import org.ensembl.healthcheck.testcase.OrderedDatabaseTestCase;
 import org.ensembl.healthcheck.testcase.Repair;
 import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
+import org.ensembl.healthcheck.util.ReferenceDataCache;
 
 /**
  * <p>
@@ -99,6 +100,11 @@ public class TestRunner {
 
 		int numberOfTestsRun = 0;
 
+		ReferenceDataCache.getInstance().clear();
+		for (DatabaseRegistryEntry database : databaseRegistry.getAll()) {
+			database.invalidateCaches();
+		}
+
 		// --------------------------------
 		// Single-database tests
 
@@ -249,6 +255,8 @@ public class TestRunner {
 			}
 			if (doRepair) {
 				((Repair) testCase).repair(database);
+				// the repair may have changed meta or any other table
+				database.invalidateCaches();
 			}
 		}
 
@@ -326,29 +334,21 @@ public class TestRunner {
 
 				System.out.print("\n" + test);
 
-				// print failure text if appropriate
+				// print failure text if appropriate; tests which have run
+				// are already in the registry
 				String failureText = "";
-				try {
-					EnsTestCase testObj = (EnsTestCase) (Class.forName(test)
-							.newInstance());
-					String teamResponsible = testObj
-							.getPrintableTeamResponsibleString();
+				TestMetadata metadata = TestMetadata.forName(test);
+				if (metadata != null) {
+					String teamResponsible = metadata.getTeamResponsible();
 					if (teamResponsible == null) {
 						teamResponsible = "Not set";
 					}
 					System.out.println(" [Team responsible: " + teamResponsible
 							+ "]");
 
-					failureText = testObj.getFailureText();
-					if (testObj.getEffect() != null) {
-						failureText += testObj.getEffect() + "\n";
-					}
-					if (testObj.getFix() != null) {
-						failureText += testObj.getFix() + "\n";
-					}
-				} catch (Exception e) {
+					failureText = metadata.getFailureText();
+				} else {
 					System.err.println("Error, can't instantiate object ");
-					e.printStackTrace();
 				}
 				if (printFailureText && failureText.length() > 0) {
 					System.out.println("Note: " + failureText);
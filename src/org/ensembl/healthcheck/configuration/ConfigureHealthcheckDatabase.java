@@ -116,6 +116,35 @@ public interface ConfigureHealthcheckDatabase {
 		String getOutputSchemafile();
 		boolean isOutputSchemafile();	
 		
+		@Option(
+			longName    = "output.retainMinorSessions",
+			description = "If set, INFO and CORRECT reports last seen before "
+				+ "this many most recent sessions are removed from the output "
+				+ "database when a new session starts, or when "
+				+ "MaintainHealthCheckDB is run. Annotated reports are kept."
+		)
+		String getOutputRetainMinorSessions();
+		boolean isOutputRetainMinorSessions();
+		
+		@Option(
+			longName    = "output.retainSessions",
+			description = "If set, all reports last seen before this many most "
+				+ "recent sessions are removed from the output database when a "
+				+ "new session starts, or when MaintainHealthCheckDB is run. "
+				+ "Annotated reports are kept."
+		)
+		String getOutputRetainSessions();
+		boolean isOutputRetainSessions();
+		
+		@Option(
+			longName    = "output.archiveDir",
+			description = "If set, reports removed from the output database "
+				+ "are first written to gzipped, tab separated files in this "
+				+ "directory."
+		)
+		String getOutputArchiveDir();
+		boolean isOutputArchiveDir();
+		
 		@Option(
 			longName    = "production.database",
 			description = "The name of the Ensembl production database to use to retrieve division information. " +
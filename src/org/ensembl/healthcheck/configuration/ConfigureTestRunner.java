@@ -36,7 +36,8 @@ public interface ConfigureTestRunner {
 	boolean isTestRegistryType();
 
 	@Option(shortName = "R", description = "Specify the reporter type that will be used. "
-			+ "The allowed options are \"Database\" and \"Text\".")
+			+ "The allowed options are \"Database\", \"Text\", \"Json\" and \"Tsv\". "
+			+ "Json and Tsv write results to standard output as each test finishes.")
 	String getReporterType();
 	boolean isReporterType();
 
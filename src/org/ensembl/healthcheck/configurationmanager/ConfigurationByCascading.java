@@ -20,10 +20,12 @@ package org.ensembl.healthcheck.configurationmanager;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 import org.ensembl.healthcheck.ConfigurableTestRunner;
@@ -53,6 +55,14 @@ import uk.co.flamingpenguin.jewel.cli.OptionNotPresentException;
  * interface, but it doesn't seem necessary, since the individual objects
  * are already aware of aliases.
  * </p>
+ * 
+ * <p>
+ * The configuration objects are not expected to change once they have been
+ * created, so each parameter is only looked up in the cascade the first 
+ * time it is requested. Later calls return the remembered value, which
+ * avoids the reflective search through every configuration object and is
+ * safe to use from several threads.
+ * </p>
  *
  * @param <T>
  */
@@ -60,7 +70,25 @@ public class ConfigurationByCascading<T> extends AbstractConfigurationBacking {
 	
 	static final Logger log = Logger.getLogger(ConfigurationByCascading.class.getCanonicalName());
 	
-	private List<T> configurationObjects;
+	private final List<T> configurationObjects;
+
+	/**
+	 * Stands in for a parameter that is not present in any of the 
+	 * configuration objects.
+	 */
+	private static final Object NOT_PRESENT = new Object();
+
+	/**
+	 * Stands in for a parameter whose value is null, since null can't be
+	 * stored in resolvedValues.
+	 */
+	private static final Object NULL_VALUE = new Object();
+
+	/**
+	 * The value for each method of the configuration interface that has been
+	 * called so far.
+	 */
+	private final Map<Method, Object> resolvedValues = new ConcurrentHashMap<Method, Object>();
 
 	/**
 	 * @param configurationObjects
@@ -70,7 +98,7 @@ public class ConfigurationByCascading<T> extends AbstractConfigurationBacking {
 	 * 
 	 */
 	public ConfigurationByCascading(List<T> configurationObjects) {
-		this.configurationObjects = configurationObjects;
+		this.configurationObjects = Collections.unmodifiableList(new ArrayList<T>(configurationObjects));
 	}
 	/**
 	 * @param configurationObjects
@@ -85,7 +113,7 @@ public class ConfigurationByCascading<T> extends AbstractConfigurationBacking {
 		for (T c : configurationObjects) {
 			l.add(c);
 		}
-		this.configurationObjects = l;
+		this.configurationObjects = Collections.unmodifiableList(l);
 	}
 
 	/** 
@@ -120,13 +148,42 @@ public class ConfigurationByCascading<T> extends AbstractConfigurationBacking {
 	 */
 	public Object invoke(Object proxy, Method m, Object[] args) throws OptionNotPresentException {
 		
+		if (m.getName().equals("toString")) { return toString(); }
+		
+		Object value = resolvedValues.get(m);
+		
+		if (value == null) {
+			value = resolve(m);
+			resolvedValues.put(m, value);
+		}
+		
+		if (value == NOT_PRESENT) {
+			// This would happen, if the user requests a configuration variable 
+			// that has not been set in any of the configuration objects.
+			throw new OptionNotPresentException(
+				"Could not find configuration " 
+				+ getVariableRequested(m) 
+				+ " in any of the configuration objects.\n\n"
+				+ toString()
+			);
+		}
+		return value == NULL_VALUE ? null : value;
+	}
+	
+	/**
+	 * 
+	 * Searches the configuration objects in order for the value of the 
+	 * parameter. Returns NOT_PRESENT if none of them have it and NULL_VALUE
+	 * if the value found was null.
+	 * 
+	 */
+	private Object resolve(Method m) {
+		
 		Object result = null;
 		
 		String     methodName     = m.getName();
 		Class<?>[] parameterTypes = m.getParameterTypes();
 
-		if (methodName.equals("toString")) { return toString(); }
-		
 		boolean methodIsGetMethod = isGetMethod (m);
 		boolean methodIsIsMethod  = isIsMethod  (m);
 		
@@ -174,7 +231,7 @@ public class ConfigurationByCascading<T> extends AbstractConfigurationBacking {
 							// the value of the parameter in the first 
 							// configuration object in which it was set.
 							//
-							return result;
+							return result == null ? NULL_VALUE : result;
 						}
 						if (methodIsIsMethod) {
 							// If we are here, the method called is a method
@@ -243,14 +300,6 @@ public class ConfigurationByCascading<T> extends AbstractConfigurationBacking {
 			return false;
 		}
 
-		// This would happen, if the user requests a configuration variable 
-		// that has not been set in any of the configuration objects.
-		throw new OptionNotPresentException(
-			"Could not find configuration " 
-			+ getVariableRequested(m) 
-			+ " in any of the configuration objects.\n\n"
-			+ toString()
-		);			
+		return NOT_PRESENT;
 	}		
 }
-
@@ -0,0 +1,99 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.eg_gui;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * <p>
+ * 	Runs a task on the event dispatch thread shortly after it has been
+ * requested, however many times it is requested in the meantime. Lets
+ * threads running tests ask for the GUI to be brought up to date after every
+ * report line while the GUI is updated once per batch of lines.
+ * </p>
+ * 
+ * <p>
+ * 	All updaters share one background thread, which waits out the delay
+ * and then hands the task to the event dispatch thread.
+ * </p>
+ */
+class CoalescingUpdater {
+
+	private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+		new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "GUI updater");
+				t.setDaemon(true);
+				return t;
+			}
+		}
+	);
+
+	protected final Runnable task;
+
+	protected final long delayMillis;
+
+	protected final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+	protected final Runnable runOnEventDispatchThread;
+
+	protected final Runnable schedule;
+
+	/**
+	 * @param delayMillis
+	 *          How long to collect requests for before running the task.
+	 * @param task
+	 *          The task, run on the event dispatch thread.
+	 */
+	public CoalescingUpdater(long delayMillis, final Runnable task) {
+
+		this.task        = task;
+		this.delayMillis = delayMillis;
+
+		runOnEventDispatchThread = new Runnable() {
+			@Override public void run() {
+				// cleared first, so a request made while the task runs
+				// causes another run
+				scheduled.set(false);
+				task.run();
+			}
+		};
+		schedule = new Runnable() {
+			@Override public void run() {
+				SwingUtilities.invokeLater(runOnEventDispatchThread);
+			}
+		};
+	}
+
+	/**
+	 * Ask for the task to be run. May be called from any thread.
+	 */
+	public void request() {
+
+		if (scheduled.compareAndSet(false, true)) {
+			scheduler.schedule(schedule, delayMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+}
@@ -24,6 +24,7 @@ import org.ensembl.healthcheck.ReportLine;
 import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.Reporter;
 import org.ensembl.healthcheck.testcase.EnsTestCase;
+import org.ensembl.healthcheck.util.AsyncHandler;
 
 /**
  * <p>
@@ -37,9 +38,16 @@ import org.ensembl.healthcheck.testcase.EnsTestCase;
 public class GuiLogHandler extends Handler {
 	
 	/**
-	 * Messages sent to the logger will be associated with this testcase.
+	 * Messages sent to the logger will be associated with this testcase, 
+	 * unless the thread logging them has set its own.
 	 */
-	protected EnsTestCase ensTestCase;
+	protected volatile EnsTestCase ensTestCase;
+	
+	/**
+	 * The testcase each thread is running, so that tests running in parallel 
+	 * have their log messages attributed to the right test.
+	 */
+	protected final ThreadLocal<EnsTestCase> currentEnsTestCase = new ThreadLocal<EnsTestCase>();
 	
 	/**
 	 * Messages sent to the logger will be forwarded to this reporter. 
@@ -47,12 +55,25 @@ public class GuiLogHandler extends Handler {
 	protected Reporter reporter;
 	
 	public EnsTestCase getEnsTestCase() {
-		return ensTestCase;
+		EnsTestCase current = currentEnsTestCase.get();
+		return current != null ? current : ensTestCase;
 	}
 
 	public void setEnsTestCase(EnsTestCase ensTestCase) {
 		this.ensTestCase = ensTestCase;
 	}
+	
+	/**
+	 * Associate the messages logged by the calling thread with a testcase.
+	 * Passing null reverts to the one set by {@link #setEnsTestCase}.
+	 */
+	public void setCurrentEnsTestCase(EnsTestCase ensTestCase) {
+		if (ensTestCase == null) {
+			currentEnsTestCase.remove();
+		} else {
+			currentEnsTestCase.set(ensTestCase);
+		}
+	}
 
 	public Reporter getReporter() {
 		return reporter;
@@ -63,6 +84,16 @@ public class GuiLogHandler extends Handler {
 	}
 	
 	public void publish(LogRecord logRecord) {
+		
+		if (isLoggable(logRecord)) {
+			publish(logRecord, getEnsTestCase());
+		}
+	}
+	
+	/**
+	 * Forward a message to the reporter as one from the given testcase.
+	 */
+	public void publish(LogRecord logRecord, EnsTestCase ensTestCase) {
     	  
 		reporter.message(
 			new ReportLine(
@@ -75,6 +106,33 @@ public class GuiLogHandler extends Handler {
 			)
 		);
 	}
+	
+	/**
+	 * <p>
+	 * 	A handler which formats messages and forwards them to the reporter on 
+	 * a thread of its own, so tests do not wait for the GUI. The testcase a 
+	 * message belongs to is still taken from the thread logging it.
+	 * </p>
+	 * <p>
+	 * 	The handler has to be closed when it is no longer used.
+	 * </p>
+	 */
+	public AsyncHandler createAsyncHandler() {
+		
+		AsyncHandler asyncHandler = new AsyncHandler(this) {
+			
+			@Override protected Object capture(LogRecord logRecord) {
+				super.capture(logRecord);
+				return getEnsTestCase();
+			}
+			
+			@Override protected void deliver(LogRecord logRecord, Object ensTestCase) {
+				GuiLogHandler.this.publish(logRecord, (EnsTestCase) ensTestCase);
+			}
+		};
+		asyncHandler.setLevel(getLevel());
+		return asyncHandler;
+	}
 
 	@Override public void close() throws SecurityException {}
 	@Override public void flush() {}
@@ -17,10 +17,29 @@
 
 package org.ensembl.healthcheck.eg_gui;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.ensembl.healthcheck.ReportLine;
 
+/**
+ * <p>
+ * 	What the reporter tab shows for one test. The lines of its messages are
+ * kept in fixed size pages, so that a test reporting many lines doesn't need
+ * one huge string or array copied as it grows, and the view can fetch just
+ * the lines on screen.
+ * </p>
+ * 
+ * <p>
+ * 	Lines are added from the threads running the tests and read from the
+ * event dispatch thread, so access is synchronized. Lines are only ever
+ * added, so an index below a line count seen earlier stays valid.
+ * </p>
+ */
 class GuiReportPanelData {
 
+	private static final int PAGE_SIZE = 1024;
+
 	public String getTestName() {
 		return testName;
 	}
@@ -53,12 +72,23 @@ class GuiReportPanelData {
 		this.speciesName = speciesName;
 	}
 
-	public String getMessage() {
+	/**
+	 * @return all the lines, separated by newlines
+	 */
+	public synchronized String getMessage() {
+		StringBuilder message = new StringBuilder();
+		for (int i = 0; i < lineCount; i++) {
+			message.append(getLine(i)).append('\n');
+		}
 		return message.toString();
 	}
 
-	public void setMessage(StringBuffer message) {
-		this.message = message;
+	public synchronized int getLineCount() {
+		return lineCount;
+	}
+
+	public synchronized String getLine(int index) {
+		return pages.get(index / PAGE_SIZE)[index % PAGE_SIZE];
 	}
 
 	String testName;
@@ -66,9 +96,9 @@ class GuiReportPanelData {
 	String teamResponsible;
 	String speciesName;
 	
-	StringBuffer message;
-	
-	boolean messageEndsWithCR;
+	private final List<String[]> pages = new ArrayList<String[]>();
+
+	private int lineCount;
 	
 	public GuiReportPanelData(ReportLine reportLine) {
 		
@@ -81,24 +111,33 @@ class GuiReportPanelData {
 		} else {
 			teamResponsible = "No team set.";
 		}
-		messageEndsWithCR = false;
-		
-		message = new StringBuffer();
 		
 		addReportLine(reportLine);
 	}
 	
-	public final void addReportLine(ReportLine reportLine) {
+	/**
+	 * Add the lines of the message. Each message starts on a new line.
+	 */
+	public final synchronized void addReportLine(ReportLine reportLine) {
 		
-		String currentMessage = reportLine.getMessage();
+		String currentMessage = reportLine.getMessage() == null ? "" : reportLine.getMessage();
 		
-		if (!messageEndsWithCR) {
-			message.append("\n");
+		int start = 0;
+		int end;
+		while ((end = currentMessage.indexOf('\n', start)) >= 0) {
+			addLine(currentMessage.substring(start, end));
+			start = end + 1;
 		}
+		if (start < currentMessage.length() || start == 0) {
+			addLine(currentMessage.substring(start));
+		}
+	}
 
-		messageEndsWithCR = currentMessage.endsWith("\n");
-
-		message.append(currentMessage);
+	private void addLine(String line) {
+		if (lineCount % PAGE_SIZE == 0) {
+			pages.add(new String[PAGE_SIZE]);
+		}
+		pages.get(lineCount / PAGE_SIZE)[lineCount % PAGE_SIZE] = line;
+		lineCount++;
 	}
 }
-
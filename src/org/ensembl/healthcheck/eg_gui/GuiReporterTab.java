@@ -33,12 +33,14 @@ import java.awt.event.FocusEvent;
 import java.awt.event.FocusListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import javax.swing.Box;
 
+import javax.swing.JList;
 import javax.swing.JPanel;
 import javax.swing.JPopupMenu;
 import javax.swing.JScrollPane;
@@ -58,6 +60,8 @@ import org.ensembl.healthcheck.testcase.EnsTestCase;
 
 public class GuiReporterTab extends JPanel implements Reporter {
 	
+	private static final long serialVersionUID = 1L;
+	
 	final protected TestClassList               testList;
 	final protected JScrollPane                 testListScrollPane;
 	final protected TestClassListModel          listModel;
@@ -68,6 +72,19 @@ public class GuiReporterTab extends JPanel implements Reporter {
 	
 	final protected Map<Class<? extends EnsTestCase>,GuiReportPanelData> reportData;
 	
+	/**
+	 * Tests which have reported for the first time since the last update.
+	 */
+	final protected Queue<Class<? extends EnsTestCase>> newTests;
+	
+	/**
+	 * Brings the list of tests and the report shown up to date with the
+	 * lines reported since it last ran. Report lines arrive on the threads
+	 * running the tests, so many of them are shown in one update on the
+	 * event dispatch thread.
+	 */
+	final protected CoalescingUpdater updater;
+	
 	/**
 	 * <p>
 	 * 	While the testrunner is running, the test selected will be 
@@ -111,7 +128,13 @@ public class GuiReporterTab extends JPanel implements Reporter {
 
 		this.setBorder(GuiTestRunnerFrameComponentBuilder.defaultEmptyBorder);
 		
-		reportData  = new HashMap<Class<? extends EnsTestCase>,GuiReportPanelData>();
+		reportData  = new ConcurrentHashMap<Class<? extends EnsTestCase>,GuiReportPanelData>();
+		newTests    = new ConcurrentLinkedQueue<Class<? extends EnsTestCase>>();
+		updater     = new CoalescingUpdater(100, new Runnable() {
+			@Override public void run() {
+				update();
+			}
+		});
 		
 		testList    = new TestClassList(TestClassList.TestClassListToolTipType.CLASS);		
 		listModel   = new TestClassListModel();
@@ -181,66 +204,66 @@ public class GuiReporterTab extends JPanel implements Reporter {
 		);
 	}
 	
+	/**
+	 * Add the tests which have reported for the first time to the list, and
+	 * show the lines added to the selected test since the last update. Run
+	 * on the event dispatch thread.
+	 */
+	protected void update() {
+		
+		Class<? extends EnsTestCase> newTest;
+		boolean testsAdded = false;
+		while ((newTest = newTests.poll()) != null) {
+			listModel.addTest(newTest);
+			testsAdded = true;
+		}
+		
+		// If nothing has been selected, then select something so the user
+		// is not staring at an empty report.
+		//
+		if (testsAdded && !userClickedOnTestList) {
+			selectDefaultListItem();
+		}
+		
+		reportPanel.publish();
+	}
+	
 	@Override
 	public void message(final ReportLine reportLine) {
 		
 		final Class<? extends EnsTestCase> currentKey = reportLine.getTestCase().getClass();
 		
-		if (!reportData.containsKey(currentKey)) {
+		GuiReportPanelData data = reportData.get(currentKey);
+		
+		if (data == null) {
 			
-			reportData.put(currentKey, new GuiReportPanelData(reportLine));
-			testCaseCellRenderer.setOutcome(currentKey, null);
-
-			// This method will be called from a different thread. Therefore
-			// updates to the components must be run through SwingUtilities.
+			// Tests may report for the first time on several threads at once.
 			//
-			SwingUtilities.invokeLater(
-					new Runnable() {
-						@Override public void run() {
-
-							listModel.addTest(currentKey);
-
-							// If nothing has been selected, then select 
-							// something so the user is not staring at an
-							// empty report.
-							//
-							//if (testList.isSelectionEmpty()) {
-							if (!userClickedOnTestList) {
-								selectDefaultListItem();
-							}
-						}
-					}
-				);
+			data = reportData.putIfAbsent(currentKey, new GuiReportPanelData(reportLine));
+			
+			if (data == null) {
+				testCaseCellRenderer.setOutcome(currentKey, null);
+				newTests.add(currentKey);
+			} else {
+				data.addReportLine(reportLine);
+			}
+			
 		} else {
 		
-			reportData.get(currentKey).addReportLine(reportLine);
+			data.addReportLine(reportLine);
 		}
 		
 		// If anything was reported as a problem, the outcome is false.
 		//
 		if (reportLine.getLevel()==ReportLine.PROBLEM) {
-			testCaseCellRenderer.setOutcome(currentKey, false);
+			testCaseCellRenderer.addOutcome(currentKey, false);
 		}
 
-		// If a testcase has been selected, then display the new data in the 
-		// GUI so the user can see the new line in real time.
+		// This method will be called from a different thread. The new line
+		// is shown by the next update on the event dispatch thread, along
+		// with any others reported in the meantime.
 		//
-		if (!testList.isSelectionEmpty()) {
-
-			SwingUtilities.invokeLater(
-					new Runnable() {
-						@Override public void run() {
-							
-							reportPanel.setData(
-									
-									reportData.get(
-											( (TestClassListItem) listModel.getElementAt(testList.getSelectedIndex()) ).getTestClass()
-									)
-								);
-						}
-					}
-			);
-		}
+		updater.request();
 	}
 
 	@Override
@@ -259,7 +282,7 @@ public class GuiReporterTab extends JPanel implements Reporter {
 		SwingUtilities.invokeLater(
 				new Runnable() {
 					@Override public void run() {
-						testCaseCellRenderer.setOutcome(testCase.getClass(), result);
+						testCaseCellRenderer.addOutcome(testCase.getClass(), result);
 					}
 				}
 			);
@@ -268,15 +291,22 @@ public class GuiReporterTab extends JPanel implements Reporter {
 
 class ReportPanel extends JPanel implements ActionListener {
 	
+	private static final long serialVersionUID = 1L;
+	
 	final protected JTextField testName;
 	final protected JPopupTextArea description;
 	final protected JTextField teamResponsible;
 	final protected JTextField speciesName;
-	final protected JPopupTextArea  message;
+	final protected JList<String> message;
+	final protected ReportLineListModel messageModel;
 	
 	final String copy_selected_text_action = "copy_selected_text_action";
 
-	protected boolean updateInProgress;
+	/**
+	 * Width of a line of output in characters. The list is told how wide
+	 * its lines are, so it doesn't measure every line to find out.
+	 */
+	protected static final int MESSAGE_LINE_LENGTH = 250;
 	
 	protected Component createVerticalSpacing() {
 		return Box.createVerticalStrut(Constants.DEFAULT_VERTICAL_COMPONENT_SPACING);
@@ -298,7 +328,8 @@ class ReportPanel extends JPanel implements ActionListener {
 		description     = new JPopupTextArea(3, 0);
 		teamResponsible = new JPopupTextField("Team Responsible");
 		speciesName     = new JPopupTextField("Species Name");
-		message         = new JPopupTextArea ();
+		messageModel    = new ReportLineListModel();
+		message         = new JList<String>(messageModel);
 		
 		message.addFocusListener(new FocusListener() {
 			@Override
@@ -337,7 +368,7 @@ class ReportPanel extends JPanel implements ActionListener {
 		
 		final JPopupMenu popup = new JPopupMenu();		
 		
-		message.add(GuiTestRunnerFrameComponentBuilder.makeMenuItem("Copy selected text", this, copy_selected_text_action));
+		popup.add(GuiTestRunnerFrameComponentBuilder.makeMenuItem("Copy selected text", this, copy_selected_text_action));
 		message.setComponentPopupMenu(popup);
 		
 		Font currentFont = message.getFont();
@@ -348,8 +379,12 @@ class ReportPanel extends JPanel implements ActionListener {
 		);
 		
 		message.setFont(newFont);
-		//message.setLineWrap(true);
-		//message.setWrapStyleWord(true);
+		
+		// Fixing the size of the cells lets the list work out what is on 
+		// screen without rendering every line.
+		//
+		message.setFixedCellHeight(message.getFontMetrics(newFont).getHeight());
+		message.setFixedCellWidth(message.getFontMetrics(newFont).charWidth('m') * MESSAGE_LINE_LENGTH);
 		
 		singleLineInfo.add(g.createLeftJustifiedText("Output from test:"));
 		
@@ -369,61 +404,56 @@ class ReportPanel extends JPanel implements ActionListener {
 		//
 		this.setMinimumSize(new Dimension(200,300));
 		
-		updateInProgress = false;
-		
 	}
 	
-	public synchronized void setData(final GuiReportPanelData reportData) {
-		
-		/*
-		 * Updating the reporter tab may be slow especially when setting the
-		 * message to a long string.
-		 * 
-		 * Therefore the update is put into a new Thread to keep the gui 
-		 * responsive.
-		 * 
-		 * Additional updates are prevented in the meantime. In the worst case
-		 * this could lead to an StackOverflorError, if the method gets 
-		 * repeatedly called before it can complete.
-		 * 
-		 */
-		if (updateInProgress) {
+	/**
+	 * Show the report of another test. Must be called on the event dispatch
+	 * thread.
+	 */
+	public void setData(final GuiReportPanelData reportData) {
+		
+		if (reportData == null || reportData == messageModel.getData()) {
+			publish();
 			return;
 		}
 		
-		Thread t = new Thread() {
-			
-			public void run() {
-				
-				testName        .setText (reportData.getTestName());
-				description     .setText (reportData.getDescription());
-				speciesName     .setText (reportData.getSpeciesName());
-				teamResponsible .setText (reportData.getTeamResponsible());
-				
-				String msg = reportData.getMessage();
-				
-				message.setText (msg);
-				
-				if (!messageFieldHasFocus) {
-					message.setCaretPosition(msg.length());
-				}
-				
-				updateInProgress = false;				
-			}
-		};
-		t.setName("Updating data in reporter tab.");
-		updateInProgress = true;
-		t.start();
+		testName        .setText (reportData.getTestName());
+		description     .setText (reportData.getDescription());
+		speciesName     .setText (reportData.getSpeciesName());
+		teamResponsible .setText (reportData.getTeamResponsible());
 		
+		messageModel.setData(reportData);
+		scrollToEnd();
+	}
+	
+	/**
+	 * Show any lines added to the report since it was last updated. Must be 
+	 * called on the event dispatch thread.
+	 */
+	public void publish() {
+		
+		if (messageModel.publish()) {
+			scrollToEnd();
+		}
+	}
+	
+	protected void scrollToEnd() {
+		
+		if (!messageFieldHasFocus && messageModel.getSize() > 0) {
+			message.ensureIndexIsVisible(messageModel.getSize() - 1);
+		}
 	}
 	
 	@Override
 	public void actionPerformed(ActionEvent arg0) {
 
-		if (arg0.paramString().equals(copy_selected_text_action)) {
+		if (arg0.getActionCommand().equals(copy_selected_text_action)) {
 			
-			String selection = message.getSelectedText();
-			StringSelection data = new StringSelection(selection);
+			StringBuilder selection = new StringBuilder();
+			for (String line : message.getSelectedValuesList()) {
+				selection.append(line).append('\n');
+			}
+			StringSelection data = new StringSelection(selection.toString());
 			Clipboard clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
 			clipboard.setContents(data, data);
 		}
@@ -20,11 +20,21 @@ package org.ensembl.healthcheck.eg_gui;
 import java.awt.BorderLayout;
 import java.io.PrintStream;
 import java.lang.Thread.UncaughtExceptionHandler;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.JComponent;
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 
 import org.ensembl.healthcheck.DatabaseRegistry;
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
@@ -38,7 +48,9 @@ import org.ensembl.healthcheck.testcase.MultiDatabaseTestCase;
 import org.ensembl.healthcheck.testcase.OrderedDatabaseTestCase;
 import org.ensembl.healthcheck.testcase.PerlScriptConfig;
 import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
+import org.ensembl.healthcheck.util.AsyncHandler;
 import org.ensembl.healthcheck.util.ConnectionPool;
+import org.ensembl.healthcheck.util.ReferenceDataCache;
 
 import java.sql.Connection;
 
@@ -47,6 +59,8 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class GuiTestRunner {
+	
+	static final Logger logger = Logger.getLogger("HealthCheckLogger");
 
 	/**
 	 * <p>
@@ -79,11 +93,25 @@ public class GuiTestRunner {
 		return logger;
 	}
 
+    /**
+     * Number of databases tested at the same time, if no more than this 
+     * many have been selected.
+     */
+    public static final int DEFAULT_THREADS = 4;
+
     /**
      * <p>
      * 	Run all the tests in a list.
      * </p>
      * 
+     * <p>
+     * 	Single database tests are run on each database by a task of its own, 
+     * so several databases are tested at the same time. Each database is 
+     * only ever used by one thread, which lets the tests share the pooled 
+     * connection to it. Multi database tests need all databases, so they are
+     * run afterwards, one after the other.
+     * </p>
+     * 
      * @param tests
      * @param databases
      * @param testProgressDialog
@@ -101,256 +129,207 @@ public class GuiTestRunner {
     		final PerlScriptConfig psc,
     		final GuiLogHandler guiLogHandler
     ) {
+    	
+    	final TestProgressModel progress = new TestProgressModel();
 
-        // Tests are run in a separate thread
+        // Tests are run by a pool of threads, coordinated by this one.
         //
         Thread t = new Thread() {
 
         	public void run() {
         		
-        		PrintStream stderrSaved = System.err;
-
-        		testProgressDialog.reset();
-            	testProgressDialog.setVisible(true);
-
-                int totalTestsToRun = tests.size() * databases.length;
-
-                testProgressDialog.setMaximum(totalTestsToRun);
+        		final PrintStream stderrSaved = System.err;
+        		
+				// Create a logger with this handler. Messages are passed to 
+				// the GUI on a thread of their own, so tests do not wait for
+				// it.
+				final AsyncHandler asyncLogHandler = guiLogHandler.createAsyncHandler();
+				final Logger guiLogger = createGuiLogger(asyncLogHandler);
 
-                int testsRun = 0;
-                
-                // for each test, if it's a single database test we run it against each
-                // selected database in turn
-                // for multi-database tests, we create a new DatabaseRegistry containing
-                // the selected tests and use that
-                //
-                for (Class<? extends EnsTestCase> currentTest : tests) {
-                	
-                	// If there was an interrupt request for this thread, no
-                	// more tests are executed.
-                	//
-                	if (isInterrupted()) {
-                		break;
-                	}
+				// Inject into the testcases. The logger property is static. 
+				// It should be set before instantiation in case something is 
+				// done with the logger in the constructor. (As in 
+				// AbstractPerlModuleBasedTestCase)
+				//
+				EnsTestCase.setLogger(guiLogger);
+				
+				// Stack traces are written to stderr by tests. Stderr is 
+				// redirected to the logger, which attributes them to the test
+				// running on the thread writing them.
+				//
+				System.setErr(new ReporterPrintStream(guiLogger, Level.SEVERE, null));
+				
+				final List<Class<? extends EnsTestCase>> singleDatabaseTests = new ArrayList<Class<? extends EnsTestCase>>();
+				final List<Class<? extends EnsTestCase>> multiDatabaseTests  = new ArrayList<Class<? extends EnsTestCase>>();
+				
+				for (Class<? extends EnsTestCase> currentTest : tests) {
 					
-					// Create a logger with this handler
-					Logger guiLogger   = createGuiLogger(guiLogHandler);
-
-					// Inject into the current testcase. The logger property 
-					// is static. It should be set before instantiation in
-					// case something is done with the logger in the 
-					// constructor. (As in AbstractPerlModuleBasedTestCase)
-					//
-					EnsTestCase.setLogger(guiLogger);
-                	
-                    EnsTestCase testCase = null;
-					try {
-						testCase = currentTest.newInstance();
-					} 
-					catch (InstantiationException e) { throw new RuntimeException(e); } 
-					catch (IllegalAccessException e) {
-						e.printStackTrace();
-						throw new RuntimeException(e); 
+					if (SingleDatabaseTestCase.class.isAssignableFrom(currentTest)) {
+						singleDatabaseTests.add(currentTest);
+					} else if (MultiDatabaseTestCase.class.isAssignableFrom(currentTest)) {
+						multiDatabaseTests.add(currentTest);
+					} else if (OrderedDatabaseTestCase.class.isAssignableFrom(currentTest)) {
+						SwingUtilities.invokeLater(new Runnable() {
+							@Override public void run() {
+		                    	JOptionPane.showMessageDialog(
+		                    		testProgressDialog, 
+		                    		"Functionality for running OrderedDatabaseTestCases has not been implemented!", 
+		                    		"Error",
+		                            JOptionPane.ERROR_MESSAGE
+		                         );
+							}
+						});
 					}
+				}
+				
+				// The databases may have changed since the last run.
+				ReferenceDataCache.getInstance().clear();
+				for (DatabaseRegistryEntry currentDbre : databases) {
+					currentDbre.invalidateCaches();
+					progress.addTests(currentDbre.getName(), singleDatabaseTests.size() + multiDatabaseTests.size());
+				}
+				progress.start();
 
-					// Inject a logger that will forward all logging messages 
-					// to the gui.
-					//
-					Logger savedLogger = testCase.getLogger();
+				SwingUtilities.invokeLater(new Runnable() {
+					@Override public void run() {
+						testProgressDialog.reset();
+						testProgressDialog.setModel(progress);
+						testProgressDialog.setVisible(true);
+					}
+				});
+				
+				ExecutorService executor = Executors.newFixedThreadPool(
+					Math.max(1, Math.min(DEFAULT_THREADS, databases.length)),
+					new ThreadFactory() {
+						private final AtomicInteger count = new AtomicInteger();
+						@Override public Thread newThread(Runnable r) {
+							Thread thread = new Thread(r, "GuiTestRunner-" + count.incrementAndGet());
+							thread.setDaemon(true);
+							return thread;
+						}
+					}
+				);
+				
+				boolean interrupted = false;
+				
+				try {
+					if (!singleDatabaseTests.isEmpty()) {
+						
+						List<Future<?>> tasks = new ArrayList<Future<?>>();
+						
+						for (final DatabaseRegistryEntry currentDbre : databases) {
+							
+							Future<?> task = executor.submit(new Runnable() {
+								@Override public void run() {
+									
+									for (Class<? extends EnsTestCase> currentTest : singleDatabaseTests) {
+										
+										if (progress.isCancelled() || Thread.currentThread().isInterrupted()) {
+											return;
+										}
+										
+										SingleDatabaseTestCase testCase = 
+											(SingleDatabaseTestCase) createTestCase(currentTest, PERL5LIB, psc);
+										
+										progress.setNote(testCase.getShortTestName() + ": " + currentDbre.getName());
+										
+										// Tell the guiloghandler to associate all log 
+										// messages from this thread with the current 
+										// testcase.
+										//
+										guiLogHandler.setEnsTestCase(testCase);
+										guiLogHandler.setCurrentEnsTestCase(testCase);
+										
+										try {
+											runSingleDatabaseTest(testCase, currentDbre, stderrSaved);
+										} finally {
+											guiLogHandler.setCurrentEnsTestCase(null);
+											progress.testsFinished(currentDbre.getName(), 1);
+										}
+									}
+								}
+							});
+							progress.addTask(task);
+							tasks.add(task);
+						}
+						
+						for (Future<?> task : tasks) {
+							try {
+								task.get();
+							} catch (CancellationException e) {
+								// Cancelled before it started, nothing to wait for.
+							} catch (ExecutionException e) {
+								logger.log(Level.SEVERE, "Running tests failed: " + e.getCause().getMessage(), e.getCause());
+							}
+						}
+					}
 					
-					// Tell the guiloghandler to associate all log messages 
-					// with the current testcase.
+					// A cancelled task may still be finishing the test it had
+					// started.
 					//
-					guiLogHandler.setEnsTestCase(testCase);
+					executor.shutdown();
+					executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
 					
-					// System properties are set by the GUI. This prevents
-					// EnsTestCase.importSchema from overwriting settings
-					// by the user with the defaults from the configuration
-					// file.
-					//
-					testCase.setSetSystemProperties(false);
+	                // For multi-database tests, we create a new 
+					// DatabaseRegistry containing the selected databases and 
+					// use that.
+	                //
+					for (Class<? extends EnsTestCase> currentTest : multiDatabaseTests) {
+						
+						if (progress.isCancelled() || isInterrupted()) {
+							break;
+						}
+						
+						MultiDatabaseTestCase testCase = 
+							(MultiDatabaseTestCase) createTestCase(currentTest, PERL5LIB, psc);
+						
+						guiLogHandler.setEnsTestCase(testCase);
+						guiLogHandler.setCurrentEnsTestCase(testCase);
+						
+						try {
+							runMultiDatabaseTest(testCase, databases, progress);
+						} finally {
+							guiLogHandler.setCurrentEnsTestCase(null);
+							for (DatabaseRegistryEntry currentDbre : databases) {
+								progress.testsFinished(currentDbre.getName(), 1);
+							}
+						}
+					}
 					
-					// Stack traces are written to stderr by tests. Stderr is 
-					// redirected to the logger.
-					//
-					System.setErr(new ReporterPrintStream(guiLogger, Level.SEVERE, testCase));
+				} catch (InterruptedException e) {
 					
-					// If PERL5LIB parameter has been set and this is a perl 
-					// based test case, then set the PERL5LIB attribute.
+					// The window was closed, stop as soon as possible.
 					//
-                    if (testCase instanceof AbstractPerlBasedTestCase) {
-                    	
-                    	AbstractPerlBasedTestCase at = (AbstractPerlBasedTestCase) testCase; 
-                    	
-                    	if (PERL5LIB != null) {                    	
-                    		at.setPERL5LIB(PERL5LIB);                    	
-                    	}
-                    	
-                    	if (psc != null) {
-                    		at.setConfig(psc);
-                    	}
-                    }
-
-                    boolean passed = false;
-                    
-                    if (testCase instanceof SingleDatabaseTestCase) {
-
-                        for (DatabaseRegistryEntry currentDbre : databases) {
-                        	
-                            String message = testCase.getShortTestName() + ": " + currentDbre.getName();
-                            
-                            ReportManager.startTestCase(testCase, currentDbre);
-                            
-                            testProgressDialog.setNote(message);
-                            
-                            testCase.types();                            
-                            
-                            try {
-                            	passed = ((SingleDatabaseTestCase) testCase).run(currentDbre);
-                            }
-                            catch (Exception e) {
-                            	
-                            	ReportManager.report(
-                            			testCase, 
-                            			currentDbre.getConnection(), 
-                            			ReportLine.PROBLEM,
-                            			testCase.getShortTestName() + " threw an exception:"
-                            			+ e.getClass().getCanonicalName() + "\n\n"
-                            			+ stackTraceToString(e.getStackTrace()) + "\n\n" 
-                            			+ e.getMessage()
-                            	);
-                            }
-                            catch (java.lang.Error e) {
-                            	
-                            	String errorMsg = testCase.getShortTestName() + " threw a java error:"
-                            			+ e.getClass().getCanonicalName() + "\n\n"
-                            			+ stackTraceToString(e.getStackTrace()) + "\n\n" 
-                            			+ e.getMessage();
-                            	
-                            	System.err.println(errorMsg);
-                            	System.out.println(errorMsg);
-                            	stderrSaved.println(errorMsg);
-                            	
-                            	ReportManager.report(
-                            			testCase, 
-                            			currentDbre.getConnection(), 
-                            			ReportLine.PROBLEM,
-                            			errorMsg
-                            	);
-                            	
-                            }
-                            // If a test has not reported anything to the 
-                            // report manager, there will not be any report. 
-                            // The user may think that the test was not run.
-                            // So in this case a standard line is generated.
-                            //
-                            boolean testHasReportedSomething = ReportManager.getAllReportsByTestCase().containsKey(testCase.getTestName()); 
-                            
-                            if (!testHasReportedSomething) { 
-	                            if (passed) {
-	                            	ReportManager.report(
-	                            			testCase, 
-	                            			currentDbre.getConnection(), 
-	                            			ReportLine.INFO,
-	                            			testCase.getShortTestName() + " did not produce any output, but reported that the database has passed."
-	                            	);
-	                            } else {
-	                            	ReportManager.report(
-	                            			testCase, 
-	                            			currentDbre.getConnection(), 
-	                            			ReportLine.PROBLEM,
-	                            			testCase.getShortTestName() + " did not produce any output, but reported that the database has failed."
-	                            	);
-	                            }
-                            }
-                            
-                            ReportManager.finishTestCase(testCase, passed, currentDbre);
-                            
-                            testsRun += 1;
-                            
-                            testProgressDialog.setProgress(testsRun);
-                            testProgressDialog.repaint();
-                        }
-
-                    } else if (testCase instanceof MultiDatabaseTestCase) {
-
-                        DatabaseRegistry dbr = new DatabaseRegistry(databases);
-                        
-                        ReportManager.startTestCase(testCase, null);
-                        
-                        String message = testCase.getShortTestName() + " ( " + dbr.getEntryCount() + " databases)";
-                        
-                        testProgressDialog.setNote(message);
-                        
-                        testCase.types();
-                                              
-                        try {
-                        	passed = ((MultiDatabaseTestCase) testCase).run(dbr);
-	                    }
-	                    catch (Exception e) {
-	                    	
-	                    	ReportManager.report(
-	                    			testCase, 
-	                    			(Connection) null, 
-	                    			ReportLine.PROBLEM,
-	                    			testCase.getShortTestName() + " threw an exception:"
-	                    			+ e.getClass().getCanonicalName() + "\n\n"
-	                    			+ stackTraceToString(e.getStackTrace()) + "\n\n" 
-	                    			+ e.getMessage()
-	                    	);
-	                    }
-
-                        ReportManager.finishTestCase(testCase, passed, null);
-                        
-                        // If a test has not reported anything to the 
-                        // report manager, there will not be any report. 
-                        // The user may think that the test was not run.
-                        // So in this case a standard line is generated.
-                        //
-                        boolean testHasReportedSomething = ReportManager.getAllReportsByTestCase().containsKey(testCase.getTestName()); 
-                        
-                        if (passed && !testHasReportedSomething) {
-                        	ReportManager.report(
-                        			testCase, 
-                        			dbr.getAll()[0].getConnection(), 
-                        			ReportLine.INFO,
-                        			testCase.getShortTestName() + " did not produce any output, but reported that the database has passed."
-                        	);
-                        }
-
-                        testsRun += dbr.getEntryCount();
-                        
-                        testProgressDialog.setProgress(testsRun);
-                        testProgressDialog.repaint();
-
-                    } else if (testCase instanceof OrderedDatabaseTestCase) {
-                    	
-                    	JOptionPane.showMessageDialog(
-                    		testProgressDialog, 
-                    		"Functionality for running OrderedDatabaseTestCases has not been implemented!", 
-                    		"Error",
-                            JOptionPane.ERROR_MESSAGE
-                         );
-                    }
-                    
-                    // Retore the original logger. Actually unnecessary, 
-                    // because the testcase will not be used anymore.
-                    //
-                    testCase.setLogger(savedLogger);
-                    
-                    // Restore stderr
-                    //
-                    System.setErr(stderrSaved);
-                        
-                    ReportManager.finishTestCase(
-                        	testCase, 
-                        	passed, 
-                        	null
-                        );
-                        
-                }
-                testProgressDialog.setVisible(false);
-                ConnectionPool.closeAll();
+					interrupted = true;
+					progress.cancel();
+					executor.shutdownNow();
+					
+				} finally {
+					
+					executor.shutdown();
+					
+	                // Restore stderr
+	                //
+	                System.setErr(stderrSaved);
+	                
+	                guiLogger.removeHandler(asyncLogHandler);
+	                asyncLogHandler.close();
+	                
+	                progress.setFinished();
+	                
+	                SwingUtilities.invokeLater(new Runnable() {
+	                	@Override public void run() {
+	                		testProgressDialog.setVisible(false);
+	                	}
+	                });
+				}
+				
+				// Tests may still be finishing on the pool, if the run was 
+				// interrupted, so the connections are left to them.
+				//
+				if (!interrupted) {
+					ConnectionPool.closeAll();
+				}
                 
                 // Open in the legacy result window, because it is really 
                 // nice.
@@ -394,6 +373,194 @@ public class GuiTestRunner {
         
         return t;
     }
+    
+    /**
+     * <p>
+     * 	Create an instance of a test, configured to be run from the GUI.
+     * </p>
+     */
+    protected static EnsTestCase createTestCase(
+    		Class<? extends EnsTestCase> currentTest,
+    		String PERL5LIB,
+    		PerlScriptConfig psc
+    ) {
+    	
+        EnsTestCase testCase = null;
+		try {
+			testCase = currentTest.newInstance();
+		} 
+		catch (InstantiationException e) { throw new RuntimeException(e); } 
+		catch (IllegalAccessException e) {
+			e.printStackTrace();
+			throw new RuntimeException(e); 
+		}
+		
+		// System properties are set by the GUI. This prevents
+		// EnsTestCase.importSchema from overwriting settings
+		// by the user with the defaults from the configuration
+		// file.
+		//
+		testCase.setSetSystemProperties(false);
+		
+		// If PERL5LIB parameter has been set and this is a perl 
+		// based test case, then set the PERL5LIB attribute.
+		//
+        if (testCase instanceof AbstractPerlBasedTestCase) {
+        	
+        	AbstractPerlBasedTestCase at = (AbstractPerlBasedTestCase) testCase; 
+        	
+        	if (PERL5LIB != null) {                    	
+        		at.setPERL5LIB(PERL5LIB);                    	
+        	}
+        	
+        	if (psc != null) {
+        		at.setConfig(psc);
+        	}
+        }
+        return testCase;
+    }
+    
+    /**
+     * <p>
+     * 	Run a single database test on one database and report its outcome.
+     * </p>
+     */
+    protected static boolean runSingleDatabaseTest(
+    		SingleDatabaseTestCase testCase,
+    		DatabaseRegistryEntry currentDbre,
+    		PrintStream stderrSaved
+    ) {
+    	
+        boolean passed = false;
+        
+        ReportManager.startTestCase(testCase, currentDbre);
+        
+        testCase.types();                            
+        
+        try {
+        	passed = testCase.run(currentDbre);
+        }
+        catch (Exception e) {
+        	
+        	ReportManager.report(
+        			testCase, 
+        			currentDbre.getConnection(), 
+        			ReportLine.PROBLEM,
+        			testCase.getShortTestName() + " threw an exception:"
+        			+ e.getClass().getCanonicalName() + "\n\n"
+        			+ stackTraceToString(e.getStackTrace()) + "\n\n" 
+        			+ e.getMessage()
+        	);
+        }
+        catch (java.lang.Error e) {
+        	
+        	String errorMsg = testCase.getShortTestName() + " threw a java error:"
+        			+ e.getClass().getCanonicalName() + "\n\n"
+        			+ stackTraceToString(e.getStackTrace()) + "\n\n" 
+        			+ e.getMessage();
+        	
+        	System.err.println(errorMsg);
+        	System.out.println(errorMsg);
+        	stderrSaved.println(errorMsg);
+        	
+        	ReportManager.report(
+        			testCase, 
+        			currentDbre.getConnection(), 
+        			ReportLine.PROBLEM,
+        			errorMsg
+        	);
+        	
+        }
+        // If a test has not reported anything to the 
+        // report manager, there will not be any report. 
+        // The user may think that the test was not run.
+        // So in this case a standard line is generated.
+        //
+        boolean testHasReportedSomething = !ReportManager.getReports(testCase.getTestName(), currentDbre.getName()).isEmpty(); 
+        
+        if (!testHasReportedSomething) { 
+            if (passed) {
+            	ReportManager.report(
+            			testCase, 
+            			currentDbre.getConnection(), 
+            			ReportLine.INFO,
+            			testCase.getShortTestName() + " did not produce any output, but reported that the database has passed."
+            	);
+            } else {
+            	ReportManager.report(
+            			testCase, 
+            			currentDbre.getConnection(), 
+            			ReportLine.PROBLEM,
+            			testCase.getShortTestName() + " did not produce any output, but reported that the database has failed."
+            	);
+            }
+        }
+        
+        ReportManager.finishTestCase(testCase, passed, currentDbre);
+        
+        return passed;
+    }
+    
+    /**
+     * <p>
+     * 	Run a multi database test on all databases and report its outcome.
+     * </p>
+     */
+    protected static boolean runMultiDatabaseTest(
+    		MultiDatabaseTestCase testCase,
+    		DatabaseRegistryEntry[] databases,
+    		TestProgressModel progress
+    ) {
+    	
+        boolean passed = false;
+    	
+        DatabaseRegistry dbr = new DatabaseRegistry(databases);
+        
+        ReportManager.startTestCase(testCase, null);
+        
+        progress.setNote(testCase.getShortTestName() + " ( " + dbr.getEntryCount() + " databases)");
+        
+        testCase.types();
+                              
+        try {
+        	passed = testCase.run(dbr);
+        }
+        catch (Exception e) {
+        	
+        	ReportManager.report(
+        			testCase, 
+        			(Connection) null, 
+        			ReportLine.PROBLEM,
+        			testCase.getShortTestName() + " threw an exception:"
+        			+ e.getClass().getCanonicalName() + "\n\n"
+        			+ stackTraceToString(e.getStackTrace()) + "\n\n" 
+        			+ e.getMessage()
+        	);
+        }
+
+        // If a test has not reported anything to the 
+        // report manager, there will not be any report. 
+        // The user may think that the test was not run.
+        // So in this case a standard line is generated.
+        //
+        boolean testHasReportedSomething = false;
+        for (DatabaseRegistryEntry dbre : dbr.getAll()) {
+        	testHasReportedSomething |= !ReportManager.getReports(testCase.getTestName(), dbre.getName()).isEmpty();
+        }
+        
+        if (passed && !testHasReportedSomething) {
+        	ReportManager.report(
+        			testCase, 
+        			dbr.getAll()[0].getConnection(), 
+        			ReportLine.INFO,
+        			testCase.getShortTestName() + " did not produce any output, but reported that the database has passed."
+        	);
+        }
+        
+        ReportManager.finishTestCase(testCase, passed, null);
+        
+        return passed;
+    }
 
 	protected static String stackTraceToString(StackTraceElement[] stackTraceElement) {
 		
@@ -0,0 +1,91 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.eg_gui;
+
+import javax.swing.AbstractListModel;
+
+/**
+ * <p>
+ * 	List model showing the lines of a {@link GuiReportPanelData}, so that a
+ * JList only asks for the lines it displays.
+ * </p>
+ * 
+ * <p>
+ * 	The data grows on other threads, but the size seen by the list only
+ * changes when {@link #publish()} is called on the event dispatch thread,
+ * which adds all the lines since the last call in one event.
+ * </p>
+ */
+class ReportLineListModel extends AbstractListModel<String> {
+
+	private static final long serialVersionUID = 1L;
+
+	protected GuiReportPanelData data;
+
+	protected int size;
+
+	/**
+	 * Show the lines of other data. Must be called on the event dispatch
+	 * thread.
+	 */
+	public void setData(GuiReportPanelData data) {
+
+		int oldSize = size;
+		this.data = data;
+		size = 0;
+		if (oldSize > 0) {
+			fireIntervalRemoved(this, 0, oldSize - 1);
+		}
+		publish();
+	}
+
+	public GuiReportPanelData getData() {
+		return data;
+	}
+
+	/**
+	 * Make the lines added to the data since the last call visible. Must be
+	 * called on the event dispatch thread.
+	 * 
+	 * @return true if there were new lines
+	 */
+	public boolean publish() {
+
+		if (data == null) {
+			return false;
+		}
+		int newSize = data.getLineCount();
+		if (newSize <= size) {
+			return false;
+		}
+		int oldSize = size;
+		size = newSize;
+		fireIntervalAdded(this, oldSize, newSize - 1);
+		return true;
+	}
+
+	@Override
+	public int getSize() {
+		return size;
+	}
+
+	@Override
+	public String getElementAt(int index) {
+		return data.getLine(index);
+	}
+}
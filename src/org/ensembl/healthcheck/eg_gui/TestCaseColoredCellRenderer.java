@@ -20,6 +20,7 @@ package org.ensembl.healthcheck.eg_gui;
 import java.awt.Color;
 import java.awt.Component;
 import java.awt.Font;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -37,7 +38,7 @@ public class TestCaseColoredCellRenderer extends TestCaseCellRenderer {
 
 	public TestCaseColoredCellRenderer() {
 		super();
-		colorForItems  = new HashMap<Class<? extends EnsTestCase>, Boolean>();
+		colorForItems  = Collections.synchronizedMap(new HashMap<Class<? extends EnsTestCase>, Boolean>());
 	}
 	
 	public void setOutcome(Class<? extends EnsTestCase> item, Boolean success) {	
@@ -45,6 +46,20 @@ public class TestCaseColoredCellRenderer extends TestCaseCellRenderer {
 		colorForItems.put(item, success);
 	}
 	
+	/**
+	 * Record the outcome of a test on one database. When a test runs on 
+	 * several databases, possibly at the same time, a failure on any of them
+	 * is not overwritten by a later success.
+	 */
+	public void addOutcome(Class<? extends EnsTestCase> item, boolean success) {
+		
+		synchronized (colorForItems) {
+			if (!Boolean.FALSE.equals(colorForItems.get(item))) {
+				colorForItems.put(item, success);
+			}
+		}
+	}
+	
 	public JComponent getListCellRendererComponent(
 	        JList list,
 	        Object value,
@@ -24,6 +24,10 @@ import java.awt.Font;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.WindowEvent;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 
 import javax.swing.border.Border;
 import javax.swing.Box;
@@ -34,30 +38,60 @@ import javax.swing.JDialog;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JProgressBar;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
 
 public class TestProgressDialog extends JPanel implements ActionListener {
 
     private JProgressBar progressBar;
     private JLabel       noteLabel;
     private JButton      cancelButton;
+    private JLabel       rateLabel;
     
     /**
      * If this is set, then the thread will be stopped using the interrupt
      * method, when this window closes.
      */
     protected Thread Runner;
+    
+    /**
+     * If this is set, the dialog shows its progress, and cancelling cancels
+     * the tests which have not started yet.
+     */
+    protected TestProgressModel model;
+    
+    /**
+     * Polls the model on the event dispatch thread while a run is going on.
+     */
+    protected final Timer refreshTimer;
+    
+    protected final DatabaseProgressTableModel databaseProgress;
+    
+    /**
+     * How often the progress shown is brought up to date.
+     */
+    protected static final int REFRESH_INTERVAL_MILLIS = 500;
 
 	@Override
 	public void actionPerformed(ActionEvent arg0) {
 
 		if (arg0.getSource() == cancelButton) {
 		
-			if (Runner != null) {
+			if (model != null) {
+				model.cancel();
+				cancelButton.setEnabled(false);
+				noteLabel.setText("Cancelled, waiting for the tests already running to finish.");
+			} else if (Runner != null) {
 				Runner.interrupt();
 				cancelButton.setEnabled(false);
 				noteLabel.setText("Test is being cancelled.");
 			}
 		}
+		if (arg0.getSource() == refreshTimer) {
+			refresh();
+		}
 	}
 
     public Thread getRunner() {
@@ -79,12 +113,25 @@ public class TestProgressDialog extends JPanel implements ActionListener {
         progressBar  = new JProgressBar(min, max);
         cancelButton = new JButton("Cancel");
         
+        rateLabel    = new JLabel(" ");
+        
+        databaseProgress = new DatabaseProgressTableModel();
+        JTable databaseTable = new JTable(databaseProgress);
+        JScrollPane databaseScrollPane = new JScrollPane(databaseTable);
+        databaseScrollPane.setPreferredSize(new Dimension(400, 100));
+        
         cancelButton.addActionListener(this);
+        
+        refreshTimer = new Timer(REFRESH_INTERVAL_MILLIS, this);
 
         this.add(noteLabel);
         this.add(Box.createVerticalStrut(Constants.DEFAULT_VERTICAL_COMPONENT_SPACING));
         this.add(progressBar);
         this.add(Box.createVerticalStrut(Constants.DEFAULT_VERTICAL_COMPONENT_SPACING));
+        this.add(rateLabel);
+        this.add(Box.createVerticalStrut(Constants.DEFAULT_VERTICAL_COMPONENT_SPACING));
+        this.add(databaseScrollPane);
+        this.add(Box.createVerticalStrut(Constants.DEFAULT_VERTICAL_COMPONENT_SPACING));
         this.add(cancelButton);
 
     }
@@ -93,6 +140,55 @@ public class TestProgressDialog extends JPanel implements ActionListener {
 		
 		progressBar.setValue(progressBar.getMinimum());
 		noteLabel.setText("");
+		rateLabel.setText(" ");
+		cancelButton.setEnabled(true);
+	}
+	
+	/**
+	 * Show the progress of a run, until it has finished. Must be called on
+	 * the event dispatch thread.
+	 */
+	public void setModel(TestProgressModel model) {
+		
+		this.model = model;
+		refresh();
+		refreshTimer.start();
+	}
+	
+	/**
+	 * Bring the progress bar, rate and database table up to date with the 
+	 * model.
+	 */
+	protected void refresh() {
+		
+		if (model == null) {
+			return;
+		}
+		
+		progressBar.setMaximum(model.getTotal());
+		progressBar.setValue(model.getDone());
+		
+		if (!model.isCancelled()) {
+			noteLabel.setText(model.getNote());
+		}
+		
+		long remaining = model.getEstimatedTimeRemaining();
+		rateLabel.setText(
+			String.format("%d of %d done, %.1f per minute", model.getDone(), model.getTotal(), model.getThroughput())
+			+ (remaining < 0 ? "" : ", about " + formatDuration(remaining) + " left")
+		);
+		
+		databaseProgress.setProgress(model.getProgressByDatabase());
+		
+		if (model.isFinished()) {
+			refreshTimer.stop();
+		}
+	}
+	
+	protected static String formatDuration(long millis) {
+		
+		long seconds = millis / 1000;
+		return String.format("%d:%02d:%02d", seconds / 3600, (seconds / 60) % 60, seconds % 60);
 	}
 	
     public void setMaximum(int max) {
@@ -122,3 +218,52 @@ public class TestProgressDialog extends JPanel implements ActionListener {
     }
 
 }
+
+/**
+ * Table of how many tests have finished on each database.
+ */
+class DatabaseProgressTableModel extends AbstractTableModel {
+
+	private static final long serialVersionUID = 1L;
+
+	protected static final String[] COLUMNS = { "Database", "Finished", "Tests" };
+
+	protected List<String> databases = new ArrayList<String>();
+
+	protected List<int[]> progress = new ArrayList<int[]>();
+
+	public void setProgress(Map<String, int[]> progressByDatabase) {
+
+		boolean sameRows = progressByDatabase.keySet().equals(new HashSet<String>(databases));
+		databases = new ArrayList<String>(progressByDatabase.keySet());
+		progress  = new ArrayList<int[]>(progressByDatabase.values());
+		if (sameRows) {
+			fireTableRowsUpdated(0, databases.size() - 1);
+		} else {
+			fireTableDataChanged();
+		}
+	}
+
+	@Override
+	public String getColumnName(int column) {
+		return COLUMNS[column];
+	}
+
+	@Override
+	public int getColumnCount() {
+		return COLUMNS.length;
+	}
+
+	@Override
+	public int getRowCount() {
+		return databases.size();
+	}
+
+	@Override
+	public Object getValueAt(int row, int column) {
+		if (column == 0) {
+			return databases.get(row);
+		}
+		return progress.get(row)[column - 1];
+	}
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.eg_gui;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * <p>
+ * 	Progress of a run of tests started from the GUI: how many tests have
+ * finished on each database and overall, how fast they are finishing and
+ * when the run might end. Updated by the threads running the tests and read
+ * by the {@link TestProgressDialog} on the event dispatch thread, so all
+ * access is synchronized.
+ * </p>
+ * 
+ * <p>
+ * 	Cancelling the run cancels the tasks which haven't started yet. Tests
+ * which are already running are allowed to finish.
+ * </p>
+ */
+public class TestProgressModel {
+
+	protected final Map<String, int[]> progressByDatabase = new LinkedHashMap<String, int[]>();
+
+	protected final List<Future<?>> tasks = new ArrayList<Future<?>>();
+
+	protected int total;
+
+	protected int done;
+
+	protected long startTime;
+
+	protected String note = "";
+
+	protected boolean cancelled;
+
+	protected boolean finished;
+
+	/**
+	 * Add to the number of tests which will be run on a database.
+	 */
+	public synchronized void addTests(String database, int count) {
+
+		progress(database)[1] += count;
+		total += count;
+	}
+
+	/**
+	 * Record that a number of tests have finished on a database.
+	 */
+	public synchronized void testsFinished(String database, int count) {
+
+		progress(database)[0] += count;
+		done += count;
+	}
+
+	protected int[] progress(String database) {
+
+		int[] progress = progressByDatabase.get(database);
+		if (progress == null) {
+			progress = new int[2];
+			progressByDatabase.put(database, progress);
+		}
+		return progress;
+	}
+
+	/**
+	 * Start timing the run.
+	 */
+	public synchronized void start() {
+		startTime = System.currentTimeMillis();
+	}
+
+	public synchronized void setFinished() {
+		finished = true;
+	}
+
+	public synchronized boolean isFinished() {
+		return finished;
+	}
+
+	/**
+	 * Set what is being done at the moment, e.g. the last test started.
+	 */
+	public synchronized void setNote(String note) {
+		this.note = note;
+	}
+
+	public synchronized String getNote() {
+		return note;
+	}
+
+	public synchronized int getTotal() {
+		return total;
+	}
+
+	public synchronized int getDone() {
+		return done;
+	}
+
+	/**
+	 * @return the databases in the order they were added, each with the number
+	 *         of tests finished [0] and to be run [1] on it
+	 */
+	public synchronized Map<String, int[]> getProgressByDatabase() {
+
+		Map<String, int[]> copy = new LinkedHashMap<String, int[]>();
+		for (Map.Entry<String, int[]> entry : progressByDatabase.entrySet()) {
+			copy.put(entry.getKey(), entry.getValue().clone());
+		}
+		return copy;
+	}
+
+	/**
+	 * @return tests finished per minute since the run started
+	 */
+	public synchronized double getThroughput() {
+
+		long elapsed = System.currentTimeMillis() - startTime;
+		if (startTime == 0 || elapsed <= 0) {
+			return 0;
+		}
+		return done * 60000.0 / elapsed;
+	}
+
+	/**
+	 * @return estimated milliseconds until the run finishes at the current
+	 *         rate, or -1 if nothing has finished yet
+	 */
+	public synchronized long getEstimatedTimeRemaining() {
+
+		if (done == 0 || startTime == 0) {
+			return -1;
+		}
+		long elapsed = System.currentTimeMillis() - startTime;
+		return elapsed * (total - done) / done;
+	}
+
+	/**
+	 * Register a task so that it is cancelled with the run. A task added
+	 * after the run was cancelled is cancelled straight away.
+	 */
+	public synchronized void addTask(Future<?> task) {
+
+		tasks.add(task);
+		if (cancelled) {
+			task.cancel(false);
+		}
+	}
+
+	/**
+	 * Cancel the tasks which have not started. Running tests are not
+	 * interrupted.
+	 */
+	public synchronized void cancel() {
+
+		cancelled = true;
+		for (Future<?> task : tasks) {
+			task.cancel(false);
+		}
+	}
+
+	public synchronized boolean isCancelled() {
+		return cancelled;
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.reporter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.ensembl.healthcheck.DatabaseRegistryEntry;
+import org.ensembl.healthcheck.ReportLine;
+import org.ensembl.healthcheck.Reporter;
+import org.ensembl.healthcheck.TestMetadata;
+import org.ensembl.healthcheck.testcase.EnsTestCase;
+import org.ensembl.healthcheck.util.UtilUncheckedException;
+
+import com.google.gson.Gson;
+
+/**
+ * <p>
+ * 	Reporter which writes each report line, and the result of each test on
+ * each database, as soon as it is passed on by the ReportManager, so the
+ * output can be followed while the run goes on. Records are written either
+ * as JSON Lines or as tab separated values with the columns
+ * </p>
+ *
+ * <pre>
+ * record  test  database  level  team  text
+ * </pre>
+ *
+ * <p>
+ * 	where record is <code>report</code> or <code>result</code>. For results
+ * the level is PASSED or FAILED and the text is the failure text of the
+ * test. Tabs, newlines and backslashes in values are escaped.
+ * </p>
+ */
+public class StreamingReporter implements Reporter {
+
+	public static enum Format {
+		JSON, TSV
+	}
+
+	private final Writer out;
+
+	private final Format format;
+
+	private final Gson gson = new Gson();
+
+	private int outputLevel = ReportLine.PROBLEM;
+
+	// tests started and not yet finished; output is flushed when there are none
+	private int running;
+
+	public StreamingReporter(Writer out, Format format) {
+		this.out = out;
+		this.format = format;
+	}
+
+	/**
+	 * @param outputLevel
+	 *          the lowest level of report line to write
+	 */
+	public void setOutputLevel(int outputLevel) {
+		this.outputLevel = outputLevel;
+	}
+
+	public synchronized void startTestCase(EnsTestCase testCase, DatabaseRegistryEntry dbre) {
+		running++;
+	}
+
+	public synchronized void message(ReportLine reportLine) {
+		if (reportLine.getLevel() >= outputLevel) {
+			String team = reportLine.getTeamResponsible() == null ? null : reportLine.getPrintableTeamResponsibleString();
+			write("report", reportLine.getTestCaseName(), reportLine.getDatabaseName(), reportLine.getLevelAsString(), team,
+					reportLine.getMessage());
+		}
+		if (running == 0) {
+			flush();
+		}
+	}
+
+	public synchronized void finishTestCase(EnsTestCase testCase, boolean result, DatabaseRegistryEntry dbre) {
+		running = Math.max(running - 1, 0);
+		TestMetadata metadata = TestMetadata.forTest(testCase);
+		String failureText = result || metadata.getFailureText().length() == 0 ? null : metadata.getFailureText();
+		write("result", metadata.getName(), dbre == null ? null : dbre.getName(), result ? "PASSED" : "FAILED",
+				metadata.getTeamResponsible(), failureText);
+		flush();
+	}
+
+	private void write(String record, String test, String database, String level, String team, String text) {
+		try {
+			if (format == Format.JSON) {
+				Map<String, Object> values = new LinkedHashMap<String, Object>();
+				values.put("record", record);
+				values.put("test", test);
+				values.put("database", database);
+				values.put("level", level);
+				values.put("team", team);
+				values.put("text", text);
+				out.write(gson.toJson(values));
+			} else {
+				out.write(record + "\t" + escape(test) + "\t" + escape(database) + "\t" + level + "\t" + escape(team) + "\t"
+						+ escape(text));
+			}
+			out.write('\n');
+		} catch (IOException e) {
+			throw new UtilUncheckedException("Could not write " + record + " of " + test, e);
+		}
+	}
+
+	private static String escape(String value) {
+		if (value == null) {
+			return "";
+		}
+		return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+	}
+
+	/**
+	 * Write out anything buffered by the underlying writer
+	 */
+	public synchronized void flush() {
+		try {
+			out.flush();
+		} catch (IOException e) {
+			throw new UtilUncheckedException("Could not flush report output", e);
+		}
+	}
+}
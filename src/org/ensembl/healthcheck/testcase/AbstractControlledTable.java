@@ -21,7 +21,6 @@ import java.sql.Connection;
 
 import org.ensembl.healthcheck.testcase.eg_compara.AbstractControlledRows;
 import org.ensembl.healthcheck.util.ChecksumDatabase;
-import org.ensembl.healthcheck.util.SqlTemplate;
 import org.ensembl.healthcheck.util.SqlTemplate.ResultSetCallback;
 
 import java.sql.DatabaseMetaData;
@@ -254,15 +253,21 @@ public abstract class AbstractControlledTable extends AbstractControlledRows {
 		final Connection testDbConn = testDbre.getConnection();
 		final Connection masterconn = masterDbRe.getConnection();
 
-		final SqlTemplate sqlTemplateTestDb        = getSqlTemplate(testDbConn);  
-		
-		int rowCount = sqlTemplateTestDb.queryForDefaultObject(
-			"select count(*) from " + controlledTableToTest,
-			Integer.class
-		);
+		long rowCount = testDbre.getTableStatistics().getRowCount(controlledTableToTest);
 		
 		logger.info("Number of rows in table: " + rowCount);
 		
+		// The rows are paged through with int offsets
+		if (rowCount > Integer.MAX_VALUE) {
+			ReportManager.problem(
+				this,
+				testDbConn,
+				"Table " + controlledTableToTest + " has " + rowCount
+				+ " rows, more than can be checked against the master database."
+			);
+			return false;
+		}
+		
 		final List<String> testTableColumns = getColumnsOfTable(testDbConn, controlledTableToTest);		
 		final List<String> masterColumns    = getColumnsOfTable(masterconn, masterTable);		
 		
@@ -20,13 +20,19 @@ package org.ensembl.healthcheck.testcase.compara;
 
 import java.sql.Connection;
 import java.sql.ResultSet;
-import java.sql.Statement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
 
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.Team;
 import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
 import org.ensembl.healthcheck.util.DBUtils;
+import org.ensembl.healthcheck.util.KeyedRowCounter;
+import org.ensembl.healthcheck.util.SqlTemplate;
 
 /**
  * An EnsEMBL Healthcheck test case that checks that no MT is
@@ -74,30 +80,34 @@ public class CheckGenomicAlignMTs extends SingleDatabaseTestCase {
 				+ " LEFT JOIN genome_db USING (genome_db_id)"
 				+ " LEFT JOIN dnafrag ON (genome_db.genome_db_id = dnafrag.genome_db_id AND dnafrag.name = 'MT')"
 				+ " WHERE (type NOT LIKE 'CACTUS_HAL%') AND (class LIKE 'GenomicAlignTree%' OR class LIKE 'GenomicAlign%multiple%') AND dnafrag.name = 'MT'";
-		try {
-			Statement stmt1 = comparaCon.createStatement();
-			ResultSet rs1 = stmt1.executeQuery(sql1);
-			while (rs1.next()) {
-				String sql2 = "SELECT count(*) FROM genomic_align WHERE method_link_species_set_id = "
-						+ rs1.getInt(3) + " AND dnafrag_id = " + rs1.getInt(4);
-				Statement stmt2 = comparaCon.createStatement();
-				ResultSet rs2 = stmt2.executeQuery(sql2);
-				while (rs2.next()) {
-					if (rs2.getInt(1) == 0) {
-						result = false;
-						ReportManager.problem(
-								this,
-								comparaCon,
-								"The MT chromosome from " + rs1.getString(2)
-										+ " is not present in the "
-										+ rs1.getString(1) + " alignments");
-					}
+
+		// one grouped query for all the MLSS / MT dnafrag pairs rather than
+		// a count on genomic_align for each of them
+		final List<String[]> names = new ArrayList<String[]>();
+		final List<List<Object>> keys = new ArrayList<List<Object>>();
+		DBUtils.getSqlTemplate(comparaCon).execute(sql1, new SqlTemplate.ResultSetCallback<Void>() {
+			@Override
+			public Void process(ResultSet rs1) throws SQLException {
+				while (rs1.next()) {
+					names.add(new String[] { rs1.getString(1), rs1.getString(2) });
+					keys.add(Arrays.<Object> asList(rs1.getInt(3), rs1.getInt(4)));
 				}
+				return null;
+			}
+		});
+
+		Set<List<Object>> missing = new KeyedRowCounter(DBUtils.getSqlTemplate(comparaCon)).findMissing("genomic_align",
+				Arrays.asList("method_link_species_set_id", "dnafrag_id"), keys);
+		for (int i = 0; i < keys.size(); i++) {
+			if (missing.contains(keys.get(i))) {
+				result = false;
+				ReportManager.problem(
+						this,
+						comparaCon,
+						"The MT chromosome from " + names.get(i)[1]
+								+ " is not present in the "
+								+ names.get(i)[0] + " alignments");
 			}
-			rs1.close();
-			stmt1.close();
-		} catch (Exception e) {
-			e.printStackTrace();
 		}
 
 		return result;
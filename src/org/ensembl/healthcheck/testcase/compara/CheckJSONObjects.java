@@ -20,7 +20,8 @@ package org.ensembl.healthcheck.testcase.compara;
 
 import java.sql.Connection;
 import java.sql.ResultSet;
-import java.sql.Statement;
+import java.sql.SQLException;
+import java.util.List;
 
 import com.google.gson.Gson;
 
@@ -28,8 +29,7 @@ import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.Team;
 import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
-import org.ensembl.healthcheck.util.DBUtils;
-import org.ensembl.healthcheck.util.SqlUncheckedException;
+import org.ensembl.healthcheck.util.ChunkedTableScanner;
 
 /**
  * An EnsEMBL Healthcheck test case that checks the validity of JSON
@@ -55,38 +55,36 @@ public class CheckJSONObjects extends SingleDatabaseTestCase {
 		}
 
 		boolean result = true;
-		result &= checkAllJSONs(con);
+		result &= checkAllJSONs(dbre);
 		return result;
 	}
 
-    public boolean checkAllJSONs(Connection con) {
-
-		boolean result = true;
-        Statement stmt = null;
-        ResultSet rs = null;
-		String sql = "SELECT root_id, data_label, UNCOMPRESS(compressed_data) FROM gene_tree_object_store";
-        try {
-            stmt = con.createStatement();
-            rs = stmt.executeQuery(sql);
-
-			while (result && rs.next()) {
-				String json = rs.getString(3);
-				if (!isJSONValid(json)) {
-					ReportManager.problem(this, con, "FAILED JSON not valid for root_id=" + rs.getString(1) + " / data_label=" + rs.getString(2));
-					result = false;
+    public boolean checkAllJSONs(DatabaseRegistryEntry dbre) {
+		final ChunkedTableScanner scanner = new ChunkedTableScanner(dbre, "gene_tree_object_store", "root_id",
+				ChunkedTableScanner.DEFAULT_CHUNK_SIZE / 10, ChunkedTableScanner.DEFAULT_THREADS);
+		String sql = "SELECT root_id, data_label, UNCOMPRESS(compressed_data) FROM gene_tree_object_store WHERE root_id BETWEEN ? AND ?";
+		// Each chunk returns the first invalid object it finds, and stops the
+		// remaining chunks from starting
+		List<String> invalid = scanner.scan(sql, new ChunkedTableScanner.ChunkProcessor<String>() {
+			@Override
+			public String processChunk(ResultSet rs, long lower, long upper) throws SQLException {
+				while (rs.next()) {
+					String json = rs.getString(3);
+					if (!isJSONValid(json)) {
+						scanner.cancel();
+						return "root_id=" + rs.getString(1) + " / data_label=" + rs.getString(2);
+					}
 				}
+				return null;
 			}
-            rs.close();
-            stmt.close();
-        } catch (Exception e) {
-            throw new SqlUncheckedException("Could not execute query", e);
-        } finally {
-            DBUtils.closeQuietly(rs);
-            DBUtils.closeQuietly(stmt);
-        }
-
-        return result;
-
+		});
+		for (String failure : invalid) {
+			if (failure != null) {
+				ReportManager.problem(this, dbre.getConnection(), "FAILED JSON not valid for " + failure);
+				return false;
+			}
+		}
+		return true;
     } // checkAllJSONs 
 
 	public static boolean isJSONValid(String jsonInString) {
@@ -21,12 +21,15 @@ package org.ensembl.healthcheck.testcase.compara;
 import java.sql.Connection;
 import java.util.Arrays;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.Team;
 import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
 import org.ensembl.healthcheck.util.DBUtils;
+import org.ensembl.healthcheck.util.KeyedRowCounter;
 
 /**
  * An EnsEMBL Healthcheck test case that looks for chromosomes
@@ -144,24 +147,23 @@ public class CheckSyntenySanity extends SingleDatabaseTestCase {
 							+ " AND name NOT LIKE '%Un%'"
 							+ " AND name NOT IN ('MT') AND length > 1000000");
 			
+			/**
+			 * counts are the number of synteny regions on each of the
+			 * dnafrags that belong to the method_link_species_set being
+			 * tested in this call of the method, all fetched in one query.
+			 * 
+			 */
+			List<List<Object>> keys = new ArrayList<List<Object>>();
+			for (String dnafrag_id : these_dnafrag_ids) {
+				keys.add(Arrays.<Object> asList(method_link_species_set_id, dnafrag_id));
+			}
+			Map<List<Object>, Long> counts = new KeyedRowCounter(DBUtils.getSqlTemplate(con)).count(
+					"synteny_region JOIN dnafrag_region USING (synteny_region_id)",
+					Arrays.asList("method_link_species_set_id", "dnafrag_id"), keys);
+
 			for (String dnafrag_id : these_dnafrag_ids) {
 				
-				/**
-				 * count is the number of synteny regions that are on the 
-				 * dnafrag tested in this iteration of the loop that belong
-				 * to the method_link_species_set being tested in this call
-				 * of the method.
-				 * 
-				 */
-				int count = DBUtils
-						.getRowCountFast(
-								con,
-								"SELECT count(*) FROM synteny_region "
-										+ " LEFT JOIN dnafrag_region USING (synteny_region_id) WHERE"
-										+ " method_link_species_set_id = "
-										+ method_link_species_set_id
-										+ " AND dnafrag_id = "
-										+ dnafrag_id);
+				long count = counts.get(Arrays.<Object> asList(method_link_species_set_id, dnafrag_id));
 				/*
 				 * If synteny regions were found, this is ok, otherwise check 
 				 * alignments from genomic align blocks.
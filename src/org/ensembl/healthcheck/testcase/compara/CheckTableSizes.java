@@ -21,6 +21,7 @@ package org.ensembl.healthcheck.testcase.compara;
 import java.sql.Connection;
 
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import org.ensembl.healthcheck.DatabaseRegistry;
@@ -97,12 +98,16 @@ public class CheckTableSizes extends AbstractComparaTestCase {
 		Connection con1 = primaryComparaDbre.getConnection();
 		Connection con2 = secondaryComparaDbre.getConnection();
 
+		// exact counts from SELECT COUNT(*), run on several connections at once
+		Map<String, Long> counts1 = primaryComparaDbre.getTableStatistics().getRowCounts(tables1);
+		Map<String, Long> counts2 = secondaryComparaDbre.getTableStatistics().getRowCounts(tables2);
+
 		boolean result = true;
 
 		for (String table : tables2) {
-			int count2 = DBUtils.countRowsInTable(con2, table);
+			long count2 = counts2.get(table);
 			if (tables1.contains(table)) {
-				int count1 = DBUtils.countRowsInTable(con1, table);
+				long count1 = counts1.get(table);
 				if (count1 == 0 && count2 > 0) {
 					result = false;
 					ReportManager.problem( this, con1, String.format("Table %s is now empty but had %,d rows in %s.", table, count2, DBUtils.getShortDatabaseName(con2)));
@@ -125,7 +130,7 @@ public class CheckTableSizes extends AbstractComparaTestCase {
 		for (String table : tables1) {
 			if (! tables2.contains(table)) {
 				result = false;
-				int count1 = DBUtils.countRowsInTable(con1, table);
+				long count1 = counts1.get(table);
 				if (count1 == 0) {
 					ReportManager.problem( this, con1, String.format("Table %s is new (comparing to %s) but empty.", table, DBUtils.getShortDatabaseName(con2)));
 				} else {
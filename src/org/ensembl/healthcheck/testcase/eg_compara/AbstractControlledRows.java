@@ -30,6 +30,7 @@ import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.testcase.AbstractTemplatedTestCase;
 import org.ensembl.healthcheck.testcase.EnsTestCase;
+import org.ensembl.healthcheck.util.ReferenceDataCache;
 import org.ensembl.healthcheck.util.SqlTemplate;
 import org.ensembl.healthcheck.util.SqlTemplate.ResultSetCallback;
 
@@ -499,36 +500,19 @@ abstract public class AbstractControlledRows extends AbstractTemplatedTestCase {
 		
 		String dnaComparaMethodsCommaSep = StringUtils.join(dnaComparaMethods, ", ");
 		
-		// We use "distinct", but if a species is configured for more than one
-		// dna compara method, this will still return more than one row.
+		// The species linked to dna compara methods are the same for every
+		// database tested, so they are read once per run.
 		//
-		String sql = "select distinct genome_db.genome_db_id, genome_db.name, method_link.class "
-				+ "from "
-				+ "	genome_db " 
+		ReferenceDataCache.Snapshot dnaComparaSpecies = ReferenceDataCache.getInstance().getSnapshot(
+				getComparaMasterDatabase(),
+				"genome_db " 
 				+ "	join species_set using (genome_db_id) " 
 				+ "	join method_link_species_set using (species_set_id) " 
-				+ "	join method_link using (method_link_id) "
-				+ "where "
-				+ " genome_db.name='" + speciesName + "' " 
-				+ " and method_link.class in ( "
-				+ dnaComparaMethodsCommaSep
-				+ " ) "; 
+				+ "	join method_link using (method_link_id) ",
+				"distinct genome_db.name",
+				"method_link.class in ( " + dnaComparaMethodsCommaSep + " ) "
+		);
 		
-		List<Integer> dnaMethodsConfigured = masterSqlTemplate.queryForDefaultObjectList(
-				sql, 
-				Integer.class
-				);
-
-		if (dnaMethodsConfigured.size()>=1) {
-			return true; 
-		}
-		if (dnaMethodsConfigured.size()==0) {
-			return false;
-		}
-		throw new RuntimeException(
-			"Unexpected number of rows returned!\n"
-			+ "The sql used was:\n\n"
-			+ sql
-		);		
+		return dnaComparaSpecies.contains("name", speciesName);
 	}
 }
@@ -25,6 +25,8 @@ package org.ensembl.healthcheck.testcase.eg_core;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -32,7 +34,6 @@ import org.apache.commons.lang.StringUtils;
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.util.CollectionUtils;
 import org.ensembl.healthcheck.util.MapRowMapper;
-import org.ensembl.healthcheck.util.SqlTemplate;
 import org.ensembl.healthcheck.util.TestCaseUtils;
 
 /**
@@ -43,10 +44,6 @@ import org.ensembl.healthcheck.util.TestCaseUtils;
  */
 public abstract class AbstractEgMeta extends AbstractEgCoreTestCase {
 
-	protected final static String META_QUERY = "select distinct meta_key from meta where species_id=?";
-
-	protected final static String SPECIES_ID_QUERY = "select distinct(species_id) from meta where species_id>0 order by species_id";
-
 	protected final MapRowMapper<String, List<String>> mapper = new MapRowMapper<String, List<String>>() {
 
 		public void existingObject(List<String> currentValue,
@@ -87,16 +84,19 @@ public abstract class AbstractEgMeta extends AbstractEgCoreTestCase {
 
 	protected boolean runTest(DatabaseRegistryEntry dbre) {
 		boolean passes = true;
-		SqlTemplate template = getTemplate(dbre);
-		for (int speciesId : template.queryForDefaultObjectList(
-				SPECIES_ID_QUERY, Integer.class)) {
-			passes &= testKeys(dbre, speciesId, getKeys(template, speciesId), metaKeys);
+		// read from the meta snapshot rather than querying meta per species
+		List<Integer> speciesIds = new ArrayList<Integer>(dbre.getMeta().getSpeciesIds());
+		Collections.sort(speciesIds);
+		for (int speciesId : speciesIds) {
+			if (speciesId > 0) {
+				passes &= testKeys(dbre, speciesId, getKeys(dbre, speciesId), metaKeys);
+			}
 		}
 		return passes;
 	}
 
-	protected List<String> getKeys(SqlTemplate template, int speciesId) {
-		return template.queryForDefaultObjectList(META_QUERY, String.class, speciesId);
+	protected List<String> getKeys(DatabaseRegistryEntry dbre, int speciesId) {
+		return new ArrayList<String>(dbre.getMeta().getKeys(speciesId));
 	}
 
 	protected abstract boolean testKeys(DatabaseRegistryEntry dbre, int speciesId,
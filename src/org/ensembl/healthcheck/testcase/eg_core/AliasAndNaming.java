@@ -41,7 +41,6 @@ import org.ensembl.healthcheck.util.TestCaseUtils;
  */
 public class AliasAndNaming extends AbstractEgCoreTestCase {
 
-	private final static String META_QUERY = "select meta_value from meta where meta_key=? and species_id=?";
 	private static final Pattern VALID_PRODUCTION_NAME = Pattern
 			.compile("^[0-9a-z_]+$");
 
@@ -64,8 +63,7 @@ public class AliasAndNaming extends AbstractEgCoreTestCase {
 
 	private String getName(DatabaseRegistryEntry dbre, SqlTemplate template,
 			int speciesId, String key) {
-		List<String> sciNames = template.queryForDefaultObjectList(META_QUERY,
-				String.class, key, speciesId);
+		List<String> sciNames = dbre.getMeta().getValues(speciesId, key);
 		if (sciNames.size() != 1) {
 			ReportManager.problem(this, dbre.getConnection(),
 					"Expect exactly one name for key " + key
@@ -80,8 +78,7 @@ public class AliasAndNaming extends AbstractEgCoreTestCase {
 			SqlTemplate template, int speciesId) {
 		boolean passes = true;
 
-		List<String> aliases = template.queryForDefaultObjectList(META_QUERY,
-				String.class, ALIAS, speciesId);
+		List<String> aliases = dbre.getMeta().getValues(speciesId, ALIAS);
 		String sciName = getName(dbre, template, speciesId, SCI_NAME);
 		String binomialName = null;
 		if (dbre.isMultiSpecies()) {
@@ -115,8 +112,8 @@ public class AliasAndNaming extends AbstractEgCoreTestCase {
 			}
 		}
 
-		String productionName = org.ensembl.healthcheck.util.CollectionUtils.getFirstElement(template.queryForDefaultObjectList(META_QUERY,
-				String.class, PRODUCTION_NAME, speciesId),null);
+		String productionName = org.ensembl.healthcheck.util.CollectionUtils.getFirstElement(
+				dbre.getMeta().getValues(speciesId, PRODUCTION_NAME), null);
 		if (StringUtils.isEmpty(productionName)) {
 			passes = false;
 			ReportManager.problem(this, dbre.getConnection(), "Meta value for "
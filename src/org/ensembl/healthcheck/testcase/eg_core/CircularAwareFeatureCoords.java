@@ -18,17 +18,20 @@
 package org.ensembl.healthcheck.testcase.eg_core;
 
 import java.sql.Connection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
+import org.ensembl.healthcheck.CoordinateStatistics;
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.testcase.generic.FeatureCoords;
 import org.ensembl.healthcheck.util.DBUtils;
-import org.ensembl.healthcheck.util.TemplateBuilder;
 
 public class CircularAwareFeatureCoords extends FeatureCoords {
 
-	public final static String START_END_SQL = "SELECT COUNT(*) FROM $tableName$ " + "WHERE seq_region_start > seq_region_end and " + "seq_region_id not in "
-			+ "(select seq_region_id from seq_region_attrib " + "join attrib_type using (attrib_type_id) " + "where code = 'circular_seq' and value=1)";
+	public final static String CIRCULAR_SQL = "select seq_region_id from seq_region_attrib " + "join attrib_type using (attrib_type_id) "
+			+ "where code = 'circular_seq' and value=1";
 
 	public CircularAwareFeatureCoords() {
 	
@@ -40,11 +43,16 @@ public class CircularAwareFeatureCoords extends FeatureCoords {
 	@Override
 	protected boolean checkStartEnd(DatabaseRegistryEntry dbre, String tableName) {
 		Connection con=dbre.getConnection(); 
-		String sql = TemplateBuilder.template(START_END_SQL, "tableName", tableName);
+		Set<Long> circular = new HashSet<Long>(DBUtils.getSqlTemplate(con).queryForDefaultObjectList(CIRCULAR_SQL, Long.class));
 		boolean result = true;
 		// ------------------------
 		logger.info("Checking " + tableName + " for start > end");
-		int rows = DBUtils.getRowCount(con, sql);
+		long rows = 0;
+		for (Map.Entry<Long, CoordinateStatistics.Stats> region : dbre.getCoordinateStatistics().getBySeqRegion(tableName).entrySet()) {
+			if (!circular.contains(region.getKey())) {
+				rows += region.getValue().getStartAfterEnd();
+			}
+		}
 		if (rows > 0) {
 			ReportManager.problem(this, con, rows + " rows in " + tableName + " have seq_region_start > seq_region_end");
 			result = false;
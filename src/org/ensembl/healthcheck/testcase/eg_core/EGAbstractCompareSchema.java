@@ -22,40 +22,45 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.sql.Connection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Pattern;
 
 import org.ensembl.healthcheck.DatabaseRegistry;
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
-import org.ensembl.healthcheck.DatabaseServer;
 import org.ensembl.healthcheck.DatabaseType;
 import org.ensembl.healthcheck.ReportManager;
-import org.ensembl.healthcheck.SystemCommand;
 import org.ensembl.healthcheck.TestRunner;
 import org.ensembl.healthcheck.testcase.MultiDatabaseTestCase;
-import org.ensembl.healthcheck.util.ActionAppendable;
+import org.ensembl.healthcheck.testcase.generic.SchemaDefinition;
+import org.ensembl.healthcheck.testcase.generic.SchemaDefinitionParser;
+import org.ensembl.healthcheck.testcase.generic.SchemaDiff;
 import org.ensembl.healthcheck.util.DBUtils;
+import org.ensembl.healthcheck.util.UtilUncheckedException;
 
-import java.util.regex.Matcher;
 import java.util.*;
 
 
-import java.sql.DriverManager;
-import java.sql.Statement;
-
-
 /**
  * @author mnuhn
  *
  * <p>
- * 	Abstract class from which EGCompareSchema tests can inherit. Uses
- * mysqldiff, which will suggest a patch file, if the schemas differ from one
- * another.
+ * 	Abstract class from which EGCompareSchema tests can inherit. Compares
+ * each database with the master using {@link SchemaDiff}, which will suggest
+ * a patch file, in the same form as mysqldiff, if the schemas differ from
+ * one another.
  * </p>
  */
 public abstract class EGAbstractCompareSchema extends MultiDatabaseTestCase {
 
-	protected final String mysqldiffBin = "mysqldiff";
+	/**
+	 * Number of databases whose schemas are read at the same time
+	 */
+	protected static final int DIFF_THREADS = 4;
 
 	public boolean isDoSchemaVersionCheck() {
 		return doSchemaCompatibilityChecks;
@@ -130,48 +135,62 @@ public abstract class EGAbstractCompareSchema extends MultiDatabaseTestCase {
 	}
 
 	/**
-	 * @param masterCon
 	 * @param checkCon
 	 *
 	 * <p>
 	 * 	Checks, if the schemas that will be compared are compatible with one
 	 * another. In core databases the relevant information will be in the
 	 * schema_type and schema_version entries of the meta table, in variation
-	 * and funcgen schemas there is only the schema_type.
+	 * and funcgen schemas there is only the schema_type. The values for the
+	 * master are read with {@link #getMasterMetaValue(String)}.
 	 * </p>
 	 *
 	 */
 	abstract protected boolean assertSchemaCompatibility(
-			Connection masterCon,
 			Connection checkCon
 	);
 
-	public boolean run(DatabaseRegistry dbr) {
+	/**
+	 * The strategy of the current run, used to look up meta values of the
+	 * master
+	 */
+	private CompareSchemaStrategy compareSchemaStrategy;
 
-		boolean result = true;
-		boolean somethingWasChecked = false;
+	/**
+	 * @param metaKey
+	 *
+	 * <p>
+	 * 	Returns the first value of the meta key in the master database or in
+	 * the inserts of the schema definition file, or an empty string if there
+	 * is none.
+	 * </p>
+	 */
+	protected String getMasterMetaValue(String metaKey) {
+		return compareSchemaStrategy.getMasterMetaValue(metaKey);
+	}
 
-		CompareSchemaStrategy compareSchemaStrategy = createCompareSchemaStrategy(this);
+	public boolean run(DatabaseRegistry dbr) {
 
-		SystemCommand systemCommand = new SystemCommand();
+		compareSchemaStrategy = createCompareSchemaStrategy(this);
 
-		// If mysqldiff can't be found, the test can terminate right away.
-		//
-		if (!systemCommand.checkCanExecute(mysqldiffBin)) {
-
-			ReportManager.problem(this, (Connection) null,
-					"Can't find mysqldiff! "
-					+ this.getShortTestName() + " relies on this program to "
-					+ "compare database schemas.\n"
-					+ "Please ensure it is on your path. If it is not "
-					+ "installed, it should be installable via CPAN with the "
-					+ "command \"cpan MySQL::Diff\"."
-			);
-			result = false;
-			return result;
+		// The temporary schemas and connections of the strategy are released
+		// however the comparison ends.
+		try {
+			return compareSchemas(dbr);
+		} finally {
+			compareSchemaStrategy.cleanup();
 		}
+	}
+
+	private boolean compareSchemas(DatabaseRegistry dbr) {
 
-		Connection masterCon = compareSchemaStrategy.buildMasterConnection();
+		boolean result = true;
+		boolean somethingWasChecked = false;
+
+		// The master is read once and every database is compared with the
+		// same copy of it.
+		//
+		final SchemaDefinition masterSchema = compareSchemaStrategy.buildMasterSchema();
 
 		// Get all databases on which this test shall be run.
 		//
@@ -183,70 +202,61 @@ public abstract class EGAbstractCompareSchema extends MultiDatabaseTestCase {
 		}
 
 		final EGAbstractCompareSchema compareSchemaTest = this;
-		if (masterCon == null) {
-			// This means we weren't able to get a connection to a master 
-			// database.
+		if (masterSchema == null) {
+			// This means we weren't able to read the schema definition or
+			// get a connection to a master database.
 		    for (final DatabaseRegistryEntry dbre : dbr.getAll()) {
 
 				DatabaseType type = dbre.getType();
 				if (!appliesToType(type)) { continue; }
 				
 				// Fail all databases to which this test would have applied.
-				ReportManager.problem(compareSchemaTest, dbre.getConnection(), "Couldn't create or connect to master database!");
+				ReportManager.problem(compareSchemaTest, dbre.getConnection(), "Couldn't read schema definition or connect to master database!");
 		    }
 		    return false;
 		} else {
-		    logger.fine("Got connection to a master database.");
+		    logger.fine("Read the master schema from " + compareSchemaStrategy.getMasterName());
 		}
-		
-		String masterShortName = DBUtils.getShortDatabaseName(masterCon);
 
+		List<DatabaseRegistryEntry> databasesToCompare = new ArrayList<DatabaseRegistryEntry>();
 		for (final DatabaseRegistryEntry dbre : databasesToRunOn) {
 
-			final Connection checkCon = dbre.getConnection();
-			if (checkCon == masterCon) { continue; }
+			if (dbre.getName().equals(compareSchemaStrategy.getMasterName())) { continue; }
 
-			logger.info("Checking schema of " + dbre.getName());
+			final Connection checkCon = dbre.getConnection();
 
 			if (
 				doSchemaCompatibilityChecks
-				&& !assertSchemaCompatibility(masterCon, checkCon)
+				&& !assertSchemaCompatibility(checkCon)
 			) {
 				result = false;
 				continue;
 			}
+			databasesToCompare.add(dbre);
+		}
 
-			DatabaseServer srv = dbre.getDatabaseServer();
-			final StringBuffer patch = new StringBuffer();
-
-			logger.info("Running " + mysqldiffBin);
-
-			systemCommand.runCmd(
-				new String[] {
-						mysqldiffBin,
-						"--tolerant",
-						"--host", srv.getHost(),
-						"--port", srv.getPort(),
-						"--user", srv.getUser(),
-						"--password", srv.getPass(),
-						"db:" + dbre.getName(),
-						"db:" + masterShortName,
-				},
-				new ActionAppendable() {
-					@Override public void process(String message) {
-						patch.append(message);
-					}
-				},
-				new ActionAppendable() {
-					@Override public void process(String message) {
-						ReportManager.problem(compareSchemaTest, checkCon, message);
-					}
-				}
-			);
+		Map<DatabaseRegistryEntry, Future<String>> patches = diffSchemas(masterSchema, databasesToCompare);
+
+		for (final DatabaseRegistryEntry dbre : databasesToCompare) {
 
-			logger.info("Done running " + mysqldiffBin);
+			final Connection checkCon = dbre.getConnection();
 
-			boolean schemasAreEqual = patch.toString().trim().equals("");
+			String patch;
+			try {
+				patch = patches.get(dbre).get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				ReportManager.problem(compareSchemaTest, checkCon, "Interrupted while comparing the schema of " + dbre.getName());
+				return false;
+			} catch (ExecutionException e) {
+				logger.log(Level.WARNING, "Could not compare the schema of " + dbre.getName(), e.getCause());
+				ReportManager.problem(compareSchemaTest, checkCon,
+						"Could not compare the schema of " + dbre.getName() + ": " + e.getCause().getMessage());
+				result = false;
+				continue;
+			}
+
+			boolean schemasAreEqual = patch.trim().equals("");
 			somethingWasChecked = true;
 
 			if (schemasAreEqual) {
@@ -269,27 +279,6 @@ public abstract class EGAbstractCompareSchema extends MultiDatabaseTestCase {
 
 			File patchFile = new File(patchFileDir + File.separatorChar + patchFileNameBase);
 
-			// Mysqldiff will insert the name of the master database into the
-			// report. If a temporary database was used, the name will be
-			// different during every run. This will cause problems in the
-			// web interface, which assumes that the exact same error is
-			// given for the same problem every time.
-			//
-			// Therefore the name of the master database is replaced with the
-			// constant string "master_database" here.
-			//
-			// The second call to replaceAll removes the date that is inserted
-			// by mysqldiff.
-			//
-			// The third removes the password from the report.
-			//
-			String patchedPatch = patch.toString()
-					.replaceAll(masterShortName, "master_database")
-					.replaceAll("## Run on .*?\n", "")
-					.replaceAll("password=.*?,", "password=*,")
-					;
-
-
 			ReportManager.problem(compareSchemaTest, checkCon,
 					"\n"
 					+ "\nDifferences between the two schemas were found. The "
@@ -297,7 +286,7 @@ public abstract class EGAbstractCompareSchema extends MultiDatabaseTestCase {
 					+ "database to match the one of the master database:\n"
 					+ "\n"
 					+ "\n-----------------------------------\n"
-					+ patchedPatch
+					+ patch
 					+ "\n-----------------------------------\n"
 			);
 			try {
@@ -305,7 +294,7 @@ public abstract class EGAbstractCompareSchema extends MultiDatabaseTestCase {
 				logger.info("Storing patch file in " + patchFile.getCanonicalPath());
 
 				PrintWriter out = new PrintWriter(patchFile);
-				out.println(patchedPatch);
+				out.println(patch);
 				out.close();
 
 				ReportManager.problem(compareSchemaTest, checkCon,
@@ -327,23 +316,70 @@ public abstract class EGAbstractCompareSchema extends MultiDatabaseTestCase {
 			//
 			ReportManager.correct(
 				compareSchemaTest,
-				masterCon,
+				compareSchemaStrategy.getMasterName(),
 				"Warning: Nothing was compared."
 			);
 		}
 
-		compareSchemaStrategy.cleanup();
 		return result;
 	}
 
+	/**
+	 * @param masterSchema
+	 * @param databases
+	 *
+	 * <p>
+	 * 	Reads the schema of each database and works out the patch which would
+	 * make it match the master. The databases are read concurrently, each on
+	 * its own connection, so that a whole division can be compared without
+	 * waiting on one database at a time.
+	 * </p>
+	 * <p>
+	 * 	Returns the patch for each database, empty if its schema matches the
+	 * master. The name of the master is given as "master_database" in the
+	 * patches, so that the same problem gives the same report whether the
+	 * master is a database or a schema definition file.
+	 * </p>
+	 */
+	protected Map<DatabaseRegistryEntry, Future<String>> diffSchemas(
+			final SchemaDefinition masterSchema,
+			List<DatabaseRegistryEntry> databases
+	) {
+		Map<DatabaseRegistryEntry, Future<String>> patches = new HashMap<DatabaseRegistryEntry, Future<String>>();
+		if (databases.isEmpty()) {
+			return patches;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(DIFF_THREADS, databases.size()));
+		try {
+			for (final DatabaseRegistryEntry dbre : databases) {
+				patches.put(dbre, executor.submit(new Callable<String>() {
+					@Override
+					public String call() throws Exception {
+						logger.info("Checking schema of " + dbre.getName());
+						Connection con = dbre.getDatabaseServer().getUnpooledDatabaseConnection(dbre.getName());
+						try {
+							SchemaDefinition schema = SchemaDefinition.load(con, dbre.getName());
+							return SchemaDiff.getPatch(schema, dbre.getName(), masterSchema, "master_database");
+						} finally {
+							DBUtils.closeQuietly(con);
+						}
+					}
+				}));
+			}
+		} finally {
+			// lets the submitted comparisons finish
+			executor.shutdown();
+		}
+		return patches;
+	}
+
 	protected boolean assertSchemaTypesCompatible(
-			Connection masterCon,
 			Connection checkCon
 	) {
 
 		String sql = "SELECT meta_value FROM meta WHERE meta_key='schema_type'";
 		String schemaTypeCheck  = DBUtils.getRowColumnValue(checkCon, sql);
-		String schemaTypeMaster = DBUtils.getRowColumnValue(masterCon, sql);
+		String schemaTypeMaster = getMasterMetaValue("schema_type");
 
 		if (schemaTypeMaster.isEmpty()) {
 			logger.severe("Can't find schema_type in meta table of the master database!");
@@ -369,7 +405,6 @@ public abstract class EGAbstractCompareSchema extends MultiDatabaseTestCase {
 	}
 
 	/**
-	 * @param masterCon
 	 * @param checkCon
 	 *
 	 * <p>
@@ -383,12 +418,11 @@ public abstract class EGAbstractCompareSchema extends MultiDatabaseTestCase {
 	 *
 	 */
 	protected boolean assertSchemaVersionCompatible(
-			Connection masterCon,
 			Connection checkCon
 	) {
 		String sql = "SELECT meta_value FROM meta WHERE meta_key='schema_version'";
 		String schemaVersionCheck  = DBUtils.getRowColumnValue(checkCon, sql);
-		String schemaVersionMaster = DBUtils.getRowColumnValue(masterCon, sql);
+		String schemaVersionMaster = getMasterMetaValue("schema_version");
 
 		String checkShortName = DBUtils.getShortDatabaseName(checkCon);
 
@@ -436,14 +470,29 @@ public abstract class EGAbstractCompareSchema extends MultiDatabaseTestCase {
 abstract class CompareSchemaStrategy {
 
 	protected final EGAbstractCompareSchema compareSchemaInstance;
-	protected Connection masterCon;
 	protected Logger logger;
 
 	public CompareSchemaStrategy(EGAbstractCompareSchema compareSchemaInstance) {
 		this.compareSchemaInstance = compareSchemaInstance;
 		this.logger = compareSchemaInstance.getLogger();
 	}
-	protected abstract Connection buildMasterConnection();
+
+	/**
+	 * Returns the schema to compare with, or null if it can't be read.
+	 */
+	protected abstract SchemaDefinition buildMasterSchema();
+
+	/**
+	 * Returns the first value of the meta key for the master, or an empty
+	 * string if there is none.
+	 */
+	protected abstract String getMasterMetaValue(String metaKey);
+
+	/**
+	 * Returns the name of the master database or schema file.
+	 */
+	protected abstract String getMasterName();
+
 	protected abstract void cleanup();
 }
 
@@ -451,13 +500,15 @@ abstract class CompareSchemaStrategy {
  * @author mnuhn
  *
  * <p>
- * 	Methods for comparing to a schema file.
+ * 	Methods for comparing to a schema file. The file is parsed by
+ * {@link SchemaDefinitionParser}, so no temporary database is created.
  * </p>
  */
 
 class CompareToSchemaFile extends CompareSchemaStrategy {
 
 	protected String definitionFile;
+	protected SchemaDefinition masterSchema;
 
 	public CompareToSchemaFile(EGAbstractCompareSchema compareSchemaInstance, String definitionFile) {
 		super(compareSchemaInstance);
@@ -469,83 +520,31 @@ class CompareToSchemaFile extends CompareSchemaStrategy {
 		this.definitionFile = definitionFile;
 	}
 
-	protected Connection buildMasterConnection() {
+	protected SchemaDefinition buildMasterSchema() {
 
-		logger.info("About to import " + definitionFile);
+		logger.info("About to parse " + definitionFile);
 		try {
-			masterCon = compareSchemaInstance.importSchema(definitionFile);
+			masterSchema = SchemaDefinitionParser.parse(new File(definitionFile));
 		} catch (FileNotFoundException e) {
-			throw new RuntimeException(e);
-		}
-		catch (RuntimeException e) {
-
-		    String msg = e.getMessage();
-
-		    // This error message is generated, in importSchema when
-		    // the schema couldn't be loaded. In that case the databases
-		    // has been created, but is not complete.
-		    //
-		    // Deleting is not straightforward, because the name is
-		    // generated in the method and is unknown outside of it.
-		    // masterCon is not set to anything. The only way to get at
-		    // the name of the database is via the error message.
-		    //
-		    // The database is deleted here via a drop. We return null
-		    // to indicate failure. In the future maybe this could be
-		    // changed into an exception being thrown.
-		    //
-		    // In order to make sure that only temporary databases can
-		    // be deleted, we make the string "_temp_" part of the
-		    // pattern for the database name.
-		    //
-		    Pattern p = Pattern.compile("^Could not load schema for database (_temp_.+)$");
-		    Matcher m = p.matcher(msg);
-		    if (m.find()) {
-
-			String dbName = m.group(1);
-			logger.info("Schema loading problem on " + dbName);
-			masterCon = null;
-
-			try {
-			    Class.forName(System.getProperty("driver"));
-
-			    String databaseURL = System.getProperty("databaseURL");
-			    String user = System.getProperty("user");
-			    String password = System.getProperty("password");
-
-			    Connection tmpCon = DriverManager.getConnection(databaseURL, user,
-					    password);
-
-			    String sql = "drop database " + dbName;
-			    logger.info("Dropping temporary database " + dbName);
-			    Statement stmt = tmpCon.createStatement();
-			    stmt.execute(sql);
-			}
-			catch (Exception e2) {
-			    throw new RuntimeException(e2);
-			}
-		    } else {
-			logger.info("Unknown problem");
-		    }
-		    return masterCon;
+			logger.severe("Can't find schema definition " + definitionFile);
+			return null;
+		} catch (UtilUncheckedException e) {
+			logger.log(Level.SEVERE, "Could not parse schema definition " + definitionFile, e);
+			return null;
 		}
-		logger.info("Got connection to "
-		    + DBUtils.getShortDatabaseName(masterCon));
-		return masterCon;
+		logger.info("Read " + masterSchema.getTableNames().size() + " tables from " + definitionFile);
+		return masterSchema;
 	}
 
-	protected void cleanup(String dbName) {
-
-		if (dbName.indexOf("_temp_") > -1) {
-			compareSchemaInstance.removeDatabase(masterCon);
-			logger.info("Removed " + DBUtils.getShortDatabaseName(masterCon));
-		}
+	protected String getMasterMetaValue(String metaKey) {
+		return masterSchema.getMetaValue(metaKey);
 	}
 
-	protected void cleanup() {
-		String dbName = DBUtils.getShortDatabaseName(masterCon);
-		cleanup(dbName);
+	protected String getMasterName() {
+		return new File(definitionFile).getName();
 	}
+
+	protected void cleanup() {}
 }
 
 /**
@@ -558,6 +557,7 @@ class CompareToSchemaFile extends CompareSchemaStrategy {
 class CompareToMasterSchema extends CompareSchemaStrategy {
 
 	protected String masterSchema;
+	protected Connection masterCon;
 
 	public CompareToMasterSchema(EGAbstractCompareSchema compareSchemaInstance, String masterSchema) {
 		super(compareSchemaInstance);
@@ -565,15 +565,28 @@ class CompareToMasterSchema extends CompareSchemaStrategy {
 		this.masterSchema = masterSchema;
 	}
 
-	protected Connection buildMasterConnection() {
+	protected SchemaDefinition buildMasterSchema() {
 
 		masterCon = compareSchemaInstance.getSchemaConnection(masterSchema);
+		if (masterCon == null) {
+			return null;
+		}
 
 		logger.fine("Opened connection to master schema in "
 			    + DBUtils.getShortDatabaseName(masterCon));
 
-		return masterCon;
+		return SchemaDefinition.load(masterCon);
 	}
+
+	protected String getMasterMetaValue(String metaKey) {
+		return DBUtils.getRowColumnValue(masterCon,
+				"SELECT meta_value FROM meta WHERE meta_key='" + metaKey + "'");
+	}
+
+	protected String getMasterName() {
+		return masterCon == null ? masterSchema : DBUtils.getShortDatabaseName(masterCon);
+	}
+
 	protected void cleanup() {}
 
 }
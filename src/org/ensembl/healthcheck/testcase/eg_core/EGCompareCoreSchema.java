@@ -39,12 +39,11 @@ public class EGCompareCoreSchema extends EGAbstractCompareSchema {
 	
 	@Override
 	protected boolean assertSchemaCompatibility(
-			Connection masterCon,
 			Connection checkCon
 	) {
 		return 
-			assertSchemaTypesCompatible(masterCon, checkCon)
-			&& assertSchemaVersionCompatible(masterCon, checkCon)
+			assertSchemaTypesCompatible(checkCon)
+			&& assertSchemaVersionCompatible(checkCon)
 		;
 	}
 	
@@ -54,10 +54,9 @@ public class EGCompareVariationSchema extends EGAbstractCompareSchema {
 
 	@Override
 	protected boolean assertSchemaCompatibility(
-			Connection masterCon,
 			Connection checkCon
 	) {		
 		return 
-			assertSchemaTypesCompatible(masterCon, checkCon);
+			assertSchemaTypesCompatible(checkCon);
 	}
 }
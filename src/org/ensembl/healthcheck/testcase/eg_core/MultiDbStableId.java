@@ -17,19 +17,25 @@
 
 package org.ensembl.healthcheck.testcase.eg_core;
 
+import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.lang.StringUtils;
+
 import org.ensembl.healthcheck.DatabaseRegistry;
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.DatabaseType;
 import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.Team;
+import org.ensembl.healthcheck.testcase.EnsTestCase;
 import org.ensembl.healthcheck.testcase.MultiDatabaseTestCase;
 import org.ensembl.healthcheck.util.CollectionUtils;
 import org.ensembl.healthcheck.util.ConnectionBasedSqlTemplateImpl;
+import org.ensembl.healthcheck.util.SqlTemplate.ResultSetCallback;
+import org.ensembl.healthcheck.util.StableIdSet;
 
 /**
  * EG specific test that does not use species to
@@ -50,69 +56,137 @@ public class MultiDbStableId extends MultiDatabaseTestCase {
 			"translation", "exon" };
 	private final int MAX_REPORTS = 10;
 
+	/**
+	 * Approximate bytes used per stable ID by {@link StableIdSet} (int + long
+	 * + int at a load factor of 0.5)
+	 */
+	private final static int BYTES_PER_ID = 32;
+
 	@Override
 	public boolean run(DatabaseRegistry dbr) throws SQLException {
 		boolean result = true;
+		// allow the in-memory set to use up to a quarter of the heap before
+		// spilling sorted runs to disk
+		int maxEntries = (int) Math.min(Integer.MAX_VALUE / 2, Runtime
+				.getRuntime().maxMemory() / 4 / BYTES_PER_ID);
 		for (String objectType : OBJ_TYPES) {
 			String query = STABLE_ID.replaceAll("%obj%", objectType);
-			Map<String, Collection<String>> stableIds = CollectionUtils
+			StableIdSet stableIds = new StableIdSet(maxEntries);
+			final Map<Integer, DatabaseRegistryEntry> dbs = CollectionUtils
 					.createHashMap();
-			for (DatabaseRegistryEntry coreDb : dbr.getAll(DatabaseType.CORE)) {
-				System.out.println("TYPE:"+coreDb.getType()+" from "+coreDb.getName());
-				if (!coreDb.getName().contains(
-						DatabaseType.OTHERFEATURES.getName())) {
-					ReportManager.info(this, coreDb.getConnection(),
-							"Checking " + objectType + " stable ID for "
-									+ coreDb.getName());
-					ConnectionBasedSqlTemplateImpl template = new ConnectionBasedSqlTemplateImpl(
-							coreDb.getConnection());
-					int checked = 0;
-					int dups = 0;
-					for (String stableId : template.queryForDefaultObjectList(
-							query, String.class)) {
-						checked++;
-						Collection<String> dbs = stableIds.get(stableId);
-						if (dbs == null) {
-							dbs = CollectionUtils.createArrayList(1);
-							stableIds.put(stableId, dbs);
-						} else {
-							dups++;
-							if (dups <= MAX_REPORTS) {
-								ReportManager
-										.problem(
-												this,
-												coreDb.getConnection(),
-												"The "
-														+ objectType
-														+ " stable ID "
-														+ stableId
-														+ " has been found in the following core databases :"
-														+ StringUtils.join(dbs,
-																", "));
-								if (dups == MAX_REPORTS) {
-									ReportManager
-											.problem(
-													this,
-													coreDb.getConnection(),
-													MAX_REPORTS
-															+ " duplications have been found for  "
-															+ objectType
-															+ " stable ID in this database - no more will be reported");
-								}
+			try {
+				for (DatabaseRegistryEntry coreDb : dbr.getAll(DatabaseType.CORE)) {
+					if (!coreDb.getName().contains(
+							DatabaseType.OTHERFEATURES.getName())) {
+						int dbId = stableIds.getDbId(coreDb.getName());
+						dbs.put(dbId, coreDb);
+						result &= checkDatabase(coreDb, dbId, objectType, query,
+								stableIds);
+						coreDb.getConnection().close();
+					}
+				}
+				result &= checkSpilledRuns(objectType, stableIds, dbs);
+			} finally {
+				stableIds.close();
+			}
+		}
+		return result;
+	}
+
+	private boolean checkDatabase(final DatabaseRegistryEntry coreDb,
+			final int dbId, final String objectType, String query,
+			final StableIdSet stableIds) {
+		ReportManager.info(this, coreDb.getConnection(), "Checking "
+				+ objectType + " stable ID for " + coreDb.getName());
+		ConnectionBasedSqlTemplateImpl template = new ConnectionBasedSqlTemplateImpl(
+				coreDb.getConnection());
+		final EnsTestCase test = this;
+		int[] counts = template.executeStreaming(query, new ResultSetCallback<int[]>() {
+			@Override
+			public int[] process(ResultSet rs) throws SQLException {
+				int checked = 0;
+				int dups = 0;
+				while (rs.next()) {
+					checked++;
+					String stableId = rs.getString(1);
+					int firstDb = stableIds.add(stableId, dbId);
+					if (firstDb != StableIdSet.NOT_FOUND) {
+						dups++;
+						if (dups <= MAX_REPORTS) {
+							// all databases it was found in before this one, if
+							// the set still remembers them, or else the first
+							List<Integer> dbIds = stableIds.getDbIds(stableId);
+							int position = dbIds.indexOf(dbId);
+							List<Integer> previousDbIds = position > 0 ? dbIds.subList(0, position)
+									: Collections.singletonList(firstDb);
+							ReportManager.problem(test, coreDb.getConnection(),
+									"The " + objectType + " stable ID "
+											+ stableId
+											+ " has been found in the following core databases :"
+											+ getDbNames(stableIds, previousDbIds));
+							if (dups == MAX_REPORTS) {
+								ReportManager.problem(test, coreDb.getConnection(),
+										MAX_REPORTS
+												+ " duplications have been found for  "
+												+ objectType
+												+ " stable ID in this database - no more will be reported");
 							}
-							result = false;
 						}
-						dbs.add(coreDb.getName());
 					}
-					ReportManager.info(this, coreDb.getConnection(), "Checked "
-							+ checked + " " + objectType + " stable IDs for "
-							+ coreDb.getName() + ": found " + dups
-							+ " duplicates");
-                                        coreDb.getConnection().close();
 				}
+				return new int[] { checked, dups };
 			}
+		});
+		ReportManager.info(this, coreDb.getConnection(), "Checked "
+				+ counts[0] + " " + objectType + " stable IDs for "
+				+ coreDb.getName() + ": found " + counts[1] + " duplicates");
+		return counts[1] == 0;
+	}
+
+	/**
+	 * Report duplicates between the sorted runs written out when the stable
+	 * IDs did not fit in memory
+	 */
+	private boolean checkSpilledRuns(final String objectType,
+			final StableIdSet stableIds,
+			final Map<Integer, DatabaseRegistryEntry> dbs) {
+		if (!stableIds.hasSpilled()) {
+			return true;
 		}
-		return result;
+		final EnsTestCase test = this;
+		final Map<Integer, Integer> dupsByDb = CollectionUtils.createHashMap();
+		int dups = stableIds.mergeRuns(new StableIdSet.DuplicateHandler() {
+			@Override
+			public void duplicate(String stableId, List<Integer> previousDbIds,
+					int duplicateDbId) {
+				Integer count = dupsByDb.get(duplicateDbId);
+				count = count == null ? 1 : count + 1;
+				dupsByDb.put(duplicateDbId, count);
+				if (count <= MAX_REPORTS) {
+					ReportManager.problem(test, dbs.get(duplicateDbId)
+							.getConnection(), "The " + objectType
+							+ " stable ID " + stableId
+							+ " has been found in the following core databases :"
+							+ getDbNames(stableIds, previousDbIds));
+				}
+			}
+		});
+		for (Map.Entry<Integer, Integer> e : dupsByDb.entrySet()) {
+			ReportManager.info(this, dbs.get(e.getKey()).getConnection(),
+					"Found " + e.getValue() + " further " + objectType
+							+ " stable ID duplicates for "
+							+ stableIds.getDbName(e.getKey())
+							+ " after merging spilled runs");
+		}
+		return dups == 0;
+	}
+
+	private static String getDbNames(StableIdSet stableIds, List<Integer> dbIds) {
+		List<String> names = CollectionUtils.createArrayList(dbIds.size());
+		for (int dbId : dbIds) {
+			names.add(stableIds.getDbName(dbId));
+		}
+		return StringUtils.join(names, ", ");
 	}
 
 }
@@ -1,13 +1,13 @@
 /*
  * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
  * Copyright [2016-2018] EMBL-European Bioinformatics Institute
- * 
+ *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
  * You may obtain a copy of the License at
- * 
+ *
  *      http://www.apache.org/licenses/LICENSE-2.0
- * 
+ *
  * Unless required by applicable law or agreed to in writing, software
  * distributed under the License is distributed on an "AS IS" BASIS,
  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
@@ -24,32 +24,105 @@
 package org.ensembl.healthcheck.testcase.eg_core;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
 
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.Team;
-import org.ensembl.healthcheck.testcase.AbstractPerlModuleBasedTestCase;
+import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
 import org.ensembl.healthcheck.util.ChecksumDatabase;
+import org.ensembl.healthcheck.util.CodonTable;
+import org.ensembl.healthcheck.util.CollectionUtils;
+import org.ensembl.healthcheck.util.ConnectionWorkers;
+import org.ensembl.healthcheck.util.DBUtils;
+import org.ensembl.healthcheck.util.SqlUncheckedException;
 
 /**
+ * Translates every protein coding transcript and checks that the peptide
+ * contains no internal stop codons and does not consist only of Xs.
+ * <p>
+ * This used to be done by the Perl module
+ * Bio::EnsEMBL::Healthcheck::Translation. Here transcript, exon and
+ * translation coordinates are streamed in one query, grouped into windows
+ * along each seq_region, and each window is spliced and translated in
+ * parallel using the codon table given by the seq_region's codon_table
+ * attribute. Transcript _rna_edit and translation peptide edits
+ * (_selenocysteine, amino_acid_sub, initial_met) are applied as the API
+ * would, and stop positions are mapped back to the genome through the
+ * edited cDNA. As with the Perl module, each species in a collection
+ * database is checked separately. Details of any problems are written to
+ * external_reports/&lt;database&gt;/Translation.log as before.
+ *
  * @author dstaines
  *
  */
-public class ProteinTranslation extends AbstractPerlModuleBasedTestCase {
+public class ProteinTranslation extends SingleDatabaseTestCase {
+
+	private static final String REPORT_NAME = "Translation";
+
+	/**
+	 * Maximum span of sequence fetched for a batch of transcripts
+	 */
+	private static final int WINDOW_SIZE = 1000000;
+
+	private static final int MAX_THREADS = 4;
+
+	private static final String TRANSCRIPT_SQL = "SELECT t.transcript_id, t.stable_id, t.seq_region_id, t.seq_region_start, t.seq_region_end, "
+			+ "tl.translation_id, tl.start_exon_id, tl.seq_start, tl.end_exon_id, tl.seq_end, "
+			+ "e.exon_id, e.seq_region_start, e.seq_region_end, e.seq_region_strand, e.phase "
+			+ "FROM gene g JOIN transcript t ON (g.gene_id = t.gene_id) "
+			+ "JOIN exon_transcript et ON (t.transcript_id = et.transcript_id) "
+			+ "JOIN exon e ON (et.exon_id = e.exon_id) "
+			+ "LEFT JOIN translation tl ON (t.transcript_id = tl.transcript_id) "
+			+ "WHERE g.biotype = 'protein_coding' AND t.biotype = 'protein_coding' ";
+
+	private static final String TRANSCRIPT_ORDER_SQL = "ORDER BY t.seq_region_id, t.seq_region_start, t.transcript_id, et.rank";
+
+	private static final String SPECIES_SQL = "AND g.seq_region_id IN (SELECT sr.seq_region_id FROM seq_region sr "
+			+ "JOIN coord_system cs USING (coord_system_id) WHERE cs.species_id = ?) ";
+
+	private static final String CODON_TABLE_SQL = "SELECT sa.seq_region_id, sa.value FROM seq_region_attrib sa "
+			+ "JOIN attrib_type at USING (attrib_type_id) WHERE at.code = 'codon_table'";
+
+	private static final String RNA_EDIT_SQL = "SELECT ta.transcript_id, ta.value FROM transcript_attrib ta "
+			+ "JOIN attrib_type at USING (attrib_type_id) WHERE at.code = '_rna_edit'";
+
+	private static final String PEPTIDE_EDIT_SQL = "SELECT ta.translation_id, ta.value FROM translation_attrib ta "
+			+ "JOIN attrib_type at USING (attrib_type_id) WHERE at.code IN ('_selenocysteine', 'amino_acid_sub', 'initial_met')";
+
+	private static final String DNA_SQL = "SELECT SUBSTRING(sequence, ?, ?) FROM dna WHERE seq_region_id = ?";
+
+	private static final String DNA_COMPONENT_SQL = "SELECT a.cmp_seq_region_id, a.asm_start, a.asm_end, a.cmp_start, a.cmp_end, a.ori "
+			+ "FROM assembly a JOIN dna d ON (a.cmp_seq_region_id = d.seq_region_id) "
+			+ "WHERE a.asm_seq_region_id = ? AND a.asm_end >= ? AND a.asm_start <= ?";
+
+	private static final String COMPONENT_SQL = "SELECT a.cmp_seq_region_id, a.asm_start, a.asm_end, a.cmp_start, a.cmp_end, a.ori "
+			+ "FROM assembly a WHERE a.asm_seq_region_id = ? AND a.asm_end >= ? AND a.asm_start <= ?";
+
+	private static final String STOP_TABLE_HEADER = "transcript\tdbID\tstart\tinternal_stop_position\tend\tseq_region_name\tdisplay_id\tstable_id\tprotein_sequence_position";
+
+	private boolean speciesIdAware = false;
 
 	public ProteinTranslation() {
 		super();
 		setSpeciesIdAware(true);
 		setTeamResponsible(Team.GENEBUILD);
-		setSpeciesIdAware(true);
+		setDescription("Checks that protein coding transcripts translate without internal stop codons and are not made up only of Xs");
 	}
 
-	@Override
-	protected String getModule() {
-		return "Bio::EnsEMBL::Healthcheck::Translation";
-	}
-	
 	@Override
 	public boolean run(final DatabaseRegistryEntry dbre) {
 		ChecksumDatabase db = new ChecksumDatabase(
@@ -60,7 +133,7 @@ public class ProteinTranslation extends AbstractPerlModuleBasedTestCase {
 						"seq_region_attrib","dna","assembly" }));
 		boolean passed = true;
 		if(db.isUpdated()) {
-			passed = super.run(dbre);
+			passed = checkTranslations(dbre);
 			if(passed) {
 				db.setRead();
 			}
@@ -70,4 +143,587 @@ public class ProteinTranslation extends AbstractPerlModuleBasedTestCase {
 		}
 		return passed;
 	}
+
+	public boolean isSpeciesIdAware() {
+		return speciesIdAware;
+	}
+
+	/**
+	 * @param speciesIdAware
+	 *          whether each species in the database is checked separately
+	 */
+	public void setSpeciesIdAware(boolean speciesIdAware) {
+		this.speciesIdAware = speciesIdAware;
+	}
+
+	/**
+	 * Translate all protein coding transcripts in the database, one species at
+	 * a time if this test is species ID aware
+	 */
+	protected boolean checkTranslations(final DatabaseRegistryEntry dbre) {
+		Connection con = dbre.getConnection();
+		Map<Integer, Integer> codonTables = getIntegerMap(con, CODON_TABLE_SQL);
+		Map<Integer, List<String>> rnaEdits = getStringListMap(con, RNA_EDIT_SQL);
+		Map<Integer, List<String>> peptideEdits = getStringListMap(con, PEPTIDE_EDIT_SQL);
+		if (!speciesIdAware) {
+			return checkTranslations(dbre, 0, codonTables, rnaEdits, peptideEdits);
+		}
+		List<Integer> speciesIds = dbre.getSpeciesIds();
+		if (speciesIds.isEmpty()) {
+			logger.warning("No species ids! Perhaps no databases were configured? This test will not be run.");
+			return false;
+		}
+		boolean passes = true;
+		for (int speciesId : speciesIds) {
+			passes &= checkTranslations(dbre, speciesId, codonTables, rnaEdits, peptideEdits);
+		}
+		return passes;
+	}
+
+	/**
+	 * Translate all protein coding transcripts of one species, or of the whole
+	 * database if speciesId is 0
+	 */
+	private boolean checkTranslations(final DatabaseRegistryEntry dbre, int speciesId,
+			Map<Integer, Integer> codonTables, Map<Integer, List<String>> rnaEdits,
+			Map<Integer, List<String>> peptideEdits) {
+
+		Connection con = dbre.getConnection();
+
+		int threads = Math.max(1, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors()));
+		ConnectionWorkers workers = new ConnectionWorkers(dbre, threads);
+		List<Future<List<TranslationProblem>>> results = new ArrayList<Future<List<TranslationProblem>>>();
+		List<TranslationProblem> problems = new ArrayList<TranslationProblem>();
+		int transcriptCount = 0;
+
+		try {
+			PreparedStatement stmt = con.prepareStatement(TRANSCRIPT_SQL + (speciesId > 0 ? SPECIES_SQL : "")
+					+ TRANSCRIPT_ORDER_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			stmt.setFetchSize(Integer.MIN_VALUE);
+			if (speciesId > 0) {
+				stmt.setInt(1, speciesId);
+			}
+			ResultSet rs = stmt.executeQuery();
+
+			List<TranscriptModel> window = new ArrayList<TranscriptModel>();
+			TranscriptModel current = null;
+
+			while (rs.next()) {
+				int transcriptId = rs.getInt(1);
+				if (current == null || current.transcriptId != transcriptId) {
+					current = new TranscriptModel(rs);
+					transcriptCount++;
+					if (!window.isEmpty()
+							&& (window.get(0).seqRegionId != current.seqRegionId
+							|| current.end - window.get(0).start > WINDOW_SIZE)) {
+						results.add(workers.submit(new WindowTranslator(window, codonTables, rnaEdits, peptideEdits)));
+						window = new ArrayList<TranscriptModel>();
+					}
+					window.add(current);
+				}
+				current.addExon(rs.getInt(11), rs.getInt(12), rs.getInt(13), rs.getInt(14), rs.getInt(15));
+			}
+			if (!window.isEmpty()) {
+				results.add(workers.submit(new WindowTranslator(window, codonTables, rnaEdits, peptideEdits)));
+			}
+			rs.close();
+			stmt.close();
+
+			logger.fine("Translating " + transcriptCount + " transcripts in " + results.size() + " windows");
+			for (Future<List<TranslationProblem>> result : results) {
+				problems.addAll(workers.get(result, "translating transcripts"));
+			}
+
+		} catch (SQLException e) {
+			throw new SqlUncheckedException("Could not fetch transcripts for " + dbre.getName(), e);
+		} finally {
+			workers.close();
+		}
+
+		boolean passes = true;
+		for (TranslationProblem problem : problems) {
+			if (problem.peptide != null) {
+				passes = false;
+			}
+		}
+		File reportFile = writeReport(dbre, speciesId, problems);
+		if (!passes) {
+			ReportManager.problem(this, con, "This database contains transcripts with incorrect translations. See "
+					+ reportFile.getAbsolutePath() + " for detailed error messages.");
+		} else {
+			ReportManager.correct(this, con, "All " + transcriptCount + " protein coding transcripts translate correctly");
+		}
+		return passes;
+	}
+
+	/**
+	 * Write details of each problem in the same format as the Perl module
+	 */
+	private File writeReport(DatabaseRegistryEntry dbre, int speciesId, List<TranslationProblem> problems) {
+		File dir = new File("external_reports" + File.separatorChar + dbre.getName());
+		dir.mkdirs();
+		File file = new File(dir, REPORT_NAME + (speciesId > 0 ? "_" + speciesId : "") + ".log");
+		Collections.sort(problems, new Comparator<TranslationProblem>() {
+			@Override
+			public int compare(TranslationProblem o1, TranslationProblem o2) {
+				return o1.transcript.transcriptId - o2.transcript.transcriptId;
+			}
+		});
+		Map<Integer, String> seqRegionNames = CollectionUtils.createHashMap();
+		StringBuilder stopTable = new StringBuilder();
+		PrintWriter out = null;
+		try {
+			out = new PrintWriter(file);
+			for (TranslationProblem problem : problems) {
+				TranscriptModel t = problem.transcript;
+				if (problem.peptide == null) {
+					out.println("No translation found for transcript ID " + t.transcriptId);
+				}
+				if (problem.allX) {
+					out.print("Transcript for \ndbID: " + t.transcriptId + "\ndisplay_id: " + t.getDisplayId()
+							+ "\ntranscript stable_id: " + t.stableId + "\ncomprises only of X's\n");
+				}
+				if (!problem.stops.isEmpty()) {
+					out.print("Transcript for \ndbID: " + t.transcriptId + "\ndisplay_id: " + t.getDisplayId()
+							+ "\ntranscript stable_id: " + t.stableId + "\ncontains stop codons: " + problem.peptide + "\n");
+					String seqRegionName = seqRegionNames.get(t.seqRegionId);
+					if (seqRegionName == null) {
+						seqRegionName = DBUtils.getRowColumnValue(dbre.getConnection(),
+								"SELECT name FROM seq_region WHERE seq_region_id = " + t.seqRegionId);
+						seqRegionNames.put(t.seqRegionId, seqRegionName);
+					}
+					for (int[] stop : problem.stops) {
+						stopTable.append("transcript\t").append(t.transcriptId).append('\t').append(t.start).append('\t')
+								.append(stop[1]).append('\t').append(t.end).append('\t').append(seqRegionName).append('\t')
+								.append(t.getDisplayId()).append('\t').append(t.stableId).append('\t').append(stop[0])
+								.append("\t\n");
+					}
+				}
+			}
+			if (stopTable.length() > 0) {
+				out.print("\n\n---------------- problems: -------------------\n\n" + STOP_TABLE_HEADER + "\n" + stopTable);
+			}
+		} catch (IOException e) {
+			logger.warning("Could not write " + file.getAbsolutePath() + ": " + e.getMessage());
+		} finally {
+			if (out != null) {
+				out.close();
+			}
+		}
+		return file;
+	}
+
+	private Map<Integer, Integer> getIntegerMap(Connection con, String sql) {
+		Map<Integer, Integer> map = CollectionUtils.createHashMap();
+		for (Map.Entry<Integer, List<String>> e : getStringListMap(con, sql).entrySet()) {
+			map.put(e.getKey(), Integer.valueOf(e.getValue().get(0).trim()));
+		}
+		return map;
+	}
+
+	private Map<Integer, List<String>> getStringListMap(Connection con, String sql) {
+		Map<Integer, List<String>> map = CollectionUtils.createHashMap();
+		Statement stmt = null;
+		ResultSet rs = null;
+		try {
+			stmt = con.createStatement();
+			rs = stmt.executeQuery(sql);
+			while (rs.next()) {
+				List<String> values = map.get(rs.getInt(1));
+				if (values == null) {
+					values = new ArrayList<String>(1);
+					map.put(rs.getInt(1), values);
+				}
+				values.add(rs.getString(2));
+			}
+		} catch (SQLException e) {
+			throw new SqlUncheckedException("Could not run " + sql, e);
+		} finally {
+			DBUtils.closeQuietly(rs);
+			DBUtils.closeQuietly(stmt);
+		}
+		return map;
+	}
+
+	/**
+	 * Fetch the forward strand sequence of a seq_region between start and end
+	 * (inclusive), projecting through the assembly table if the seq_region has
+	 * no dna of its own. Gaps are filled with N.
+	 */
+	static char[] fetchSequence(Connection con, int seqRegionId, int start, int end, int depth) throws SQLException {
+		char[] seq = new char[end - start + 1];
+		Arrays.fill(seq, 'N');
+		PreparedStatement dnaStmt = con.prepareStatement(DNA_SQL);
+		try {
+			dnaStmt.setInt(1, start);
+			dnaStmt.setInt(2, end - start + 1);
+			dnaStmt.setInt(3, seqRegionId);
+			ResultSet rs = dnaStmt.executeQuery();
+			if (rs.next()) {
+				String dna = rs.getString(1);
+				dna.getChars(0, Math.min(dna.length(), seq.length), seq, 0);
+				rs.close();
+				return seq;
+			}
+			rs.close();
+		} finally {
+			dnaStmt.close();
+		}
+		if (depth > 2) {
+			return seq;
+		}
+		// prefer components which carry sequence, otherwise recurse a level
+		List<int[]> components = getComponents(con, DNA_COMPONENT_SQL, seqRegionId, start, end);
+		boolean direct = !components.isEmpty();
+		if (!direct) {
+			components = getComponents(con, COMPONENT_SQL, seqRegionId, start, end);
+		}
+		for (int[] c : components) {
+			// c = cmp_seq_region_id, asm_start, asm_end, cmp_start, cmp_end, ori
+			int asmStart = Math.max(start, c[1]);
+			int asmEnd = Math.min(end, c[2]);
+			int cmpStart;
+			int cmpEnd;
+			if (c[5] == 1) {
+				cmpStart = c[3] + (asmStart - c[1]);
+				cmpEnd = c[3] + (asmEnd - c[1]);
+			} else {
+				cmpStart = c[4] - (asmEnd - c[1]);
+				cmpEnd = c[4] - (asmStart - c[1]);
+			}
+			char[] cmpSeq = fetchSequence(con, c[0], cmpStart, cmpEnd, depth + 1);
+			if (c[5] != 1) {
+				reverseComplement(cmpSeq);
+			}
+			System.arraycopy(cmpSeq, 0, seq, asmStart - start, cmpSeq.length);
+		}
+		return seq;
+	}
+
+	private static List<int[]> getComponents(Connection con, String sql, int seqRegionId, int start, int end) throws SQLException {
+		List<int[]> components = new ArrayList<int[]>();
+		PreparedStatement stmt = con.prepareStatement(sql);
+		try {
+			stmt.setInt(1, seqRegionId);
+			stmt.setInt(2, start);
+			stmt.setInt(3, end);
+			ResultSet rs = stmt.executeQuery();
+			while (rs.next()) {
+				components.add(new int[] { rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getInt(4), rs.getInt(5), rs.getInt(6) });
+			}
+			rs.close();
+		} finally {
+			stmt.close();
+		}
+		return components;
+	}
+
+	static void reverseComplement(char[] seq) {
+		for (int i = 0, j = seq.length - 1; i <= j; i++, j--) {
+			char ci = complement(seq[i]);
+			seq[i] = complement(seq[j]);
+			seq[j] = ci;
+		}
+	}
+
+	private static char complement(char base) {
+		switch (Character.toUpperCase(base)) {
+		case 'A':
+			return 'T';
+		case 'T':
+			return 'A';
+		case 'C':
+			return 'G';
+		case 'G':
+			return 'C';
+		case 'R':
+			return 'Y';
+		case 'Y':
+			return 'R';
+		case 'K':
+			return 'M';
+		case 'M':
+			return 'K';
+		case 'B':
+			return 'V';
+		case 'V':
+			return 'B';
+		case 'D':
+			return 'H';
+		case 'H':
+			return 'D';
+		default:
+			return Character.toUpperCase(base);
+		}
+	}
+
+	/**
+	 * Apply "start end replacement" edits (1-based, as stored in the
+	 * attribute value) in descending order of start
+	 */
+	static String applyEdits(String seq, List<String> edits, int[] codingRegion) {
+		if (edits == null || edits.isEmpty()) {
+			return seq;
+		}
+		List<String[]> parsed = parseEdits(edits);
+		Collections.reverse(parsed);
+		StringBuilder sb = new StringBuilder(seq);
+		for (String[] edit : parsed) {
+			int start = Integer.parseInt(edit[0]);
+			int end = Integer.parseInt(edit[1]);
+			if (start < 1 || end > seq.length() || end < start - 1) {
+				continue;
+			}
+			sb.replace(start - 1, end, edit[2]);
+			if (codingRegion != null) {
+				int diff = edit[2].length() - (end - start + 1);
+				if (start < codingRegion[0]) {
+					codingRegion[0] += diff;
+				}
+				if (start <= codingRegion[1]) {
+					codingRegion[1] += diff;
+				}
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Map a (1-based) position in a sequence changed by
+	 * {@link #applyEdits(String, List, int[])} back to the unedited sequence.
+	 * Positions within replaced sequence map to the start of the edit.
+	 */
+	static int toUneditedPosition(int editedPos, int length, List<String> edits) {
+		if (edits == null || edits.isEmpty()) {
+			return editedPos;
+		}
+		int shift = 0;
+		for (String[] edit : parseEdits(edits)) {
+			int start = Integer.parseInt(edit[0]);
+			int end = Integer.parseInt(edit[1]);
+			// skipped by applyEdits too
+			if (start < 1 || end > length || end < start - 1) {
+				continue;
+			}
+			if (editedPos < start + shift) {
+				break;
+			}
+			if (editedPos < start + shift + edit[2].length()) {
+				return start;
+			}
+			shift += edit[2].length() - (end - start + 1);
+		}
+		return editedPos - shift;
+	}
+
+	/**
+	 * @return "start end replacement" edits in ascending order of start
+	 */
+	private static List<String[]> parseEdits(List<String> edits) {
+		List<String[]> parsed = new ArrayList<String[]>();
+		for (String edit : edits) {
+			String[] parts = edit.trim().split("\\s+");
+			parsed.add(parts.length == 2 ? new String[] { parts[0], parts[1], "" } : parts);
+		}
+		Collections.sort(parsed, new Comparator<String[]>() {
+			@Override
+			public int compare(String[] o1, String[] o2) {
+				return Integer.parseInt(o1[0]) - Integer.parseInt(o2[0]);
+			}
+		});
+		return parsed;
+	}
+
+	/**
+	 * Coordinates for a transcript and its translation
+	 */
+	static class TranscriptModel {
+
+		final int transcriptId;
+		final String stableId;
+		final int seqRegionId;
+		final int start;
+		final int end;
+		final int translationId;
+		final int startExonId;
+		final int seqStart;
+		final int endExonId;
+		final int seqEnd;
+
+		int exonCount;
+		int[] exonIds = new int[8];
+		int[] exonStarts = new int[8];
+		int[] exonEnds = new int[8];
+		int[] exonStrands = new int[8];
+		int[] exonPhases = new int[8];
+
+		TranscriptModel(ResultSet rs) throws SQLException {
+			transcriptId = rs.getInt(1);
+			stableId = rs.getString(2);
+			seqRegionId = rs.getInt(3);
+			start = rs.getInt(4);
+			end = rs.getInt(5);
+			translationId = rs.getInt(6);
+			startExonId = rs.getInt(7);
+			seqStart = rs.getInt(8);
+			endExonId = rs.getInt(9);
+			seqEnd = rs.getInt(10);
+		}
+
+		void addExon(int exonId, int exonStart, int exonEnd, int strand, int phase) {
+			if (exonCount == exonIds.length) {
+				int size = exonCount * 2;
+				exonIds = Arrays.copyOf(exonIds, size);
+				exonStarts = Arrays.copyOf(exonStarts, size);
+				exonEnds = Arrays.copyOf(exonEnds, size);
+				exonStrands = Arrays.copyOf(exonStrands, size);
+				exonPhases = Arrays.copyOf(exonPhases, size);
+			}
+			exonIds[exonCount] = exonId;
+			exonStarts[exonCount] = exonStart;
+			exonEnds[exonCount] = exonEnd;
+			exonStrands[exonCount] = strand;
+			exonPhases[exonCount] = phase;
+			exonCount++;
+		}
+
+		String getDisplayId() {
+			return stableId != null ? stableId : String.valueOf(transcriptId);
+		}
+
+		/**
+		 * @return genomic position of the given (1-based, unedited) cDNA
+		 *         position
+		 */
+		int cdnaToGenomic(int cdnaPos) {
+			int pos = cdnaPos;
+			for (int i = 0; i < exonCount; i++) {
+				int length = exonEnds[i] - exonStarts[i] + 1;
+				if (pos <= length) {
+					return exonStrands[i] == 1 ? exonStarts[i] + pos - 1 : exonEnds[i] - pos + 1;
+				}
+				pos -= length;
+			}
+			return -1;
+		}
+	}
+
+	/**
+	 * Result of translating a single transcript
+	 */
+	static class TranslationProblem {
+
+		final TranscriptModel transcript;
+		/**
+		 * Translated peptide, or null if the transcript has no translation
+		 */
+		final String peptide;
+		final boolean allX;
+		/**
+		 * Pairs of peptide position and genomic position for each stop
+		 */
+		final List<int[]> stops;
+
+		TranslationProblem(TranscriptModel transcript, String peptide, boolean allX, List<int[]> stops) {
+			this.transcript = transcript;
+			this.peptide = peptide;
+			this.allX = allX;
+			this.stops = stops;
+		}
+	}
+
+	/**
+	 * Fetches the sequence for a window of transcripts on one seq_region and
+	 * translates each of them
+	 */
+	static class WindowTranslator implements ConnectionWorkers.ConnectionTask<List<TranslationProblem>> {
+
+		private final List<TranscriptModel> transcripts;
+		private final Map<Integer, Integer> codonTables;
+		private final Map<Integer, List<String>> rnaEdits;
+		private final Map<Integer, List<String>> peptideEdits;
+
+		WindowTranslator(List<TranscriptModel> transcripts, Map<Integer, Integer> codonTables, Map<Integer, List<String>> rnaEdits,
+				Map<Integer, List<String>> peptideEdits) {
+			this.transcripts = transcripts;
+			this.codonTables = codonTables;
+			this.rnaEdits = rnaEdits;
+			this.peptideEdits = peptideEdits;
+		}
+
+		@Override
+		public List<TranslationProblem> run(Connection con) throws SQLException {
+			int seqRegionId = transcripts.get(0).seqRegionId;
+			int windowStart = Integer.MAX_VALUE;
+			int windowEnd = Integer.MIN_VALUE;
+			for (TranscriptModel t : transcripts) {
+				for (int i = 0; i < t.exonCount; i++) {
+					windowStart = Math.min(windowStart, t.exonStarts[i]);
+					windowEnd = Math.max(windowEnd, t.exonEnds[i]);
+				}
+			}
+			char[] sequence = fetchSequence(con, seqRegionId, windowStart, windowEnd, 0);
+			Integer tableId = codonTables.get(seqRegionId);
+			CodonTable table = CodonTable.getTable(tableId != null && CodonTable.isKnownTable(tableId) ? tableId
+					: CodonTable.STANDARD);
+			List<TranslationProblem> problems = new ArrayList<TranslationProblem>();
+			for (TranscriptModel t : transcripts) {
+				TranslationProblem problem = translate(t, sequence, windowStart, table);
+				if (problem != null) {
+					problems.add(problem);
+				}
+			}
+			return problems;
+		}
+
+		private TranslationProblem translate(TranscriptModel t, char[] sequence, int windowStart, CodonTable table) {
+			if (t.translationId == 0) {
+				return new TranslationProblem(t, null, false, new ArrayList<int[]>());
+			}
+			StringBuilder cdna = new StringBuilder();
+			int[] coding = new int[] { -1, -1 };
+			int startPhase = 0;
+			for (int i = 0; i < t.exonCount; i++) {
+				char[] exonSeq = Arrays.copyOfRange(sequence, t.exonStarts[i] - windowStart, t.exonEnds[i] - windowStart + 1);
+				if (t.exonStrands[i] != 1) {
+					reverseComplement(exonSeq);
+				}
+				if (t.exonIds[i] == t.startExonId) {
+					coding[0] = cdna.length() + t.seqStart;
+					startPhase = t.exonPhases[i];
+				}
+				if (t.exonIds[i] == t.endExonId) {
+					coding[1] = cdna.length() + t.seqEnd;
+				}
+				cdna.append(exonSeq);
+			}
+			if (coding[0] < 1 || coding[1] < coding[0]) {
+				return null;
+			}
+			List<String> edits = rnaEdits.get(t.transcriptId);
+			String mrna = applyEdits(cdna.toString().toUpperCase(), edits, coding);
+			StringBuilder cds = new StringBuilder();
+			for (int i = 0; i < startPhase; i++) {
+				cds.append('N');
+			}
+			cds.append(mrna, coding[0] - 1, Math.min(coding[1], mrna.length()));
+			// drop the terminal stop codon
+			if (cds.length() % 3 == 0 && cds.length() >= 3 && table.isStop(cds, cds.length() - 3)) {
+				cds.setLength(cds.length() - 3);
+			}
+			String peptide = applyEdits(table.translate(cds), peptideEdits.get(t.translationId), null);
+
+			boolean allX = peptide.length() > 0 && peptide.matches("^X+$");
+			List<int[]> stops = new ArrayList<int[]>();
+			for (int i = peptide.indexOf(CodonTable.STOP); i >= 0; i = peptide.indexOf(CodonTable.STOP, i + 1)) {
+				// the stop is in the edited cDNA, the exons give the unedited one
+				int cdnaPos = toUneditedPosition(coding[0] + i * 3 - startPhase, cdna.length(), edits);
+				stops.add(new int[] { i + 1, t.cdnaToGenomic(cdnaPos) });
+			}
+			if (!allX && stops.isEmpty()) {
+				return null;
+			}
+			return new TranslationProblem(t, peptide, allX, stops);
+		}
+	}
 }
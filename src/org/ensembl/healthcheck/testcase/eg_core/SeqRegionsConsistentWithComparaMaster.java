@@ -18,17 +18,17 @@
 package org.ensembl.healthcheck.testcase.eg_core;
 
 import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.Team;
 import org.ensembl.healthcheck.testcase.EnsTestCase;
 import org.ensembl.healthcheck.testcase.eg_compara.AbstractControlledRows;
+import org.ensembl.healthcheck.util.ReferenceDataCache;
 import org.ensembl.healthcheck.util.SqlTemplate;
-import org.ensembl.healthcheck.util.SqlUncheckedException;
 import org.ensembl.healthcheck.util.SqlTemplate.ResultSetCallback;
 
 /**
@@ -273,26 +273,31 @@ public class SeqRegionsConsistentWithComparaMaster extends AbstractControlledRow
 			final SeqRegionData seqRegionData,
 			final int genomeDbId
 		) {
-		List<Integer> numSeqRegionsInDnaFragTableList = 
-				masterSqlTemplate.queryForDefaultObjectList(
-					  "select " 
-					+ "  count(*) "
-					+ "from "
-					+ "	 dnafrag " 
-					+ "where "
-					+ "  genome_db_id=?"
-					+ "  and name=?"
-					+ "  and length=?"
-					+ "  and coord_system_name=?", 
-					Integer.class,
-					genomeDbId,
-					seqRegionData.seq_region_name,
-					seqRegionData.seq_region_length,
-					seqRegionData.coord_system_name
+		ReferenceDataCache.Snapshot dnaFrags = fetchDnaFrags(genomeDbId);
+		int lengthColumn = dnaFrags.getColumnIndex("length");
+		int coordSystemColumn = dnaFrags.getColumnIndex("coord_system_name");
+		
+		int numSeqRegionsInDnaFragTable = 0;
+		for (Object[] dnaFrag : dnaFrags.lookup("name", seqRegionData.seq_region_name)) {
+			if (((Number) dnaFrag[lengthColumn]).longValue() == seqRegionData.seq_region_length
+					&& seqRegionData.coord_system_name.equals(dnaFrag[coordSystemColumn])) {
+				numSeqRegionsInDnaFragTable++;
+			}
+		}
+		return numSeqRegionsInDnaFragTable;
+	}
+
+	/**
+	 * All dnafrags of a genome in the master database, fetched once rather 
+	 * than querying for every toplevel sequence.
+	 */
+	protected ReferenceDataCache.Snapshot fetchDnaFrags(int genomeDbId) {
+		return ReferenceDataCache.getInstance().getSnapshot(
+				getComparaMasterDatabase(),
+				"dnafrag",
+				"name, length, coord_system_name",
+				"genome_db_id = " + genomeDbId
 		);
-		assertLengthIsOne(numSeqRegionsInDnaFragTableList);
-		
-		return numSeqRegionsInDnaFragTableList.get(0);		
 	}
 
 	protected void assertLengthIsOne(List<?> list) {
@@ -306,11 +311,7 @@ public class SeqRegionsConsistentWithComparaMaster extends AbstractControlledRow
 	}
 	
 	protected int fetchDnaFragRowCountFor(int genomeDbId) {
-		
-		List<Integer> metaValueList = masterSqlTemplate.queryForDefaultObjectList(
-				"select count(*) from dnafrag where genome_db_id=" + genomeDbId, Integer.class);
-		assertLengthIsOne(metaValueList);
-		return metaValueList.get(0);
+		return fetchDnaFrags(genomeDbId).size();
 	}
 
 	/**
@@ -322,22 +323,12 @@ public class SeqRegionsConsistentWithComparaMaster extends AbstractControlledRow
 			String productionName, String assemblyDefault,
 			String genebuildStartDate) {
 		
-		ResultSet rs = fetchFromGenomeDbId(productionName, assemblyDefault, genebuildStartDate, "genome_db_id");
-		
-		int genomeDbId;
+		List<Integer> genomeDbIds = fetchGenomeDbIds(productionName, assemblyDefault, genebuildStartDate);
 		
-		try {
-			boolean hasResult = rs.next();
-
-			if (!hasResult) {
-				throw new RuntimeException("Can't fetch Species " + productionName + " from genome_db table!");
-			}			
-			genomeDbId = rs.getInt(1);
-
-		} catch (SQLException e) {
-			throw new RuntimeException(e);
-		}		
-		return genomeDbId;			
+		if (genomeDbIds.isEmpty()) {
+			throw new RuntimeException("Can't fetch Species " + productionName + " from genome_db table!");
+		}
+		return genomeDbIds.get(0);
 	}
 
 	/**
@@ -348,55 +339,46 @@ public class SeqRegionsConsistentWithComparaMaster extends AbstractControlledRow
 			String productionName, String assemblyDefault,
 			String genebuildStartDate) {
 		
-		ResultSet rs = fetchFromGenomeDbId(productionName, assemblyDefault, genebuildStartDate, "count(genome_db_id)");
-		
-		int genomeDbId;
+		int genomeDbIdCount = fetchGenomeDbIds(productionName, assemblyDefault, genebuildStartDate).size();
 		
-		try {
-			boolean hasResult = rs.next();
-
-			if (!hasResult) {
-				throw new RuntimeException("Can't count rows on genome_db table!");
-			}			
-			genomeDbId = rs.getInt(1);
-
-		} catch (SQLException e) {
-			throw new RuntimeException(e);
-		}		
-		if (genomeDbId==1) {
+		if (genomeDbIdCount==1) {
 			return true;
 		}		
-		if (genomeDbId==0) {
+		if (genomeDbIdCount==0) {
 			return false;
 		}		
 		throw new RuntimeException("Unexpected number of matching rows for " + productionName + " in master database!");			
 	}
 	
-	protected ResultSet fetchFromGenomeDbId(
+	/**
+	 * Finds the genome_db_ids in the master database for a species. The 
+	 * genome_db table is read once per run and shared by all databases 
+	 * tested.
+	 */
+	protected List<Integer> fetchGenomeDbIds(
 			String productionName, 
 			String assemblyDefault,
-			String genebuildStartDate, 
-			String column
+			String genebuildStartDate
 	) {
-		String sql = "select "+column+" from genome_db where name=? and assembly=? and genebuild=? and genome_component IS NULL";
-		
-		ResultSet rs = null;
-		
-		try {
-			
-			PreparedStatement stmt = this.masterDbConn.prepareStatement(sql);
-			
-			stmt.setString(1, productionName);
-			stmt.setString(2, assemblyDefault);
-			stmt.setString(3, genebuildStartDate);
-			
-			rs = stmt.executeQuery();
-						
-		} catch (SQLException e) {
-			
-			throw new SqlUncheckedException(e.getMessage());
+		ReferenceDataCache.Snapshot genomeDbs = ReferenceDataCache.getInstance().getSnapshot(
+				getComparaMasterDatabase(),
+				"genome_db",
+				"genome_db_id, name, assembly, genebuild",
+				"genome_component IS NULL"
+		);
+		int idColumn        = genomeDbs.getColumnIndex("genome_db_id");
+		int assemblyColumn  = genomeDbs.getColumnIndex("assembly");
+		int genebuildColumn = genomeDbs.getColumnIndex("genebuild");
+		
+		List<Integer> genomeDbIds = new ArrayList<Integer>();
+		for (Object[] genomeDb : genomeDbs.lookup("name", productionName)) {
+			// null never matches, as in sql
+			if (assemblyDefault != null && assemblyDefault.equals(genomeDb[assemblyColumn])
+					&& genebuildStartDate != null && genebuildStartDate.equals(genomeDb[genebuildColumn])) {
+				genomeDbIds.add(((Number) genomeDb[idColumn]).intValue());
+			}
 		}
-		return rs;
+		return genomeDbIds;
 	}
 	
 	/**
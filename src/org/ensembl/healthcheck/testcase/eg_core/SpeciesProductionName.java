@@ -27,7 +27,6 @@ import java.util.regex.Pattern;
 
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.ReportManager;
-import org.ensembl.healthcheck.util.SqlTemplate;
 
 /**
  * Check to see if species.production_name entries are valid
@@ -36,8 +35,6 @@ import org.ensembl.healthcheck.util.SqlTemplate;
  */
 public class SpeciesProductionName extends AbstractEgCoreTestCase {
 
-	private final static String META_QUERY = "select meta_value from meta where meta_key=?";
-
 	private final static String[] META_KEYS = { "species.production_name" };
 
 	private static final Pattern VALID_SQL_NAME = Pattern
@@ -48,10 +45,8 @@ public class SpeciesProductionName extends AbstractEgCoreTestCase {
 
 	protected boolean runTest(DatabaseRegistryEntry dbre) {
 		boolean passes = true;
-		SqlTemplate template = getTemplate(dbre);
 		for (String key : META_KEYS) {
-			for (String speciesName : template.queryForDefaultObjectList(
-					META_QUERY, String.class, key)) {
+			for (String speciesName : dbre.getMeta().getValues(key)) {
 				if (!VALID_SQL_NAME.matcher(speciesName).matches()) {
 					passes = false;
 					ReportManager.problem(this, dbre.getConnection(),
@@ -55,10 +55,9 @@ public class EGCompareFuncgenSchema extends EGAbstractCompareSchema {
 
 	@Override
 	protected boolean assertSchemaCompatibility(
-			Connection masterCon,
 			Connection checkCon
 	) {		
 		return 
-			assertSchemaTypesCompatible(masterCon, checkCon);
+			assertSchemaTypesCompatible(checkCon);
 	}
 }
@@ -98,13 +98,14 @@ public class Archive extends SingleDatabaseTestCase {
 	private boolean checkChangedInGeneArchive(final Connection con, final String type, final String filter) {
 		boolean result = true;
 
-		String sql = "SELECT CONCAT(old_stable_id, \".\", old_version) " + "FROM stable_id_event sie LEFT JOIN gene_archive ga " + "                     ON old_stable_id=" + type + "_stable_id "
+		// Only the number of stable IDs missing from gene_archive is reported
+		String sql = "SELECT COUNT(*) " + "FROM stable_id_event sie LEFT JOIN gene_archive ga " + "                     ON old_stable_id=" + type + "_stable_id "
 				+ "WHERE sie.mapping_session_id=ga.mapping_session_id " + "     AND old_stable_id like \"%" + filter + "%\" "
 				+ "     AND gene_stable_id is NULL " + "     AND new_stable_id=old_stable_id and old_version!=new_version;";
 
-		String[] rows = DBUtils.getColumnValues(con, sql);
-		if (rows.length > 0) {
-			ReportManager.problem(this, con, rows.length + " deleted " + type + "s not in gene_archive ");
+		int rows = DBUtils.getRowCount(con, sql);
+		if (rows > 0) {
+			ReportManager.problem(this, con, rows + " deleted " + type + "s not in gene_archive ");
 			result = false;
 		}
 
@@ -127,12 +128,12 @@ public class Archive extends SingleDatabaseTestCase {
 
 		boolean result = true;
 
-		String sql = "SELECT CONCAT(old_stable_id, \".\", old_version) " + "FROM stable_id_event sie LEFT JOIN gene_archive ga " + "                     ON old_stable_id=" + type + "_stable_id "
+		String sql = "SELECT COUNT(*) " + "FROM stable_id_event sie LEFT JOIN gene_archive ga " + "                     ON old_stable_id=" + type + "_stable_id "
 				+ "WHERE sie.mapping_session_id=ga.mapping_session_id " + "   AND old_stable_id like \"%" + filter + "%\""
 				+ "   AND new_stable_id is NULL " + "   AND " + type + "_stable_id is NULL;";
-		String[] rows = DBUtils.getColumnValues(con, sql);
-		if (rows.length > 0) {
-			ReportManager.problem(this, con, rows.length + " deleted " + type + "s not in gene_archive ");
+		int rows = DBUtils.getRowCount(con, sql);
+		if (rows > 0) {
+			ReportManager.problem(this, con, rows + " deleted " + type + "s not in gene_archive ");
 			result = false;
 		}
 
@@ -19,18 +19,15 @@
 package org.ensembl.healthcheck.testcase.generic;
 
 import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.Statement;
-import java.util.ArrayList;
-import java.util.List;
 
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.DatabaseType;
 import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.Team;
 import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
-import org.ensembl.healthcheck.util.Utils;
+import org.ensembl.healthcheck.util.IntervalSweep;
 
 /**
  * Check for multiple components which overlap and are assembled to the same thing. Note that multiple assembly is OK, overlapping
@@ -38,8 +35,6 @@ import org.ensembl.healthcheck.util.Utils;
  */
 public class AssemblyMultipleOverlap extends SingleDatabaseTestCase {
 
-	private static final int MAX = 10; // maximum number of overlaps to print
-
 	/**
 	 * Creates a new instance of AssemblyMultipleOverlap.
 	 */
@@ -75,72 +70,44 @@ public class AssemblyMultipleOverlap extends SingleDatabaseTestCase {
 
 		Connection con = dbre.getConnection();
 
-		// get list of all multiply-assembled components
-		String sql = "SELECT sr1.name AS cmp_sr_name, cs1.name AS cmp_cs, sr2.name AS asm_sr_name, cs2.name AS asm_cs, a.asm_seq_region_id, a.cmp_seq_region_id, COUNT(*) AS count "
-				+ "FROM assembly a, seq_region sr1, seq_region sr2, coord_system cs1, coord_system cs2 " + "WHERE a.cmp_seq_region_id = sr1.seq_region_id AND a.asm_seq_region_id = sr2.seq_region_id "
-				+ "AND sr1.coord_system_id = cs1.coord_system_id AND sr2.coord_system_id = cs2.coord_system_id " + "GROUP BY asm_seq_region_id, cmp_seq_region_id, asm_start, cmp_start, ori HAVING count > 1;";
+		// stream every row of every multiply-assembled (asm, cmp) pair in one
+		// query, ordered so that each pair's components arrive together
+		String sql = "SELECT a.asm_seq_region_id, a.cmp_seq_region_id, a.asm_start, a.asm_end, a.ori FROM assembly a JOIN "
+				+ "(SELECT DISTINCT asm_seq_region_id, cmp_seq_region_id FROM assembly GROUP BY asm_seq_region_id, cmp_seq_region_id, asm_start, cmp_start, ori HAVING COUNT(*) > 1) m "
+				+ "USING (asm_seq_region_id, cmp_seq_region_id) ORDER BY a.asm_seq_region_id, a.cmp_seq_region_id, a.asm_start";
 
-		int overlapCount = 0;
+		long overlapCount = 0;
 
 		try {
 
-			Statement stmt = con.createStatement();
+			Statement stmt = con.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			stmt.setFetchSize(Integer.MIN_VALUE);
 			ResultSet rs = stmt.executeQuery(sql);
 
-			PreparedStatement cmpStmt = con.prepareStatement("SELECT asm_start, asm_end, ori FROM assembly WHERE asm_seq_region_id=? AND cmp_seq_region_id=? ORDER BY asm_start");
+			IntervalSweep components = new IntervalSweep(false);
+			long lastAsm = -1;
+			long lastCmp = -1;
 
 			while (rs.next()) {
 
-				long asm_seq_region_id = rs.getLong("asm_seq_region_id");
-				long cmp_seq_region_id = rs.getLong("cmp_seq_region_id");
-
-				// get start, end for each component
-				cmpStmt.setLong(1, asm_seq_region_id);
-				cmpStmt.setLong(2, cmp_seq_region_id);
-				ResultSet cmpRS = cmpStmt.executeQuery();
-
-				// read all start/end/strand
-				List startsL = new ArrayList();
-				List endsL = new ArrayList();
-				List strandsL = new ArrayList();
-				while (cmpRS.next()) {
-
-					startsL.add(cmpRS.getLong("asm_start"));
-					endsL.add(cmpRS.getLong("asm_end"));
-					strandsL.add(cmpRS.getLong("ori"));
+				long asmSeqRegionId = rs.getLong(1);
+				long cmpSeqRegionId = rs.getLong(2);
 
+				if (asmSeqRegionId != lastAsm || cmpSeqRegionId != lastCmp) {
+					overlapCount += components.countOverlaps();
+					components.clear();
+					lastAsm = asmSeqRegionId;
+					lastCmp = cmpSeqRegionId;
 				}
 
-				cmpRS.close();
-
-				// convert to arrays - easier to keep track
-				long starts[] = Utils.listToArrayLong(startsL);
-				long ends[] = Utils.listToArrayLong(endsL);
-				long strands[] = Utils.listToArrayLong(strandsL);
-
-				// check pairs for overlaps
-				// note ORDER BY asm_start means we have less comparisons to do
-				for (int i = 0; i < starts.length; i++) {
-					for (int j = i + 1; j < starts.length; j++) {
-
-						if (strands[i] == strands[j]) {
-
-							if (starts[j] < ends[i]) {
-								overlapCount++;
-								if (overlapCount < MAX) {
-									// System.out.println("Overlap: cmp " + cmp_seq_region_id + " asm " + asm_seq_region_id + " " + starts[i] + " " +
-									// ends[i] + " " + starts[j] + " " + ends[j]);
-								}
-							}
-						}
-
-					}
-
-				}
+				components.add(rs.getInt(3), rs.getInt(4), rs.getInt(5));
 
 			}
 
+			overlapCount += components.countOverlaps();
+
 			rs.close();
+			stmt.close();
 
 		} catch (Exception e) {
 			result = false;
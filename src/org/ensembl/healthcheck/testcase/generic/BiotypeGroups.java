@@ -42,6 +42,7 @@ import org.ensembl.healthcheck.Team;
 import org.ensembl.healthcheck.testcase.Priority;
 import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
 import org.ensembl.healthcheck.util.DBUtils;
+import org.ensembl.healthcheck.util.ReferenceDataCache;
 import org.ensembl.healthcheck.util.SqlTemplate;
 
 
@@ -183,22 +184,36 @@ public class BiotypeGroups extends SingleDatabaseTestCase {
     return results;
   }
 
+  /**
+   * Production biotypes for one table and database type, read once per run
+   */
+  private ReferenceDataCache.Snapshot getProductionBiotypes(String table, String databaseType) {
+    return ReferenceDataCache.getInstance().getSnapshot(getProductionDatabase(), "biotype", "name, biotype_group",
+        "object_type='" + table + "' AND FIND_IN_SET('" + databaseType + "', db_type) > 0");
+  }
+
   private Set<String> getGrouping(DatabaseRegistryEntry dbre, String[] biotypes, String table, String databaseType) {
-    SqlTemplate t = DBUtils.getSqlTemplate(getProductionDatabase());
+    ReferenceDataCache.Snapshot production = getProductionBiotypes(table, databaseType);
+    int groupColumn = production.getColumnIndex("biotype_group");
     Set<String> results = new HashSet<String>();
     for (String biotype : biotypes) {
-      String sql = "SELECT biotype_group FROM biotype WHERE object_type='" + table + "' AND name ='" + biotype + "' AND FIND_IN_SET('" + databaseType + "', db_type) > 0";
-      results.addAll(t.queryForDefaultObjectList(sql, String.class));
+      for (Object[] row : production.lookup("name", biotype)) {
+        if (row[groupColumn] != null) {
+          results.add(row[groupColumn].toString());
+        }
+      }
     }
     return results;
   }
 
   private Set<String> getBiotypeFromGrouping(DatabaseRegistryEntry dbre, Set<String> biotypeGroup, String table, String databaseType) {
-    SqlTemplate t = DBUtils.getSqlTemplate(getProductionDatabase());
+    ReferenceDataCache.Snapshot production = getProductionBiotypes(table, databaseType);
+    int nameColumn = production.getColumnIndex("name");
     Set<String> results = new HashSet<String>();
     for (String group : biotypeGroup) {
-      String sql = "SELECT name FROM biotype WHERE object_type='" + table + "' AND biotype_group ='" + group + "' AND FIND_IN_SET('" + databaseType + "', db_type) > 0";
-      results.addAll(t.queryForDefaultObjectList(sql, String.class));
+      for (Object[] row : production.lookup("biotype_group", group)) {
+        results.add(row[nameColumn].toString());
+      }
     }
     return results;
   }
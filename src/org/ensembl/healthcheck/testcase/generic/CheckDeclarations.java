@@ -199,7 +199,7 @@ public class CheckDeclarations extends SingleDatabaseTestCase {
 
     Connection con = dbre.getConnection();
 
-    String release = DBUtils.getMetaValue(con, "schema_version");
+    String release = DBUtils.getMetaValue(dbre, "schema_version");
     DatabaseRegistryEntry prod = getProductionDatabase();
     String sql = "SELECT count(*) FROM db_list dl, db d WHERE dl.db_id = d.db_id and db_type = 'core' and is_current = 1 AND full_db_name = '" + dbre.getName() + "' AND species_id IN (SELECT species_id FROM changelog c, changelog_species cs WHERE c.changelog_id = cs.changelog_id AND release_id = " + release + " AND status not in ('cancelled', 'postponed') AND " + change + " = 'Y')";
     int rows = DBUtils.getRowCount(prod.getConnection(), sql);
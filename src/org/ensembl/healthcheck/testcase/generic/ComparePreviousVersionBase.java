@@ -36,6 +36,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.logging.Level;
 
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.ReportManager;
@@ -149,9 +150,14 @@ public abstract class ComparePreviousVersionBase extends SingleDatabaseTestCase
 
 			ResultSet rs = stmt.executeQuery(sql);
 
+			// checked once rather than building a message for every row
+			boolean logRows = logger.isLoggable(Level.FINEST);
+
 			while (rs != null && rs.next()) {
 				result.put(rs.getString(1), rs.getInt(2));
-				logger.finest(rs.getString(1) + " " + rs.getInt(2));
+				if (logRows) {
+					logger.finest(rs.getString(1) + " " + rs.getInt(2));
+				}
 			}
 
 			stmt.close();
@@ -110,7 +110,7 @@ public class ComparePreviousVersionExonCoords extends SingleDatabaseTestCase {
 		}
 
 		// and those where the meta key genebuild.last_geneset_update has changed
-		if (!DBUtils.getMetaValue(currentCon, "genebuild.last_geneset_update").equals(DBUtils.getMetaValue(previousCon, "genebuild.last_geneset_update"))) {
+		if (!DBUtils.getMetaValue(current, "genebuild.last_geneset_update").equals(DBUtils.getMetaValue(previous, "genebuild.last_geneset_update"))) {
 			ReportManager.correct(this, currentCon, "Meta entry genebuild.last_geneset_update has changed since " + previous.getName() + ", skipping");
 			return true;
 		}
@@ -30,6 +30,7 @@
 package org.ensembl.healthcheck.testcase.generic;
 
 import java.sql.Connection;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -78,9 +79,11 @@ public class ComparePreviousVersionTableRows extends ComparePreviousVersionBase
                 tables = Utils.removeStringFromArray(tables, "object_xref");
                 tables = Utils.removeStringFromArray(tables, "xref");
 
-		for (int i = 0; i < tables.length; i++) {
+		// exact counts from SELECT COUNT(*), run on several connections at once
+		Map<String, Long> counts = dbre.getTableStatistics().getRowCounts(Arrays.asList(tables));
+		for (Map.Entry<String, Long> count : counts.entrySet()) {
 
-			rowCounts.put(tables[i], new Integer(DBUtils.getRowCount(con, "SELECT COUNT(*) FROM " + tables[i])));
+			rowCounts.put(count.getKey(), new Integer(count.getValue().intValue()));
 
 		}
 		rowCounts.put("external_synonym", new Integer(DBUtils.getRowCount(con, "SELECT COUNT(*) FROM external_synonym e, xref x WHERE e.xref_id = x.xref_id AND x.info_type <> 'PROJECTION'")));
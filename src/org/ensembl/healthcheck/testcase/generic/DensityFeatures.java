@@ -22,8 +22,12 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang.StringUtils;
 
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.DatabaseType;
@@ -111,7 +115,7 @@ public class DensityFeatures extends SingleDatabaseTestCase {
                         return result;
                 }
 
-		result &= checkFeaturesAndCounts(con);
+		result &= checkFeaturesAndCounts(dbre);
 
 		result &= checkAnalysisAndDensityTypes(dbre);
 
@@ -126,10 +130,13 @@ public class DensityFeatures extends SingleDatabaseTestCase {
 	// ----------------------------------------------------------------------
 
 	@SuppressWarnings("rawtypes")
-  private boolean checkFeaturesAndCounts(Connection con) {
+  private boolean checkFeaturesAndCounts(DatabaseRegistryEntry dbre) {
 
 		boolean result = true;
 
+		Connection con = dbre.getConnection();
+		SqlTemplate t = DBUtils.getSqlTemplate(con);
+
 		// get top level co-ordinate system ID
 		String sql = "SELECT coord_system_id FROM coord_system WHERE rank=1 LIMIT 1";
 
@@ -142,6 +149,38 @@ public class DensityFeatures extends SingleDatabaseTestCase {
 
 		int topLevelCSID = Integer.parseInt(s);
 
+		// check if this species has appropriate density features
+		Set<String> logicNames = new HashSet<String>(t.queryForDefaultObjectList("SELECT logic_name FROM analysis", String.class));
+
+		// sums of density_feature.density_value and the seq_region_attrib values
+		// they should agree with, for all seq_regions and analysis types at once
+		final Map<String, String> sumsFromDensityFeature = new HashMap<String, String>();
+		t.execute("SELECT df.seq_region_id, a.logic_name, SUM(df.density_value) FROM density_type dt, density_feature df, analysis a WHERE dt.density_type_id=df.density_type_id AND dt.analysis_id=a.analysis_id GROUP BY df.seq_region_id, a.logic_name",
+				new SqlTemplate.ResultSetCallback<Void>() {
+					@Override
+					public Void process(ResultSet rs) throws SQLException {
+						while (rs.next()) {
+							sumsFromDensityFeature.put(rs.getLong(1) + "\t" + rs.getString(2), rs.getString(3));
+						}
+						return null;
+					}
+				});
+		final Map<String, String> valuesFromSeqRegionAttrib = new HashMap<String, String>();
+		t.execute("SELECT sra.seq_region_id, at.code, sra.value FROM seq_region_attrib sra, attrib_type at WHERE sra.attrib_type_id=at.attrib_type_id AND at.code IN ('"
+				+ StringUtils.join(logicNameToAttribCode.values(), "','") + "')",
+				new SqlTemplate.ResultSetCallback<Void>() {
+					@Override
+					public Void process(ResultSet rs) throws SQLException {
+						while (rs.next()) {
+							String key = rs.getLong(1) + "\t" + rs.getString(2);
+							if (!valuesFromSeqRegionAttrib.containsKey(key)) {
+								valuesFromSeqRegionAttrib.put(key, rs.getString(3));
+							}
+						}
+						return null;
+					}
+				});
+
 		try {
 
 			// check each top-level seq_region (up to a limit) to see how many density
@@ -160,8 +199,7 @@ public class DensityFeatures extends SingleDatabaseTestCase {
 				boolean assemblyException = rs.getBoolean("exception");
 				logger.fine("Counting density features on seq_region " + seqRegionName);
 
-				sql = "SELECT COUNT(*) FROM density_feature WHERE seq_region_id=" + seqRegionID;
-				int dfRows = DBUtils.getRowCount(con, sql);
+				long dfRows = dbre.getCoordinateStatistics().getSeqRegion("density_feature", seqRegionID).getCount();
 				if (dfRows == 0) {
 
                                         noDensity++;
@@ -174,9 +212,7 @@ public class DensityFeatures extends SingleDatabaseTestCase {
 					String logicName = (String) it.next();
 					String attribCode = (String) logicNameToAttribCode.get(logicName);
 
-					// check if this species has appropriate density features
-					int analRows = DBUtils.getRowCount(con, "SELECT COUNT(*) FROM analysis WHERE logic_name='" + logicName + "'");
-					if (analRows == 0) {
+					if (!logicNames.contains(logicName)) {
 						logger.fine(DBUtils.getShortDatabaseName(con) + " has no " + logicName + " analysis type, skipping checks for these features");
 					} else {
 
@@ -186,20 +222,13 @@ public class DensityFeatures extends SingleDatabaseTestCase {
 
 						logger.fine("Comparing density_feature.density_value with seq_region_attrib for " + logicName + " features on " + seqRegionName);
 
-						sql = "SELECT SUM(df.density_value) FROM density_type dt, density_feature df, analysis a WHERE dt.density_type_id=df.density_type_id AND dt.analysis_id=a.analysis_id AND a.logic_name='"
-								+ logicName + "' AND seq_region_id=" + seqRegionID;
-
-						String sumDF = DBUtils.getRowColumnValue(con, sql);
-						// System.out.println(sql + " " + sumDF);
+						String sumDF = sumsFromDensityFeature.get(seqRegionID + "\t" + logicName);
 						//don't check the sum for haplotypes or PAR regions
 						if (sumDF != null && sumDF.length() > 0 && !assemblyException) {
 
 							long sumFromDensityFeature = Long.parseLong(sumDF);
 
-							sql = "SELECT value FROM seq_region_attrib sra, attrib_type at WHERE sra.attrib_type_id=at.attrib_type_id AND at.code='" + attribCode + "' AND seq_region_id=" + seqRegionID;
-
-							String sumSRA = DBUtils.getRowColumnValue(con, sql);
-							// System.out.println(sql + " " + sumSRA);
+							String sumSRA = valuesFromSeqRegionAttrib.get(seqRegionID + "\t" + attribCode);
 							if (sumSRA != null && sumSRA.length() > 0) {
 
 								long valueFromSeqRegionAttrib = Long.parseLong(sumSRA);
@@ -212,8 +241,7 @@ public class DensityFeatures extends SingleDatabaseTestCase {
 
 								}
 
-							} // if sumSRA
-                                                        if (sumSRA.length() == 0) {
+							} else {
                                                                 ReportManager.problem(this, con, seqRegionName + " has no seq_region_attrib for " + attribCode);
                                                                 result = false;
                                                         }
@@ -91,7 +91,7 @@ public class Ditag extends SingleDatabaseTestCase {
 
 			result &= checkDitagRelation(con);
 
-			result &= checkAllChromosomesHaveDitagFeatures(con);
+			result &= checkAllChromosomesHaveDitagFeatures(dbre);
 
 			result &= checkForSingles(con);
 
@@ -166,10 +166,12 @@ public class Ditag extends SingleDatabaseTestCase {
 	 * Check that all chromomes have > 0 ditag_features.
 	 */
 
-	private boolean checkAllChromosomesHaveDitagFeatures(Connection con) {
+	private boolean checkAllChromosomesHaveDitagFeatures(DatabaseRegistryEntry dbre) {
 
 		boolean result = true;
 
+		Connection con = dbre.getConnection();
+
 		// find all the chromosomes, and for each one check that it has some markers
 		// note a "chromosome" is assumed to be a seq_region that is:
 		// - on the top-level co-ordinate system and
@@ -207,8 +209,7 @@ public class Ditag extends SingleDatabaseTestCase {
 
 				// check ditag_features
 				logger.fine("Counting ditag_features on chromosome " + seqRegionName);
-				sql = "SELECT COUNT(*) FROM ditag_feature WHERE seq_region_id=" + seqRegionID;
-				int rows = DBUtils.getRowCount(con, sql);
+				long rows = dbre.getCoordinateStatistics().getSeqRegion("ditag_feature", seqRegionID).getCount();
 				if (rows == 0) {
 
 					ReportManager.problem(this, con, "Chromosome " + seqRegionName + " (seq_region_id " + seqRegionID + ") has no ditag_features");
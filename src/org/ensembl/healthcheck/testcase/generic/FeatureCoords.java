@@ -18,22 +18,19 @@
 
 package org.ensembl.healthcheck.testcase.generic;
 
-import java.sql.Connection;
 import java.util.Set;
 import java.util.Map;
 import java.util.logging.Logger;
 
 
 
+import org.ensembl.healthcheck.CoordinateStatistics;
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.Team;
 import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
-import org.ensembl.healthcheck.util.DBUtils;
-import org.ensembl.healthcheck.util.SqlTemplate;
 import org.ensembl.healthcheck.util.Utils;
 import org.ensembl.healthcheck.util.RowMapper;
-import org.ensembl.healthcheck.util.DefaultMapRowMapper;
 import org.ensembl.healthcheck.util.DefaultObjectRowMapper;
 
 
@@ -54,8 +51,6 @@ public class FeatureCoords extends SingleDatabaseTestCase {
 		setTeamResponsible(Team.GENEBUILD);
 	}
 
-	public Map<String,Integer> seq_regions;
-	
 	/**
 	 * Iterate over each affected database and perform various checks.
 	 * 
@@ -68,13 +63,7 @@ public class FeatureCoords extends SingleDatabaseTestCase {
 		boolean result = true;
 
 		String[] featureTables = getCoreFeatureTables();
-        Connection con = dbre.getConnection();
-        SqlTemplate t = DBUtils.getSqlTemplate(con);
-        String sql = "SELECT s.seq_region_id,s.length FROM seq_region s join seq_region_attrib a USING (seq_region_id) WHERE a.attrib_type_id = 6";
-        DefaultMapRowMapper<String, Integer> mapper = new DefaultMapRowMapper<String, Integer>(String.class, Integer.class);
-                             
-        seq_regions = t.queryForMap(sql,mapper);
-        
+
 		for (int tableIndex = 0; tableIndex < featureTables.length; tableIndex++) {
 
 			String tableName = featureTables[tableIndex];
@@ -90,21 +79,17 @@ public class FeatureCoords extends SingleDatabaseTestCase {
 
 
       protected boolean checkLength(DatabaseRegistryEntry dbre, String tableName) {
-        SqlTemplate t = DBUtils.getSqlTemplate(dbre);
         boolean result = true;
         if (tableName.equals("repeat_feature")) {
                 return true;
         }
-        String featureSQL = "SELECT seq_region_id, max(seq_region_start) from " + tableName + " group by seq_region_id ";
-        DefaultMapRowMapper<Integer, Integer> feature_mapper = new DefaultMapRowMapper<Integer, Integer>(Integer.class, Integer.class);
-        Map<Integer, Integer> featureResults = t.queryForMap(featureSQL, feature_mapper);
-
-        
-        for (Map.Entry<Integer, Integer> entry : featureResults.entrySet()) {
-          Integer max = entry.getValue();
-          Integer region = entry.getKey();
-          if (seq_regions.containsKey(region) ) {
-            Integer length = seq_regions.get(region);
+        CoordinateStatistics stats = dbre.getCoordinateStatistics();
+
+        for (Map.Entry<Long, CoordinateStatistics.Stats> entry : stats.getBySeqRegion(tableName).entrySet()) {
+          long max = entry.getValue().getMaxStart();
+          long region = entry.getKey();
+          if (stats.isTopLevel(region)) {
+            long length = stats.getSeqRegionLength(region);
             if (max > length) {
               ReportManager.problem(this, dbre.getConnection(), "Some features in " + tableName + " start on position " + max + " when region " + region + " is only " + length + " long");
               result = false;
@@ -119,8 +104,7 @@ public class FeatureCoords extends SingleDatabaseTestCase {
 
 
       protected boolean checkStart(DatabaseRegistryEntry dbre, String tableName) {
-        String sql = "SELECT COUNT(*) FROM " + tableName + " WHERE seq_region_start < 1";
-        int rows = DBUtils.getRowCount(dbre.getConnection(), sql);
+        long rows = dbre.getCoordinateStatistics().getTotal(tableName).getStartBelowOne();
         if (rows > 0) {
                 ReportManager.problem(this, dbre.getConnection(), rows + " rows in " + tableName + " have seq_region_start < 1");
                 return false;
@@ -138,8 +122,7 @@ public class FeatureCoords extends SingleDatabaseTestCase {
 	 * @return true if start is after end
 	 */
 	protected boolean checkStartEnd(DatabaseRegistryEntry dbre, String tableName) {
-		String sql = "SELECT COUNT(*) FROM " + tableName + " WHERE seq_region_start > seq_region_end";
-		int rows = DBUtils.getRowCount(dbre.getConnection(), sql);;
+		long rows = dbre.getCoordinateStatistics().getTotal(tableName).getStartAfterEnd();
 		if (rows > 0) {
 			ReportManager.problem(this, dbre.getConnection(), rows + " rows in " + tableName + " have seq_region_start > seq_region_end");
 			return false;
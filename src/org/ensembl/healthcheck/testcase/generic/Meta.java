@@ -41,7 +41,6 @@ import org.ensembl.healthcheck.Species;
 import org.ensembl.healthcheck.Team;
 import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
 import org.ensembl.healthcheck.util.DBUtils;
-import org.ensembl.healthcheck.util.SqlTemplate;
 
 /**
  * Check that the meta table exists and has data and the entries correspond to
@@ -91,7 +90,7 @@ public class Meta extends SingleDatabaseTestCase {
 		}
 
 		if (dbre.getType() == DatabaseType.CORE) {
-			result &= checkKeysPresent(con);
+			result &= checkKeysPresent(dbre);
 		}
 
 		// -------------------------------------------
@@ -143,7 +142,8 @@ public class Meta extends SingleDatabaseTestCase {
 
 	// ---------------------------------------------------------------------
 
-	private boolean checkKeysPresent(Connection con) {
+	private boolean checkKeysPresent(DatabaseRegistryEntry dbre) {
+		Connection con = dbre.getConnection();
 		boolean result = true;
 
 		// check that certain keys exist
@@ -165,7 +165,7 @@ public class Meta extends SingleDatabaseTestCase {
 			"repeat.analysis",
 		};
 		for (String metaKey: metaKeys) {
-		  int rows = metaKeyCount(con, metaKey);
+		  int rows = dbre.getMeta().getValues(metaKey).size();
 			if (rows == 0) {
 				result = false;
 				ReportManager.problem(this, con, "No entry in meta table for "+ metaKey);
@@ -175,13 +175,6 @@ public class Meta extends SingleDatabaseTestCase {
 		return result;
 	}
 
-	//---------------------------------------------------------------------
-	private int metaKeyCount(Connection con, String metaKey) {
-	  String sql = "select count(*) from meta where meta_key =?";
-	  SqlTemplate t = getSqlTemplate(con);
-	  return t.queryForDefaultObject(sql, Integer.class, metaKey);
-	}
-
 	// ---------------------------------------------------------------------
 	/**
 	 * Check that the schema_version in the meta table is present and matches
@@ -204,8 +197,7 @@ public class Meta extends SingleDatabaseTestCase {
 			return false;
 		}
 
-		String schemaVersion = DBUtils.getRowColumnValue(con,
-				"SELECT meta_value FROM meta WHERE meta_key='schema_version'");
+		String schemaVersion = dbre.getMeta().getValue("schema_version");
 		logger.finest("schema_version from meta table: " + schemaVersion);
 
 		if (schemaVersion == null || schemaVersion.length() == 0) {
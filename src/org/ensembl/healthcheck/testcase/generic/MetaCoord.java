@@ -21,18 +21,22 @@ package org.ensembl.healthcheck.testcase.generic;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import org.ensembl.healthcheck.CoordinateStatistics;
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.DatabaseType;
 import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.Team;
 import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
 import org.ensembl.healthcheck.util.DBUtils;
+import org.ensembl.healthcheck.util.SqlTemplate;
 
 /**
  * Check that meta_coord table contains entries for all the coordinate systems that all the features are stored in.
@@ -64,87 +68,107 @@ public class MetaCoord extends SingleDatabaseTestCase {
 		boolean result = true;
 
 		Connection con = dbre.getConnection();
+		SqlTemplate t = DBUtils.getSqlTemplate(con);
 
-		// coordSystems is a hash of lists of coordinate systems that each feature table contains
-		Map<String, List<String>> coordSystems = new HashMap<String, List<String>>();
+		// meta_coord entries for each table and coordinate system, read in one go
+		final Map<String, Map<Long, List<String>>> metaCoord = new HashMap<String, Map<Long, List<String>>>();
+		t.execute("SELECT table_name, coord_system_id, max_length FROM meta_coord", new SqlTemplate.ResultSetCallback<Void>() {
+			@Override
+			public Void process(ResultSet rs) throws SQLException {
+				while (rs.next()) {
+					Map<Long, List<String>> tableEntries = metaCoord.get(rs.getString(1));
+					if (tableEntries == null) {
+						tableEntries = new HashMap<Long, List<String>>();
+						metaCoord.put(rs.getString(1), tableEntries);
+					}
+					List<String> maxLengths = tableEntries.get(rs.getLong(2));
+					if (maxLengths == null) {
+						maxLengths = new ArrayList<String>();
+						tableEntries.put(rs.getLong(2), maxLengths);
+					}
+					maxLengths.add(rs.getString(3));
+				}
+				return null;
+			}
+		});
 
-		try {
+		Set<Long> vegaCoordSystems = null;
+		if (dbre.getType() == DatabaseType.SANGER_VEGA) {
+			vegaCoordSystems = new HashSet<Long>(t.queryForDefaultObjectList("SELECT coord_system_id FROM coord_system WHERE version LIKE 'VEGA%'", Long.class));
+		}
 
-			Statement stmt = con.createStatement();
+		// coordSystems is a hash of lists of coordinate systems that each feature table contains
+		Map<String, Set<Long>> coordSystems = new HashMap<String, Set<Long>>();
 
-			// build up a list of all the coordinate systems that are in the various feature tables
-			for (String tableName : featureTables) {
-				String sql = "";
-				if (dbre.getType() == DatabaseType.SANGER_VEGA) {
-					sql = "SELECT DISTINCT(sr.coord_system_id) FROM seq_region sr join coord_system cs on sr.coord_system_id = cs.coord_system_id, " + tableName
-							+ " f WHERE sr.seq_region_id = f.seq_region_id and cs.version like 'VEGA%' ";
-				} else {
-					sql = "SELECT DISTINCT(sr.coord_system_id) FROM seq_region sr, " + tableName + " f WHERE sr.seq_region_id = f.seq_region_id";
-				}
+		// build up a list of all the coordinate systems that are in the various feature tables
+		for (String tableName : featureTables) {
 
-				logger.finest("Getting feature coordinate systems and max_length for " + tableName);
-				ResultSet rs = stmt.executeQuery(sql);
+			logger.finest("Getting feature coordinate systems and max_length for " + tableName);
+			Map<Long, CoordinateStatistics.Stats> byCoordSystem = dbre.getCoordinateStatistics().getByCoordSystem(tableName);
 
-				while (rs.next()) {
+			for (Map.Entry<Long, CoordinateStatistics.Stats> entry : byCoordSystem.entrySet()) {
 
-					String coordSystemID = rs.getString(1);
-					logger.finest("Added feature coordinate system for " + tableName + ": " + coordSystemID);
+				Long coordSystemID = entry.getKey();
+				if (vegaCoordSystems != null && !vegaCoordSystems.contains(coordSystemID)) {
+					continue;
+				}
+				logger.finest("Added feature coordinate system for " + tableName + ": " + coordSystemID);
 
-					// check that the meta_coord table has an entry corresponding to this
-					int mc = DBUtils.getRowCount(con, "SELECT COUNT(*) FROM meta_coord WHERE coord_system_id=" + coordSystemID + " AND table_name='" + tableName + "'");
+				// check that the meta_coord table has an entry corresponding to this
+				List<String> maxLengths = Collections.emptyList();
+				if (metaCoord.containsKey(tableName) && metaCoord.get(tableName).containsKey(coordSystemID)) {
+					maxLengths = metaCoord.get(tableName).get(coordSystemID);
+				}
+				int mc = maxLengths.size();
 
-					if (mc == 0) {
+				if (mc == 0) {
 
-						ReportManager.problem(this, con, "No entry for coordinate system with ID " + coordSystemID + " for " + tableName + " in meta_coord");
-						result = false;
+					ReportManager.problem(this, con, "No entry for coordinate system with ID " + coordSystemID + " for " + tableName + " in meta_coord");
+					result = false;
 
-					} else if (mc > 1) {
+				} else if (mc > 1) {
 
-						ReportManager.problem(this, con, "Coordinate system with ID " + coordSystemID + " duplicated for " + tableName + " in meta_coord");
-						result = false;
+					ReportManager.problem(this, con, "Coordinate system with ID " + coordSystemID + " duplicated for " + tableName + " in meta_coord");
+					result = false;
 
-					}
+				}
 
-					// store in coordSystems map - create List if necessary
-					List<String> csList = coordSystems.get(tableName);
+				// store in coordSystems map - create Set if necessary
+				Set<Long> csSet = coordSystems.get(tableName);
 
-					if (csList == null) {
+				if (csSet == null) {
 
-						csList = new ArrayList<String>();
+					csSet = new HashSet<Long>();
 
-					}
+				}
 
-					csList.add(coordSystemID);
-					coordSystems.put(tableName, csList);
-									
-					// check that the max_length value in meta_coord corresponds to max feature length in each table per coord_system 
-					String mc_max_length = DBUtils.getRowColumnValue(con, "SELECT max_length FROM meta_coord WHERE coord_system_id=" + coordSystemID + " AND table_name='" + tableName + "'");					
-					String f_max_length = DBUtils.getRowColumnValue(con, "SELECT ABS(MAX((cast(f.seq_region_end as signed) - cast(f.seq_region_start as signed)) + 1)) FROM " + tableName + " f JOIN seq_region s USING(seq_region_id) WHERE s.coord_system_id=" + coordSystemID);
-					
-					if (!mc_max_length.equals(f_max_length)) {
-						ReportManager.problem(this, con, "max_length value " + mc_max_length + " incorrect for coordinate system with ID " + coordSystemID + " for table " + tableName + " in meta_coord; max_length should equal "+ f_max_length);
-						result = false;
-					}
-					
+				csSet.add(coordSystemID);
+				coordSystems.put(tableName, csSet);
+
+				// check that the max_length value in meta_coord corresponds to max feature length in each table per coord_system
+				String mc_max_length = mc == 0 ? "" : maxLengths.get(0);
+				String f_max_length = String.valueOf(Math.abs(entry.getValue().getMaxLength()));
 
+				if (!f_max_length.equals(mc_max_length)) {
+					ReportManager.problem(this, con, "max_length value " + mc_max_length + " incorrect for coordinate system with ID " + coordSystemID + " for table " + tableName + " in meta_coord; max_length should equal "+ f_max_length);
+					result = false;
 				}
-				
-				rs.close();
 
 			}
 
-			// check that every meta_coord table entry refers to a coordinate system that is used in a feature
-			// if this isn't true it's not fatal but should be flagged
-			String sql = "SELECT * FROM meta_coord";
-			ResultSet rs = stmt.executeQuery(sql);
+		}
+
+		// check that every meta_coord table entry refers to a coordinate system that is used in a feature
+		// if this isn't true it's not fatal but should be flagged
+		for (Map.Entry<String, Map<Long, List<String>>> tableEntries : metaCoord.entrySet()) {
+
+			String tableName = tableEntries.getKey();
+			Set<Long> featureCSs = coordSystems.get(tableName);
 
-			while (rs.next()) {
+			for (Long csID : tableEntries.getValue().keySet()) {
 
-				String tableName = rs.getString("table_name");
-				String csID = rs.getString("coord_system_id");
 				logger.finest("Checking for coord_system_id " + csID + " in " + tableName);
 
-				List<String> featureCSs = coordSystems.get(tableName);
 				if (featureCSs != null && !featureCSs.contains(csID)) {
 					ReportManager.problem(this, con, "meta_coord has entry for coord_system ID " + csID + " in " + tableName + " but this coordinate system is not actually used in " + tableName);
 					result = false;
@@ -152,16 +176,11 @@ public class MetaCoord extends SingleDatabaseTestCase {
 
 			}
 
-			rs.close();
-			stmt.close();
-
-			// check that there are no null max_length entries
-			result &= checkNoNulls(con, "meta_coord", "max_length");
-
-		} catch (SQLException e) {
-			e.printStackTrace();
 		}
 
+		// check that there are no null max_length entries
+		result &= checkNoNulls(con, "meta_coord", "max_length");
+
 		return result;
 
 	}
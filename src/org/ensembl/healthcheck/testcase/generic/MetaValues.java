@@ -91,7 +91,7 @@ public class MetaValues extends SingleDatabaseTestCase {
 			
 		}
 
-		result &= checkAssemblyMapping(con);
+		result &= checkAssemblyMapping(dbre);
 
 		result &= checkTaxonomyID(dbre);
 
@@ -99,7 +99,7 @@ public class MetaValues extends SingleDatabaseTestCase {
 
 		if (dbre.getType() == DatabaseType.CORE) {
 			result &= checkDates(dbre);
-                        result &= checkGenebuildID(con);
+                        result &= checkGenebuildID(dbre);
                         result &= checkGenebuildMethod(dbre);
                         result &= checkAssemblyAccessionUpdate(dbre);
                         result &= checkGenes(dbre, sec);
@@ -165,10 +165,12 @@ public class MetaValues extends SingleDatabaseTestCase {
 
 	// ---------------------------------------------------------------------
 
-	private boolean checkAssemblyMapping(Connection con) {
+	private boolean checkAssemblyMapping(DatabaseRegistryEntry dbre) {
 
 		boolean result = true;
 
+		Connection con = dbre.getConnection();
+
 		// Check formatting of assembly.mapping entries; should be of format
 		// coord_system1{:default}|coord_system2{:default} with optional third
 		// coordinate system
@@ -178,7 +180,7 @@ public class MetaValues extends SingleDatabaseTestCase {
 		Pattern assemblyMappingPattern = Pattern.compile("^([a-zA-Z0-9.]+):?([a-zA-Z0-9._-]+)?[\\|#]([a-zA-Z0-9._-]+):?([a-zA-Z0-9._-]+)?([\\|#]([a-zA-Z0-9.]+):?([a-zA-Z0-9._-]+)?)?$");
 		String[] validCoordSystems = DBUtils.getColumnValues(con, "SELECT name FROM coord_system");
 
-		String[] mappings = DBUtils.getColumnValues(con, "SELECT meta_value FROM meta WHERE meta_key='assembly.mapping'");
+		String[] mappings = dbre.getMeta().getValues("assembly.mapping").toArray(new String[0]);
 		for (int i = 0; i < mappings.length; i++) {
 			Matcher matcher = assemblyMappingPattern.matcher(mappings[i]);
 			if (!matcher.matches()) {
@@ -326,7 +328,7 @@ public class MetaValues extends SingleDatabaseTestCase {
 		// The taxonomy ID-species mapping is held in the Species class.
 
 		Species species = dbre.getSpecies();
-		String dbTaxonID = DBUtils.getRowColumnValue(con, "SELECT meta_value FROM meta WHERE meta_key='species.taxonomy_id'");
+		String dbTaxonID = dbre.getMeta().getValue("species.taxonomy_id");
 		logger.finest("Taxonomy ID from database: " + dbTaxonID);
 
 		if (dbTaxonID.equals(Species.getTaxonomyID(species))) {
@@ -352,8 +354,8 @@ public class MetaValues extends SingleDatabaseTestCase {
 
                 String[] allowedTypes   = {"GenBank Assembly ID", "EMBL-Bank WGS Master"};
                 String[] allowedSources = {"NCBI", "ENA", "DDBJ"};
-                String WebType   = DBUtils.getRowColumnValue(con, "SELECT meta_value FROM meta WHERE meta_key='assembly.web_accession_type'");
-                String WebSource = DBUtils.getRowColumnValue(con, "SELECT meta_value FROM meta WHERE meta_key='assembly.web_accession_source'");
+                String WebType   = dbre.getMeta().getValue("assembly.web_accession_type");
+                String WebSource = dbre.getMeta().getValue("assembly.web_accession_source");
 
                 if (WebType.length() > 0) {
                         if (!Utils.stringInArray(WebType, allowedTypes, true)) {
@@ -391,7 +393,7 @@ public class MetaValues extends SingleDatabaseTestCase {
 			String key = keys[i];
 			String regexp = regexps[i];
 
-			String value = DBUtils.getRowColumnValue(con, "SELECT meta_value FROM meta WHERE meta_key='" + key + "'");
+			String value = dbre.getMeta().getValue(key);
 			if (value == null || value.length() == 0) {
 
 				ReportManager.problem(this, con, "No " + key + " entry in meta table");
@@ -414,9 +416,12 @@ public class MetaValues extends SingleDatabaseTestCase {
                 }
 
 		// some more checks for sanity of dates
-		int startDate = Integer.valueOf(DBUtils.getRowColumnValue(con, "SELECT meta_value FROM meta WHERE meta_key='genebuild.start_date'").replaceAll("[^0-9]", "")).intValue();
-		int initialReleaseDate = Integer.valueOf(DBUtils.getRowColumnValue(con, "SELECT meta_value FROM meta WHERE meta_key='genebuild.initial_release_date'").replaceAll("[^0-9]", "")).intValue();
-		int lastGenesetUpdate = Integer.valueOf(DBUtils.getRowColumnValue(con, "SELECT meta_value FROM meta WHERE meta_key='genebuild.last_geneset_update'").replaceAll("[^0-9]", "")).intValue();
+		Integer startDate = getDateNumber(dbre, "genebuild.start_date");
+		Integer initialReleaseDate = getDateNumber(dbre, "genebuild.initial_release_date");
+		Integer lastGenesetUpdate = getDateNumber(dbre, "genebuild.last_geneset_update");
+		if (startDate == null || initialReleaseDate == null || lastGenesetUpdate == null) {
+			return false;
+		}
 
 		// check for genebuild.start_date >= genebuild.initial_release_date (not allowed as we cannot release a gene set before
 		// downloaded the evidence)
@@ -438,6 +443,25 @@ public class MetaValues extends SingleDatabaseTestCase {
 
 	// ---------------------------------------------------------------------
 
+	/**
+	 * @return the digits of a date in the meta table as a number, or null
+	 *         (after reporting a problem) if it has none
+	 */
+	private Integer getDateNumber(DatabaseRegistryEntry dbre, String key) {
+
+		String value = dbre.getMeta().getValue(key);
+		String digits = value == null ? "" : value.replaceAll("[^0-9]", "");
+		try {
+			return Integer.valueOf(digits);
+		} catch (NumberFormatException e) {
+			ReportManager.problem(this, dbre.getConnection(), key + " " + value + " is not a valid date");
+			return null;
+		}
+
+	}
+
+	// ---------------------------------------------------------------------
+
 	private boolean checkMetaKey(Connection con, String key, String s, String regexp) {
 
 		if (regexp != null) {
@@ -475,9 +499,10 @@ public class MetaValues extends SingleDatabaseTestCase {
 
 	// ---------------------------------------------------------------------
 
-	private boolean checkGenebuildID(Connection con) {
+	private boolean checkGenebuildID(DatabaseRegistryEntry dbre) {
 
-		String gbid = DBUtils.getRowColumnValue(con, "SELECT meta_value FROM meta WHERE meta_key='genebuild.id'");
+		Connection con = dbre.getConnection();
+		String gbid = dbre.getMeta().getValue("genebuild.id");
 		logger.finest("genebuild.id from database: " + gbid);
 
 		if (gbid == null || gbid.length() == 0) {
@@ -509,8 +534,11 @@ public class MetaValues extends SingleDatabaseTestCase {
 		Connection con = dbre.getConnection();
 		String[] Tables = { "gene", "transcript", "exon", "repeat_feature", "dna_align_feature", "protein_align_feature", "simple_feature", "prediction_transcript", "prediction_exon" };
 
-		int exists = DBUtils.getRowCount(con, "SELECT COUNT(*) FROM meta where meta_key like '%build.level'");
-		if (exists == 0) {
+		boolean exists = false;
+		for (String metaKey : dbre.getMeta().getKeys()) {
+			exists |= metaKey.endsWith("build.level");
+		}
+		if (!exists) {
 			ReportManager.problem(this, con, "GB: No %build.level entries in the meta table - run ensembl/misc-scripts/meta_levels.pl");
 			result = false; 
 		}
@@ -518,7 +546,7 @@ public class MetaValues extends SingleDatabaseTestCase {
 		for (int i = 0; i < Tables.length; i++) {
 			String Table = Tables[i];
 			int rows = DBUtils.getRowCount(con, "SELECT COUNT(*) FROM " + Table);
-			int key = DBUtils.getRowCount(con, "SELECT COUNT(*) FROM meta WHERE meta_key = '" + Table + "build.level' ");
+			int key = dbre.getMeta().getValues(Table + "build.level").size();
 			int toplevel = DBUtils.getRowCount(con, "SELECT COUNT(*) FROM " + Table
 					+ " t, seq_region_attrib sra, attrib_type at WHERE t.seq_region_id = sra.seq_region_id AND sra.attrib_type_id = at.attrib_type_id AND at.code = 'toplevel' ");
 			if (rows != 0) {
@@ -566,7 +594,7 @@ public class MetaValues extends SingleDatabaseTestCase {
 		String[] allowedMethods = { "full_genebuild", "projection_build", "import", "mixed_strategy_build", "external_annotation_import" };
 
 		Connection con = dbre.getConnection();
-		String method = DBUtils.getRowColumnValue(con, "SELECT meta_value FROM meta WHERE meta_key='genebuild.method'");
+		String method = dbre.getMeta().getValue("genebuild.method");
 
 		if (method.equals("")) {
 			ReportManager.problem(this, con, "No genebuild.method entry present in Meta table");
@@ -589,8 +617,8 @@ public class MetaValues extends SingleDatabaseTestCase {
 		boolean result = true;
 		
 		Connection con = dbre.getConnection();
-		String currentAssemblyAccession = DBUtils.getMetaValue(con, "assembly.accession");
-		String currentAssemblyName = DBUtils.getMetaValue(con, "assembly.name");
+		String currentAssemblyAccession = DBUtils.getMetaValue(dbre, "assembly.accession");
+		String currentAssemblyName = DBUtils.getMetaValue(dbre, "assembly.name");
 
 		if (currentAssemblyAccession.equals("")) {
 			ReportManager.problem(this, con, "No assembly.accession entry present in Meta table");
@@ -708,7 +736,12 @@ public class MetaValues extends SingleDatabaseTestCase {
 
                 if (dbre.getType() == DatabaseType.CORE) {
 
-                        int repeatMask = DBUtils.getRowCount(con, "SELECT count(*) FROM meta WHERE meta_key = 'repeat.analysis' AND (meta_value like 'repeatmask_repbase%' or meta_value = 'repeatmask')");
+                        int repeatMask = 0;
+                        for (String analysis : dbre.getMeta().getValues("repeat.analysis")) {
+                                if (analysis != null && (analysis.startsWith("repeatmask_repbase") || analysis.equals("repeatmask"))) {
+                                        repeatMask++;
+                                }
+                        }
                         if (repeatMask == 0) {
                                 result = false;
                                 ReportManager.problem(this, con, "There is no entry in meta for repeatmask repeat.analysis");
@@ -748,14 +781,14 @@ public class MetaValues extends SingleDatabaseTestCase {
           Set<Set<Object>> currentGenes = t.queryForSet(sql, rowMapper);
           Set<Set<Object>> previousGenes = getSqlTemplate(sec).queryForSet(sql, rowMapper);
 
-          String genesetUpdate = DBUtils.getRowColumnValue(con, "SELECT meta_value FROM meta WHERE meta_key = 'genebuild.last_geneset_update'");
-          String previousGenesetUpdate = DBUtils.getRowColumnValue(previousCon, "SELECT meta_value FROM meta WHERE meta_key = 'genebuild.last_geneset_update'");
+          String genesetUpdate = dbre.getMeta().getValue("genebuild.last_geneset_update");
+          String previousGenesetUpdate = sec.getMeta().getValue("genebuild.last_geneset_update");
 
           String[] gencodeWebdata = DBUtils.getColumnValues(con, "SELECT web_data FROM analysis_description ad, analysis a WHERE a.analysis_id = ad.analysis_id AND logic_name in ('ensembl_havana_gene', 'ensembl_havana_ig_gene', 'ensembl_lincrna')");
           String[] previousGencodeWebdata = DBUtils.getColumnValues(previousCon, "SELECT web_data FROM analysis_description ad, analysis a WHERE a.analysis_id = ad.analysis_id AND logic_name in ('ensembl_havana_gene', 'ensembl_havana_ig_gene', 'ensembl_lincrna')");
 
-          String gencode = DBUtils.getRowColumnValue(con, "SELECT meta_value FROM meta WHERE meta_key = 'gencode.version'");
-          String previousGencode = DBUtils.getRowColumnValue(previousCon, "SELECT meta_value FROM meta WHERE meta_key = 'gencode.version'");
+          String gencode = dbre.getMeta().getValue("gencode.version");
+          String previousGencode = sec.getMeta().getValue("gencode.version");
 
           if (! currentGenes.equals(previousGenes)) {
             if (genesetUpdate.equals(previousGenesetUpdate)) {
@@ -796,14 +829,11 @@ public class MetaValues extends SingleDatabaseTestCase {
 	}
 
   private boolean checkSample(DatabaseRegistryEntry dbre) {
-    SqlTemplate t = DBUtils.getSqlTemplate(dbre);
     String metaKey = "sample.location_text";
-    String sql = "select meta_value from meta where meta_key = ?"; 
-    List<String> value = t.queryForDefaultObjectList(sql, String.class, metaKey);
+    List<String> value = dbre.getMeta().getValues(metaKey);
     if (!value.isEmpty()) {
       String linkedKey = "sample.location_param";
-      String linkedSql = "select meta_value from meta where meta_key = ?";
-      List<String> linkedValue = t.queryForDefaultObjectList(linkedSql, String.class, linkedKey);
+      List<String> linkedValue = dbre.getMeta().getValues(linkedKey);
       if(!linkedValue.equals(value)) {
         ReportManager.problem(this, dbre.getConnection(), "Keys " + metaKey + " and " + linkedKey + " do not have same value");
         return false;
@@ -30,6 +30,7 @@ import org.ensembl.healthcheck.Species;
 import org.ensembl.healthcheck.testcase.AbstractTemplatedTestCase;
 import org.ensembl.healthcheck.testcase.Priority;
 import org.ensembl.healthcheck.util.DBUtils;
+import org.ensembl.healthcheck.util.ReferenceDataCache;
 import org.ensembl.healthcheck.util.SqlTemplate;
 
 public class ProductionAnalysisLogicName extends AbstractTemplatedTestCase {
@@ -129,11 +130,15 @@ public class ProductionAnalysisLogicName extends AbstractTemplatedTestCase {
   }
 
   private Set<String> getDbVersionProduction(DatabaseRegistryEntry dbre, Set<String> analysisList) {
-    SqlTemplate t = DBUtils.getSqlTemplate(getProductionDatabase());
+    // one cached query for all databases rather than one per analysis
+    ReferenceDataCache.Snapshot production = ReferenceDataCache.getInstance()
+        .getSnapshot(getProductionDatabase(), "analysis_description", "logic_name", "db_version = 1");
     Set<String> results = new HashSet<String>();
-    for (String analysis : analysisList) {
-      String sql = "SELECT logic_name FROM analysis_description where logic_name = '" + analysis + "' and db_version = 1";
-      results.addAll(t.queryForDefaultObjectList(sql, String.class));
+    for (String logicName : analysisList) {
+      // logic names are matched ignoring case, as the query per analysis did
+      if (production.contains("logic_name", logicName)) {
+        results.add(logicName);
+      }
     }
     return results;
   }
@@ -40,6 +40,7 @@ import org.ensembl.healthcheck.Team;
 import org.ensembl.healthcheck.testcase.Priority;
 import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
 import org.ensembl.healthcheck.util.DBUtils;
+import org.ensembl.healthcheck.util.ReferenceDataCache;
 import org.ensembl.healthcheck.util.SqlTemplate;
 
 
@@ -108,12 +109,13 @@ public class ProductionBiotypes extends SingleDatabaseTestCase {
   }
 
   private Set<String> getBiotypesProduction(DatabaseRegistryEntry dbre, String databaseType) {
-    SqlTemplate t = DBUtils.getSqlTemplate(getProductionDatabase());
     String[] tables = { "gene", "transcript" };
     Set<String> results = new HashSet<String>();
     for (String table : tables) {
-      String sql = "SELECT name FROM biotype WHERE object_type='" + table + "' AND FIND_IN_SET('" + databaseType + "', db_type) > 0";
-      results.addAll(t.queryForDefaultObjectList(sql, String.class));
+      // same projection as BiotypeGroups so the cached rows are shared
+      results.addAll(ReferenceDataCache.getInstance().getSnapshot(getProductionDatabase(), "biotype",
+          "name, biotype_group", "object_type='" + table + "' AND FIND_IN_SET('" + databaseType + "', db_type) > 0")
+          .getStrings("name"));
     }
     return results;
   }
@@ -30,6 +30,7 @@
 package org.ensembl.healthcheck.testcase.generic;
 
 import java.sql.Connection;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
@@ -89,7 +90,7 @@ public class ProductionMeta extends SingleDatabaseTestCase {
 		String databaseType = dbre.getType().getName(); // will be core, otherfeatures etc
 		String species = dbre.getSpecies().toString(); // will be homo_sapiens etc
 
-		List<String> dbMetaKeys = DBUtils.getColumnValuesList(con, "SELECT DISTINCT(meta_key) FROM meta");
+		List<String> dbMetaKeys = new ArrayList<String>(dbre.getMeta().getKeys());
 
 		// First check that keys present in database are all valid and current
 		List<String> productionMetaKeys =
@@ -119,7 +120,7 @@ public class ProductionMeta extends SingleDatabaseTestCase {
 		}
 
 		// now check that all non-optional keys in production database appear here
-		dbMetaKeys = DBUtils.getColumnValuesList(con, "SELECT DISTINCT(meta_key) FROM meta");
+		dbMetaKeys = new ArrayList<String>(dbre.getMeta().getKeys());
 
 		productionMetaKeys =
 				DBUtils.getColumnValuesList(prodDbre.getConnection(),
@@ -0,0 +1,535 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.testcase.generic;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import org.ensembl.healthcheck.util.DBUtils;
+import org.ensembl.healthcheck.util.SqlTemplate;
+
+/**
+ * In-memory model of the tables of a schema: their columns, indexes and
+ * engine. Views are not included.
+ * <p>
+ * Column types, defaults and extras are normalised so that definitions
+ * which MySQL treats as the same compare equal whichever server version
+ * produced them, e.g. integer display widths are dropped and numeric
+ * defaults are compared by value. Column character sets, collations and
+ * comments are not kept, so differences in them are tolerated as
+ * <code>mysqldiff --tolerant</code> does.
+ * <p>
+ * Definitions are compared with {@link SchemaDiff}.
+ * <p>
+ * This does not share the column and index classes of
+ * {@link SchemaComparer}, which are built from JDBC metadata (type codes and
+ * sizes rather than the column type as written) and can only be compared
+ * for equality. Here each column and index has to be written back as DDL
+ * for the patches, and has to be read from both information_schema and
+ * table definition files by {@link SchemaDefinitionParser}.
+ */
+public class SchemaDefinition {
+
+	/**
+	 * A column of a table
+	 */
+	public static class Column {
+
+		private final String name;
+		private final String type;
+		private final boolean nullable;
+		private final String defaultValue;
+		private final String extra;
+
+		/**
+		 * @param defaultValue
+		 *          default as returned by the server or written in DDL, quoted
+		 *          or not, or null if there is none
+		 */
+		public Column(String name, String type, boolean nullable, String defaultValue, String extra) {
+			this.name = name;
+			this.type = normaliseType(type);
+			this.nullable = nullable;
+			this.defaultValue = normaliseDefault(this.type, nullable, defaultValue);
+			this.extra = normaliseExtra(extra);
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public String getType() {
+			return type;
+		}
+
+		public boolean isNullable() {
+			return nullable;
+		}
+
+		public String getDefaultValue() {
+			return defaultValue;
+		}
+
+		public String getExtra() {
+			return extra;
+		}
+
+		/**
+		 * @return the column as it would be written in CREATE or ALTER TABLE
+		 */
+		public String getDefinition() {
+			StringBuilder sb = new StringBuilder();
+			sb.append(quote(name)).append(' ').append(type);
+			if (!nullable) {
+				sb.append(" NOT NULL");
+			}
+			if (defaultValue != null) {
+				sb.append(" DEFAULT ");
+				if (isNumeric(type) || CURRENT_TIMESTAMP.equals(defaultValue)) {
+					sb.append(defaultValue);
+				} else {
+					sb.append('\'').append(defaultValue.replace("'", "''")).append('\'');
+				}
+			} else if (nullable) {
+				sb.append(" DEFAULT NULL");
+			}
+			if (!extra.isEmpty()) {
+				sb.append(' ').append(extra);
+			}
+			return sb.toString();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null || getClass() != obj.getClass())
+				return false;
+			return getDefinition().equals(((Column) obj).getDefinition());
+		}
+
+		@Override
+		public int hashCode() {
+			return getDefinition().hashCode();
+		}
+
+		@Override
+		public String toString() {
+			return getDefinition();
+		}
+	}
+
+	/**
+	 * An index of a table. Columns with a prefix length are held as
+	 * <code>name(length)</code>.
+	 */
+	public static class Index {
+
+		public static final String PRIMARY = "PRIMARY";
+
+		private final String name;
+		private final boolean unique;
+		private final String kind;
+		private final List<String> columns = new ArrayList<String>();
+
+		/**
+		 * @param kind
+		 *          FULLTEXT or SPATIAL for those indexes, null for others
+		 */
+		public Index(String name, boolean unique, String kind) {
+			this.name = name;
+			this.unique = unique;
+			this.kind = kind == null ? null : kind.toUpperCase();
+		}
+
+		public void addColumn(String column) {
+			columns.add(column);
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public boolean isPrimary() {
+			return PRIMARY.equalsIgnoreCase(name);
+		}
+
+		public boolean isUnique() {
+			return unique;
+		}
+
+		/**
+		 * @return FULLTEXT or SPATIAL for those indexes, null for others
+		 */
+		public String getKind() {
+			return kind;
+		}
+
+		public List<String> getColumns() {
+			return Collections.unmodifiableList(columns);
+		}
+
+		/**
+		 * @return the index as it would be written in CREATE or ALTER TABLE
+		 */
+		public String getDefinition() {
+			StringBuilder sb = new StringBuilder();
+			if (isPrimary()) {
+				sb.append("PRIMARY KEY");
+			} else {
+				if (kind != null) {
+					sb.append(kind).append(' ');
+				} else if (unique) {
+					sb.append("UNIQUE ");
+				}
+				sb.append("KEY ").append(quote(name));
+			}
+			sb.append(" (");
+			for (int i = 0; i < columns.size(); i++) {
+				if (i > 0) {
+					sb.append(',');
+				}
+				String column = columns.get(i);
+				int paren = column.indexOf('(');
+				if (paren > 0) {
+					sb.append(quote(column.substring(0, paren))).append(column.substring(paren));
+				} else {
+					sb.append(quote(column));
+				}
+			}
+			return sb.append(')').toString();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null || getClass() != obj.getClass())
+				return false;
+			return getDefinition().equals(((Index) obj).getDefinition());
+		}
+
+		@Override
+		public int hashCode() {
+			return getDefinition().hashCode();
+		}
+
+		@Override
+		public String toString() {
+			return getDefinition();
+		}
+	}
+
+	/**
+	 * A table, with its columns in their order in the table
+	 */
+	public static class Table {
+
+		private final String name;
+		private String engine;
+		private final Map<String, Column> columns = new LinkedHashMap<String, Column>();
+		private final Map<String, Index> indexes = new LinkedHashMap<String, Index>();
+
+		public Table(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return the storage engine, or null if it is not known
+		 */
+		public String getEngine() {
+			return engine;
+		}
+
+		public void setEngine(String engine) {
+			this.engine = engine;
+		}
+
+		public void addColumn(Column column) {
+			columns.put(column.getName(), column);
+		}
+
+		public void addIndex(Index index) {
+			indexes.put(index.getName(), index);
+		}
+
+		public Map<String, Column> getColumns() {
+			return Collections.unmodifiableMap(columns);
+		}
+
+		public Map<String, Index> getIndexes() {
+			return Collections.unmodifiableMap(indexes);
+		}
+
+		/**
+		 * @return index with the name, or null if there is none
+		 */
+		public Index getIndex(String name) {
+			return indexes.get(name);
+		}
+
+		/**
+		 * @return CREATE TABLE statement for the table, without the trailing
+		 *         semicolon
+		 */
+		public String getCreateStatement() {
+			StringBuilder sb = new StringBuilder("CREATE TABLE ").append(quote(name)).append(" (\n");
+			List<String> lines = new ArrayList<String>();
+			for (Column column : columns.values()) {
+				lines.add(column.getDefinition());
+			}
+			for (Index index : indexes.values()) {
+				lines.add(index.getDefinition());
+			}
+			for (int i = 0; i < lines.size(); i++) {
+				sb.append("  ").append(lines.get(i)).append(i < lines.size() - 1 ? ",\n" : "\n");
+			}
+			sb.append(')');
+			if (engine != null) {
+				sb.append(" ENGINE=").append(engine);
+			}
+			return sb.toString();
+		}
+	}
+
+	static final String CURRENT_TIMESTAMP = "CURRENT_TIMESTAMP";
+
+	private static final Pattern INT_WIDTH = Pattern.compile("^(tinyint|smallint|mediumint|int|bigint)\\(\\d+\\)");
+
+	private static final Pattern NUMERIC = Pattern
+			.compile("^(tinyint|smallint|mediumint|int|bigint|decimal|float|double|bit)\\b.*");
+
+	private final Map<String, Table> tables = new TreeMap<String, Table>();
+
+	private final Map<String, String> metaValues = new LinkedHashMap<String, String>();
+
+	/**
+	 * Read the base tables of a schema from information_schema, in three
+	 * queries whatever the number of tables.
+	 *
+	 * @param con
+	 *          connection to the server; any schema on it can be read
+	 * @param schema
+	 *          name of the schema to read
+	 */
+	public static SchemaDefinition load(Connection con, final String schema) {
+		final SchemaDefinition definition = new SchemaDefinition();
+		SqlTemplate template = DBUtils.getSqlTemplate(con);
+
+		template.execute("SELECT TABLE_NAME, ENGINE FROM information_schema.TABLES"
+				+ " WHERE TABLE_SCHEMA = ? AND TABLE_TYPE = 'BASE TABLE'", new SqlTemplate.ResultSetCallback<Void>() {
+					@Override
+					public Void process(ResultSet rs) throws SQLException {
+						while (rs.next()) {
+							Table table = new Table(rs.getString(1));
+							table.setEngine(rs.getString(2));
+							definition.addTable(table);
+						}
+						return null;
+					}
+				}, schema);
+
+		template.execute("SELECT TABLE_NAME, COLUMN_NAME, COLUMN_TYPE, IS_NULLABLE, COLUMN_DEFAULT, EXTRA"
+				+ " FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = ?"
+				+ " ORDER BY TABLE_NAME, ORDINAL_POSITION", new SqlTemplate.ResultSetCallback<Void>() {
+					@Override
+					public Void process(ResultSet rs) throws SQLException {
+						while (rs.next()) {
+							Table table = definition.getTable(rs.getString(1));
+							if (table != null) {
+								table.addColumn(new Column(rs.getString(2), rs.getString(3),
+										"YES".equalsIgnoreCase(rs.getString(4)), rs.getString(5), rs.getString(6)));
+							}
+						}
+						return null;
+					}
+				}, schema);
+
+		template.execute("SELECT TABLE_NAME, INDEX_NAME, NON_UNIQUE, COLUMN_NAME, SUB_PART, INDEX_TYPE"
+				+ " FROM information_schema.STATISTICS WHERE TABLE_SCHEMA = ?"
+				+ " ORDER BY TABLE_NAME, INDEX_NAME = 'PRIMARY' DESC, INDEX_NAME, SEQ_IN_INDEX",
+				new SqlTemplate.ResultSetCallback<Void>() {
+					@Override
+					public Void process(ResultSet rs) throws SQLException {
+						while (rs.next()) {
+							Table table = definition.getTable(rs.getString(1));
+							if (table == null) {
+								continue;
+							}
+							String name = rs.getString(2);
+							Index index = table.getIndex(name);
+							if (index == null) {
+								String type = rs.getString(6);
+								index = new Index(name, rs.getInt(3) == 0,
+										"FULLTEXT".equalsIgnoreCase(type) || "SPATIAL".equalsIgnoreCase(type) ? type : null);
+								table.addIndex(index);
+							}
+							int subPart = rs.getInt(5);
+							index.addColumn(rs.wasNull() ? rs.getString(4) : rs.getString(4) + "(" + subPart + ")");
+						}
+						return null;
+					}
+				}, schema);
+
+		return definition;
+	}
+
+	/**
+	 * Read the base tables of the schema the connection is to
+	 */
+	public static SchemaDefinition load(Connection con) {
+		return load(con, DBUtils.getShortDatabaseName(con));
+	}
+
+	public void addTable(Table table) {
+		tables.put(table.getName(), table);
+	}
+
+	/**
+	 * @return table with the name, or null if there is none
+	 */
+	public Table getTable(String name) {
+		return tables.get(name);
+	}
+
+	/**
+	 * @return the names of the tables, sorted
+	 */
+	public Set<String> getTableNames() {
+		return Collections.unmodifiableSet(tables.keySet());
+	}
+
+	/**
+	 * Record a meta value inserted by a schema definition file; only the first
+	 * value of each key is kept
+	 */
+	public void addMetaValue(String key, String value) {
+		if (!metaValues.containsKey(key)) {
+			metaValues.put(key, value);
+		}
+	}
+
+	/**
+	 * @return the first value of the meta key inserted by the schema
+	 *         definition file this was parsed from, or an empty string if
+	 *         there is none. Definitions read from a database have no meta
+	 *         values.
+	 */
+	public String getMetaValue(String key) {
+		String value = metaValues.get(key);
+		return value == null ? "" : value;
+	}
+
+	static String quote(String name) {
+		return "`" + name + "`";
+	}
+
+	static boolean isNumeric(String type) {
+		return NUMERIC.matcher(type).matches();
+	}
+
+	/**
+	 * Lower case the type outside quoted enum and set values, remove
+	 * whitespace around brackets and commas, map synonyms to the names MySQL
+	 * reports and drop integer display widths.
+	 */
+	static String normaliseType(String type) {
+		StringBuilder sb = new StringBuilder();
+		boolean quoted = false;
+		boolean space = false;
+		for (char c : type.trim().toCharArray()) {
+			if (!quoted && Character.isWhitespace(c)) {
+				space = true;
+				continue;
+			}
+			if (space && sb.length() > 0 && "(,".indexOf(sb.charAt(sb.length() - 1)) < 0 && "(),".indexOf(c) < 0) {
+				sb.append(' ');
+			}
+			space = false;
+			if (c == '\'') {
+				quoted = !quoted;
+			}
+			sb.append(quoted || c == '\'' ? c : Character.toLowerCase(c));
+		}
+		String normalised = sb.toString()
+				.replaceFirst("^integer\\b", "int")
+				.replaceFirst("^bool(ean)?\\b", "tinyint")
+				.replaceFirst("^double precision\\b", "double")
+				.replaceFirst("^real\\b", "double")
+				.replaceFirst("^(numeric|dec|fixed)\\b", "decimal")
+				.replaceFirst("^decimal(?!\\()", "decimal(10,0)")
+				.replaceFirst("^decimal\\((\\d+)\\)", "decimal($1,0)");
+		return INT_WIDTH.matcher(normalised).replaceFirst("$1");
+	}
+
+	/**
+	 * Unquote the default, which MariaDB returns quoted, and compare numbers
+	 * by value and CURRENT_TIMESTAMP whichever way it is written
+	 *
+	 * @return the default, or null if it is NULL or there is none
+	 */
+	static String normaliseDefault(String type, boolean nullable, String value) {
+		if (value == null || (nullable && "NULL".equalsIgnoreCase(value))) {
+			return null;
+		}
+		if (value.length() >= 2 && value.startsWith("'") && value.endsWith("'")) {
+			value = value.substring(1, value.length() - 1).replace("''", "'");
+		}
+		if (value.toUpperCase().matches("CURRENT_TIMESTAMP(\\(\\))?|NOW\\(\\)")) {
+			return CURRENT_TIMESTAMP;
+		}
+		if (isNumeric(type) && !type.startsWith("bit")) {
+			try {
+				BigDecimal number = new BigDecimal(value);
+				return number.signum() == 0 ? "0" : number.stripTrailingZeros().toPlainString();
+			} catch (NumberFormatException e) {
+				// not a number, keep as it is
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Lower case the extra and drop DEFAULT_GENERATED, which MySQL 8 adds to
+	 * columns with an expression default
+	 */
+	static String normaliseExtra(String extra) {
+		if (extra == null) {
+			return "";
+		}
+		return extra.toLowerCase()
+				.replace("default_generated", "")
+				.replace("current_timestamp()", "current_timestamp")
+				.replaceAll("\\s+", " ")
+				.trim();
+	}
+}
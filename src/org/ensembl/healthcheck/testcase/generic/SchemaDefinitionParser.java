@@ -0,0 +1,556 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.testcase.generic;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import org.ensembl.healthcheck.testcase.generic.SchemaDefinition.Column;
+import org.ensembl.healthcheck.testcase.generic.SchemaDefinition.Index;
+import org.ensembl.healthcheck.testcase.generic.SchemaDefinition.Table;
+import org.ensembl.healthcheck.util.UtilUncheckedException;
+
+/**
+ * Builds a {@link SchemaDefinition} from a schema definition file such as
+ * table.sql, without loading it into a database.
+ * <p>
+ * <code>CREATE TABLE</code> statements are read into tables, and
+ * <code>INSERT INTO meta</code> statements into the meta values of the
+ * definition, so that the schema_type and schema_version of the file can be
+ * checked. All other statements are ignored. Indexes declared without a name
+ * are named as MySQL would name them, after their first column.
+ * <p>
+ * Parsed files are cached by the digest of their contents, so a file is
+ * only parsed again if it has changed. The definitions returned are shared
+ * and must not be modified.
+ */
+public class SchemaDefinitionParser {
+
+	private static Logger logger = Logger.getLogger("HealthCheckLogger");
+
+	private static final Map<String, SchemaDefinition> cache = new ConcurrentHashMap<String, SchemaDefinition>();
+
+	/**
+	 * A word, string literal, quoted identifier or punctuation character
+	 */
+	private static class Token {
+
+		private final String text;
+		private final boolean literal;
+		private final boolean identifier;
+
+		Token(String text, boolean literal, boolean identifier) {
+			this.text = text;
+			this.literal = literal;
+			this.identifier = identifier;
+		}
+
+		/**
+		 * @return true if this is the unquoted keyword or punctuation
+		 */
+		boolean is(String keyword) {
+			return !literal && !identifier && text.equalsIgnoreCase(keyword);
+		}
+
+		/**
+		 * @return the text, with string literals in single quotes
+		 */
+		String getSql() {
+			return literal ? "'" + text.replace("'", "''") + "'" : text;
+		}
+
+		@Override
+		public String toString() {
+			return getSql();
+		}
+	}
+
+	private final List<Token> tokens;
+
+	private int position;
+
+	private SchemaDefinitionParser(List<Token> tokens) {
+		this.tokens = tokens;
+	}
+
+	/**
+	 * Parse a schema definition file, or return the definition already parsed
+	 * from a file with the same contents
+	 */
+	public static SchemaDefinition parse(File file) throws FileNotFoundException {
+		if (!file.exists()) {
+			throw new FileNotFoundException(file.getPath());
+		}
+		byte[] contents;
+		try {
+			contents = Files.readAllBytes(file.toPath());
+		} catch (IOException e) {
+			throw new UtilUncheckedException("Could not read schema definition " + file, e);
+		}
+		String key = digest(contents);
+		SchemaDefinition definition = cache.get(key);
+		if (definition == null) {
+			logger.fine("Parsing schema definition " + file);
+			definition = parse(new String(contents, StandardCharsets.UTF_8));
+			cache.put(key, definition);
+		}
+		return definition;
+	}
+
+	/**
+	 * Parse the statements of a schema definition
+	 */
+	public static SchemaDefinition parse(String sql) {
+		SchemaDefinition definition = new SchemaDefinition();
+		for (List<Token> statement : split(tokenise(sql))) {
+			SchemaDefinitionParser parser = new SchemaDefinitionParser(statement);
+			if (parser.accept("CREATE") && parser.accept("TABLE")) {
+				Table table = parser.parseCreateTable();
+				if (table != null) {
+					definition.addTable(table);
+				}
+			} else if (statement.get(0).is("INSERT")) {
+				parser.parseMetaInsert(definition);
+			}
+		}
+		return definition;
+	}
+
+	/**
+	 * Remove all cached definitions
+	 */
+	public static void clearCache() {
+		cache.clear();
+	}
+
+	private static String digest(byte[] contents) {
+		try {
+			StringBuilder sb = new StringBuilder();
+			for (byte b : MessageDigest.getInstance("SHA-1").digest(contents)) {
+				sb.append(String.format("%02x", b));
+			}
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new UtilUncheckedException("SHA-1 is not available", e);
+		}
+	}
+
+	/**
+	 * Split SQL into tokens, dropping whitespace and comments
+	 */
+	private static List<Token> tokenise(String sql) {
+		List<Token> tokens = new ArrayList<Token>();
+		int n = sql.length();
+		int i = 0;
+		while (i < n) {
+			char c = sql.charAt(i);
+			if (Character.isWhitespace(c)) {
+				i++;
+			} else if (c == '#' || (c == '-' && sql.startsWith("--", i)
+					&& (i + 2 == n || Character.isWhitespace(sql.charAt(i + 2))))) {
+				while (i < n && sql.charAt(i) != '\n') {
+					i++;
+				}
+			} else if (c == '/' && sql.startsWith("/*", i)) {
+				int end = sql.indexOf("*/", i + 2);
+				i = end < 0 ? n : end + 2;
+			} else if (c == '\'' || c == '"' || c == '`') {
+				StringBuilder text = new StringBuilder();
+				i++;
+				while (i < n) {
+					char d = sql.charAt(i);
+					if (d == '\\' && c != '`' && i + 1 < n) {
+						text.append(sql.charAt(i + 1));
+						i += 2;
+					} else if (d == c && i + 1 < n && sql.charAt(i + 1) == c) {
+						text.append(c);
+						i += 2;
+					} else if (d == c) {
+						i++;
+						break;
+					} else {
+						text.append(d);
+						i++;
+					}
+				}
+				tokens.add(new Token(text.toString(), c != '`', c == '`'));
+			} else if ("(),;=".indexOf(c) >= 0) {
+				tokens.add(new Token(String.valueOf(c), false, false));
+				i++;
+			} else {
+				int start = i;
+				while (i < n && !Character.isWhitespace(sql.charAt(i)) && "(),;='\"`#".indexOf(sql.charAt(i)) < 0) {
+					i++;
+				}
+				tokens.add(new Token(sql.substring(start, i), false, false));
+			}
+		}
+		return tokens;
+	}
+
+	private static List<List<Token>> split(List<Token> tokens) {
+		List<List<Token>> statements = new ArrayList<List<Token>>();
+		List<Token> statement = new ArrayList<Token>();
+		for (Token token : tokens) {
+			if (token.is(";")) {
+				if (!statement.isEmpty()) {
+					statements.add(statement);
+				}
+				statement = new ArrayList<Token>();
+			} else {
+				statement.add(token);
+			}
+		}
+		if (!statement.isEmpty()) {
+			statements.add(statement);
+		}
+		return statements;
+	}
+
+	private boolean atEnd() {
+		return position >= tokens.size();
+	}
+
+	private Token peek() {
+		return atEnd() ? new Token("", false, false) : tokens.get(position);
+	}
+
+	private Token next() {
+		Token token = peek();
+		position++;
+		return token;
+	}
+
+	private boolean accept(String keyword) {
+		if (peek().is(keyword)) {
+			position++;
+			return true;
+		}
+		return false;
+	}
+
+	private void expect(String keyword) {
+		if (!accept(keyword)) {
+			throw new UtilUncheckedException("Expected " + keyword + " but found '" + peek() + "' in " + tokens);
+		}
+	}
+
+	/**
+	 * @return name of the object, without any database qualifier
+	 */
+	private String parseName() {
+		Token token = next();
+		String name = token.text;
+		if (!token.identifier && name.indexOf('.') >= 0) {
+			name = name.substring(name.lastIndexOf('.') + 1);
+		}
+		while (peek().text.startsWith(".") && !peek().literal && !peek().identifier) {
+			String qualified = next().text;
+			name = qualified.length() > 1 ? qualified.substring(1) : next().text;
+		}
+		return name;
+	}
+
+	/**
+	 * @return the tokens up to the closing bracket matching the one which has
+	 *         just been read, each element separated by top level commas
+	 */
+	private List<List<Token>> parseBracketed() {
+		List<List<Token>> elements = new ArrayList<List<Token>>();
+		List<Token> element = new ArrayList<Token>();
+		int depth = 0;
+		while (!atEnd()) {
+			Token token = next();
+			if (token.is("(")) {
+				depth++;
+			} else if (token.is(")")) {
+				if (depth == 0) {
+					break;
+				}
+				depth--;
+			} else if (token.is(",") && depth == 0) {
+				elements.add(element);
+				element = new ArrayList<Token>();
+				continue;
+			}
+			element.add(token);
+		}
+		if (!element.isEmpty()) {
+			elements.add(element);
+		}
+		return elements;
+	}
+
+	/**
+	 * Parse the rest of a CREATE TABLE statement
+	 *
+	 * @return the table, or null for temporary tables or tables copied from
+	 *         another with LIKE or SELECT
+	 */
+	private Table parseCreateTable() {
+		if (accept("IF")) {
+			expect("NOT");
+			expect("EXISTS");
+		}
+		Table table = new Table(parseName());
+		if (!accept("(")) {
+			return null;
+		}
+		List<List<Token>> elements = parseBracketed();
+		for (List<Token> element : elements) {
+			if (!element.isEmpty()) {
+				new SchemaDefinitionParser(element).parseTableElement(table);
+			}
+		}
+		while (!atEnd()) {
+			Token token = next();
+			if (token.is("ENGINE") || token.is("TYPE")) {
+				accept("=");
+				table.setEngine(next().text);
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * Parse a column or index definition from the body of a CREATE TABLE
+	 */
+	private void parseTableElement(Table table) {
+		if (accept("CONSTRAINT")) {
+			if (!peek().is("PRIMARY") && !peek().is("UNIQUE") && !peek().is("FOREIGN") && !peek().is("CHECK")) {
+				next();
+			}
+		}
+		if (accept("PRIMARY")) {
+			expect("KEY");
+			addIndex(table, new Index(Index.PRIMARY, true, null));
+		} else if (accept("UNIQUE")) {
+			if (!accept("KEY")) {
+				accept("INDEX");
+			}
+			addIndex(table, new Index(parseIndexName(), true, null));
+		} else if (peek().is("FULLTEXT") || peek().is("SPATIAL")) {
+			String kind = next().text;
+			if (!accept("KEY")) {
+				accept("INDEX");
+			}
+			addIndex(table, new Index(parseIndexName(), false, kind));
+		} else if (accept("KEY") || accept("INDEX")) {
+			addIndex(table, new Index(parseIndexName(), false, null));
+		} else if (!peek().is("FOREIGN") && !peek().is("CHECK")) {
+			parseColumn(table);
+		}
+	}
+
+	/**
+	 * @return the name of the index, or null if it is not named
+	 */
+	private String parseIndexName() {
+		if (peek().is("(") || peek().is("USING")) {
+			return null;
+		}
+		return next().text;
+	}
+
+	/**
+	 * Read the columns of the index, name it after its first column if it
+	 * has no name, and add it to the table
+	 */
+	private void addIndex(Table table, Index index) {
+		if (accept("USING")) {
+			next();
+		}
+		expect("(");
+		List<String> columns = new ArrayList<String>();
+		for (List<Token> element : parseBracketed()) {
+			StringBuilder column = new StringBuilder(element.get(0).text);
+			if (element.size() > 1 && element.get(1).is("(")) {
+				column.append('(').append(element.get(2).text).append(')');
+			}
+			columns.add(column.toString());
+		}
+		if (index.getName() == null) {
+			String base = columns.get(0).replaceFirst("\\(.*", "");
+			String name = base;
+			for (int i = 2; table.getIndex(name) != null || Index.PRIMARY.equalsIgnoreCase(name); i++) {
+				name = base + "_" + i;
+			}
+			index = new Index(name, index.isUnique(), index.getKind());
+		}
+		for (String column : columns) {
+			index.addColumn(column);
+		}
+		table.addIndex(index);
+		if (index.isPrimary()) {
+			// columns in the primary key are always NOT NULL
+			for (String column : columns) {
+				Column c = table.getColumns().get(column.replaceFirst("\\(.*", ""));
+				if (c != null && c.isNullable()) {
+					table.addColumn(new Column(c.getName(), c.getType(), false, c.getDefaultValue(), c.getExtra()));
+				}
+			}
+		}
+	}
+
+	private void parseColumn(Table table) {
+		String name = next().text;
+
+		// type, e.g. int(10) unsigned, double precision or enum('a','b')
+		StringBuilder type = new StringBuilder(next().text);
+		if (type.toString().equalsIgnoreCase("double") && accept("PRECISION")) {
+			type.append(" precision");
+		}
+		if (accept("(")) {
+			type.append('(');
+			List<List<Token>> args = parseBracketed();
+			for (int i = 0; i < args.size(); i++) {
+				if (i > 0) {
+					type.append(',');
+				}
+				for (Token token : args.get(i)) {
+					type.append(token.getSql());
+				}
+			}
+			type.append(')');
+		}
+		while (peek().is("UNSIGNED") || peek().is("SIGNED") || peek().is("ZEROFILL")) {
+			Token modifier = next();
+			if (!modifier.is("SIGNED")) {
+				type.append(' ').append(modifier.text);
+			}
+		}
+
+		boolean nullable = true;
+		String defaultValue = null;
+		List<String> extra = new ArrayList<String>();
+		boolean primary = false;
+		boolean unique = false;
+		while (!atEnd()) {
+			if (accept("NOT")) {
+				expect("NULL");
+				nullable = false;
+			} else if (accept("NULL")) {
+				nullable = true;
+			} else if (accept("DEFAULT")) {
+				Token value = next();
+				defaultValue = value.literal ? value.getSql() : value.text;
+				if (accept("(")) {
+					parseBracketed();
+					defaultValue += "()";
+				}
+			} else if (accept("AUTO_INCREMENT")) {
+				extra.add("auto_increment");
+			} else if (accept("ON")) {
+				expect("UPDATE");
+				extra.add("on update " + next().text);
+				if (accept("(")) {
+					parseBracketed();
+				}
+			} else if (accept("PRIMARY")) {
+				expect("KEY");
+				primary = true;
+			} else if (accept("UNIQUE")) {
+				accept("KEY");
+				unique = true;
+			} else if (accept("KEY")) {
+				primary = true;
+			} else if (accept("CHARACTER")) {
+				expect("SET");
+				next();
+			} else if (accept("CHARSET") || accept("COLLATE") || accept("COMMENT")) {
+				next();
+			} else {
+				// REFERENCES, CHECK, storage options etc. don't affect the
+				// definition
+				next();
+			}
+		}
+
+		table.addColumn(new Column(name, type.toString(), nullable && !primary,
+				nullable && "NULL".equalsIgnoreCase(defaultValue) ? null : defaultValue, join(extra)));
+		if (primary) {
+			Index index = new Index(Index.PRIMARY, true, null);
+			index.addColumn(name);
+			table.addIndex(index);
+		}
+		if (unique) {
+			String indexName = name;
+			for (int i = 2; table.getIndex(indexName) != null; i++) {
+				indexName = name + "_" + i;
+			}
+			Index index = new Index(indexName, true, null);
+			index.addColumn(name);
+			table.addIndex(index);
+		}
+	}
+
+	/**
+	 * Read the meta_key and meta_value of each row of an
+	 * <code>INSERT INTO meta (...) VALUES (...), ...</code> statement
+	 */
+	private void parseMetaInsert(SchemaDefinition definition) {
+		expect("INSERT");
+		accept("IGNORE");
+		accept("INTO");
+		if (!parseName().equalsIgnoreCase("meta") || !accept("(")) {
+			return;
+		}
+		int keyColumn = -1;
+		int valueColumn = -1;
+		List<List<Token>> columns = parseBracketed();
+		for (int i = 0; i < columns.size(); i++) {
+			String column = columns.get(i).get(0).text;
+			if (column.equalsIgnoreCase("meta_key")) {
+				keyColumn = i;
+			} else if (column.equalsIgnoreCase("meta_value")) {
+				valueColumn = i;
+			}
+		}
+		if (keyColumn < 0 || valueColumn < 0 || !(accept("VALUES") || accept("VALUE"))) {
+			return;
+		}
+		while (accept("(")) {
+			List<List<Token>> values = parseBracketed();
+			if (values.size() == columns.size()) {
+				definition.addMetaValue(values.get(keyColumn).get(0).text, values.get(valueColumn).get(0).text);
+			}
+			accept(",");
+		}
+	}
+
+	private static String join(List<String> values) {
+		StringBuilder sb = new StringBuilder();
+		for (String value : values) {
+			if (sb.length() > 0) {
+				sb.append(' ');
+			}
+			sb.append(value);
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.testcase.generic;
+
+import static org.ensembl.healthcheck.testcase.generic.SchemaDefinition.quote;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.ensembl.healthcheck.testcase.generic.SchemaDefinition.Column;
+import org.ensembl.healthcheck.testcase.generic.SchemaDefinition.Index;
+import org.ensembl.healthcheck.testcase.generic.SchemaDefinition.Table;
+
+/**
+ * Works out the SQL which would patch one {@link SchemaDefinition} to match
+ * another, in the same form as the patches suggested by
+ * <code>mysqldiff</code>. Both definitions are held in memory, so comparing
+ * many databases with one master only needs the master to be read once.
+ */
+public class SchemaDiff {
+
+	private SchemaDiff() {
+	}
+
+	/**
+	 * @param from
+	 *          schema to patch, e.g. the database being checked
+	 * @param to
+	 *          schema to match, e.g. the master
+	 * @return statements, each ending with a semicolon, which would make from
+	 *         the same as to; empty if they already are
+	 */
+	public static List<String> diff(SchemaDefinition from, SchemaDefinition to) {
+		List<String> statements = new ArrayList<String>();
+		for (String name : from.getTableNames()) {
+			if (to.getTable(name) == null) {
+				statements.add("DROP TABLE " + quote(name) + ";");
+			}
+		}
+		for (String name : to.getTableNames()) {
+			Table table = from.getTable(name);
+			if (table == null) {
+				statements.add(to.getTable(name).getCreateStatement() + ";");
+			} else {
+				diffTable(table, to.getTable(name), statements);
+			}
+		}
+		return statements;
+	}
+
+	/**
+	 * @return the statements of {@link #diff(SchemaDefinition, SchemaDefinition)}
+	 *         under a header naming the schemas, or an empty string if the
+	 *         schemas are the same
+	 */
+	public static String getPatch(SchemaDefinition from, String fromName, SchemaDefinition to, String toName) {
+		List<String> statements = diff(from, to);
+		if (statements.isEmpty()) {
+			return "";
+		}
+		StringBuilder patch = new StringBuilder();
+		patch.append("## ---   db: ").append(fromName).append('\n');
+		patch.append("## +++   db: ").append(toName).append("\n\n");
+		for (String statement : statements) {
+			patch.append(statement).append('\n');
+		}
+		return patch.toString();
+	}
+
+	/**
+	 * Indexes which change are dropped before the columns are changed and
+	 * added back afterwards, so that columns can be dropped from them
+	 */
+	private static void diffTable(Table from, Table to, List<String> statements) {
+		String alter = "ALTER TABLE " + quote(to.getName()) + " ";
+
+		List<Index> addIndexes = new ArrayList<Index>();
+		for (Index index : from.getIndexes().values()) {
+			if (!index.equals(to.getIndex(index.getName()))) {
+				statements.add(alter + (index.isPrimary() ? "DROP PRIMARY KEY" : "DROP INDEX " + quote(index.getName()))
+						+ "; # was " + index.getDefinition());
+			}
+		}
+		for (Index index : to.getIndexes().values()) {
+			if (!index.equals(from.getIndex(index.getName()))) {
+				addIndexes.add(index);
+			}
+		}
+
+		String previous = null;
+		for (Column column : to.getColumns().values()) {
+			Column existing = from.getColumns().get(column.getName());
+			if (existing == null) {
+				statements.add(alter + "ADD COLUMN " + column.getDefinition()
+						+ (previous == null ? " FIRST" : " AFTER " + quote(previous)) + ";");
+			} else if (!existing.equals(column)) {
+				statements.add(alter + "CHANGE COLUMN " + quote(column.getName()) + " " + column.getDefinition()
+						+ "; # was " + existing.getDefinition());
+			}
+			previous = column.getName();
+		}
+		for (Column column : from.getColumns().values()) {
+			if (!to.getColumns().containsKey(column.getName())) {
+				statements.add(alter + "DROP COLUMN " + quote(column.getName()) + "; # was " + column.getDefinition());
+			}
+		}
+
+		for (Index index : addIndexes) {
+			statements.add(alter + "ADD " + index.getDefinition() + ";");
+		}
+
+		if (from.getEngine() != null && to.getEngine() != null && !from.getEngine().equalsIgnoreCase(to.getEngine())) {
+			statements.add(alter + "ENGINE=" + to.getEngine() + "; # was " + from.getEngine());
+		}
+	}
+}
@@ -70,7 +70,7 @@ public class SeqRegionName extends SingleDatabaseTestCase {
 
 		Species s = dbre.getSpecies();
                 Connection con = dbre.getConnection();
-                String AssemblyAccession = DBUtils.getMetaValue(con, "assembly.accession");
+                String AssemblyAccession = DBUtils.getMetaValue(dbre, "assembly.accession");
 
                 if (AssemblyAccession.contains("GCA")) {
 
@@ -30,7 +30,9 @@
 package org.ensembl.healthcheck.testcase.generic;
 
 import java.sql.Connection;
+import java.util.Map;
 
+import org.ensembl.healthcheck.CoordinateStatistics;
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.DatabaseType;
 import org.ensembl.healthcheck.ReportManager;
@@ -88,7 +90,7 @@ public class SeqRegionsTopLevel extends SingleDatabaseTestCase {
 			return false;
 		}
 
-		result &= check_genes(con, topLevelAttribTypeID);
+		result &= check_genes(dbre);
 
 		result &= check_one_seq_region(con, topLevelAttribTypeID);
 		
@@ -121,19 +123,23 @@ public class SeqRegionsTopLevel extends SingleDatabaseTestCase {
 
 	// --------------------------------------------------------------------------
 
-	private boolean check_genes(Connection con, int topLevelAttribTypeID) {
+	private boolean check_genes(DatabaseRegistryEntry dbre) {
 
 		boolean result = true;
 
-		int numTopLevelGenes = DBUtils
-				.getRowCount(
-						con,
-						"SELECT COUNT(*) FROM seq_region_attrib sra, gene g WHERE sra.attrib_type_id = "
-								+ topLevelAttribTypeID
-								+ " AND sra.seq_region_id=g.seq_region_id");
-		int numGenes = DBUtils.getRowCount(con, "SELECT COUNT(*) FROM gene");
+		Connection con = dbre.getConnection();
+
+		// genes per seq_region come from the shared coordinate statistics
+		CoordinateStatistics stats = dbre.getCoordinateStatistics();
+		long numTopLevelGenes = 0;
+		for (Map.Entry<Long, CoordinateStatistics.Stats> region : stats.getBySeqRegion("gene").entrySet()) {
+			if (stats.isTopLevel(region.getKey())) {
+				numTopLevelGenes += region.getValue().getCount();
+			}
+		}
+		long numGenes = stats.getTotal("gene").getCount();
 
-		int nonTopLevelGenes = numGenes - numTopLevelGenes;
+		long nonTopLevelGenes = numGenes - numTopLevelGenes;
 
 		if (nonTopLevelGenes > 0) {
 
@@ -87,7 +87,7 @@ public class SeqRegionsTopLevelRefSeq extends SingleDatabaseTestCase {
 
 		Connection con = dbre.getConnection();
 
-		String assemblyAccession = DBUtils.getMetaValue(con,
+		String assemblyAccession = DBUtils.getMetaValue(dbre,
 				"assembly.accession");
 
 		if (!StringUtils.isEmpty(assemblyAccession)
@@ -31,6 +31,7 @@
 package org.ensembl.healthcheck.testcase.variation;
 
 import java.sql.Connection;
+import java.util.Arrays;
 
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.DatabaseType;
@@ -127,17 +128,11 @@ public class EmptyVariationTables extends SingleDatabaseTestCase {
     String[] tables = getTablesToCheck(dbre);
     Connection con = dbre.getConnection();
 
-    for (int i = 0; i < tables.length; i++) {
-
-      String table = tables[i];
-      // logger.finest("Checking that " + table + " has rows");
+    for (String table : dbre.getTableStatistics().getEmptyTables(Arrays.asList(tables))) {
 
-      if (!tableHasRows(con, table)) {
+      ReportManager.problem(this, con, table + " has zero rows");
+      result = false;
 
-        ReportManager.problem(this, con, table + " has zero rows");
-        result = false;
-
-      }
     }
 
     if (result) {
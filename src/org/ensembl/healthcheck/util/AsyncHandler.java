@@ -0,0 +1,327 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.util;
+
+import java.io.BufferedOutputStream;
+import java.util.logging.ErrorManager;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * Logging handler which hands records over to another handler on a thread of
+ * its own, so that the threads logging never wait for the output to be
+ * written.
+ * <p>
+ * Records which neither this handler nor the target would log are discarded
+ * before anything else is done with them. The rest are queued in a ring
+ * buffer and passed to the target in batches, which is flushed once per
+ * batch. If the buffer is full, records below {@link Level#WARNING} are
+ * dropped and counted, more important ones wait for space.
+ * <p>
+ * When configured through the logging properties, the target is a
+ * {@link MyStreamHandler} writing to stderr, like the
+ * <code>ConsoleHandler</code>, and the following properties are read:
+ * <ul>
+ * <li><code>org.ensembl.healthcheck.util.AsyncHandler.level</code> (default
+ * <code>INFO</code>)</li>
+ * <li><code>org.ensembl.healthcheck.util.AsyncHandler.formatter</code>
+ * (default <code>java.util.logging.SimpleFormatter</code>)</li>
+ * <li><code>org.ensembl.healthcheck.util.AsyncHandler.capacity</code>
+ * (default {@value #DEFAULT_CAPACITY})</li>
+ * </ul>
+ */
+public class AsyncHandler extends Handler {
+
+	public static final int DEFAULT_CAPACITY = 8192;
+
+	/**
+	 * Most records passed to the target before it is flushed.
+	 */
+	public static final int BATCH_SIZE = 256;
+
+	private final Handler target;
+
+	private final LogRecord[] records;
+
+	private final Object[] contexts;
+
+	private final Object lock = new Object();
+
+	/** Index of the oldest record queued */
+	private int head;
+
+	private int count;
+
+	/** Whether the worker is passing a batch to the target */
+	private boolean busy;
+
+	private boolean closed;
+
+	private long dropped;
+
+	private final Thread worker;
+
+	/**
+	 * Creates a handler configured from the logging properties.
+	 */
+	public AsyncHandler() {
+		this(createConfiguredTarget(), getIntProperty(AsyncHandler.class.getName() + ".capacity", DEFAULT_CAPACITY));
+		setLevel(target.getLevel());
+	}
+
+	/**
+	 * @param target
+	 *          The handler to pass records to.
+	 */
+	public AsyncHandler(Handler target) {
+		this(target, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param target
+	 *          The handler to pass records to.
+	 * @param capacity
+	 *          Number of records which can be queued.
+	 */
+	public AsyncHandler(Handler target, int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive, not " + capacity);
+		}
+		this.target = target;
+		this.records = new LogRecord[capacity];
+		this.contexts = new Object[capacity];
+		worker = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				deliverAll();
+			}
+		}, "AsyncHandler");
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	public Handler getTarget() {
+		return target;
+	}
+
+	/**
+	 * Queue a record. Returns straight away unless the buffer is full and the
+	 * record is a warning or worse.
+	 */
+	@Override
+	public void publish(LogRecord record) {
+		if (!isLoggable(record) || !target.isLoggable(record)) {
+			return;
+		}
+		Object context = capture(record);
+		if (Thread.currentThread() == worker) {
+			// Logged by the target itself, waiting for space would never end.
+			deliver(record, context);
+			return;
+		}
+		synchronized (lock) {
+			if (closed) {
+				deliver(record, context);
+				return;
+			}
+			if (count == records.length) {
+				if (record.getLevel().intValue() < Level.WARNING.intValue()) {
+					dropped++;
+					return;
+				}
+				while (count == records.length && !closed) {
+					try {
+						lock.wait();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						dropped++;
+						return;
+					}
+				}
+				if (closed) {
+					deliver(record, context);
+					return;
+				}
+			}
+			int tail = (head + count) % records.length;
+			records[tail] = record;
+			contexts[tail] = context;
+			count++;
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Called on the thread logging the record, before it is queued. Any
+	 * information which depends on that thread has to be taken here.
+	 * <p>
+	 * By default this works out the class and method which logged the record,
+	 * which is otherwise done from the stack of the thread calling the
+	 * formatter.
+	 *
+	 * @return passed to {@link #deliver(LogRecord, Object)} with the record
+	 */
+	protected Object capture(LogRecord record) {
+		record.getSourceClassName();
+		return null;
+	}
+
+	/**
+	 * Called on the worker thread to pass a record to the target.
+	 */
+	protected void deliver(LogRecord record, Object context) {
+		target.publish(record);
+	}
+
+	private void deliverAll() {
+		LogRecord[] batch = new LogRecord[Math.min(BATCH_SIZE, records.length)];
+		Object[] batchContexts = new Object[batch.length];
+		while (true) {
+			int size;
+			long droppedNow;
+			synchronized (lock) {
+				busy = false;
+				lock.notifyAll();
+				while (count == 0 && !closed) {
+					try {
+						lock.wait();
+					} catch (InterruptedException e) {
+						// Only close() stops the worker.
+					}
+				}
+				if (count == 0) {
+					return;
+				}
+				size = Math.min(count, batch.length);
+				for (int i = 0; i < size; i++) {
+					batch[i] = records[head];
+					batchContexts[i] = contexts[head];
+					records[head] = null;
+					contexts[head] = null;
+					head = (head + 1) % records.length;
+				}
+				count -= size;
+				droppedNow = dropped;
+				dropped = 0;
+				busy = true;
+				lock.notifyAll();
+			}
+			for (int i = 0; i < size; i++) {
+				try {
+					deliver(batch[i], batchContexts[i]);
+				} catch (RuntimeException e) {
+					reportError(null, e, ErrorManager.WRITE_FAILURE);
+				}
+				batch[i] = null;
+				batchContexts[i] = null;
+			}
+			if (droppedNow > 0) {
+				target.publish(new LogRecord(Level.WARNING, droppedNow + " log messages were dropped because logging fell behind"));
+			}
+			target.flush();
+		}
+	}
+
+	/**
+	 * Wait until everything queued so far has been passed to the target, then
+	 * flush the target.
+	 */
+	@Override
+	public void flush() {
+		synchronized (lock) {
+			while ((count > 0 || busy) && !closed && Thread.currentThread() != worker) {
+				try {
+					lock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+		}
+		target.flush();
+	}
+
+	/**
+	 * Pass on everything still queued, stop the worker and close the target.
+	 * Records published afterwards are passed to the target straight away.
+	 */
+	@Override
+	public void close() {
+		synchronized (lock) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			lock.notifyAll();
+		}
+		try {
+			worker.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		target.close();
+	}
+
+	private static Handler createConfiguredTarget() {
+		LogManager manager = LogManager.getLogManager();
+		String prefix = AsyncHandler.class.getName();
+
+		Formatter formatter = new SimpleFormatter();
+		String formatterName = manager.getProperty(prefix + ".formatter");
+		if (formatterName != null) {
+			try {
+				formatter = (Formatter) Class.forName(formatterName.trim()).getDeclaredConstructor().newInstance();
+			} catch (Exception e) {
+				System.err.println("Can't use " + formatterName + " as the formatter for " + prefix + ": " + e.getMessage());
+			}
+		}
+
+		// System.err flushes on every write, so buffer in front of it and
+		// leave the flushing to the end of each batch
+		MyStreamHandler target = new MyStreamHandler(new BufferedOutputStream(System.err), formatter);
+		target.setAutoFlush(false);
+
+		Level level = Level.INFO;
+		String levelName = manager.getProperty(prefix + ".level");
+		if (levelName != null) {
+			try {
+				level = Level.parse(levelName.trim());
+			} catch (IllegalArgumentException e) {
+				System.err.println("Can't use " + levelName + " as the level for " + prefix);
+			}
+		}
+		target.setLevel(level);
+		return target;
+	}
+
+	private static int getIntProperty(String name, int defaultValue) {
+		String value = LogManager.getLogManager().getProperty(name);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+}
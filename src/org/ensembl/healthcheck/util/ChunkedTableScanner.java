@@ -0,0 +1,174 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import org.ensembl.healthcheck.DatabaseRegistryEntry;
+
+/**
+ * Scans a large table in ranges of an integer key column, running the
+ * chunks concurrently on a small set of dedicated connections.
+ * <p>
+ * The query passed to {@link #scan(String, ChunkProcessor)} must take the
+ * lower and upper bounds of the chunk (both inclusive) as its first two
+ * parameters, e.g.
+ *
+ * <pre>
+ * SELECT variation_id, frequency FROM allele WHERE variation_id BETWEEN ? AND ?
+ * </pre>
+ *
+ * Each chunk's {@link ResultSet} is handed to the {@link ChunkProcessor} on a
+ * worker thread, and the per-chunk results are returned in key order so
+ * callers can merge them as if the table had been read serially. Processors
+ * must not call {@link org.ensembl.healthcheck.ReportManager} directly;
+ * report from the merged results instead.
+ */
+public class ChunkedTableScanner {
+
+	/**
+	 * Consumer for the rows of one chunk
+	 */
+	public static interface ChunkProcessor<T> {
+		T processChunk(ResultSet rs, long lower, long upper) throws SQLException;
+	}
+
+	public static final int DEFAULT_CHUNK_SIZE = 250000;
+
+	public static final int DEFAULT_THREADS = 4;
+
+	private static Logger logger = Logger.getLogger("HealthCheckLogger");
+
+	private final DatabaseRegistryEntry dbre;
+	private final String table;
+	private final String keyColumn;
+	private final int chunkSize;
+	private final int threads;
+
+	private volatile boolean cancelled;
+
+	public ChunkedTableScanner(DatabaseRegistryEntry dbre, String table, String keyColumn) {
+		this(dbre, table, keyColumn, DEFAULT_CHUNK_SIZE, DEFAULT_THREADS);
+	}
+
+	public ChunkedTableScanner(DatabaseRegistryEntry dbre, String table, String keyColumn, int chunkSize,
+			int threads) {
+		this.dbre = dbre;
+		this.table = table;
+		this.keyColumn = keyColumn;
+		this.chunkSize = chunkSize;
+		this.threads = Math.max(1, Math.min(threads, Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * Stop any chunks which have not yet started. Chunks which are running
+	 * complete normally; results for skipped chunks are null.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * @return the lowest and highest key in the table, or null if it is empty
+	 */
+	public long[] getKeyRange() {
+		String sql = "SELECT MIN(" + keyColumn + "), MAX(" + keyColumn + ") FROM " + table;
+		return new ConnectionBasedSqlTemplateImpl(dbre).execute(sql,
+				new SqlTemplate.ResultSetCallback<long[]>() {
+					@Override
+					public long[] process(ResultSet rs) throws SQLException {
+						if (!rs.next()) {
+							return null;
+						}
+						long min = rs.getLong(1);
+						if (rs.wasNull()) {
+							return null;
+						}
+						return new long[] { min, rs.getLong(2) };
+					}
+				});
+	}
+
+	/**
+	 * Run the query over every chunk of the key range.
+	 *
+	 * @return the result of each chunk, in key order
+	 */
+	public <T> List<T> scan(final String sql, final ChunkProcessor<T> processor) {
+		List<T> results = new ArrayList<T>();
+		long[] range = getKeyRange();
+		if (range == null) {
+			return results;
+		}
+		cancelled = false;
+
+		ConnectionWorkers workers = new ConnectionWorkers(dbre, threads);
+		List<Future<T>> futures = new ArrayList<Future<T>>();
+		try {
+			for (long lower = range[0]; lower <= range[1]; lower += chunkSize) {
+				final long chunkLower = lower;
+				final long chunkUpper = Math.min(range[1], lower + chunkSize - 1);
+				futures.add(workers.submit(new ConnectionWorkers.ConnectionTask<T>() {
+					@Override
+					public T run(Connection con) {
+						if (cancelled) {
+							return null;
+						}
+						return runChunk(con, sql, processor, chunkLower, chunkUpper);
+					}
+				}));
+			}
+			logger.fine("Scanning " + table + " in " + futures.size() + " chunks on " + threads + " connections");
+			for (Future<T> future : futures) {
+				results.add(workers.get(future, "scanning " + table));
+			}
+		} finally {
+			workers.close();
+		}
+		return results;
+	}
+
+	private <T> T runChunk(Connection con, String sql, ChunkProcessor<T> processor, long lower, long upper) {
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		try {
+			ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			ps.setLong(1, lower);
+			ps.setLong(2, upper);
+			rs = ps.executeQuery();
+			return processor.processChunk(rs, lower, upper);
+		} catch (SQLException e) {
+			throw new SqlUncheckedException("Could not scan " + table + " for " + keyColumn + " between " + lower
+					+ " and " + upper + " SQL => " + sql, e);
+		} finally {
+			DBUtils.closeQuietly(rs);
+			DBUtils.closeQuietly(ps);
+		}
+	}
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Table driven translation of DNA using the NCBI genetic codes, as set for a
+ * seq_region by its codon_table attribute (e.g. 2 for vertebrate
+ * mitochondria). Codons containing IUPAC ambiguity codes translate to the
+ * amino acid they all share, or X if they differ, matching BioPerl.
+ */
+public class CodonTable {
+
+	public static final int STANDARD = 1;
+
+	public static final char STOP = '*';
+
+	public static final char UNKNOWN = 'X';
+
+	/**
+	 * Amino acids for each codon in TCAG order (TTT, TTC, TTA, TTG, TCT, ...)
+	 * taken from the NCBI gc.prt file
+	 */
+	private static final Map<Integer, String> NCBI_TABLES = new HashMap<Integer, String>();
+
+	static {
+		String standard = "FFLLSSSSYY**CC*WLLLLPPPPHHQQRRRRIIIMTTTTNNKKSSRRVVVVAAAADDEEGGGG";
+		NCBI_TABLES.put(1, standard);
+		NCBI_TABLES.put(2, "FFLLSSSSYY**CCWWLLLLPPPPHHQQRRRRIIMMTTTTNNKKSS**VVVVAAAADDEEGGGG");
+		NCBI_TABLES.put(3, "FFLLSSSSYY**CCWWTTTTPPPPHHQQRRRRIIMMTTTTNNKKSSRRVVVVAAAADDEEGGGG");
+		NCBI_TABLES.put(4, "FFLLSSSSYY**CCWWLLLLPPPPHHQQRRRRIIIMTTTTNNKKSSRRVVVVAAAADDEEGGGG");
+		NCBI_TABLES.put(5, "FFLLSSSSYY**CCWWLLLLPPPPHHQQRRRRIIMMTTTTNNKKSSSSVVVVAAAADDEEGGGG");
+		NCBI_TABLES.put(6, "FFLLSSSSYYQQCC*WLLLLPPPPHHQQRRRRIIIMTTTTNNKKSSRRVVVVAAAADDEEGGGG");
+		NCBI_TABLES.put(9, "FFLLSSSSYY**CCWWLLLLPPPPHHQQRRRRIIIMTTTTNNNKSSSSVVVVAAAADDEEGGGG");
+		NCBI_TABLES.put(10, "FFLLSSSSYY**CCCWLLLLPPPPHHQQRRRRIIIMTTTTNNKKSSRRVVVVAAAADDEEGGGG");
+		NCBI_TABLES.put(11, standard);
+		NCBI_TABLES.put(12, "FFLLSSSSYY**CC*WLLLSPPPPHHQQRRRRIIIMTTTTNNKKSSRRVVVVAAAADDEEGGGG");
+		NCBI_TABLES.put(13, "FFLLSSSSYY**CCWWLLLLPPPPHHQQRRRRIIMMTTTTNNKKSSGGVVVVAAAADDEEGGGG");
+		NCBI_TABLES.put(14, "FFLLSSSSYYY*CCWWLLLLPPPPHHQQRRRRIIIMTTTTNNNKSSSSVVVVAAAADDEEGGGG");
+		NCBI_TABLES.put(16, "FFLLSSSSYY*LCC*WLLLLPPPPHHQQRRRRIIIMTTTTNNKKSSRRVVVVAAAADDEEGGGG");
+		NCBI_TABLES.put(21, "FFLLSSSSYY**CCWWLLLLPPPPHHQQRRRRIIMMTTTTNNNKSSSSVVVVAAAADDEEGGGG");
+		NCBI_TABLES.put(22, "FFLLSS*SYY*LCC*WLLLLPPPPHHQQRRRRIIIMTTTTNNKKSSRRVVVVAAAADDEEGGGG");
+		NCBI_TABLES.put(23, "FF*LSSSSYY**CC*WLLLLPPPPHHQQRRRRIIIMTTTTNNKKSSRRVVVVAAAADDEEGGGG");
+		NCBI_TABLES.put(24, "FFLLSSSSYY**CCWWLLLLPPPPHHQQRRRRIIIMTTTTNNKKSSSKVVVVAAAADDEEGGGG");
+		NCBI_TABLES.put(25, "FFLLSSSSYY**CCGWLLLLPPPPHHQQRRRRIIIMTTTTNNKKSSRRVVVVAAAADDEEGGGG");
+		NCBI_TABLES.put(26, "FFLLSSSSYY**CC*WLLLAPPPPHHQQRRRRIIIMTTTTNNKKSSRRVVVVAAAADDEEGGGG");
+	}
+
+	/**
+	 * Bit masks of the bases (T=1, C=2, A=4, G=8) each IUPAC code stands for
+	 */
+	private static final byte[] BASE_MASKS = new byte[128];
+
+	static {
+		setMask("T", 1);
+		setMask("U", 1);
+		setMask("C", 2);
+		setMask("A", 4);
+		setMask("G", 8);
+		setMask("Y", 1 | 2);
+		setMask("R", 4 | 8);
+		setMask("W", 1 | 4);
+		setMask("S", 2 | 8);
+		setMask("K", 1 | 8);
+		setMask("M", 2 | 4);
+		setMask("B", 1 | 2 | 8);
+		setMask("D", 1 | 4 | 8);
+		setMask("H", 1 | 2 | 4);
+		setMask("V", 2 | 4 | 8);
+		setMask("N", 1 | 2 | 4 | 8);
+	}
+
+	private static void setMask(String base, int mask) {
+		BASE_MASKS[base.charAt(0)] = (byte) mask;
+		BASE_MASKS[Character.toLowerCase(base.charAt(0))] = (byte) mask;
+	}
+
+	private static final Map<Integer, CodonTable> TABLES = new HashMap<Integer, CodonTable>();
+
+	/**
+	 * @return the NCBI genetic code with the given id
+	 * @throws IllegalArgumentException
+	 *           if the table is not known
+	 */
+	public static synchronized CodonTable getTable(int id) {
+		CodonTable table = TABLES.get(id);
+		if (table == null) {
+			String aminoAcids = NCBI_TABLES.get(id);
+			if (aminoAcids == null) {
+				throw new IllegalArgumentException("Unknown codon table " + id);
+			}
+			table = new CodonTable(id, aminoAcids.toCharArray());
+			TABLES.put(id, table);
+		}
+		return table;
+	}
+
+	/**
+	 * @return true if {@link #getTable(int)} knows the given id
+	 */
+	public static boolean isKnownTable(int id) {
+		return NCBI_TABLES.containsKey(id);
+	}
+
+	private final int id;
+	private final char[] aminoAcids;
+
+	private CodonTable(int id, char[] aminoAcids) {
+		this.id = id;
+		this.aminoAcids = aminoAcids;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Translate the codon starting at <code>offset</code>
+	 */
+	public char translateCodon(CharSequence dna, int offset) {
+		int m1 = mask(dna.charAt(offset));
+		int m2 = mask(dna.charAt(offset + 1));
+		int m3 = mask(dna.charAt(offset + 2));
+		char aa = 0;
+		for (int b1 = 0; b1 < 4; b1++) {
+			if ((m1 & (1 << b1)) == 0) {
+				continue;
+			}
+			for (int b2 = 0; b2 < 4; b2++) {
+				if ((m2 & (1 << b2)) == 0) {
+					continue;
+				}
+				for (int b3 = 0; b3 < 4; b3++) {
+					if ((m3 & (1 << b3)) == 0) {
+						continue;
+					}
+					char candidate = aminoAcids[b1 * 16 + b2 * 4 + b3];
+					if (aa == 0) {
+						aa = candidate;
+					} else if (aa != candidate) {
+						return UNKNOWN;
+					}
+				}
+			}
+		}
+		return aa == 0 ? UNKNOWN : aa;
+	}
+
+	/**
+	 * @return true if the codon starting at <code>offset</code> is a stop
+	 *         codon in this table
+	 */
+	public boolean isStop(CharSequence dna, int offset) {
+		return translateCodon(dna, offset) == STOP;
+	}
+
+	/**
+	 * Translate the supplied DNA in frame 1. A trailing partial codon is
+	 * ignored.
+	 */
+	public String translate(CharSequence dna) {
+		int codons = dna.length() / 3;
+		char[] peptide = new char[codons];
+		for (int i = 0; i < codons; i++) {
+			peptide[i] = translateCodon(dna, i * 3);
+		}
+		return new String(peptide);
+	}
+
+	private static int mask(char base) {
+		return base < 128 ? BASE_MASKS[base] : 0;
+	}
+
+}
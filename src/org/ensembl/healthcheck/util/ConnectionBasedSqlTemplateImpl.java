@@ -56,6 +56,12 @@ public class ConnectionBasedSqlTemplateImpl implements SqlTemplate {
 	public static final int FIRST_COLUMN_INDEX = 1;
 	public static final int NO_ROW_LIMIT_CHECKS = -1;
 
+	/**
+	 * Fetch size used for streaming with drivers other than MySQL, which
+	 * treat a positive fetch size on a forward-only cursor as a hint
+	 */
+	public static final int STREAMING_FETCH_SIZE = 1000;
+
 	private final Connection connection;
 	private final String uri;
 
@@ -198,6 +204,68 @@ public class ConnectionBasedSqlTemplateImpl implements SqlTemplate {
 		return object;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	public <T> T executeStreaming(String sql, ResultSetCallback<T> callback,
+			Object... args) {
+		T object;
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		try {
+			ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+					ResultSet.CONCUR_READ_ONLY);
+			ps.setFetchSize(getStreamingFetchSize());
+			bindParamsToPreparedStatement(ps, args);
+			rs = ps.executeQuery();
+			object = callback.process(rs);
+		} catch (SQLException e) {
+			throw createUncheckedException(sql, args, e);
+		} finally {
+			closeDbObject(rs);
+			closeDbObject(ps);
+		}
+		return object;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public <T> int forEach(final String sql, final RowMapper<T> mapper,
+			final RowConsumer<T> consumer, final Object... args) {
+		return executeStreaming(sql, new ResultSetCallback<Integer>() {
+			@Override
+			public Integer process(ResultSet rs) throws SQLException {
+				int position = 0;
+				while (rs.next()) {
+					consumer.consume(mapper.mapRow(rs, position), position);
+					position++;
+				}
+				return position;
+			}
+		}, args);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public <T> int forEachDefaultObject(final String sql,
+			final Class<T> expected, final RowConsumer<T> consumer,
+			final Object... args) {
+		DefaultObjectRowMapper<T> mapper = new DefaultObjectRowMapper<T>(
+				expected, FIRST_COLUMN_INDEX);
+		return forEach(sql, mapper, consumer, args);
+	}
+
+	/**
+	 * Connector/J only streams rows when the fetch size is
+	 * {@link Integer#MIN_VALUE}; other drivers reject a negative fetch size
+	 */
+	private int getStreamingFetchSize() {
+		return uri != null && uri.startsWith("jdbc:mysql:") ? Integer.MIN_VALUE
+				: STREAMING_FETCH_SIZE;
+	}
+
 	/**
 	 * Use this to close down {@link ResultSet} objects with null safety checks
 	 */
@@ -60,7 +60,7 @@ public final class ConnectionPool {
      *          The password for username.
      * @throws SQLException 
      */
-    public static Connection getConnection(String driverClassName, String databaseURL, String user, String password) throws SQLException {
+    public static synchronized Connection getConnection(String driverClassName, String databaseURL, String user, String password) throws SQLException {
 
         Connection con = null;
 
@@ -136,7 +136,7 @@ public final class ConnectionPool {
   	return valid;
   }
  
-    public static Connection getConnectionFromPool(String driverClassName, String databaseURL, String user, String password) throws SQLException {
+    public static synchronized Connection getConnectionFromPool(String driverClassName, String databaseURL, String user, String password) throws SQLException {
     	
         Connection con = (Connection) pool.get(databaseURL);
         
@@ -167,7 +167,7 @@ public final class ConnectionPool {
         return con;
     }
     
-    public static Connection getConnectionByClassloader(String driverClassName, String databaseURL, String user, String password) throws SQLException {
+    public static synchronized Connection getConnectionByClassloader(String driverClassName, String databaseURL, String user, String password) throws SQLException {
 
     	Connection con = null;
     	
@@ -193,7 +193,7 @@ public final class ConnectionPool {
     /**
      * Close all the connections in the pool.
      */
-    public static void closeAll() {
+    public static synchronized void closeAll() {
 
         Set<String> keys = pool.keySet();
         Iterator<String> it = keys.iterator();
@@ -0,0 +1,151 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.ensembl.healthcheck.DatabaseRegistryEntry;
+
+/**
+ * A fixed number of threads running tasks against one database, each task on
+ * a connection of its own. The connections are opened outside the
+ * {@link ConnectionPool}, which only holds one per database, and are shared
+ * out between the tasks.
+ * <p>
+ * Always {@link #close()} the workers, in a finally block. Tasks still
+ * running at that point are interrupted and close their connection when they
+ * finish, so no connection is left open whichever way the caller leaves.
+ */
+public class ConnectionWorkers {
+
+	/**
+	 * Work done on one of the worker connections
+	 */
+	public static interface ConnectionTask<T> {
+		T run(Connection con) throws Exception;
+	}
+
+	private final DatabaseRegistryEntry dbre;
+
+	private final BlockingQueue<Connection> connections;
+
+	private final ExecutorService executor;
+
+	private final int threads;
+
+	private volatile boolean closed;
+
+	/**
+	 * Open the connections and start the threads.
+	 *
+	 * @throws SqlUncheckedException
+	 *           if a connection can't be opened
+	 */
+	public ConnectionWorkers(DatabaseRegistryEntry dbre, int threads) {
+		this.dbre = dbre;
+		this.threads = Math.max(1, threads);
+		this.connections = new ArrayBlockingQueue<Connection>(this.threads);
+		try {
+			for (int i = 0; i < this.threads; i++) {
+				connections.add(dbre.getDatabaseServer().getUnpooledDatabaseConnection(dbre.getName()));
+			}
+		} catch (SQLException e) {
+			closeIdleConnections();
+			throw new SqlUncheckedException("Could not open connections to " + dbre.getName(), e);
+		}
+		this.executor = Executors.newFixedThreadPool(this.threads);
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public <T> Future<T> submit(final ConnectionTask<T> task) {
+		return executor.submit(new Callable<T>() {
+			@Override
+			public T call() throws Exception {
+				Connection con = connections.take();
+				try {
+					return task.run(con);
+				} finally {
+					release(con);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Wait for the result of a task, rethrowing whatever it failed with
+	 * unchecked.
+	 *
+	 * @param description
+	 *          what the task does, for the message of the exception
+	 */
+	public <T> T get(Future<T> future, String description) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new UtilUncheckedException("Interrupted while " + description + " in " + dbre.getName(), e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof SqlUncheckedException) {
+				throw (SqlUncheckedException) e.getCause();
+			}
+			throw new UtilUncheckedException("Failed while " + description + " in " + dbre.getName(), e.getCause());
+		}
+	}
+
+	/**
+	 * Stop the threads and close the connections. Tasks which have not
+	 * started are dropped.
+	 */
+	public void close() {
+		closed = true;
+		executor.shutdownNow();
+		closeIdleConnections();
+	}
+
+	private void release(Connection con) {
+		// offer() never blocks as there is room for every connection, and
+		// unlike put() it can't be interrupted by close() and lose the
+		// connection
+		connections.offer(con);
+		if (closed) {
+			closeIdleConnections();
+		}
+	}
+
+	/**
+	 * Close the connections no task holds. Each is polled by one thread only,
+	 * so whichever of close() and release() sees it last closes it.
+	 */
+	private void closeIdleConnections() {
+		Connection con;
+		while ((con = connections.poll()) != null) {
+			DBUtils.closeQuietly(con);
+		}
+	}
+}
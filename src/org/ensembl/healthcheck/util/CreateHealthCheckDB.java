@@ -28,6 +28,8 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.logging.Logger;
@@ -134,6 +136,60 @@ public class CreateHealthCheckDB {
 		}
 	}
 	
+	/**
+	 * @return true if any of the options for removing old reports from the
+	 *         output database have been set
+	 */
+	public boolean isRetentionConfigured() {
+		return conf.isOutputRetainMinorSessions() || conf.isOutputRetainSessions();
+	}
+	
+	/**
+	 * Remove old reports from the output database, as configured by 
+	 * output.retainMinorSessions and output.retainSessions. Removed reports 
+	 * are archived in output.archiveDir, if that is set.
+	 * 
+	 * @return number of reports removed
+	 */
+	public int maintain() {
+		
+		Connection con = connectToDb(getDbUrl() + conf.getOutputDatabase());
+		
+		try {
+			ReportRetention retention = new ReportRetention(new ConnectionBasedSqlTemplateImpl(con));
+			String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+			int removed = 0;
+			
+			if (conf.isOutputRetainSessions()) {
+				removed += retention.pruneReports(
+					Integer.parseInt(conf.getOutputRetainSessions().trim()), 
+					getArchiveFile("reports", stamp)
+				);
+			}
+			if (conf.isOutputRetainMinorSessions()) {
+				removed += retention.pruneMinorReports(
+					Integer.parseInt(conf.getOutputRetainMinorSessions().trim()), 
+					getArchiveFile("minor_reports", stamp)
+				);
+			}
+			return removed;
+			
+		} finally {
+			DBUtils.closeQuietly(con);
+		}
+	}
+	
+	private File getArchiveFile(String kind, String stamp) {
+		
+		if (!conf.isOutputArchiveDir()) {
+			return null;
+		}
+		return new File(
+			conf.getOutputArchiveDir(), 
+			conf.getOutputDatabase() + "_" + kind + "_" + stamp + ".tsv.gz"
+		);
+	}
+	
 	public void run() {
 		
 		try {
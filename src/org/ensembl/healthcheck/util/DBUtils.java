@@ -929,7 +929,19 @@ public final class DBUtils {
     // ---------------------------------------------------------------------
 
     /**
-     * Get the meta_value for a named key in the meta table.
+     * Get the meta_value for a named key in the meta table, from the meta
+     * snapshot held by the database entry.
+     */
+    public static String getMetaValue(DatabaseRegistryEntry dbre, String key) {
+
+        return dbre.getMeta().getValue(key);
+
+    }
+
+    /**
+     * Get the first value of a meta key by querying the meta table. Prefer
+     * {@link #getMetaValue(DatabaseRegistryEntry, String)} when the database
+     * entry is available, which reads from its cached meta snapshot.
      */
     public static String getMetaValue(Connection con, String key) {
 
@@ -1566,6 +1578,29 @@ public final class DBUtils {
 
     } // getColumnValues
 
+    // -------------------------------------------------------------------------
+    /**
+     * Execute a SQL statement and pass the values of one column of the result
+     * to the consumer as they are read, without holding the whole result in
+     * memory. See
+     * {@link SqlTemplate#executeStreaming(String, SqlTemplate.ResultSetCallback, Object...)}
+     * for the restrictions this places on the connection while the rows are
+     * read.
+     * 
+     * @param con
+     *            The Connection to use.
+     * @param sql
+     *            The SQL to check; should return ONE column.
+     * @param consumer
+     *            Given each value in the order that they were read.
+     * @return The number of values read.
+     */
+    public static int streamColumnValues(Connection con, String sql, SqlTemplate.RowConsumer<String> consumer) {
+
+        return getSqlTemplate(con).forEachDefaultObject(sql, String.class, consumer);
+
+    } // streamColumnValues
+
     // -------------------------------------------------------------------------
     /**
      * Check for the presence of a particular String in a table column.
@@ -0,0 +1,204 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Finds overlapping intervals with a sorted sweep over primitive arrays
+ * rather than comparing every pair. Intervals are added for one region at a
+ * time (e.g. all components of an assembled seq_region, or all features on
+ * a seq_region); call {@link #clear()} before moving on to the next region.
+ * <p>
+ * Each interval carries a group (typically the strand). Only intervals in
+ * the same group are compared. Counting overlaps is O(n log n); reporting
+ * them with {@link #forEachOverlap(OverlapHandler)} adds O(k) for k
+ * overlapping pairs.
+ * <p>
+ * Coordinates are treated as inclusive (Ensembl style) when
+ * <code>inclusive</code> is set, so intervals sharing a single base overlap.
+ * Otherwise an interval must start strictly before the end of another to
+ * overlap it.
+ */
+public class IntervalSweep {
+
+	/**
+	 * Callback for each pair of overlapping intervals. Indices are in the
+	 * order intervals were added and <code>first</code> always starts at or
+	 * before <code>second</code>.
+	 */
+	public static interface OverlapHandler {
+		void overlap(int first, int second);
+	}
+
+	private static final int DEFAULT_CAPACITY = 64;
+
+	private final boolean inclusive;
+
+	private int[] starts = new int[DEFAULT_CAPACITY];
+	private int[] ends = new int[DEFAULT_CAPACITY];
+	private int[] groups = new int[DEFAULT_CAPACITY];
+	private int size;
+
+	public IntervalSweep(boolean inclusive) {
+		this.inclusive = inclusive;
+	}
+
+	/**
+	 * Add an interval
+	 *
+	 * @return index of the interval as passed to {@link OverlapHandler}
+	 */
+	public int add(int start, int end, int group) {
+		if (size == starts.length) {
+			int capacity = size * 2;
+			starts = Arrays.copyOf(starts, capacity);
+			ends = Arrays.copyOf(ends, capacity);
+			groups = Arrays.copyOf(groups, capacity);
+		}
+		starts[size] = start;
+		ends[size] = end;
+		groups[size] = group;
+		return size++;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getStart(int i) {
+		return starts[i];
+	}
+
+	public int getEnd(int i) {
+		return ends[i];
+	}
+
+	public int getGroup(int i) {
+		return groups[i];
+	}
+
+	/**
+	 * Remove all intervals, keeping the allocated arrays for reuse
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * @return number of pairs of intervals in the same group that overlap
+	 */
+	public long countOverlaps() {
+		return sweep(null);
+	}
+
+	/**
+	 * Pass every overlapping pair to the supplied handler
+	 *
+	 * @return number of overlapping pairs
+	 */
+	public long forEachOverlap(OverlapHandler handler) {
+		return sweep(handler);
+	}
+
+	private long sweep(OverlapHandler handler) {
+		// pack start and index into a long so a primitive sort orders by start
+		long[] order = new long[size];
+		for (int i = 0; i < size; i++) {
+			order[i] = ((long) starts[i] << 32) | i;
+		}
+		Arrays.sort(order);
+		Map<Integer, EndHeap> active = new HashMap<Integer, EndHeap>();
+		long count = 0;
+		for (long packed : order) {
+			int i = (int) (packed & 0xFFFFFFFFL);
+			EndHeap heap = active.get(groups[i]);
+			if (heap == null) {
+				heap = new EndHeap();
+				active.put(groups[i], heap);
+			}
+			// drop intervals which end before this one starts
+			while (heap.size > 0 && !overlaps(ends[heap.peek()], starts[i])) {
+				heap.poll();
+			}
+			count += heap.size;
+			if (handler != null) {
+				for (int h = 0; h < heap.size; h++) {
+					handler.overlap(heap.items[h], i);
+				}
+			}
+			heap.add(i);
+		}
+		return count;
+	}
+
+	private boolean overlaps(int earlierEnd, int laterStart) {
+		return inclusive ? laterStart <= earlierEnd : laterStart < earlierEnd;
+	}
+
+	/**
+	 * Min-heap of interval indices keyed on interval end
+	 */
+	private class EndHeap {
+
+		private int[] items = new int[16];
+		private int size;
+
+		int peek() {
+			return items[0];
+		}
+
+		void add(int i) {
+			if (size == items.length) {
+				items = Arrays.copyOf(items, size * 2);
+			}
+			int pos = size++;
+			while (pos > 0) {
+				int parent = (pos - 1) >>> 1;
+				if (ends[items[parent]] <= ends[i]) {
+					break;
+				}
+				items[pos] = items[parent];
+				pos = parent;
+			}
+			items[pos] = i;
+		}
+
+		void poll() {
+			int last = items[--size];
+			int pos = 0;
+			while (true) {
+				int child = 2 * pos + 1;
+				if (child >= size) {
+					break;
+				}
+				if (child + 1 < size && ends[items[child + 1]] < ends[items[child]]) {
+					child++;
+				}
+				if (ends[last] <= ends[items[child]]) {
+					break;
+				}
+				items[pos] = items[child];
+				pos = child;
+			}
+			items[pos] = last;
+		}
+	}
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.util;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Per-key existence and count checks done in one grouped query rather than
+ * one query per key, for tests which would otherwise loop over the rows of
+ * an outer query running e.g.
+ *
+ * <pre>
+ * SELECT COUNT(*) FROM genomic_align WHERE method_link_species_set_id = ? AND dnafrag_id = ?
+ * </pre>
+ *
+ * for each of them. The keys are matched with
+ * <code>(col1, col2) IN ((?, ?), ...)</code> in batches of
+ * {@link #DEFAULT_BATCH_SIZE}, so the database can use an index on the key
+ * columns, and the rows for all keys come back from a single
+ * <code>GROUP BY</code>.
+ * <p>
+ * Keys are lists with one value per key column. Values are compared as
+ * strings, with numbers written as longs, so keys read with
+ * <code>getInt</code> or <code>getString</code> match the rows whatever
+ * type the driver returns them as.
+ */
+public class KeyedRowCounter {
+
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+
+	private final SqlTemplate template;
+
+	private final int batchSize;
+
+	public KeyedRowCounter(SqlTemplate template) {
+		this(template, DEFAULT_BATCH_SIZE);
+	}
+
+	public KeyedRowCounter(SqlTemplate template, int batchSize) {
+		this.template = template;
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Count the rows for each key.
+	 *
+	 * @param from
+	 *          table, or join of tables, to count in
+	 * @param keyColumns
+	 *          columns (qualified if needed) the keys are values of
+	 * @param keys
+	 *          keys to count
+	 * @return the number of rows for each key, 0 if there are none, in the
+	 *         order of the keys
+	 */
+	public Map<List<Object>, Long> count(String from, List<String> keyColumns, Collection<List<Object>> keys) {
+		Map<List<Object>, Long> found = query("COUNT(*)", from, keyColumns, keys);
+		Map<List<Object>, Long> counts = new LinkedHashMap<List<Object>, Long>();
+		for (List<Object> key : keys) {
+			Long count = found.get(normalise(key));
+			counts.put(key, count == null ? 0 : count);
+		}
+		return counts;
+	}
+
+	/**
+	 * Find the keys which have no rows. This selects only the distinct keys
+	 * present, so unlike {@link #count(String, List, Collection)} the
+	 * database does not have to visit every row of large tables.
+	 *
+	 * @return the keys without any rows, in the order of the keys
+	 */
+	public Set<List<Object>> findMissing(String from, List<String> keyColumns, Collection<List<Object>> keys) {
+		Map<List<Object>, Long> found = query(null, from, keyColumns, keys);
+		Set<List<Object>> missing = new LinkedHashSet<List<Object>>();
+		for (List<Object> key : keys) {
+			if (!found.containsKey(normalise(key))) {
+				missing.add(key);
+			}
+		}
+		return missing;
+	}
+
+	/**
+	 * Run the grouped query over each batch of keys
+	 *
+	 * @param aggregate
+	 *          aggregate to select for each key, or null to select the
+	 *          distinct keys only
+	 * @return value of the aggregate for each key found, by normalised key
+	 */
+	private Map<List<Object>, Long> query(final String aggregate, String from, List<String> keyColumns,
+			Collection<List<Object>> keys) {
+		final int n = keyColumns.size();
+		String columns = StringUtils.join(keyColumns, ", ");
+		String tuple = n == 1 ? "?" : "(" + repeat("?", ", ", n) + ")";
+
+		final Map<List<Object>, Long> found = new HashMap<List<Object>, Long>();
+		List<List<Object>> all = new ArrayList<List<Object>>(keys);
+		for (int start = 0; start < all.size(); start += batchSize) {
+			List<List<Object>> batch = all.subList(start, Math.min(all.size(), start + batchSize));
+			List<Object> args = new ArrayList<Object>(batch.size() * n);
+			for (List<Object> key : batch) {
+				if (key.size() != n) {
+					throw new IllegalArgumentException("Key " + key + " does not match columns " + keyColumns);
+				}
+				args.addAll(key);
+			}
+			String sql = "SELECT " + (aggregate == null ? "DISTINCT " + columns : columns + ", " + aggregate)
+					+ " FROM " + from + " WHERE " + (n == 1 ? columns : "(" + columns + ")") + " IN ("
+					+ repeat(tuple, ", ", batch.size()) + ")"
+					+ (aggregate == null ? "" : " GROUP BY " + columns);
+			template.execute(sql, new SqlTemplate.ResultSetCallback<Void>() {
+				@Override
+				public Void process(ResultSet rs) throws SQLException {
+					while (rs.next()) {
+						List<Object> key = new ArrayList<Object>(n);
+						for (int i = 1; i <= n; i++) {
+							key.add(rs.getObject(i));
+						}
+						found.put(normalise(key), aggregate == null ? 1L : rs.getLong(n + 1));
+					}
+					return null;
+				}
+			}, args.toArray());
+		}
+		return found;
+	}
+
+	private static String repeat(String s, String separator, int times) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < times; i++) {
+			if (i > 0) {
+				sb.append(separator);
+			}
+			sb.append(s);
+		}
+		return sb.toString();
+	}
+
+	private static List<Object> normalise(List<Object> key) {
+		List<Object> normalised = new ArrayList<Object>(key.size());
+		for (Object value : key) {
+			if (value instanceof Number) {
+				normalised.add(Long.toString(((Number) value).longValue()));
+			} else {
+				normalised.add(value == null ? null : value.toString());
+			}
+		}
+		return normalised;
+	}
+}
@@ -31,6 +31,8 @@ public class MyStreamHandler extends Handler {
   
   private OutputStream outputStream;
   
+  private boolean autoFlush = true;
+  
   // ------------------------------------------------------------------------
   /**
    * Creates a new instance of MyStreamHandler
@@ -42,6 +44,16 @@ public class MyStreamHandler extends Handler {
     setFormatter(formatter);
   }
   
+  // -------------------------------------------------------------------------
+  /**
+   * Whether the stream is flushed after every record. Turn this off when
+   * records are written in batches, e.g. by an {@link AsyncHandler}, which
+   * flushes once per batch.
+   */
+  public void setAutoFlush(boolean autoFlush) {
+    this.autoFlush = autoFlush;
+  }
+  
   // -------------------------------------------------------------------------
   /** 
    * Close the Handler. Currently a no-op.
@@ -69,7 +81,9 @@ public class MyStreamHandler extends Handler {
   public void publish(LogRecord logRecord) {
     try {
       outputStream.write((getFormatter().format(logRecord)).getBytes());
-      flush();
+      if (autoFlush) {
+        flush();
+      }
      } catch (Exception e) {
       e.printStackTrace();
     }
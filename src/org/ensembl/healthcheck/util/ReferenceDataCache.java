@@ -0,0 +1,329 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.util;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Logger;
+
+import org.ensembl.healthcheck.DatabaseRegistryEntry;
+
+/**
+ * Run-scoped cache of reference tables from the shared databases (production
+ * and compara master), so that tests checking many databases read each
+ * reference table once per run rather than once per database.
+ * <p>
+ * A {@link Snapshot} is the result of
+ * <code>SELECT projection FROM table WHERE filter</code> and is keyed on the
+ * database and those three strings, so callers asking for the same rows
+ * share one query. Snapshots are immutable and can be used from several
+ * threads; each is loaded once even if several threads ask for it at the
+ * same time. The least recently used snapshots are dropped once the cache
+ * holds more than a maximum number of rows.
+ * <p>
+ * Lookups on a snapshot are done in Java. Strings are compared ignoring
+ * case, as MySQL does with the default collations, and other values with
+ * {@link Object#equals(Object)}.
+ * {@link #clear()} should be called at the start of each run so that changes
+ * to the reference data are picked up.
+ */
+public class ReferenceDataCache {
+
+	/**
+	 * Immutable copy of the rows returned by a query, with indexes on
+	 * columns built the first time they are looked up
+	 */
+	public static class Snapshot {
+
+		private final List<String> columns;
+		private final List<Object[]> rows;
+		private final Map<String, Map<Object, List<Object[]>>> indexes = new ConcurrentHashMap<String, Map<Object, List<Object[]>>>();
+
+		Snapshot(List<String> columns, List<Object[]> rows) {
+			this.columns = Collections.unmodifiableList(columns);
+			this.rows = Collections.unmodifiableList(rows);
+		}
+
+		public List<String> getColumns() {
+			return columns;
+		}
+
+		/**
+		 * @return the rows; the arrays must not be modified
+		 */
+		public List<Object[]> getRows() {
+			return rows;
+		}
+
+		public int size() {
+			return rows.size();
+		}
+
+		/**
+		 * @return position of the column (by label, ignoring case) in each row
+		 */
+		public int getColumnIndex(String column) {
+			for (int i = 0; i < columns.size(); i++) {
+				if (columns.get(i).equalsIgnoreCase(column)) {
+					return i;
+				}
+			}
+			throw new IllegalArgumentException("Column " + column + " is not in " + columns);
+		}
+
+		/**
+		 * @return the distinct non-null values of the column as strings, in
+		 *         row order
+		 */
+		public Set<String> getStrings(String column) {
+			int i = getColumnIndex(column);
+			Set<String> values = new LinkedHashSet<String>();
+			for (Object[] row : rows) {
+				if (row[i] != null) {
+					values.add(row[i].toString());
+				}
+			}
+			return values;
+		}
+
+		/**
+		 * @return the rows where the column equals the value, ignoring case if
+		 *         it is a string
+		 */
+		public List<Object[]> lookup(String column, Object value) {
+			List<Object[]> found = getIndex(column).get(fold(value));
+			if (found == null) {
+				return Collections.emptyList();
+			}
+			return found;
+		}
+
+		/**
+		 * @return whether any row has the value in the column, ignoring case if
+		 *         it is a string
+		 */
+		public boolean contains(String column, Object value) {
+			return getIndex(column).containsKey(fold(value));
+		}
+
+		private Map<Object, List<Object[]>> getIndex(String column) {
+			String key = column.toLowerCase();
+			Map<Object, List<Object[]>> index = indexes.get(key);
+			if (index == null) {
+				// two threads may build the same index; both results are
+				// equal so either can be kept
+				int i = getColumnIndex(column);
+				index = new HashMap<Object, List<Object[]>>();
+				for (Object[] row : rows) {
+					Object value = fold(row[i]);
+					List<Object[]> matches = index.get(value);
+					if (matches == null) {
+						matches = new ArrayList<Object[]>(1);
+						index.put(value, matches);
+					}
+					matches.add(row);
+				}
+				indexes.put(key, Collections.unmodifiableMap(index));
+			}
+			return indexes.get(key);
+		}
+
+		private static Object fold(Object value) {
+			if (value instanceof String) {
+				return ((String) value).toLowerCase(Locale.ROOT);
+			}
+			return value;
+		}
+	}
+
+	public static final int DEFAULT_MAX_ROWS = 2000000;
+
+	private static Logger logger = Logger.getLogger("HealthCheckLogger");
+
+	private static final ReferenceDataCache instance = new ReferenceDataCache(DEFAULT_MAX_ROWS);
+
+	/**
+	 * @return the cache shared by all tests in the JVM
+	 */
+	public static ReferenceDataCache getInstance() {
+		return instance;
+	}
+
+	private final int maxRows;
+
+	// access ordered, so iteration starts at the least recently used
+	private final LinkedHashMap<String, FutureTask<Snapshot>> snapshots = new LinkedHashMap<String, FutureTask<Snapshot>>(
+			16, 0.75f, true);
+
+	// rows of each loaded snapshot counted in cachedRows, so that only what
+	// was added is taken off again
+	private final Map<String, Integer> snapshotRows = new HashMap<String, Integer>();
+
+	private int cachedRows;
+
+	public ReferenceDataCache(int maxRows) {
+		this.maxRows = maxRows;
+	}
+
+	/**
+	 * Get the rows of <code>SELECT projection FROM table WHERE filter</code>,
+	 * querying the database only if they are not already cached.
+	 *
+	 * @param dbre
+	 *          database to query
+	 * @param table
+	 *          table, or join of tables, to select from
+	 * @param projection
+	 *          columns to select
+	 * @param filter
+	 *          where clause without the WHERE, or null for all rows
+	 */
+	public Snapshot getSnapshot(final DatabaseRegistryEntry dbre, String table, String projection, String filter) {
+		final String sql = "SELECT " + projection + " FROM " + table
+				+ (filter == null ? "" : " WHERE " + filter);
+		String key = dbre.getDatabaseServer().getDatabaseURL() + dbre.getName() + "\t" + sql;
+
+		FutureTask<Snapshot> task;
+		boolean load = false;
+		synchronized (this) {
+			task = snapshots.get(key);
+			if (task == null) {
+				task = new FutureTask<Snapshot>(new Callable<Snapshot>() {
+					@Override
+					public Snapshot call() {
+						return load(dbre, sql);
+					}
+				});
+				snapshots.put(key, task);
+				load = true;
+			}
+		}
+		if (load) {
+			task.run();
+		}
+		try {
+			Snapshot snapshot = task.get();
+			if (load) {
+				added(key, task, snapshot);
+			}
+			return snapshot;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new UtilUncheckedException("Interrupted while waiting for " + sql, e);
+		} catch (ExecutionException e) {
+			// don't keep failures, so the next caller tries again
+			synchronized (this) {
+				if (snapshots.get(key) == task) {
+					snapshots.remove(key);
+				}
+			}
+			if (e.getCause() instanceof SqlUncheckedException) {
+				throw (SqlUncheckedException) e.getCause();
+			}
+			throw new UtilUncheckedException("Could not load " + sql, e.getCause());
+		}
+	}
+
+	/**
+	 * Remove all snapshots
+	 */
+	public synchronized void clear() {
+		snapshots.clear();
+		snapshotRows.clear();
+		cachedRows = 0;
+	}
+
+	/**
+	 * @return number of snapshots held
+	 */
+	public synchronized int size() {
+		return snapshots.size();
+	}
+
+	private Snapshot load(DatabaseRegistryEntry dbre, String sql) {
+		logger.fine("Caching reference data from " + dbre.getName() + ": " + sql);
+		return DBUtils.getSqlTemplate(dbre).execute(sql, new SqlTemplate.ResultSetCallback<Snapshot>() {
+			@Override
+			public Snapshot process(ResultSet rs) throws SQLException {
+				ResultSetMetaData md = rs.getMetaData();
+				int n = md.getColumnCount();
+				List<String> columns = new ArrayList<String>(n);
+				for (int i = 1; i <= n; i++) {
+					columns.add(md.getColumnLabel(i));
+				}
+				List<Object[]> rows = new ArrayList<Object[]>();
+				while (rs.next()) {
+					Object[] row = new Object[n];
+					for (int i = 0; i < n; i++) {
+						row[i] = rs.getObject(i + 1);
+					}
+					rows.add(row);
+				}
+				return new Snapshot(columns, rows);
+			}
+		});
+	}
+
+	/**
+	 * Count the rows of a newly loaded snapshot and evict the least recently
+	 * used ones (never the new one) until the cache is within its limit
+	 */
+	private synchronized void added(String key, FutureTask<Snapshot> task, Snapshot snapshot) {
+		if (snapshots.get(key) != task) {
+			// cleared while loading, and maybe loaded again since
+			return;
+		}
+		snapshotRows.put(key, snapshot.size());
+		cachedRows += snapshot.size();
+		Iterator<Map.Entry<String, FutureTask<Snapshot>>> it = snapshots.entrySet().iterator();
+		while (cachedRows > maxRows && it.hasNext()) {
+			String eldest = it.next().getKey();
+			Integer rows = snapshotRows.get(eldest);
+			// still loading, or loaded but not counted yet
+			if (eldest.equals(key) || rows == null) {
+				continue;
+			}
+			cachedRows -= rows;
+			snapshotRows.remove(eldest);
+			logger.fine("Dropping cached reference data " + eldest);
+			it.remove();
+		}
+	}
+
+	/**
+	 * @return number of rows counted against the limit
+	 */
+	synchronized int getCachedRows() {
+		return cachedRows;
+	}
+}
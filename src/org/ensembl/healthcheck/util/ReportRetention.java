@@ -0,0 +1,242 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the report table of the healthcheck output database from growing
+ * without bounds. Reports which were last seen before the most recent sessions
+ * are written to a gzipped, tab separated archive and deleted, along with
+ * their rows in report_session. Reports which have been annotated are always
+ * kept, and the session summaries are not touched, so the history of counts
+ * is still available.
+ * <p>
+ * Reports are archived and deleted in chunks, paging through the report ids,
+ * so the table is never locked for long and the ids are never all held in
+ * memory.
+ */
+public class ReportRetention {
+
+	static final Logger log = Logger.getLogger(ReportRetention.class.getCanonicalName());
+
+	public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+	/**
+	 * Results which are only of interest for the most recent sessions.
+	 */
+	public static final String[] MINOR_RESULTS = { "INFO", "CORRECT" };
+
+	private static final String UNANNOTATED = "NOT EXISTS (SELECT 1 FROM annotation a WHERE a.report_id=report.report_id)";
+
+	private final SqlTemplate template;
+
+	private final int chunkSize;
+
+	public ReportRetention(SqlTemplate template) {
+		this(template, DEFAULT_CHUNK_SIZE);
+	}
+
+	public ReportRetention(SqlTemplate template, int chunkSize) {
+		this.template = template;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * @param keepSessions
+	 *          number of most recent sessions to keep
+	 * @return the oldest session to keep, or -1 if there are no more sessions
+	 *         than that
+	 */
+	public long getOldestKeptSession(int keepSessions) {
+		if (keepSessions < 1) {
+			throw new IllegalArgumentException("At least one session has to be kept, not " + keepSessions);
+		}
+		List<Long> sessions = template.queryForDefaultObjectList("SELECT session_id FROM session ORDER BY session_id DESC",
+				Long.class);
+		return sessions.size() > keepSessions ? sessions.get(keepSessions - 1) : -1;
+	}
+
+	/**
+	 * Archive and delete the INFO and CORRECT reports which were last seen
+	 * before the given number of most recent sessions.
+	 *
+	 * @param archive
+	 *          gzipped file to write the deleted reports to, or null to delete
+	 *          them without archiving
+	 * @return number of reports deleted
+	 */
+	public int pruneMinorReports(int keepSessions, File archive) {
+		return prune(keepSessions, true, archive);
+	}
+
+	/**
+	 * Archive and delete all reports which were last seen before the given
+	 * number of most recent sessions.
+	 *
+	 * @see #pruneMinorReports(int, File)
+	 */
+	public int pruneReports(int keepSessions, File archive) {
+		return prune(keepSessions, false, archive);
+	}
+
+	private int prune(int keepSessions, boolean minorOnly, File archive) {
+		long oldestKept = getOldestKeptSession(keepSessions);
+		if (oldestKept == -1) {
+			log.info("No more than " + keepSessions + " sessions, no reports to remove");
+			return 0;
+		}
+
+		// No alias, as MySQL only allows one in a DELETE from 8.0.16
+		StringBuilder where = new StringBuilder("report.last_session_id<? AND ").append(UNANNOTATED);
+		if (minorOnly) {
+			where.append(" AND report.result IN (");
+			for (int i = 0; i < MINOR_RESULTS.length; i++) {
+				where.append(i == 0 ? "'" : ", '").append(MINOR_RESULTS[i]).append("'");
+			}
+			where.append(")");
+		}
+
+		Writer writer = null;
+		int deleted = 0;
+		try {
+			long lastId = 0;
+			while (true) {
+				List<Long> ids = template.queryForDefaultObjectList("SELECT report.report_id FROM report WHERE report.report_id>? AND "
+						+ where + " ORDER BY report.report_id LIMIT " + chunkSize, Long.class, lastId, oldestKept);
+				if (ids.isEmpty()) {
+					break;
+				}
+				lastId = ids.get(ids.size() - 1);
+
+				// The condition is checked again, in case a report was seen or
+				// annotated since its id was read
+				String chunk = "report.report_id IN (" + placeholders(ids.size()) + ") AND " + where;
+				Object[] args = new Object[ids.size() + 1];
+				for (int i = 0; i < ids.size(); i++) {
+					args[i] = ids.get(i);
+				}
+				args[ids.size()] = oldestKept;
+
+				if (archive != null) {
+					boolean header = writer == null;
+					if (header) {
+						writer = openArchive(archive);
+					}
+					archive(chunk, args, header, writer, archive);
+				}
+				template.update("DELETE FROM report_session WHERE report_id IN (SELECT report.report_id FROM report WHERE " + chunk
+						+ ")", args);
+				deleted += template.update("DELETE FROM report WHERE " + chunk, args);
+			}
+		} finally {
+			if (writer != null) {
+				try {
+					writer.close();
+				} catch (IOException e) {
+					throw new UtilUncheckedException("Could not write archive " + archive, e);
+				}
+			}
+		}
+		log.info("Removed " + deleted + (minorOnly ? " INFO and CORRECT" : "") + " reports last seen before session "
+				+ oldestKept + (writer == null ? "" : ", archived in " + archive));
+		return deleted;
+	}
+
+	private static Writer openArchive(File archive) {
+		File directory = archive.getAbsoluteFile().getParentFile();
+		if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+			throw new UtilUncheckedException("Could not create directory " + directory);
+		}
+		try {
+			return new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(archive)), "UTF-8"));
+		} catch (IOException e) {
+			throw new UtilUncheckedException("Could not create archive " + archive, e);
+		}
+	}
+
+	/**
+	 * Append the reports matching a condition to the archive, one per line with
+	 * tab separated columns, after a line with the column names if header is
+	 * set.
+	 */
+	private void archive(String where, Object[] args, final boolean header, final Writer writer, final File archive) {
+		template.execute("SELECT report.* FROM report WHERE " + where + " ORDER BY report.report_id",
+				new SqlTemplate.ResultSetCallback<Void>() {
+					@Override
+					public Void process(ResultSet resultSet) throws SQLException {
+						try {
+							ResultSetMetaData metaData = resultSet.getMetaData();
+							int columns = metaData.getColumnCount();
+							if (header) {
+								List<String> names = new ArrayList<String>();
+								for (int i = 1; i <= columns; i++) {
+									names.add(metaData.getColumnLabel(i).toLowerCase());
+								}
+								writeLine(writer, names);
+							}
+							while (resultSet.next()) {
+								List<String> values = new ArrayList<String>();
+								for (int i = 1; i <= columns; i++) {
+									values.add(resultSet.getString(i));
+								}
+								writeLine(writer, values);
+							}
+						} catch (IOException e) {
+							throw new UtilUncheckedException("Could not write archive " + archive, e);
+						}
+						return null;
+					}
+				}, args);
+	}
+
+	private static void writeLine(Writer writer, List<String> values) throws IOException {
+		for (int i = 0; i < values.size(); i++) {
+			if (i > 0) {
+				writer.write('\t');
+			}
+			String value = values.get(i);
+			if (value == null) {
+				writer.write("\\N");
+			} else {
+				writer.write(value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r"));
+			}
+		}
+		writer.write('\n');
+	}
+
+	private static String placeholders(int count) {
+		StringBuilder in = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			in.append(i == 0 ? "?" : ", ?");
+		}
+		return in.toString();
+	}
+}
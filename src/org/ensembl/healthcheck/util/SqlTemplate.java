@@ -295,6 +295,49 @@ public interface SqlTemplate {
    */
   <T> T execute(String sql, ResultSetCallback<T> callback, Object... args);
 
+  /**
+   * As {@link #execute(String, ResultSetCallback, Object...)} but opens a
+   * forward-only, read-only cursor and asks the driver to stream rows rather
+   * than reading the whole result into memory before the callback is
+   * called. With MySQL Connector/J no other statement can be run on the same
+   * connection until the callback has returned.
+   *
+   * @param sql SQL statement to run
+   * @param callback Callback used to process the streamed {@link ResultSet}
+   * @param args The arguments to use
+   * @return Returns whatever the method is typed to
+   */
+  <T> T executeStreaming(String sql, ResultSetCallback<T> callback, Object... args);
+
+  /**
+   * Streams the results of a query, mapping each row with the given mapper
+   * and passing it straight to the consumer so that unbounded results can be
+   * processed in constant memory. See
+   * {@link #executeStreaming(String, ResultSetCallback, Object...)} for the
+   * restrictions this places on the connection.
+   *
+   * <code>
+   * template.forEach("select stable_id from gene", new DefaultObjectRowMapper&lt;String&gt;(String.class, 1),
+   *   new RowConsumer&lt;String&gt;() { public void consume(String id, int position) { ... } });
+   * </code>
+   *
+   * @param sql SQL statement to run
+   * @param mapper Mapper used to convert each row
+   * @param consumer Consumer given each mapped row in turn
+   * @param args The arguments to use
+   * @return The number of rows processed
+   */
+  <T> int forEach(String sql, RowMapper<T> mapper, RowConsumer<T> consumer, Object... args);
+
+  /**
+   * Streaming version of
+   * {@link #queryForDefaultObjectList(String, Class, Object...)} which maps
+   * column 1 of each row and passes it to the consumer
+   *
+   * @return The number of rows processed
+   */
+  <T> int forEachDefaultObject(String sql, Class<T> expected, RowConsumer<T> consumer, Object... args);
+
 	/**
    * Executes the given SQL statement. Useful for executing inlined DML or DDL
    *
@@ -326,4 +369,12 @@ public interface SqlTemplate {
     T process(ResultSet rs) throws SQLException;
   }
 
+  /**
+   * Callback given each mapped row by
+   * {@link SqlTemplate#forEach(String, RowMapper, RowConsumer, Object...)}
+   */
+  public static interface RowConsumer<T> {
+    void consume(T row, int position) throws SQLException;
+  }
+
 }
@@ -0,0 +1,472 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Compact set of stable IDs used to find IDs shared between databases.
+ * <p>
+ * Each stable ID is split into a non-numeric prefix and a numeric suffix
+ * (e.g. ENSG00000139618 becomes "ENSG" with an 11 digit suffix 139618). The
+ * prefix and suffix width are dictionary encoded so each ID costs one int
+ * and one long in an open-addressing hash, plus an int for the dictionary
+ * encoded database it was first seen in. IDs without a numeric suffix are
+ * stored whole in the prefix dictionary.
+ * <p>
+ * Once more than <code>maxEntries</code> IDs are held the current contents
+ * are written out as a sorted run to a temporary file and the hash is
+ * cleared. Duplicates between runs are then found by
+ * {@link #mergeRuns(DuplicateHandler)} once all IDs have been added. Call
+ * {@link #close()} to remove any run files.
+ * <p>
+ * Every database a duplicated ID has been added for is remembered separately,
+ * see {@link #getDbIds(String)}, for at most {@value #MAX_TRACKED_DUPLICATES}
+ * IDs so that a set with many duplicates still fits in memory. Databases are
+ * listed in the order of their ids, which is the order they were added when
+ * each database's IDs are added together.
+ */
+public class StableIdSet {
+
+	/**
+	 * Callback for duplicates found when merging spilled runs
+	 */
+	public static interface DuplicateHandler {
+		/**
+		 * @param previousDbIds
+		 *          the databases the ID was found in before, including those
+		 *          found within a run, in database id order
+		 */
+		void duplicate(String stableId, List<Integer> previousDbIds, int duplicateDbId);
+	}
+
+	public static final int NOT_FOUND = -1;
+
+	/**
+	 * Most duplicated IDs whose databases are remembered
+	 */
+	public static final int MAX_TRACKED_DUPLICATES = 100000;
+
+	private static final int MAX_SUFFIX_DIGITS = 18;
+	private static final int DEFAULT_CAPACITY = 1 << 16;
+
+	private final List<String> prefixes = new ArrayList<String>();
+	private final List<Integer> widths = new ArrayList<Integer>();
+	private final Map<String, Integer> prefixIndex = new HashMap<String, Integer>();
+
+	private final List<String> dbNames = new ArrayList<String>();
+	private final Map<String, Integer> dbIndex = new HashMap<String, Integer>();
+
+	private final Map<String, SortedSet<Integer>> duplicateDbs = new HashMap<String, SortedSet<Integer>>();
+
+	private final List<File> runs = new ArrayList<File>();
+	private final int maxEntries;
+
+	// prefix ids are stored +1 so that 0 marks an empty slot
+	private int[] keyPrefixes;
+	private long[] keySuffixes;
+	private int[] keyDbs;
+	private int size;
+
+	public StableIdSet(int maxEntries) {
+		this.maxEntries = maxEntries;
+		allocate(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @return dictionary id for the supplied database name
+	 */
+	public int getDbId(String dbName) {
+		Integer id = dbIndex.get(dbName);
+		if (id == null) {
+			id = dbNames.size();
+			dbNames.add(dbName);
+			dbIndex.put(dbName, id);
+		}
+		return id;
+	}
+
+	public String getDbName(int dbId) {
+		return dbNames.get(dbId);
+	}
+
+	/**
+	 * Add a stable ID seen in the given database.
+	 *
+	 * @return the id of the database the stable ID was previously seen in
+	 *         (within the current in-memory run) or {@link #NOT_FOUND}
+	 */
+	public int add(String stableId, int dbId) {
+		int suffixStart = stableId.length();
+		while (suffixStart > 0
+				&& Character.isDigit(stableId.charAt(suffixStart - 1))) {
+			suffixStart--;
+		}
+		int width = stableId.length() - suffixStart;
+		int prefixId;
+		long suffix;
+		if (width == 0 || width > MAX_SUFFIX_DIGITS) {
+			prefixId = prefixId(stableId, 0);
+			suffix = 0;
+		} else {
+			prefixId = prefixId(stableId.substring(0, suffixStart), width);
+			suffix = Long.parseLong(stableId.substring(suffixStart));
+		}
+		int found = insert(prefixId + 1, suffix, dbId);
+		if (found == NOT_FOUND) {
+			if (size >= maxEntries) {
+				spill();
+			}
+		} else {
+			addDuplicate(stableId, found, dbId);
+		}
+		return found;
+	}
+
+	/**
+	 * @return every database a duplicated stable ID has been added for, in
+	 *         database id order; empty if the ID has not been duplicated, or
+	 *         was first duplicated after {@value #MAX_TRACKED_DUPLICATES} other
+	 *         IDs
+	 */
+	public List<Integer> getDbIds(String stableId) {
+		SortedSet<Integer> dbIds = duplicateDbs.get(stableId);
+		return dbIds == null ? new ArrayList<Integer>() : new ArrayList<Integer>(dbIds);
+	}
+
+	private void addDuplicate(String stableId, int firstDbId, int dbId) {
+		SortedSet<Integer> dbIds = duplicateDbs.get(stableId);
+		if (dbIds == null) {
+			if (duplicateDbs.size() >= MAX_TRACKED_DUPLICATES) {
+				return;
+			}
+			dbIds = new TreeSet<Integer>();
+			dbIds.add(firstDbId);
+			duplicateDbs.put(stableId, dbIds);
+		}
+		dbIds.add(dbId);
+	}
+
+	/**
+	 * @return number of IDs held in memory
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return true if any IDs have been written out to sorted runs
+	 */
+	public boolean hasSpilled() {
+		return !runs.isEmpty();
+	}
+
+	/**
+	 * Write the in-memory IDs out to a sorted run and clear the hash
+	 */
+	public void spill() {
+		int n = 0;
+		int[] p = new int[size];
+		long[] s = new long[size];
+		int[] d = new int[size];
+		for (int i = 0; i < keyPrefixes.length; i++) {
+			if (keyPrefixes[i] != 0) {
+				p[n] = keyPrefixes[i];
+				s[n] = keySuffixes[i];
+				d[n] = keyDbs[i];
+				n++;
+			}
+		}
+		sort(p, s, d, 0, n - 1);
+		DataOutputStream out = null;
+		try {
+			File run = File.createTempFile("stableids", ".run");
+			run.deleteOnExit();
+			runs.add(run);
+			out = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(run)));
+			for (int i = 0; i < n; i++) {
+				out.writeInt(p[i]);
+				out.writeLong(s[i]);
+				out.writeInt(d[i]);
+			}
+		} catch (IOException e) {
+			throw new UtilUncheckedException("Could not write stable ID run", e);
+		} finally {
+			InputOutputUtils.closeQuietly(out);
+		}
+		allocate(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Merge all spilled runs (and anything still in memory) and report
+	 * stable IDs present in more than one run. Duplicates within a single run
+	 * have already been returned by {@link #add(String, int)}.
+	 *
+	 * @return number of duplicates found
+	 */
+	public int mergeRuns(DuplicateHandler handler) {
+		if (runs.isEmpty()) {
+			return 0;
+		}
+		if (size > 0) {
+			spill();
+		}
+		PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>();
+		int dups = 0;
+		try {
+			for (int i = 0; i < runs.size(); i++) {
+				RunReader reader = new RunReader(runs.get(i), i);
+				if (reader.next()) {
+					queue.add(reader);
+				} else {
+					reader.close();
+				}
+			}
+			List<Integer> runDbs = new ArrayList<Integer>();
+			while (!queue.isEmpty()) {
+				RunReader first = queue.poll();
+				int prefix = first.prefix;
+				long suffix = first.suffix;
+				runDbs.clear();
+				runDbs.add(first.db);
+				advance(queue, first);
+				while (!queue.isEmpty() && queue.peek().prefix == prefix
+						&& queue.peek().suffix == suffix) {
+					RunReader dup = queue.poll();
+					runDbs.add(dup.db);
+					advance(queue, dup);
+				}
+				if (runDbs.size() == 1) {
+					continue;
+				}
+				// each run only holds the first database the ID was seen in
+				// for that run, the others were remembered as they were added
+				String stableId = decode(prefix - 1, suffix);
+				int firstDb = runDbs.get(0);
+				SortedSet<Integer> seen = new TreeSet<Integer>();
+				SortedSet<Integer> tracked = duplicateDbs.get(stableId);
+				if (tracked != null) {
+					seen.addAll(tracked);
+				}
+				seen.add(firstDb);
+				for (int i = 1; i < runDbs.size(); i++) {
+					int db = runDbs.get(i);
+					dups++;
+					handler.duplicate(stableId, new ArrayList<Integer>(seen.headSet(db)), db);
+					seen.add(db);
+					addDuplicate(stableId, firstDb, db);
+				}
+			}
+		} catch (IOException e) {
+			throw new UtilUncheckedException("Could not merge stable ID runs", e);
+		} finally {
+			for (RunReader reader : queue) {
+				reader.close();
+			}
+		}
+		return dups;
+	}
+
+	/**
+	 * Remove any temporary run files
+	 */
+	public void close() {
+		for (File run : runs) {
+			run.delete();
+		}
+		runs.clear();
+	}
+
+	private void advance(PriorityQueue<RunReader> queue, RunReader reader)
+			throws IOException {
+		if (reader.next()) {
+			queue.add(reader);
+		} else {
+			reader.close();
+		}
+	}
+
+	private int prefixId(String prefix, int width) {
+		String key = width == 0 ? prefix : prefix + '\u0000' + width;
+		Integer id = prefixIndex.get(key);
+		if (id == null) {
+			id = prefixes.size();
+			prefixes.add(prefix);
+			widths.add(width);
+			prefixIndex.put(key, id);
+		}
+		return id;
+	}
+
+	private String decode(int prefixId, long suffix) {
+		String prefix = prefixes.get(prefixId);
+		int width = widths.get(prefixId);
+		if (width == 0) {
+			return prefix;
+		}
+		StringBuilder sb = new StringBuilder(prefix);
+		String digits = Long.toString(suffix);
+		for (int i = digits.length(); i < width; i++) {
+			sb.append('0');
+		}
+		return sb.append(digits).toString();
+	}
+
+	private void allocate(int capacity) {
+		keyPrefixes = new int[capacity];
+		keySuffixes = new long[capacity];
+		keyDbs = new int[capacity];
+		size = 0;
+	}
+
+	private static int slot(int prefix, long suffix, int mask) {
+		long h = (suffix * 0x9E3779B97F4A7C15L) ^ (prefix * 0xC2B2AE3D27D4EB4FL);
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+
+	private int insert(int prefix, long suffix, int dbId) {
+		int mask = keyPrefixes.length - 1;
+		int i = slot(prefix, suffix, mask);
+		while (keyPrefixes[i] != 0) {
+			if (keyPrefixes[i] == prefix && keySuffixes[i] == suffix) {
+				return keyDbs[i];
+			}
+			i = (i + 1) & mask;
+		}
+		keyPrefixes[i] = prefix;
+		keySuffixes[i] = suffix;
+		keyDbs[i] = dbId;
+		if (++size > keyPrefixes.length / 2) {
+			rehash();
+		}
+		return NOT_FOUND;
+	}
+
+	private void rehash() {
+		int[] oldPrefixes = keyPrefixes;
+		long[] oldSuffixes = keySuffixes;
+		int[] oldDbs = keyDbs;
+		allocate(oldPrefixes.length * 2);
+		for (int i = 0; i < oldPrefixes.length; i++) {
+			if (oldPrefixes[i] != 0) {
+				insert(oldPrefixes[i], oldSuffixes[i], oldDbs[i]);
+			}
+		}
+	}
+
+	private static int compare(int p1, long s1, int p2, long s2) {
+		if (p1 != p2) {
+			return p1 < p2 ? -1 : 1;
+		}
+		return s1 < s2 ? -1 : (s1 == s2 ? 0 : 1);
+	}
+
+	private static void sort(int[] p, long[] s, int[] d, int lo, int hi) {
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			int pp = p[mid];
+			long ps = s[mid];
+			int i = lo;
+			int j = hi;
+			while (i <= j) {
+				while (compare(p[i], s[i], pp, ps) < 0) {
+					i++;
+				}
+				while (compare(p[j], s[j], pp, ps) > 0) {
+					j--;
+				}
+				if (i <= j) {
+					swap(p, s, d, i++, j--);
+				}
+			}
+			// recurse into the smaller half to bound stack depth
+			if (j - lo < hi - i) {
+				sort(p, s, d, lo, j);
+				lo = i;
+			} else {
+				sort(p, s, d, i, hi);
+				hi = j;
+			}
+		}
+	}
+
+	private static void swap(int[] p, long[] s, int[] d, int i, int j) {
+		int tp = p[i];
+		p[i] = p[j];
+		p[j] = tp;
+		long ts = s[i];
+		s[i] = s[j];
+		s[j] = ts;
+		int td = d[i];
+		d[i] = d[j];
+		d[j] = td;
+	}
+
+	private static class RunReader implements Comparable<RunReader> {
+
+		private final DataInputStream in;
+		private final int order;
+		private int prefix;
+		private long suffix;
+		private int db;
+
+		RunReader(File run, int order) throws IOException {
+			this.order = order;
+			in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(run)));
+		}
+
+		boolean next() throws IOException {
+			try {
+				prefix = in.readInt();
+				suffix = in.readLong();
+				db = in.readInt();
+				return true;
+			} catch (EOFException e) {
+				return false;
+			}
+		}
+
+		void close() {
+			InputOutputUtils.closeQuietly(in);
+		}
+
+		@Override
+		public int compareTo(RunReader o) {
+			int cmp = StableIdSet.compare(prefix, suffix, o.prefix, o.suffix);
+			// earlier runs first so the first database seen is reported first
+			return cmp != 0 ? cmp : (order < o.order ? -1 : (order == o.order ? 0 : 1));
+		}
+	}
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import org.ensembl.healthcheck.DatabaseRegistryEntry;
+
+/**
+ * Sizes of all the tables of a database, read in one query on
+ * <code>information_schema.TABLES</code>, and row counts of the tables the
+ * tests ask about.
+ * <p>
+ * TABLE_ROWS is only an estimate for InnoDB, and from MySQL 8 the values in
+ * <code>information_schema.TABLES</code> come from a cache which is only
+ * refreshed every <code>information_schema_stats_expiry</code> seconds,
+ * whatever the engine. So whether a test passes never depends on them: row
+ * counts are taken with <code>SELECT COUNT(*)</code> and empty tables are
+ * found with <code>SELECT 1 ... LIMIT 1</code>. These queries run
+ * concurrently on their own connections and are remembered for later calls.
+ * <p>
+ * Held by {@link DatabaseRegistryEntry#getTableStatistics()}, so each query
+ * is run once per database however many tests ask for it, until
+ * {@link DatabaseRegistryEntry#invalidateCaches()} is called.
+ */
+public class TableStatistics {
+
+	/**
+	 * One row of <code>information_schema.TABLES</code>
+	 */
+	public static class TableInfo {
+
+		private final String name;
+		private final String type;
+		private final String engine;
+		private final long rows;
+		private final long dataLength;
+		private final long indexLength;
+
+		public TableInfo(String name, String type, String engine, long rows, long dataLength, long indexLength) {
+			this.name = name;
+			this.type = type;
+			this.engine = engine;
+			this.rows = rows;
+			this.dataLength = dataLength;
+			this.indexLength = indexLength;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public String getEngine() {
+			return engine;
+		}
+
+		public boolean isView() {
+			return "VIEW".equalsIgnoreCase(type);
+		}
+
+		/**
+		 * @return the estimated row count, which may be out of date; use
+		 *         {@link TableStatistics#getRowCount(String)} for the exact
+		 *         count
+		 */
+		public long getRows() {
+			return rows;
+		}
+
+		public long getDataLength() {
+			return dataLength;
+		}
+
+		public long getIndexLength() {
+			return indexLength;
+		}
+	}
+
+	/**
+	 * Query run on each of a set of tables
+	 */
+	private static interface TableQuery<T> {
+		T run(Connection con, String table);
+	}
+
+	private static final TableQuery<Long> COUNT = new TableQuery<Long>() {
+		@Override
+		public Long run(Connection con, String table) {
+			return DBUtils.getSqlTemplate(con).queryForDefaultObject("SELECT COUNT(*) FROM " + table, Long.class);
+		}
+	};
+
+	private static final TableQuery<Boolean> IS_EMPTY = new TableQuery<Boolean>() {
+		@Override
+		public Boolean run(Connection con, String table) {
+			return DBUtils.getSqlTemplate(con)
+					.queryForDefaultObjectList("SELECT 1 FROM " + table + " LIMIT 1", Integer.class).isEmpty();
+		}
+	};
+
+	public static final int DEFAULT_THREADS = 4;
+
+	private static Logger logger = Logger.getLogger("HealthCheckLogger");
+
+	private final DatabaseRegistryEntry dbre;
+
+	private final Map<String, TableInfo> tables = new LinkedHashMap<String, TableInfo>();
+
+	private final Map<String, Long> exactCounts = new ConcurrentHashMap<String, Long>();
+
+	private final Map<String, Boolean> emptyTables = new ConcurrentHashMap<String, Boolean>();
+
+	private final int threads;
+
+	TableStatistics(DatabaseRegistryEntry dbre, List<TableInfo> infos, int threads) {
+		this.dbre = dbre;
+		this.threads = Math.max(1, threads);
+		for (TableInfo info : infos) {
+			tables.put(info.getName(), info);
+		}
+	}
+
+	/**
+	 * Read the statistics of all tables in the database
+	 */
+	public static TableStatistics load(DatabaseRegistryEntry dbre) {
+		List<TableInfo> infos = DBUtils.getSqlTemplate(dbre).queryForList(
+				"SELECT TABLE_NAME, TABLE_TYPE, ENGINE, TABLE_ROWS, DATA_LENGTH, INDEX_LENGTH "
+						+ "FROM information_schema.TABLES WHERE TABLE_SCHEMA = ?",
+				new RowMapper<TableInfo>() {
+					@Override
+					public TableInfo mapRow(ResultSet rs, int position) throws SQLException {
+						return new TableInfo(rs.getString(1), rs.getString(2), rs.getString(3), rs.getLong(4),
+								rs.getLong(5), rs.getLong(6));
+					}
+				}, dbre.getName());
+		logger.fine("Read statistics of " + infos.size() + " tables in " + dbre.getName());
+		return new TableStatistics(dbre, infos, DEFAULT_THREADS);
+	}
+
+	/**
+	 * @return the names of the tables and views
+	 */
+	public Set<String> getTableNames() {
+		return Collections.unmodifiableSet(tables.keySet());
+	}
+
+	/**
+	 * @return the statistics of the table, or null if there is no such table
+	 */
+	public TableInfo getInfo(String table) {
+		return tables.get(table);
+	}
+
+	/**
+	 * @return data and index length of all tables, in bytes
+	 */
+	public long getTotalLength() {
+		long length = 0;
+		for (TableInfo info : tables.values()) {
+			length += info.getDataLength() + info.getIndexLength();
+		}
+		return length;
+	}
+
+	/**
+	 * @return the exact number of rows in the table
+	 */
+	public long getRowCount(String table) {
+		return getRowCounts(Collections.singleton(table)).get(table);
+	}
+
+	/**
+	 * @return the exact number of rows in each table, in the order given
+	 */
+	public Map<String, Long> getRowCounts(Collection<String> tableNames) {
+		Set<String> toCount = new LinkedHashSet<String>(tableNames);
+		toCount.removeAll(exactCounts.keySet());
+		queryEach(toCount, exactCounts, COUNT, "counting rows");
+		Map<String, Long> counts = new LinkedHashMap<String, Long>();
+		for (String table : tableNames) {
+			counts.put(table, exactCounts.get(table));
+		}
+		return counts;
+	}
+
+	/**
+	 * @return the tables which have no rows, in the order given
+	 */
+	public Set<String> getEmptyTables(Collection<String> tableNames) {
+		Set<String> toCheck = new LinkedHashSet<String>();
+		for (String table : tableNames) {
+			Long count = exactCounts.get(table);
+			if (count != null) {
+				emptyTables.put(table, count == 0);
+			} else if (!emptyTables.containsKey(table)) {
+				toCheck.add(table);
+			}
+		}
+		queryEach(toCheck, emptyTables, IS_EMPTY, "looking for empty tables");
+		Set<String> empty = new LinkedHashSet<String>();
+		for (String table : tableNames) {
+			if (emptyTables.get(table)) {
+				empty.add(table);
+			}
+		}
+		return empty;
+	}
+
+	/**
+	 * Run the query on each table, concurrently if there is more than one, and
+	 * put the results in the map
+	 */
+	private <T> void queryEach(Collection<String> tableNames, Map<String, T> results, final TableQuery<T> query,
+			String description) {
+		if (tableNames.isEmpty()) {
+			return;
+		}
+		if (tableNames.size() == 1 || threads == 1) {
+			for (String table : tableNames) {
+				results.put(table, query.run(dbre.getConnection(), table));
+			}
+			return;
+		}
+
+		ConnectionWorkers workers = new ConnectionWorkers(dbre, Math.min(threads, tableNames.size()));
+		try {
+			Map<String, Future<T>> futures = new LinkedHashMap<String, Future<T>>();
+			for (final String table : tableNames) {
+				futures.put(table, workers.submit(new ConnectionWorkers.ConnectionTask<T>() {
+					@Override
+					public T run(Connection con) {
+						return query.run(con, table);
+					}
+				}));
+			}
+			logger.fine(description + " in " + tableNames.size() + " tables of " + dbre.getName() + " on "
+					+ workers.getThreads() + " connections");
+			for (Map.Entry<String, Future<T>> future : futures.entrySet()) {
+				results.put(future.getKey(), workers.get(future.getValue(), description));
+			}
+		} finally {
+			workers.close();
+		}
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.ensembl.healthcheck.configuration.ConfigureTestGroups;
+import org.ensembl.healthcheck.testcase.EnsTestCase;
+import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
+import org.testng.annotations.Test;
+
+public class ConfigurationBasedTestRegistryTest {
+
+  private static ConfigureTestGroups groups(final String... groups) {
+    return new ConfigureTestGroups() {
+      public List<String> getGroups() { return Arrays.asList(groups); }
+      public boolean isGroups() { return true; }
+      public List<String> getExcludeGroups() { return Collections.emptyList(); }
+      public boolean isExcludeGroups() { return false; }
+      public List<String> getTests() { return Collections.emptyList(); }
+      public boolean isTests() { return false; }
+      public List<String> getExcludeTests() { return Collections.emptyList(); }
+      public boolean isExcludeTests() { return false; }
+    };
+  }
+
+  @Test
+  public void descriptorsMatchInstances() throws Exception {
+    ConfigurationBasedTestRegistry registry = new ConfigurationBasedTestRegistry(groups("EGCore"));
+    List<TestDescriptor> descriptors = registry.getSingleDescriptors(DatabaseType.CORE);
+    assertTrue(descriptors.size() > 0, "Found core tests");
+    List<SingleDatabaseTestCase> tests = registry.getAllSingle(null, DatabaseType.CORE);
+    assertEquals(tests.size(), descriptors.size());
+    for (int i = 0; i < tests.size(); i++) {
+      assertEquals(tests.get(i).getClass(), descriptors.get(i).getTestClass());
+      assertTrue(tests.get(i).appliesToType(DatabaseType.CORE));
+    }
+  }
+
+  @Test
+  public void oneInstancePerThread() throws Exception {
+    ConfigurationBasedTestRegistry registry = new ConfigurationBasedTestRegistry(groups("EGCore"));
+    final TestDescriptor descriptor = registry.getDescriptors().get(0);
+    EnsTestCase test = descriptor.getInstance();
+    assertSame(descriptor.getInstance(), test, "Same instance on the same thread");
+
+    final EnsTestCase[] other = new EnsTestCase[1];
+    Thread thread = new Thread() {
+      public void run() {
+        other[0] = descriptor.getInstance();
+      }
+    };
+    thread.start();
+    thread.join();
+    assertNotSame(other[0], test, "Another thread gets its own instance");
+    assertEquals(other[0].getClass(), test.getClass());
+  }
+
+  @Test
+  public void testsWhichCantBeCreatedAreSkipped() throws Exception {
+    ConfigurationBasedTestRegistry registry = new ConfigurationBasedTestRegistry(groups("EGCore"));
+    TestDescriptor good = registry.getSingleDescriptors(DatabaseType.CORE).get(0);
+    // abstract, so creating it fails
+    TestDescriptor bad = new TestDescriptor(SingleDatabaseTestCase.class);
+    List<SingleDatabaseTestCase> tests = registry.instancesOf(Arrays.asList(bad, good), SingleDatabaseTestCase.class);
+    assertEquals(tests.size(), 1);
+    assertEquals(tests.get(0).getClass(), good.getTestClass());
+  }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.ensembl.healthcheck.CoordinateStatistics.Stats;
+import org.ensembl.healthcheck.util.ConnectionBasedSqlTemplateImpl;
+import org.ensembl.healthcheck.util.SqlTemplate;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class CoordinateStatisticsTest {
+
+  private DatabaseRegistryEntry dbre = null;
+
+  private CoordinateStatistics stats = null;
+
+  @BeforeClass
+  void setupDb() {
+    DatabaseServer server = new DatabaseServer("localhost", "0", "sa", "", "org.h2.Driver");
+    server.setDatabaseURL("jdbc:h2:mem:");
+    dbre = new DatabaseRegistryEntry(server, "coordtest;DB_CLOSE_DELAY=-1", Species.UNKNOWN,
+        DatabaseType.CORE);
+    SqlTemplate t = new ConnectionBasedSqlTemplateImpl(dbre);
+    t.execute("create table seq_region(seq_region_id int primary key, coord_system_id int, length int)");
+    t.execute("create table attrib_type(attrib_type_id int primary key, code varchar(20))");
+    t.execute("create table seq_region_attrib(seq_region_id int, attrib_type_id int, value varchar(20))");
+    t.execute("create table gene(gene_id int primary key, seq_region_id int, seq_region_start int, seq_region_end int)");
+    t.update("insert into seq_region values(1, 1, 1000)");
+    t.update("insert into seq_region values(2, 1, 500)");
+    t.update("insert into seq_region values(3, 2, 100)");
+    t.update("insert into attrib_type values(6, 'toplevel')");
+    t.update("insert into seq_region_attrib values(1, 6, '1')");
+    t.update("insert into seq_region_attrib values(2, 6, '1')");
+    t.update("insert into gene values(1, 1, 1, 100)");
+    t.update("insert into gene values(2, 1, 900, 1200)");
+    t.update("insert into gene values(3, 2, 0, 10)");
+    t.update("insert into gene values(4, 3, 50, 40)");
+    t.update("insert into gene values(5, 9, 1, 10)");
+    t.execute("create table exon(exon_id int primary key, seq_region_id int, seq_region_start int, seq_region_end int)");
+    t.update("insert into exon values(1, 1, 1, 50)");
+    t.update("insert into exon values(2, 3, 60, 70)");
+    stats = dbre.getCoordinateStatistics();
+  }
+
+  @Test
+  public void bySeqRegion() {
+    Stats region = stats.getSeqRegion("gene", 1);
+    assertEquals(region.getCount(), 2);
+    assertEquals(region.getMaxStart(), 900);
+    assertEquals(region.getMaxLength(), 301);
+    assertEquals(stats.getSeqRegion("gene", 2).getStartBelowOne(), 1);
+    assertEquals(stats.getSeqRegion("gene", 3).getStartAfterEnd(), 1);
+    assertEquals(stats.getSeqRegion("gene", 4).getCount(), 0);
+  }
+
+  @Test
+  public void byCoordSystem() {
+    Map<Long, Stats> byCoordSystem = stats.getByCoordSystem("gene");
+    // features on seq_region 9, which doesn't exist, are left out
+    assertEquals(byCoordSystem.size(), 2);
+    assertEquals(byCoordSystem.get(1L).getCount(), 3);
+    assertEquals(byCoordSystem.get(1L).getMaxLength(), 301);
+    assertEquals(byCoordSystem.get(2L).getMaxLength(), -9);
+  }
+
+  @Test
+  public void total() {
+    Stats total = stats.getTotal("gene");
+    assertEquals(total.getCount(), 5);
+    assertEquals(total.getStartBelowOne(), 1);
+    assertEquals(total.getStartAfterEnd(), 1);
+  }
+
+  @Test
+  public void seqRegions() {
+    assertTrue(stats.isTopLevel(1));
+    assertFalse(stats.isTopLevel(3));
+    assertEquals(stats.getSeqRegionLength(2).longValue(), 500);
+    assertEquals(stats.getCoordSystemId(3).longValue(), 2);
+    assertNull(stats.getSeqRegionLength(9));
+  }
+
+  @Test
+  public void leastRecentlyUsedRegionsAreDropped() {
+    CoordinateStatistics bounded = new CoordinateStatistics(dbre, 3);
+    assertEquals(bounded.getBySeqRegion("gene").size(), 4);
+    // the table just scanned is kept even if it is over the limit
+    assertEquals(bounded.getCachedRegions(), 4);
+    assertEquals(bounded.getBySeqRegion("exon").size(), 2);
+    assertEquals(bounded.getCachedRegions(), 2);
+    // totals are kept when the regions are dropped
+    assertEquals(bounded.getTotal("gene").getCount(), 5);
+    assertEquals(bounded.getByCoordSystem("gene").get(1L).getCount(), 3);
+    assertEquals(bounded.getCachedRegions(), 2);
+    assertEquals(bounded.getSeqRegion("gene", 1).getCount(), 2);
+    assertEquals(bounded.getCachedRegions(), 4);
+  }
+}
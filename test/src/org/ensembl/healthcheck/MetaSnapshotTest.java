@@ -0,0 +1,80 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.ensembl.healthcheck.util.ConnectionBasedSqlTemplateImpl;
+import org.ensembl.healthcheck.util.DBUtils;
+import org.ensembl.healthcheck.util.SqlTemplate;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class MetaSnapshotTest {
+
+  private DatabaseRegistryEntry dbre = null;
+
+  @BeforeClass
+  void setupDb() {
+    DatabaseServer server = new DatabaseServer("localhost", "0", "sa", "", "org.h2.Driver");
+    server.setDatabaseURL("jdbc:h2:mem:");
+    dbre = new DatabaseRegistryEntry(server, "metatest;DB_CLOSE_DELAY=-1", Species.UNKNOWN, DatabaseType.CORE);
+    SqlTemplate t = new ConnectionBasedSqlTemplateImpl(dbre);
+    t.execute("create table meta(meta_id int primary key, species_id int, meta_key varchar(40), meta_value varchar(255))");
+    t.update("insert into meta values(1, null, 'schema_version', '93')");
+    t.update("insert into meta values(2, 1, 'species.alias', 'human')");
+    t.update("insert into meta values(3, 1, 'species.alias', 'homo_sapiens')");
+    t.update("insert into meta values(4, 2, 'species.alias', 'mouse')");
+    t.update("insert into meta values(5, 2, 'assembly.default', 'GRCm38')");
+  }
+
+  @Test
+  public void values() {
+    MetaSnapshot meta = dbre.getMeta();
+    assertEquals(meta.getValue("schema_version"), "93");
+    assertEquals(meta.getValue("species.alias"), "human");
+    assertEquals(meta.getValue("missing"), "");
+    assertEquals(meta.getValues("species.alias"), Arrays.asList("human", "homo_sapiens", "mouse"));
+    assertEquals(meta.getValues(1, "species.alias"), Arrays.asList("human", "homo_sapiens"));
+    assertEquals(meta.getValues(null, "schema_version"), Arrays.asList("93"));
+    assertTrue(meta.getValues(1, "assembly.default").isEmpty());
+    assertTrue(meta.getKeys(2).contains("assembly.default"));
+    assertFalse(meta.getKeys(1).contains("assembly.default"));
+    assertEquals(meta.getKeys().size(), 3);
+    assertEquals(DBUtils.getMetaValue(dbre, "assembly.default"), "GRCm38");
+  }
+
+  @Test
+  public void speciesIds() {
+    assertEquals(dbre.getSpeciesIds(), Arrays.asList(1, 2));
+  }
+
+  @Test
+  public void snapshotIsKeptUntilInvalidated() {
+    MetaSnapshot meta = dbre.getMeta();
+    assertSame(dbre.getMeta(), meta);
+    dbre.invalidateMeta();
+    assertNotSame(dbre.getMeta(), meta);
+  }
+}
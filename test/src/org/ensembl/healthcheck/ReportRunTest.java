@@ -0,0 +1,134 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.ensembl.healthcheck.testcase.EnsTestCase;
+import org.testng.annotations.Test;
+
+public class ReportRunTest {
+
+  private static ReportLine line(String test, String database, int level, String message) {
+    return new ReportLine(test, database, null, DatabaseType.CORE, level, message, Team.CORE, null);
+  }
+
+  @Test
+  public void reportsAtOnceAndStoresWhenFinished() {
+    final List<String> messages = new ArrayList<String>();
+    ReportRun run = new ReportRun();
+    run.setReporter(new Reporter() {
+      public void message(ReportLine reportLine) {
+        messages.add(reportLine.getMessage());
+      }
+
+      public void startTestCase(EnsTestCase testCase, DatabaseRegistryEntry dbre) {
+      }
+
+      public void finishTestCase(EnsTestCase testCase, boolean result, DatabaseRegistryEntry dbre) {
+        messages.add("finished");
+      }
+    });
+
+    run.add(line("TestA", "db1", ReportLine.INFO, "outside"));
+    assertEquals(messages.size(), 1);
+
+    run.startTestCase(null, null);
+    run.add(line("TestA", "db1", ReportLine.PROBLEM, "inside"));
+    assertEquals(messages.size(), 2);
+    run.finishTestCase(null, false, null);
+    assertEquals(messages.size(), 3);
+    assertEquals(messages.get(1), "inside");
+    assertEquals(messages.get(2), "finished");
+    assertFalse(run.databasePassed("TestA", "db1"));
+
+    // reading the reports passes on lines from tests still running
+    run.startTestCase(null, null);
+    run.add(line("TestB", "db1", ReportLine.INFO, "running"));
+    assertEquals(run.countBuffers(), 1);
+    assertTrue(run.hasReports("TestB"));
+    run.finishTestCase(null, true, null);
+    assertEquals(run.getReportsByTestCase("TestB", ReportLine.ALL).size(), 1);
+  }
+
+  @Test
+  public void concurrentTests() throws Exception {
+    final ReportRun run = new ReportRun();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    List<Future<Void>> results = new ArrayList<Future<Void>>();
+    for (int t = 0; t < 20; t++) {
+      final String test = "Test" + t;
+      results.add(executor.submit(new Callable<Void>() {
+        public Void call() {
+          for (int d = 0; d < 10; d++) {
+            run.startTestCase(null, null);
+            for (int i = 0; i < 5; i++) {
+              run.add(line(test, "db" + d, d == 0 ? ReportLine.PROBLEM : ReportLine.INFO, test + " " + i));
+            }
+            run.finishTestCase(null, d != 0, null);
+          }
+          return null;
+        }
+      }));
+    }
+    for (Future<Void> result : results) {
+      result.get();
+    }
+    executor.shutdown();
+
+    assertEquals(run.countBuffers(), 0, "Buffers are dropped once their tests finish");
+    assertEquals(run.countPassesAndFailsAll(), new int[] { 180, 20 });
+    assertEquals(run.countPassesAndFailsDatabase("db0"), new int[] { 0, 20 });
+    List<ReportLine> lines = run.getReports("Test7", "db3");
+    assertEquals(lines.size(), 5);
+    for (int i = 0; i < 5; i++) {
+      assertEquals(lines.get(i).getMessage(), "Test7 " + i);
+    }
+  }
+
+  @Test
+  public void boundRun() throws Exception {
+    final ReportRun run = new ReportRun();
+    ReportManager.bindRun(run);
+    try {
+      assertSame(ReportManager.getRun(), run);
+      ReportManager.add(line("BoundTest", "db1", ReportLine.INFO, "bound"));
+      Thread child = new Thread() {
+        public void run() {
+          ReportManager.add(line("BoundTest", "db2", ReportLine.INFO, "child"));
+        }
+      };
+      child.start();
+      child.join();
+    } finally {
+      ReportManager.unbindRun();
+    }
+    assertEquals(run.getReportsByTestCase("BoundTest", ReportLine.ALL).size(), 2);
+    assertFalse(ReportManager.hasReports("BoundTest"));
+  }
+}
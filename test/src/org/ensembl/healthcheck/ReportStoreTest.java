@@ -0,0 +1,113 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+public class ReportStoreTest {
+
+  private static ReportLine line(String test, String database, int level, String message) {
+    return new ReportLine(test, database, null, DatabaseType.CORE, level, message, Team.GENEBUILD, null);
+  }
+
+  @Test
+  public void counts() {
+    ReportStore store = new ReportStore();
+    store.add(line("TestA", "db1", ReportLine.INFO, "a1"));
+    store.add(line("TestA", "db1", ReportLine.PROBLEM, "a1 failed"));
+    store.add(line("TestA", "db1", ReportLine.PROBLEM, "a1 failed again"));
+    store.add(line("TestA", "db2", ReportLine.CORRECT, "a2"));
+    store.add(line("TestB", "db1", ReportLine.CORRECT, "b1"));
+
+    assertEquals(store.countPassesAndFailsTest("TestA"), new int[] { 1, 1 });
+    assertEquals(store.countPassesAndFailsTest("TestB"), new int[] { 1, 0 });
+    assertEquals(store.countPassesAndFailsDatabase("db1"), new int[] { 1, 1 });
+    assertEquals(store.countPassesAndFailsDatabase("db2"), new int[] { 1, 0 });
+    assertEquals(store.countPassesAndFailsAll(), new int[] { 2, 1 });
+    assertEquals(store.countPassesAndFailsTest("TestC"), new int[] { 0, 0 });
+
+    assertFalse(store.passed("TestA", "db1"));
+    assertTrue(store.passed("TestA", "db2"));
+    assertFalse(store.allPassed("TestA"));
+    assertTrue(store.allPassed("TestB"));
+    assertTrue(store.hasReports("TestB"));
+    assertFalse(store.hasReports("TestC"));
+    assertEquals(store.getTestCaseNames(), new HashSet<String>(Arrays.asList("TestA", "TestB")));
+  }
+
+  @Test
+  public void levels() {
+    ReportStore store = new ReportStore();
+    store.add(line("TestA", "db1", ReportLine.INFO, "info"));
+    store.add(line("TestA", "db1", ReportLine.PROBLEM, "problem"));
+    store.add(line("TestA", "db2", ReportLine.WARNING, "warning"));
+
+    List<ReportLine> lines = store.getReportsByTestCase("TestA", ReportLine.WARNING);
+    assertEquals(lines.size(), 2);
+    assertEquals(lines.get(0).getMessage(), "problem");
+    assertEquals(lines.get(0).getDatabaseName(), "db1");
+    assertEquals(lines.get(0).getLevel(), ReportLine.PROBLEM);
+    assertEquals(lines.get(0).getTeamResponsible(), Team.GENEBUILD);
+    assertEquals(lines.get(1).getMessage(), "warning");
+
+    assertEquals(store.getReportsByDatabase("db1", ReportLine.ALL).size(), 2);
+    assertEquals(store.getReports("TestA", "db2").get(0).getMessage(), "warning");
+    assertTrue(store.getReports("TestB", "db2").isEmpty());
+  }
+
+  @Test
+  public void maxLinesPerTest() {
+    ReportStore store = new ReportStore(2, ReportStore.DEFAULT_SPILL_THRESHOLD);
+    assertTrue(store.add(line("TestA", "db1", ReportLine.INFO, "1")));
+    assertTrue(store.add(line("TestA", "db1", ReportLine.INFO, "2")));
+    assertTrue(store.add(line("TestA", "db1", ReportLine.INFO, "3")));
+    assertFalse(store.add(line("TestA", "db2", ReportLine.PROBLEM, "4")));
+    assertEquals(store.countPassesAndFailsTest("TestA"), new int[] { 1, 1 });
+    assertFalse(store.add(line("TestA", "", ReportLine.INFO, "5")));
+    assertEquals(store.size(), 4);
+    assertEquals(store.getReportsByTestCase("TestA", ReportLine.ALL).size(), 3);
+    // lines over the limit for the test are still kept for the database
+    List<ReportLine> db2 = store.getReportsByDatabase("db2", ReportLine.ALL);
+    assertEquals(db2.size(), 1);
+    assertEquals(db2.get(0).getMessage(), "4");
+    assertEquals(store.getReports("TestA", "db2").size(), 1);
+  }
+
+  @Test
+  public void spill() {
+    ReportStore store = new ReportStore(ReportStore.DEFAULT_MAX_LINES_PER_TEST, 64);
+    for (int i = 0; i < 100; i++) {
+      store.add(line("TestA", "db" + (i % 3), ReportLine.INFO, "message number " + i + " \u00e9"));
+    }
+    List<ReportLine> lines = store.getReportsByTestCase("TestA", ReportLine.ALL);
+    assertEquals(lines.size(), 100);
+    for (int i = 0; i < 100; i++) {
+      assertEquals(lines.get(i).getMessage(), "message number " + i + " \u00e9");
+    }
+    assertEquals(store.getReportsByDatabase("db1", ReportLine.ALL).get(0).getMessage(), "message number 1 \u00e9");
+    store.close();
+  }
+}
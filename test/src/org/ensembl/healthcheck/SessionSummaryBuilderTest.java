@@ -0,0 +1,122 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.sql.Connection;
+
+import org.ensembl.healthcheck.util.ConnectionBasedSqlTemplateImpl;
+import org.ensembl.healthcheck.util.SqlTemplate;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class SessionSummaryBuilderTest {
+
+  private Connection connection;
+
+  private SqlTemplate template;
+
+  @BeforeMethod
+  public void setupDb() {
+    DatabaseServer server = new DatabaseServer("localhost", "0", "sa", "", "org.h2.Driver");
+    server.setDatabaseURL("jdbc:h2:mem:");
+    DatabaseRegistryEntry dbre = new DatabaseRegistryEntry(server, "summarytest;DB_CLOSE_DELAY=-1", Species.UNKNOWN,
+        DatabaseType.CORE);
+    connection = dbre.getConnection();
+    template = new ConnectionBasedSqlTemplateImpl(connection);
+    template.execute("drop all objects");
+    template.execute("create table session(session_id int primary key)");
+    template.update("insert into session values(1), (2)");
+    template.execute("create table report(report_id int auto_increment primary key, first_session_id int, "
+        + "last_session_id int, database_name varchar(255), species varchar(255), database_type varchar(255), "
+        + "testcase varchar(255), result varchar(10), text varchar(255), team_responsible varchar(255))");
+    template.execute("create table session_summary(session_id int, database_name varchar(255), testcase varchar(255), "
+        + "result varchar(10), team_responsible varchar(255), new_reports int, recurring_reports int, "
+        + "primary key(session_id, database_name, testcase, result, team_responsible))");
+    template.execute("create table session_database_summary(session_id int, database_name varchar(255), "
+        + "species varchar(255), database_type varchar(255), problems int, warnings int, infos int, corrects int, "
+        + "new_problems int, failed_tests int, primary key(session_id, database_name))");
+    report(1, 2, "homo_sapiens_core", "GeneCount", "PROBLEM", "Core");
+    report(2, 2, "homo_sapiens_core", "GeneCount", "PROBLEM", "Core");
+    report(2, 2, "homo_sapiens_core", "XrefCount", "PROBLEM", null);
+    report(2, 2, "homo_sapiens_core", "XrefCount", "WARNING", null);
+    report(1, 2, "mus_musculus_core", "GeneCount", "INFO", "Core");
+    report(1, 1, "mus_musculus_core", "GeneCount", "PROBLEM", "Core");
+  }
+
+  private void report(int first, int last, String database, String test, String result, String team) {
+    template.update("insert into report(first_session_id, last_session_id, database_name, species, database_type, "
+        + "testcase, result, text, team_responsible) values(?, ?, ?, ?, 'core', ?, ?, 'text', ?)", first, last,
+        database, database.substring(0, database.lastIndexOf('_')), test, result, team);
+  }
+
+  @Test
+  public void testCountsNewAndRecurring() {
+    new SessionSummaryBuilder(connection).build(2);
+
+    assertEquals(template.queryForDefaultObject("select new_reports from session_summary where session_id=2 "
+        + "and database_name='homo_sapiens_core' and testcase='GeneCount' and result='PROBLEM'", Integer.class)
+        .intValue(), 1);
+    assertEquals(template.queryForDefaultObject("select recurring_reports from session_summary where session_id=2 "
+        + "and database_name='homo_sapiens_core' and testcase='GeneCount' and result='PROBLEM'", Integer.class)
+        .intValue(), 1);
+    assertEquals(template.queryForDefaultObject("select count(*) from session_summary where team_responsible=''",
+        Integer.class).intValue(), 2);
+    // The problem last seen in session 1 is not part of session 2
+    assertEquals(template.queryForDefaultObject("select count(*) from session_summary", Integer.class).intValue(), 4);
+  }
+
+  @Test
+  public void testDatabaseSummaries() {
+    SessionSummaryBuilder builder = new SessionSummaryBuilder(connection);
+    builder.build(2);
+    // Building again replaces the summary
+    builder.build(2);
+
+    assertEquals(count("select count(*) from session_database_summary where session_id=2"), 2);
+    assertEquals(template.queryForDefaultObject("select species from session_database_summary "
+        + "where database_name='homo_sapiens_core'", String.class), "homo_sapiens");
+    assertEquals(count("select problems from session_database_summary where database_name='homo_sapiens_core'"), 3);
+    assertEquals(count("select warnings from session_database_summary where database_name='homo_sapiens_core'"), 1);
+    assertEquals(count("select new_problems from session_database_summary where database_name='homo_sapiens_core'"), 2);
+    assertEquals(count("select failed_tests from session_database_summary where database_name='homo_sapiens_core'"), 2);
+    assertEquals(count("select problems from session_database_summary where database_name='mus_musculus_core'"), 0);
+    assertEquals(count("select failed_tests from session_database_summary where database_name='mus_musculus_core'"), 0);
+  }
+
+  @Test
+  public void testReportsWithoutNamesAreLeftOut() throws Exception {
+    template.update("insert into report(first_session_id, last_session_id, result, text) "
+        + "values(2, 2, 'PROBLEM', 'no database or test')");
+    template.update("insert into report(first_session_id, last_session_id, database_name, result, text) "
+        + "values(2, 2, 'homo_sapiens_core', 'PROBLEM', 'no test')");
+    SessionSummaryBuilder builder = new SessionSummaryBuilder(connection);
+    assertTrue(builder.hasSummaryTables());
+    builder.build(2);
+
+    assertEquals(count("select count(*) from session_summary"), 4);
+    assertEquals(count("select count(*) from session_database_summary where session_id=2"), 2);
+    assertTrue(connection.getAutoCommit(), "Auto-commit is restored");
+  }
+
+  private int count(String sql) {
+    return template.queryForDefaultObject(sql, Integer.class).intValue();
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ensembl.healthcheck.StandaloneTestRunner.StandaloneTestOptions;
+import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
+import org.ensembl.healthcheck.util.ConnectionBasedSqlTemplateImpl;
+import org.ensembl.healthcheck.util.RowMapper;
+import org.ensembl.healthcheck.util.SqlTemplate;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import uk.co.flamingpenguin.jewel.cli.CliFactory;
+
+public class StandaloneTestRunnerTest {
+
+  // the pooled connections opened in setupDbs keep the databases alive
+  private static final String[] DBS = { "runner_a_core_99_1", "runner_b_core_99_1" };
+
+  private static final DatabaseServer SERVER = new DatabaseServer("localhost", "0", "sa", "", "org.h2.Driver");
+
+  /** Tests running on each database right now */
+  private static final Map<String, AtomicInteger> RUNNING = new ConcurrentHashMap<String, AtomicInteger>();
+
+  /** Most tests seen running on one database at once */
+  private static final AtomicInteger MAX_RUNNING = new AtomicInteger();
+
+  private static final AtomicInteger RUNS = new AtomicInteger();
+
+  /**
+   * Streams a table on the pooled connection of the database, which only
+   * works with MySQL if nothing else uses the connection meanwhile
+   */
+  public static class StreamingTest extends SingleDatabaseTestCase {
+
+    public void types() {
+      setAppliesToType(DatabaseType.CORE);
+    }
+
+    public boolean run(DatabaseRegistryEntry dbre) {
+      AtomicInteger running = RUNNING.get(dbre.getName());
+      int now = running.incrementAndGet();
+      synchronized (MAX_RUNNING) {
+        MAX_RUNNING.set(Math.max(MAX_RUNNING.get(), now));
+      }
+      try {
+        int rows = new ConnectionBasedSqlTemplateImpl(dbre).forEach("select id from numbers",
+            new RowMapper<Integer>() {
+              public Integer mapRow(ResultSet rs, int position) throws SQLException {
+                return rs.getInt(1);
+              }
+            }, new SqlTemplate.RowConsumer<Integer>() {
+              public void consume(Integer id, int position) {
+                if (position % 50 == 0) {
+                  // give another test the chance to use the connection
+                  Thread.yield();
+                }
+              }
+            });
+        RUNS.incrementAndGet();
+        return rows == 200;
+      } finally {
+        running.decrementAndGet();
+      }
+    }
+  }
+
+  public static class OtherStreamingTest extends StreamingTest {
+  }
+
+  @BeforeClass
+  void setupDbs() {
+    SERVER.setDatabaseURL("jdbc:h2:mem:");
+    for (String db : DBS) {
+      SqlTemplate t = new ConnectionBasedSqlTemplateImpl(new DatabaseRegistryEntry(SERVER, db, Species.UNKNOWN,
+          DatabaseType.CORE));
+      t.execute("create table numbers(id int primary key)");
+      for (int i = 1; i <= 200; i++) {
+        t.update("insert into numbers values(?)", i);
+      }
+      RUNNING.put(db, new AtomicInteger());
+    }
+  }
+
+  @Test
+  public void testsOnTheSameDatabaseRunOneAtATime() throws Exception {
+    StandaloneTestOptions options = CliFactory.parseArguments(StandaloneTestOptions.class, "--host", "localhost",
+        "--port", "0", "--user", "sa", "--dbnames", DBS[0], DBS[1], "--threads", "2", "--release", "1",
+        "--include_tests", StreamingTest.class.getName(), OtherStreamingTest.class.getName());
+    StandaloneTestRunner runner = new StandaloneTestRunner(options) {
+      public DatabaseServer getPrimaryServer() {
+        return SERVER;
+      }
+    };
+    assertTrue(runner.runAll(), "All tests passed");
+    assertEquals(RUNS.get(), 4, "Both tests ran on both databases");
+    assertEquals(MAX_RUNNING.get(), 1, "Tests on one database did not overlap");
+  }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Collections;
+import java.util.List;
+
+import org.ensembl.healthcheck.testcase.EnsTestCase;
+
+import org.testng.annotations.Test;
+
+public class TestIndexTest {
+
+  private static final String TESTCASE = "org.ensembl.healthcheck.testcase";
+  private static final String TESTGROUP = "org.ensembl.healthcheck.testgroup";
+
+  @Test
+  public void roundTrip() throws Exception {
+    TestIndex index = TestIndex.scan(TESTCASE + ".eg_core");
+    assertTrue(index.getTests().size() > 0, "Found tests");
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    PrintWriter out = new PrintWriter(new OutputStreamWriter(bytes, "UTF-8"));
+    index.write(out);
+    out.close();
+    TestIndex read = TestIndex.read(new ByteArrayInputStream(bytes.toByteArray()));
+
+    assertEquals(read.getEntries().size(), index.getEntries().size());
+    for (TestIndex.Entry entry : index.getEntries()) {
+      TestIndex.Entry copy = read.getEntry(entry.getClassName());
+      assertNotNull(copy, entry.getClassName() + " read back");
+      assertEquals(copy.getAliases(), entry.getAliases());
+      assertEquals(copy.getGroups(), entry.getGroups());
+      assertEquals(copy.getTypes(), entry.getTypes());
+      assertEquals(copy.isLongRunning(), entry.isLongRunning());
+    }
+  }
+
+  @Test
+  public void aliasesMatchScan() {
+    TestIndex index = TestIndex.scan(TESTCASE, TESTGROUP);
+    assertEquals(index.createAliasMap(TESTCASE, TESTGROUP),
+        TestInstantiator.createMap(new String[] { TESTCASE, TESTGROUP }));
+  }
+
+  @Test
+  public void onlySelectedTestsAreInstantiated() {
+    TestIndex index = TestIndex.scan(TESTCASE + ".eg_core");
+    TestIndex.Entry selected = index.getTests().get(0);
+    String group = selected.getClassName();
+    DatabaseType type = selected.getTypes().get(0);
+    int expected = 0;
+    for (TestIndex.Entry entry : index.getTests()) {
+      if (entry.getGroups().contains(group) && entry.appliesToType(type)) {
+        expected++;
+      }
+    }
+
+    List<EnsTestCase> tests = new DiscoveryBasedTestRegistry().findTestsInIndex(index, TESTCASE,
+        Collections.singletonList(group), type);
+    assertEquals(tests.size(), expected);
+    for (EnsTestCase test : tests) {
+      assertTrue(test.inGroup(group));
+      assertTrue(test.appliesToType(type));
+    }
+  }
+
+  @Test
+  public void staleWhenATestClassIsNewer() throws Exception {
+    File root = File.createTempFile("test_index", "");
+    root.delete();
+    File index = new File(root, TestIndex.RESOURCE);
+    File testClass = new File(root, TESTCASE.replace('.', '/') + "/generic/Foo.class");
+    try {
+      index.getParentFile().mkdirs();
+      testClass.getParentFile().mkdirs();
+      index.createNewFile();
+      testClass.createNewFile();
+      long now = System.currentTimeMillis();
+
+      index.setLastModified(now);
+      testClass.setLastModified(now - 60000);
+      assertFalse(TestIndex.isStale(index.toURI().toURL()), "Index is newer than the classes");
+
+      testClass.setLastModified(now + 60000);
+      assertTrue(TestIndex.isStale(index.toURI().toURL()), "A class was compiled after the index");
+    } finally {
+      delete(root);
+    }
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+}
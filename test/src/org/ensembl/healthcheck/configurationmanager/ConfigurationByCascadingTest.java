@@ -0,0 +1,74 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.configurationmanager;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Properties;
+
+import org.ensembl.healthcheck.configuration.ConfigureHost;
+import org.testng.annotations.Test;
+
+import uk.co.flamingpenguin.jewel.cli.OptionNotPresentException;
+
+public class ConfigurationByCascadingTest {
+
+  private static ConfigureHost properties(String... keyValues) {
+    Properties p = new Properties();
+    for (int i = 0; i < keyValues.length; i += 2) {
+      p.setProperty(keyValues[i], keyValues[i + 1]);
+    }
+    return (ConfigureHost) ConfigurationByProperties.newInstance(ConfigureHost.class, p);
+  }
+
+  private static ConfigureHost cascade(ConfigureHost... configurations) {
+    return (ConfigureHost) Proxy.newProxyInstance(ConfigureHost.class.getClassLoader(),
+        new Class[] { ConfigureHost.class },
+        new ConfigurationByCascading<ConfigureHost>(Arrays.asList(configurations)));
+  }
+
+  @Test
+  public void firstConfigurationWins() {
+    ConfigureHost conf = cascade(properties("host", "first"), properties("host", "second", "port", "3306"));
+    for (int i = 0; i < 3; i++) {
+      assertEquals(conf.getHost(), "first");
+      assertEquals(conf.getPort(), "3306");
+      assertTrue(conf.isPort());
+      assertFalse(conf.isUser());
+    }
+  }
+
+  @Test
+  public void missingOptionThrowsEachTime() {
+    ConfigureHost conf = cascade(properties("host", "first"));
+    for (int i = 0; i < 2; i++) {
+      try {
+        conf.getUser();
+        fail("Expected OptionNotPresentException");
+      } catch (OptionNotPresentException e) {
+        // expected
+      }
+    }
+  }
+
+}
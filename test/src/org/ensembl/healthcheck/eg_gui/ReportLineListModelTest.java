@@ -0,0 +1,72 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.eg_gui;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import org.ensembl.healthcheck.DatabaseRegistryEntry;
+import org.ensembl.healthcheck.ReportLine;
+import org.ensembl.healthcheck.Team;
+import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
+import org.testng.annotations.Test;
+
+public class ReportLineListModelTest {
+
+  public static class ReportingTest extends SingleDatabaseTestCase {
+    @Override
+    public boolean run(DatabaseRegistryEntry dbre) {
+      return true;
+    }
+  }
+
+  private static final ReportingTest TEST = new ReportingTest();
+
+  private static ReportLine line(String message) {
+    return new ReportLine(TEST, "no_database", ReportLine.PROBLEM, message, Team.CORE, null);
+  }
+
+  @Test
+  public void splitsMessagesIntoLines() {
+    GuiReportPanelData data = new GuiReportPanelData(line("first"));
+    data.addReportLine(line("second\nthird\n"));
+    data.addReportLine(line(""));
+    assertEquals(data.getLineCount(), 4);
+    assertEquals(data.getLine(2), "third");
+    assertEquals(data.getMessage(), "first\nsecond\nthird\n\n");
+  }
+
+  @Test
+  public void publishesNewLines() {
+    GuiReportPanelData data = new GuiReportPanelData(line("0"));
+    ReportLineListModel model = new ReportLineListModel();
+    model.setData(data);
+    assertEquals(model.getSize(), 1);
+
+    for (int i = 1; i < 3000; i++) {
+      data.addReportLine(line(Integer.toString(i)));
+    }
+    // lines are only seen by the list once published
+    assertEquals(model.getSize(), 1);
+    assertTrue(model.publish());
+    assertEquals(model.getSize(), 3000);
+    assertEquals(model.getElementAt(2500), "2500");
+    assertFalse(model.publish());
+  }
+}
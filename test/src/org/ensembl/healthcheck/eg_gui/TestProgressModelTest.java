@@ -0,0 +1,79 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.eg_gui;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.FutureTask;
+
+import org.testng.annotations.Test;
+
+public class TestProgressModelTest {
+
+  @Test
+  public void testCountsByDatabase() {
+    TestProgressModel model = new TestProgressModel();
+    model.addTests("db_a", 3);
+    model.addTests("db_b", 2);
+    assertEquals(model.getEstimatedTimeRemaining(), -1);
+
+    model.start();
+    model.testsFinished("db_a", 1);
+    model.testsFinished("db_b", 2);
+
+    assertEquals(model.getTotal(), 5);
+    assertEquals(model.getDone(), 3);
+    Map<String, int[]> progress = model.getProgressByDatabase();
+    assertEquals(progress.keySet().iterator().next(), "db_a");
+    assertEquals(progress.get("db_a")[0], 1);
+    assertEquals(progress.get("db_a")[1], 3);
+    assertEquals(progress.get("db_b")[0], 2);
+
+    // The map handed out is a copy.
+    progress.get("db_a")[0] = 10;
+    assertEquals(model.getProgressByDatabase().get("db_a")[0], 1);
+    assertTrue(model.getEstimatedTimeRemaining() >= 0);
+  }
+
+  @Test
+  public void testCancelLeavesRunningTasks() {
+    TestProgressModel model = new TestProgressModel();
+    FutureTask<Void> pending = new FutureTask<Void>(new Runnable() {
+      @Override
+      public void run() {
+      }
+    }, null);
+    model.addTask(pending);
+    assertFalse(model.isCancelled());
+
+    model.cancel();
+    assertTrue(model.isCancelled());
+    assertTrue(pending.isCancelled());
+
+    FutureTask<Void> late = new FutureTask<Void>(new Runnable() {
+      @Override
+      public void run() {
+      }
+    }, null);
+    model.addTask(late);
+    assertTrue(late.isCancelled());
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.reporter;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.StringWriter;
+
+import org.ensembl.healthcheck.DatabaseRegistryEntry;
+import org.ensembl.healthcheck.DatabaseType;
+import org.ensembl.healthcheck.ReportLine;
+import org.ensembl.healthcheck.Team;
+import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
+import org.testng.annotations.Test;
+
+public class StreamingReporterTest {
+
+  public static class StreamedTest extends SingleDatabaseTestCase {
+
+    public StreamedTest() {
+      setTeamResponsible(Team.CORE);
+      setFailureText("Broken");
+      setFix("Fix it");
+    }
+
+    @Override
+    public boolean run(DatabaseRegistryEntry dbre) {
+      return false;
+    }
+  }
+
+  private static ReportLine line(int level, String message) {
+    return new ReportLine(StreamedTest.class.getName(), "homo_sapiens_core_93_38", "homo_sapiens", DatabaseType.CORE,
+        level, message, Team.CORE, null);
+  }
+
+  @Test
+  public void json() {
+    StringWriter out = new StringWriter();
+    StreamingReporter reporter = new StreamingReporter(out, StreamingReporter.Format.JSON);
+    StreamedTest test = new StreamedTest();
+    reporter.startTestCase(test, null);
+    reporter.message(line(ReportLine.INFO, "not written"));
+    reporter.message(line(ReportLine.PROBLEM, "two\nlines"));
+    reporter.finishTestCase(test, false, null);
+    String name = StreamedTest.class.getName();
+    assertEquals(out.toString(),
+        "{\"record\":\"report\",\"test\":\"" + name + "\",\"database\":\"homo_sapiens_core_93_38\","
+            + "\"level\":\"PROBLEM\",\"team\":\"CORE\",\"text\":\"two\\nlines\"}\n"
+            + "{\"record\":\"result\",\"test\":\"" + name + "\",\"level\":\"FAILED\",\"team\":\"CORE\","
+            + "\"text\":\"BrokenFix it\\n\"}\n");
+  }
+
+  @Test
+  public void tsv() {
+    StringWriter out = new StringWriter();
+    StreamingReporter reporter = new StreamingReporter(out, StreamingReporter.Format.TSV);
+    reporter.setOutputLevel(ReportLine.ALL);
+    StreamedTest test = new StreamedTest();
+    reporter.startTestCase(test, null);
+    reporter.message(line(ReportLine.INFO, "a\tb"));
+    reporter.finishTestCase(test, true, null);
+    String name = StreamedTest.class.getName();
+    assertEquals(out.toString(), "report\t" + name + "\thomo_sapiens_core_93_38\tINFO\tCORE\ta\\tb\n"
+        + "result\t" + name + "\t\tPASSED\tCORE\t\n");
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.testcase.generic;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.ensembl.healthcheck.testcase.generic.SchemaDefinition.Column;
+import org.ensembl.healthcheck.testcase.generic.SchemaDefinition.Index;
+import org.ensembl.healthcheck.testcase.generic.SchemaDefinition.Table;
+import org.testng.annotations.Test;
+
+public class SchemaDefinitionParserTest {
+
+  private static final String TABLE_SQL = "-- Schema for tests\n"
+      + "/* multi-line\n comment; with a semicolon */\n"
+      + "CREATE TABLE IF NOT EXISTS meta (\n"
+      + "  meta_id INT NOT NULL AUTO_INCREMENT,\n"
+      + "  species_id INT UNSIGNED DEFAULT 1,\n"
+      + "  meta_key VARCHAR(40) NOT NULL,\n"
+      + "  meta_value VARCHAR(255) BINARY NOT NULL,\n"
+      + "  PRIMARY KEY (meta_id),\n"
+      + "  UNIQUE KEY species_key_value_idx (species_id, meta_key, meta_value(255)),\n"
+      + "  KEY (species_id)\n"
+      + ") COLLATE=latin1_swedish_ci ENGINE=MyISAM;\n"
+      + "\n"
+      + "# Add schema type and schema version to the meta table.\n"
+      + "INSERT INTO meta (species_id, meta_key, meta_value) VALUES\n"
+      + "  (NULL, 'schema_type', 'core'), (NULL, 'schema_version', '96');\n"
+      + "\n"
+      + "CREATE TABLE `gene` (\n"
+      + "  `gene_id` int(10) unsigned NOT NULL PRIMARY KEY AUTO_INCREMENT COMMENT 'the id; really',\n"
+      + "  `biotype` VARCHAR(40) CHARACTER SET latin1 NOT NULL,\n"
+      + "  `status` ENUM('KNOWN', 'NOVEL') DEFAULT NULL,\n"
+      + "  `score` DOUBLE PRECISION NOT NULL DEFAULT '0.0',\n"
+      + "  `modified` TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,\n"
+      + "  FULLTEXT INDEX biotype_ft (biotype)\n"
+      + ");\n";
+
+  @Test
+  public void parseTables() {
+    SchemaDefinition schema = SchemaDefinitionParser.parse(TABLE_SQL);
+    assertEquals(new ArrayList<String>(schema.getTableNames()), Arrays.asList("gene", "meta"));
+
+    Table meta = schema.getTable("meta");
+    assertEquals(meta.getEngine(), "MyISAM");
+    assertEquals(new ArrayList<String>(meta.getColumns().keySet()),
+        Arrays.asList("meta_id", "species_id", "meta_key", "meta_value"));
+    assertEquals(meta.getColumns().get("meta_id").getDefinition(), "`meta_id` int NOT NULL auto_increment");
+    assertEquals(meta.getColumns().get("species_id").getDefinition(), "`species_id` int unsigned DEFAULT 1");
+    assertEquals(meta.getIndex("PRIMARY").getDefinition(), "PRIMARY KEY (`meta_id`)");
+    assertEquals(meta.getIndex("species_key_value_idx").getDefinition(),
+        "UNIQUE KEY `species_key_value_idx` (`species_id`,`meta_key`,`meta_value`(255))");
+    // unnamed indexes are named after their first column
+    assertEquals(meta.getIndex("species_id").getDefinition(), "KEY `species_id` (`species_id`)");
+
+    Table gene = schema.getTable("gene");
+    assertEquals(gene.getEngine(), null);
+    assertEquals(gene.getColumns().get("gene_id"),
+        new Column("gene_id", "int(10) unsigned", false, null, "auto_increment"));
+    assertEquals(gene.getColumns().get("biotype"), new Column("biotype", "varchar(40)", false, null, ""));
+    assertEquals(gene.getColumns().get("status").getDefinition(), "`status` enum('KNOWN','NOVEL') DEFAULT NULL");
+    assertEquals(gene.getColumns().get("score").getDefinition(), "`score` double NOT NULL DEFAULT 0");
+    assertEquals(gene.getColumns().get("modified").getDefinition(),
+        "`modified` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP on update current_timestamp");
+    assertEquals(gene.getIndex("PRIMARY").getDefinition(), "PRIMARY KEY (`gene_id`)");
+    assertEquals(gene.getIndex("biotype_ft").getDefinition(), "FULLTEXT KEY `biotype_ft` (`biotype`)");
+  }
+
+  @Test
+  public void parseMeta() {
+    SchemaDefinition schema = SchemaDefinitionParser.parse(TABLE_SQL);
+    assertEquals(schema.getMetaValue("schema_type"), "core");
+    assertEquals(schema.getMetaValue("schema_version"), "96");
+    assertEquals(schema.getMetaValue("species.production_name"), "");
+  }
+
+  @Test
+  public void sameAsDatabase() {
+    // as the meta table would be read back from information_schema
+    Table meta = new Table("meta");
+    meta.setEngine("MyISAM");
+    meta.addColumn(new Column("meta_id", "int(11)", false, null, "auto_increment"));
+    meta.addColumn(new Column("species_id", "int(10) unsigned", true, "1", ""));
+    meta.addColumn(new Column("meta_key", "varchar(40)", false, null, ""));
+    meta.addColumn(new Column("meta_value", "varchar(255)", false, null, ""));
+    Index primary = new Index(Index.PRIMARY, true, null);
+    primary.addColumn("meta_id");
+    meta.addIndex(primary);
+    Index unique = new Index("species_key_value_idx", true, null);
+    unique.addColumn("species_id");
+    unique.addColumn("meta_key");
+    unique.addColumn("meta_value(255)");
+    meta.addIndex(unique);
+    Index species = new Index("species_id", false, null);
+    species.addColumn("species_id");
+    meta.addIndex(species);
+    SchemaDefinition database = new SchemaDefinition();
+    database.addTable(meta);
+
+    SchemaDefinition file = SchemaDefinitionParser.parse(TABLE_SQL);
+    assertEquals(SchemaDiff.diff(database, file),
+        Arrays.asList(file.getTable("gene").getCreateStatement() + ";"));
+  }
+
+  @Test
+  public void cachedByContent() throws Exception {
+    File first = File.createTempFile("table", ".sql");
+    File second = File.createTempFile("table", ".sql");
+    first.deleteOnExit();
+    second.deleteOnExit();
+    for (File file : Arrays.asList(first, second)) {
+      PrintWriter out = new PrintWriter(file, "UTF-8");
+      out.print(TABLE_SQL);
+      out.close();
+    }
+    SchemaDefinitionParser.clearCache();
+    SchemaDefinition parsed = SchemaDefinitionParser.parse(first);
+    assertSame(SchemaDefinitionParser.parse(second), parsed);
+    assertTrue(parsed.getTableNames().contains("gene"));
+  }
+}
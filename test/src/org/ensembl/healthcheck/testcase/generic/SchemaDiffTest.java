@@ -0,0 +1,116 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.testcase.generic;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.ensembl.healthcheck.testcase.generic.SchemaDefinition.Column;
+import org.ensembl.healthcheck.testcase.generic.SchemaDefinition.Index;
+import org.ensembl.healthcheck.testcase.generic.SchemaDefinition.Table;
+import org.testng.annotations.Test;
+
+public class SchemaDiffTest {
+
+  private static Table geneTable(String engine) {
+    Table table = new Table("gene");
+    table.setEngine(engine);
+    table.addColumn(new Column("gene_id", "int(10) unsigned", false, null, "auto_increment"));
+    table.addColumn(new Column("biotype", "varchar(40)", false, null, ""));
+    table.addColumn(new Column("is_current", "tinyint(1)", false, "1", ""));
+    Index primary = new Index(Index.PRIMARY, true, null);
+    primary.addColumn("gene_id");
+    table.addIndex(primary);
+    return table;
+  }
+
+  private static SchemaDefinition schema(Table... tables) {
+    SchemaDefinition schema = new SchemaDefinition();
+    for (Table table : tables) {
+      schema.addTable(table);
+    }
+    return schema;
+  }
+
+  @Test
+  public void sameSchemas() {
+    assertTrue(SchemaDiff.diff(schema(geneTable("MyISAM")), schema(geneTable("MYISAM"))).isEmpty());
+    assertEquals(SchemaDiff.getPatch(schema(geneTable("MyISAM")), "a", schema(geneTable("MyISAM")), "b"), "");
+  }
+
+  @Test
+  public void equivalentDefinitions() {
+    // as reported by different server versions
+    assertEquals(new Column("a", "INT(10) UNSIGNED", false, "'0'", null),
+        new Column("a", "int unsigned", false, "0", ""));
+    assertEquals(new Column("a", "decimal(5,2)", true, "1.50", ""), new Column("a", "DECIMAL(5, 2)", true, "1.5", ""));
+    assertEquals(new Column("a", "enum('A', 'b')", true, "NULL", ""), new Column("a", "ENUM('A','b')", true, null, ""));
+    assertEquals(new Column("a", "timestamp", false, "current_timestamp()", "on update current_timestamp()"),
+        new Column("a", "timestamp", false, "CURRENT_TIMESTAMP", "DEFAULT_GENERATED on update CURRENT_TIMESTAMP"));
+    assertEquals(new Column("a", "enum('A','b')", true, null, "").getDefinition(), "`a` enum('A','b') DEFAULT NULL");
+  }
+
+  @Test
+  public void tableChanges() {
+    Table target = geneTable("MyISAM");
+    target.addColumn(new Column("source", "varchar(20)", false, null, ""));
+    Index biotype = new Index("biotype_idx", false, null);
+    biotype.addColumn("biotype(10)");
+    target.addIndex(biotype);
+
+    Table master = new Table("gene");
+    master.setEngine("InnoDB");
+    master.addColumn(new Column("gene_id", "int(10) unsigned", false, null, "auto_increment"));
+    master.addColumn(new Column("stable_id", "varchar(128)", true, null, ""));
+    master.addColumn(new Column("biotype", "varchar(50)", false, null, ""));
+    master.addColumn(new Column("is_current", "tinyint(1)", false, "1", ""));
+    Index primary = new Index(Index.PRIMARY, true, null);
+    primary.addColumn("gene_id");
+    master.addIndex(primary);
+    Index biotypeMaster = new Index("biotype_idx", false, null);
+    biotypeMaster.addColumn("biotype");
+    master.addIndex(biotypeMaster);
+
+    Table extra = new Table("gene_old");
+    extra.addColumn(new Column("gene_id", "int", false, null, ""));
+
+    List<String> statements = SchemaDiff.diff(schema(target, extra), schema(master));
+    assertEquals(statements, Arrays.asList(
+        "DROP TABLE `gene_old`;",
+        "ALTER TABLE `gene` DROP INDEX `biotype_idx`; # was KEY `biotype_idx` (`biotype`(10))",
+        "ALTER TABLE `gene` ADD COLUMN `stable_id` varchar(128) DEFAULT NULL AFTER `gene_id`;",
+        "ALTER TABLE `gene` CHANGE COLUMN `biotype` `biotype` varchar(50) NOT NULL; # was `biotype` varchar(40) NOT NULL",
+        "ALTER TABLE `gene` DROP COLUMN `source`; # was `source` varchar(20) NOT NULL",
+        "ALTER TABLE `gene` ADD KEY `biotype_idx` (`biotype`);",
+        "ALTER TABLE `gene` ENGINE=InnoDB; # was MyISAM"));
+  }
+
+  @Test
+  public void missingTable() {
+    List<String> statements = SchemaDiff.diff(schema(), schema(geneTable("MyISAM")));
+    assertEquals(statements, Arrays.asList("CREATE TABLE `gene` (\n"
+        + "  `gene_id` int unsigned NOT NULL auto_increment,\n"
+        + "  `biotype` varchar(40) NOT NULL,\n"
+        + "  `is_current` tinyint NOT NULL DEFAULT 1,\n"
+        + "  PRIMARY KEY (`gene_id`)\n"
+        + ") ENGINE=MyISAM;"));
+  }
+}
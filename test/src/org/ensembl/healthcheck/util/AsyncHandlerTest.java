@@ -0,0 +1,134 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import org.testng.annotations.Test;
+
+public class AsyncHandlerTest {
+
+  /**
+   * Records what it is passed, optionally waiting for a latch first.
+   */
+  private static class RecordingHandler extends Handler {
+
+    final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+    final List<String> threads = Collections.synchronizedList(new ArrayList<String>());
+    CountDownLatch gate = new CountDownLatch(0);
+    final CountDownLatch entered = new CountDownLatch(1);
+    int flushes;
+
+    @Override
+    public void publish(LogRecord record) {
+      entered.countDown();
+      try {
+        gate.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      messages.add(record.getMessage());
+      threads.add(Thread.currentThread().getName());
+    }
+
+    @Override
+    public synchronized void flush() {
+      flushes++;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  @Test
+  public void testDeliversInOrderOnWorker() {
+    RecordingHandler target = new RecordingHandler();
+    AsyncHandler handler = new AsyncHandler(target);
+    for (int i = 0; i < 1000; i++) {
+      handler.publish(new LogRecord(Level.INFO, "message " + i));
+    }
+    handler.flush();
+
+    assertEquals(target.messages.size(), 1000);
+    assertEquals(target.messages.get(0), "message 0");
+    assertEquals(target.messages.get(999), "message 999");
+    assertEquals(target.threads.get(0), "AsyncHandler");
+    assertTrue(target.flushes >= 1000 / AsyncHandler.BATCH_SIZE);
+    handler.close();
+  }
+
+  @Test
+  public void testLevelsAreCheckedBeforeQueueing() {
+    RecordingHandler target = new RecordingHandler();
+    target.setLevel(Level.INFO);
+    AsyncHandler handler = new AsyncHandler(target);
+    handler.setLevel(Level.ALL);
+
+    handler.publish(new LogRecord(Level.FINEST, "row"));
+    handler.publish(new LogRecord(Level.WARNING, "kept"));
+    handler.close();
+
+    assertEquals(target.messages, Collections.singletonList("kept"));
+  }
+
+  @Test
+  public void testDropsMinorRecordsWhenFull() throws InterruptedException {
+    RecordingHandler target = new RecordingHandler();
+    target.gate = new CountDownLatch(1);
+    AsyncHandler handler = new AsyncHandler(target, 2);
+
+    // The first record is taken by the worker, which then waits at the gate
+    // while the buffer fills up.
+    handler.publish(new LogRecord(Level.INFO, "first"));
+    target.entered.await();
+    handler.publish(new LogRecord(Level.INFO, "second"));
+    handler.publish(new LogRecord(Level.INFO, "third"));
+    handler.publish(new LogRecord(Level.FINE, "dropped"));
+    target.gate.countDown();
+    handler.close();
+
+    assertEquals(target.messages.subList(0, 3), Arrays.asList("first", "second", "third"));
+    assertEquals(target.messages.size(), 4);
+    assertTrue(target.messages.get(3).startsWith("1 log messages were dropped"));
+  }
+
+  @Test
+  public void testStreamHandlerWithoutAutoFlush() {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    MyStreamHandler target = new MyStreamHandler(out, new LogFormatter());
+    target.setAutoFlush(false);
+    AsyncHandler handler = new AsyncHandler(target);
+    handler.publish(new LogRecord(Level.INFO, "one"));
+    handler.publish(new LogRecord(Level.INFO, "two"));
+    handler.close();
+
+    assertEquals(out.toString(), "one\ntwo\n");
+  }
+}
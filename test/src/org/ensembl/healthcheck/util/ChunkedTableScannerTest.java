@@ -0,0 +1,143 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.ensembl.healthcheck.DatabaseRegistryEntry;
+import org.ensembl.healthcheck.DatabaseServer;
+import org.ensembl.healthcheck.DatabaseType;
+import org.ensembl.healthcheck.Species;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class ChunkedTableScannerTest {
+
+  private DatabaseRegistryEntry dbre = null;
+
+  @BeforeClass
+  void setupDb() {
+    DatabaseServer server = new DatabaseServer("localhost", "0", "sa", "", "org.h2.Driver");
+    server.setDatabaseURL("jdbc:h2:mem:");
+    dbre = new DatabaseRegistryEntry(server, "chunktest;DB_CLOSE_DELAY=-1", Species.UNKNOWN, DatabaseType.CORE);
+    SqlTemplate t = new ConnectionBasedSqlTemplateImpl(dbre);
+    t.execute("create table numbers(id int primary key, val int)");
+    for (int i = 1; i <= 1000; i++) {
+      t.update("insert into numbers values(?,?)", i, i % 7);
+    }
+  }
+
+  @Test
+  public void chunksAreReturnedInKeyOrder() {
+    ChunkedTableScanner scanner = new ChunkedTableScanner(dbre, "numbers", "id", 64, 3);
+    List<long[]> chunks = scanner.scan("select id, val from numbers where id between ? and ?",
+        new ChunkedTableScanner.ChunkProcessor<long[]>() {
+          @Override
+          public long[] processChunk(ResultSet rs, long lower, long upper) throws SQLException {
+            long sum = 0;
+            long rows = 0;
+            while (rs.next()) {
+              assertTrue(rs.getLong(1) >= lower && rs.getLong(1) <= upper);
+              sum += rs.getLong(2);
+              rows++;
+            }
+            return new long[] { lower, rows, sum };
+          }
+        });
+    assertEquals(chunks.size(), 16);
+    long rows = 0;
+    long sum = 0;
+    long lastLower = 0;
+    for (long[] chunk : chunks) {
+      assertTrue(chunk[0] > lastLower, "Chunks should be in key order");
+      lastLower = chunk[0];
+      rows += chunk[1];
+      sum += chunk[2];
+    }
+    assertEquals(rows, 1000);
+    long expected = 0;
+    for (int i = 1; i <= 1000; i++) {
+      expected += i % 7;
+    }
+    assertEquals(sum, expected);
+  }
+
+  @Test
+  public void emptyTable() {
+    new ConnectionBasedSqlTemplateImpl(dbre).execute("create table empty_table(id int primary key)");
+    ChunkedTableScanner scanner = new ChunkedTableScanner(dbre, "empty_table", "id");
+    assertEquals(scanner.getKeyRange(), null);
+    assertTrue(scanner.scan("select id from empty_table where id between ? and ?",
+        new ChunkedTableScanner.ChunkProcessor<Object>() {
+          @Override
+          public Object processChunk(ResultSet rs, long lower, long upper) {
+            return lower;
+          }
+        }).isEmpty());
+  }
+
+  @Test
+  public void runningTasksCloseTheirConnections() throws Exception {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch finish = new CountDownLatch(1);
+    final Connection[] used = new Connection[1];
+    ConnectionWorkers workers = new ConnectionWorkers(dbre, 2);
+    Future<Object> task;
+    try {
+      task = workers.submit(new ConnectionWorkers.ConnectionTask<Object>() {
+        @Override
+        public Object run(Connection con) throws Exception {
+          used[0] = con;
+          started.countDown();
+          // a running query doesn't notice being interrupted
+          while (true) {
+            try {
+              finish.await();
+              return null;
+            } catch (InterruptedException e) {
+              // carry on
+            }
+          }
+        }
+      });
+      assertTrue(started.await(10, TimeUnit.SECONDS));
+    } finally {
+      workers.close();
+    }
+    assertTrue(!used[0].isClosed(), "Connection in use is left open");
+    finish.countDown();
+    try {
+      task.get(10, TimeUnit.SECONDS);
+    } catch (Exception e) {
+      // interrupted by close()
+    }
+    for (int i = 0; i < 100 && !used[0].isClosed(); i++) {
+      Thread.sleep(10);
+    }
+    assertTrue(used[0].isClosed(), "Connection is closed once the task has finished");
+  }
+}
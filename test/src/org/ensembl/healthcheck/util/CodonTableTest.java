@@ -0,0 +1,56 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+public class CodonTableTest {
+
+  @Test
+  public void standardTable() {
+    CodonTable table = CodonTable.getTable(CodonTable.STANDARD);
+    assertEquals(table.translate("ATGGCCTGGTAAGG"), "MAW*", "Trailing partial codon is ignored");
+    assertEquals(table.translate("atgtga"), "M*");
+    assertTrue(table.isStop("TAG", 0));
+  }
+
+  @Test
+  public void mitochondrialTable() {
+    CodonTable table = CodonTable.getTable(2);
+    assertEquals(table.translate("TGAAGAATA"), "W*M");
+    assertFalse(table.isStop("TGA", 0));
+  }
+
+  @Test
+  public void ambiguityCodes() {
+    CodonTable table = CodonTable.getTable(CodonTable.STANDARD);
+    assertEquals(table.translate("GCN"), "A", "All GCx codons are alanine");
+    assertEquals(table.translate("TAR"), "*", "TAA and TAG are both stops");
+    assertEquals(table.translate("NNN"), "X");
+    assertEquals(table.translate("AT-"), "X");
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void unknownTable() {
+    CodonTable.getTable(7);
+  }
+}
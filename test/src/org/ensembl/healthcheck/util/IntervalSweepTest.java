@@ -0,0 +1,71 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+public class IntervalSweepTest {
+
+  @Test
+  public void inclusiveAndExclusive() {
+    IntervalSweep exclusive = new IntervalSweep(false);
+    IntervalSweep inclusive = new IntervalSweep(true);
+    for (IntervalSweep s : new IntervalSweep[] { exclusive, inclusive }) {
+      s.add(1, 100, 1);
+      s.add(100, 200, 1);
+      s.add(50, 60, -1);
+    }
+    assertEquals(exclusive.countOverlaps(), 0, "Touching intervals do not overlap when exclusive");
+    assertEquals(inclusive.countOverlaps(), 1, "Touching intervals share a base when inclusive");
+  }
+
+  @Test
+  public void matchesPairwiseComparison() {
+    Random random = new Random(42);
+    final IntervalSweep sweep = new IntervalSweep(true);
+    for (int i = 0; i < 500; i++) {
+      int start = random.nextInt(10000);
+      sweep.add(start, start + random.nextInt(200), random.nextBoolean() ? 1 : -1);
+    }
+    long expected = 0;
+    for (int i = 0; i < sweep.size(); i++) {
+      for (int j = i + 1; j < sweep.size(); j++) {
+        if (sweep.getGroup(i) == sweep.getGroup(j) && sweep.getStart(i) <= sweep.getEnd(j)
+            && sweep.getStart(j) <= sweep.getEnd(i)) {
+          expected++;
+        }
+      }
+    }
+    final long[] reported = new long[1];
+    long count = sweep.forEachOverlap(new IntervalSweep.OverlapHandler() {
+      @Override
+      public void overlap(int first, int second) {
+        assertTrue(sweep.getStart(first) <= sweep.getStart(second));
+        reported[0]++;
+      }
+    });
+    assertEquals(count, expected);
+    assertEquals(reported[0], expected);
+    assertEquals(sweep.countOverlaps(), expected);
+  }
+}
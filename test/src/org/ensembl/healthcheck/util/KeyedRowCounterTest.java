@@ -0,0 +1,82 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.util;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.ensembl.healthcheck.DatabaseRegistryEntry;
+import org.ensembl.healthcheck.DatabaseServer;
+import org.ensembl.healthcheck.DatabaseType;
+import org.ensembl.healthcheck.Species;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class KeyedRowCounterTest {
+
+  private SqlTemplate template = null;
+
+  @BeforeClass
+  void setupDb() {
+    DatabaseServer server = new DatabaseServer("localhost", "0", "sa", "", "org.h2.Driver");
+    server.setDatabaseURL("jdbc:h2:mem:");
+    DatabaseRegistryEntry dbre = new DatabaseRegistryEntry(server, "keyedtest;DB_CLOSE_DELAY=-1", Species.UNKNOWN,
+        DatabaseType.COMPARA);
+    template = new ConnectionBasedSqlTemplateImpl(dbre);
+    template.execute("create table genomic_align(genomic_align_id int primary key, method_link_species_set_id int, dnafrag_id bigint)");
+    template.update("insert into genomic_align values(1, 10, 100)");
+    template.update("insert into genomic_align values(2, 10, 100)");
+    template.update("insert into genomic_align values(3, 10, 101)");
+    template.update("insert into genomic_align values(4, 20, 100)");
+  }
+
+  private static List<Object> key(Object... values) {
+    return Arrays.asList(values);
+  }
+
+  @Test
+  public void countsPerKey() {
+    List<List<Object>> keys = new ArrayList<List<Object>>();
+    keys.add(key(10, 100));
+    keys.add(key(10, 102));
+    keys.add(key(20, 100L));
+    // a batch size of 2 makes two queries
+    Map<List<Object>, Long> counts = new KeyedRowCounter(template, 2).count("genomic_align",
+        Arrays.asList("method_link_species_set_id", "dnafrag_id"), keys);
+    assertEquals(new ArrayList<List<Object>>(counts.keySet()), keys);
+    assertEquals(counts.get(key(10, 100)).longValue(), 2);
+    assertEquals(counts.get(key(10, 102)).longValue(), 0);
+    assertEquals(counts.get(key(20, 100L)).longValue(), 1);
+  }
+
+  @Test
+  public void missingKeys() {
+    List<List<Object>> keys = new ArrayList<List<Object>>();
+    keys.add(key(10));
+    keys.add(key(30));
+    keys.add(key(20));
+    Set<List<Object>> missing = new KeyedRowCounter(template).findMissing("genomic_align",
+        Arrays.asList("method_link_species_set_id"), keys);
+    assertEquals(new ArrayList<List<Object>>(missing), Arrays.asList(key(30)));
+  }
+}
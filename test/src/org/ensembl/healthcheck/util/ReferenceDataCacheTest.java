@@ -0,0 +1,109 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+
+import org.ensembl.healthcheck.DatabaseRegistryEntry;
+import org.ensembl.healthcheck.DatabaseServer;
+import org.ensembl.healthcheck.DatabaseType;
+import org.ensembl.healthcheck.Species;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class ReferenceDataCacheTest {
+
+  private DatabaseRegistryEntry dbre = null;
+
+  @BeforeClass
+  void setupDb() {
+    DatabaseServer server = new DatabaseServer("localhost", "0", "sa", "", "org.h2.Driver");
+    server.setDatabaseURL("jdbc:h2:mem:");
+    dbre = new DatabaseRegistryEntry(server, "refcachetest;DB_CLOSE_DELAY=-1", Species.UNKNOWN, DatabaseType.PRODUCTION);
+    SqlTemplate t = new ConnectionBasedSqlTemplateImpl(dbre);
+    t.execute("create table biotype(name varchar(40), biotype_group varchar(40), object_type varchar(20))");
+    t.update("insert into biotype values(?,?,?)", "protein_coding", "coding", "gene");
+    t.update("insert into biotype values(?,?,?)", "IG_C_gene", "coding", "gene");
+    t.update("insert into biotype values(?,?,?)", "lincRNA", "lnoncoding", "gene");
+    t.update("insert into biotype values(?,?,?)", "retained_intron", "noncoding", "transcript");
+  }
+
+  @Test
+  public void snapshotIsLoadedOnce() {
+    ReferenceDataCache cache = new ReferenceDataCache(100);
+    ReferenceDataCache.Snapshot genes = cache.getSnapshot(dbre, "biotype", "name, biotype_group", "object_type='gene'");
+    assertEquals(genes.size(), 3);
+    assertEquals(genes.getColumnIndex("BIOTYPE_GROUP"), 1);
+    assertSame(cache.getSnapshot(dbre, "biotype", "name, biotype_group", "object_type='gene'"), genes);
+    assertNotSame(cache.getSnapshot(dbre, "biotype", "name, biotype_group", null), genes);
+    assertEquals(cache.size(), 2);
+    assertEquals(cache.getCachedRows(), 7);
+
+    cache.clear();
+    assertEquals(cache.size(), 0);
+    assertEquals(cache.getCachedRows(), 0);
+    assertNotSame(cache.getSnapshot(dbre, "biotype", "name, biotype_group", "object_type='gene'"), genes);
+    assertEquals(cache.getCachedRows(), 3, "Reloaded rows are counted once");
+  }
+
+  @Test
+  public void lookup() {
+    ReferenceDataCache.Snapshot genes = new ReferenceDataCache(100).getSnapshot(dbre, "biotype",
+        "name, biotype_group", "object_type='gene'");
+    List<Object[]> coding = genes.lookup("biotype_group", "coding");
+    assertEquals(coding.size(), 2);
+    assertEquals(coding.get(0)[genes.getColumnIndex("name")], "protein_coding");
+    assertTrue(genes.contains("name", "lincRNA"));
+    assertFalse(genes.contains("name", "retained_intron"));
+    assertTrue(genes.lookup("name", "missing").isEmpty());
+    assertEquals(genes.getStrings("biotype_group").size(), 2);
+  }
+
+  @Test
+  public void lookupIgnoresCase() {
+    ReferenceDataCache.Snapshot genes = new ReferenceDataCache(100).getSnapshot(dbre, "biotype",
+        "name, biotype_group", "object_type='gene'");
+    assertTrue(genes.contains("name", "LINCrna"));
+    assertTrue(genes.contains("NAME", "ig_c_GENE"));
+    List<Object[]> coding = genes.lookup("biotype_group", "Coding");
+    assertEquals(coding.size(), 2);
+    assertEquals(genes.lookup("name", "Protein_Coding").get(0)[genes.getColumnIndex("name")], "protein_coding");
+    assertFalse(genes.contains("name", "Retained_Intron"));
+  }
+
+  @Test
+  public void leastRecentlyUsedSnapshotsAreDropped() {
+    ReferenceDataCache cache = new ReferenceDataCache(5);
+    ReferenceDataCache.Snapshot genes = cache.getSnapshot(dbre, "biotype", "name", "object_type='gene'");
+    cache.getSnapshot(dbre, "biotype", "name", "object_type='transcript'");
+    assertEquals(cache.size(), 2);
+    // 3 + 1 + 4 rows is over the limit, so the gene snapshot goes
+    cache.getSnapshot(dbre, "biotype", "name", null);
+    assertEquals(cache.size(), 2);
+    assertEquals(cache.getCachedRows(), 5);
+    assertNotSame(cache.getSnapshot(dbre, "biotype", "name", "object_type='gene'"), genes);
+    assertEquals(cache.size(), 1);
+    assertEquals(cache.getCachedRows(), 3);
+  }
+}
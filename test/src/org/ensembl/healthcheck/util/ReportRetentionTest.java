@@ -0,0 +1,140 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.ensembl.healthcheck.DatabaseRegistryEntry;
+import org.ensembl.healthcheck.DatabaseServer;
+import org.ensembl.healthcheck.DatabaseType;
+import org.ensembl.healthcheck.Species;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class ReportRetentionTest {
+
+  private SqlTemplate template;
+
+  @BeforeMethod
+  public void setupDb() {
+    DatabaseServer server = new DatabaseServer("localhost", "0", "sa", "", "org.h2.Driver");
+    server.setDatabaseURL("jdbc:h2:mem:");
+    DatabaseRegistryEntry dbre = new DatabaseRegistryEntry(server, "retentiontest;DB_CLOSE_DELAY=-1", Species.UNKNOWN,
+        DatabaseType.CORE);
+    template = new ConnectionBasedSqlTemplateImpl(dbre);
+    template.execute("drop all objects");
+    template.execute("create table session(session_id int primary key)");
+    template.execute("create table report(report_id int primary key, first_session_id int, last_session_id int, "
+        + "database_name varchar(255), testcase varchar(255), result varchar(10), text varchar(255))");
+    template.execute("create table report_session(session_id int, report_id int)");
+    template.execute("create table annotation(annotation_id int primary key, report_id int)");
+    for (int session = 1; session <= 4; session++) {
+      template.update("insert into session values(?)", session);
+    }
+    report(1, 1, "INFO", "old\tinfo");
+    report(2, 1, "PROBLEM", "old problem");
+    report(3, 1, "CORRECT", "old but annotated");
+    report(4, 3, "INFO", "recent info");
+    report(5, 4, "PROBLEM", "current problem");
+    template.update("insert into annotation values(1, 3)");
+  }
+
+  private void report(int id, int lastSession, String result, String text) {
+    template.update("insert into report values(?, 1, ?, 'homo_sapiens_core', 'Test', ?, ?)", id, lastSession, result,
+        text);
+    template.update("insert into report_session values(?, ?)", lastSession, id);
+  }
+
+  private List<Integer> remaining() {
+    return template.queryForDefaultObjectList("select report_id from report order by report_id", Integer.class);
+  }
+
+  @Test
+  public void testOldestKeptSession() {
+    ReportRetention retention = new ReportRetention(template);
+    assertEquals(retention.getOldestKeptSession(2), 3);
+    assertEquals(retention.getOldestKeptSession(4), -1);
+  }
+
+  @Test
+  public void testPruneMinorReports() throws IOException {
+    File archive = File.createTempFile("retention", ".tsv.gz");
+    archive.deleteOnExit();
+    // a chunk size of 1 deletes in several statements
+    int deleted = new ReportRetention(template, 1).pruneMinorReports(2, archive);
+
+    assertEquals(deleted, 1);
+    assertEquals(remaining().toString(), "[2, 3, 4, 5]");
+    assertEquals(template.queryForDefaultObject("select count(*) from report_session", Integer.class).intValue(), 4);
+
+    List<String> lines = read(archive);
+    assertEquals(lines.size(), 2);
+    assertTrue(lines.get(0).startsWith("report_id\tfirst_session_id\tlast_session_id"));
+    assertTrue(lines.get(1).endsWith("\tINFO\told\\tinfo"));
+  }
+
+  private List<String> read(File archive) throws IOException {
+    List<String> lines = new ArrayList<String>();
+    BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(archive)),
+        "UTF-8"));
+    try {
+      for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+        lines.add(line);
+      }
+    } finally {
+      reader.close();
+    }
+    return lines;
+  }
+
+  @Test
+  public void testPruneReportsKeepsAnnotated() {
+    int deleted = new ReportRetention(template, 1).pruneReports(3, null);
+
+    assertEquals(deleted, 2);
+    assertEquals(remaining().toString(), "[3, 4, 5]");
+  }
+
+  @Test
+  public void testPruneReportsArchivesEachChunk() throws IOException {
+    File archive = File.createTempFile("retention", ".tsv.gz");
+    archive.deleteOnExit();
+    // each report is archived and deleted in a chunk of its own, and the
+    // header is only written once
+    int deleted = new ReportRetention(template, 1).pruneReports(2, archive);
+
+    assertEquals(deleted, 2);
+    assertEquals(remaining().toString(), "[3, 4, 5]");
+    assertEquals(template.queryForDefaultObject("select count(*) from report_session", Integer.class).intValue(), 3);
+    List<String> lines = read(archive);
+    assertEquals(lines.size(), 3);
+    assertTrue(lines.get(0).startsWith("report_id\t"));
+    assertTrue(lines.get(1).startsWith("1\t"));
+    assertTrue(lines.get(2).startsWith("2\t"));
+  }
+}
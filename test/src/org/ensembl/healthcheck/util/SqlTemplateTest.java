@@ -89,6 +89,29 @@ public class SqlTemplateTest {
     assertEquals(ints, expected, "Making sure we retain order");
   }
   
+  @Test
+  public void streamingTest() {
+    final List<Integer> ints = new ArrayList<Integer>();
+    int rows = t.forEachDefaultObject(SQL_INT, Integer.class, new SqlTemplate.RowConsumer<Integer>() {
+      @Override
+      public void consume(Integer row, int position) {
+        assertEquals(position, ints.size(), "Positions should be passed in order");
+        ints.add(row);
+      }
+    });
+    assertEquals(rows, TABLE_ROWS.length, "Asserting row count");
+    assertEquals(ints, t.queryForDefaultObjectList(SQL_INT, Integer.class), "Streaming should see the same rows as a list query");
+    
+    Integer max = t.executeStreaming("select a from numbers where a > ? order by a desc", new SqlTemplate.ResultSetCallback<Integer>() {
+      @Override
+      public Integer process(ResultSet rs) throws SQLException {
+        rs.next();
+        return rs.getInt(1);
+      }
+    }, 2);
+    assertEquals(max, Integer.valueOf(8), "Binding params when streaming");
+  }
+  
   @Test
   public void tupleMethods() {
     String sql = "select a,b,c,d from tupletastic";
@@ -0,0 +1,113 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+public class StableIdSetTest {
+
+  @Test
+  public void inMemoryDuplicates() {
+    StableIdSet set = new StableIdSet(Integer.MAX_VALUE);
+    int a = set.getDbId("a_core");
+    int b = set.getDbId("b_core");
+    assertEquals(set.add("ENSG00000000001", a), StableIdSet.NOT_FOUND);
+    assertEquals(set.add("ENSG0000000001", a), StableIdSet.NOT_FOUND, "Suffix width is part of the ID");
+    assertEquals(set.add("gene_without_number", a), StableIdSet.NOT_FOUND);
+    assertEquals(set.add("ENSG00000000001", b), a);
+    assertEquals(set.add("gene_without_number", b), a);
+    int c = set.getDbId("c_core");
+    assertEquals(set.add("ENSG00000000001", c), a);
+    assertEquals(set.getDbIds("ENSG00000000001"), Arrays.asList(a, b, c), "Every database is remembered");
+    assertTrue(set.getDbIds("ENSG0000000001").isEmpty());
+    assertEquals(set.getDbName(a), "a_core");
+    for (int i = 0; i < 200000; i++) {
+      set.add("b" + i, b);
+    }
+    assertEquals(set.add("b1999", a), b, "Entries should survive rehashing");
+    assertFalse(set.hasSpilled());
+  }
+
+  @Test
+  public void spilledDuplicates() {
+    StableIdSet set = new StableIdSet(100);
+    final int a = set.getDbId("a_core");
+    final int b = set.getDbId("b_core");
+    try {
+      for (int i = 0; i < 250; i++) {
+        set.add(String.format("EBESCT%011d", i), a);
+      }
+      assertTrue(set.hasSpilled());
+      set.add("EBESCT00000000007", b);
+      set.add("EBESCT00000000249", b);
+      set.add("EBESCT00000001000", b);
+      final List<String> dups = new ArrayList<String>();
+      int count = set.mergeRuns(new StableIdSet.DuplicateHandler() {
+        @Override
+        public void duplicate(String stableId, List<Integer> previousDbIds, int duplicateDbId) {
+          assertEquals(previousDbIds, Arrays.asList(a));
+          assertEquals(duplicateDbId, b);
+          dups.add(stableId);
+        }
+      });
+      assertEquals(count, 1);
+      assertEquals(dups.get(0), "EBESCT00000000007");
+    } finally {
+      set.close();
+    }
+  }
+
+  @Test
+  public void spilledDuplicatesIncludeDatabasesWithinARun() {
+    StableIdSet set = new StableIdSet(100);
+    final int a = set.getDbId("a_core");
+    final int b = set.getDbId("b_core");
+    final int c = set.getDbId("c_core");
+    try {
+      set.add("EBESCT00000000007", a);
+      assertEquals(set.add("EBESCT00000000007", b), a);
+      for (int i = 1000; i < 1200; i++) {
+        set.add(String.format("EBESCT%011d", i), b);
+      }
+      assertTrue(set.hasSpilled());
+      set.add("EBESCT00000000007", c);
+      final List<List<Integer>> previous = new ArrayList<List<Integer>>();
+      int count = set.mergeRuns(new StableIdSet.DuplicateHandler() {
+        @Override
+        public void duplicate(String stableId, List<Integer> previousDbIds, int duplicateDbId) {
+          assertEquals(stableId, "EBESCT00000000007");
+          assertEquals(duplicateDbId, c);
+          previous.add(previousDbIds);
+        }
+      });
+      assertEquals(count, 1);
+      assertEquals(previous.get(0), Arrays.asList(a, b), "The duplicate within the first run is included");
+      assertEquals(set.getDbIds("EBESCT00000000007"), Arrays.asList(a, b, c));
+    } finally {
+      set.close();
+    }
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2018] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.util;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+import org.ensembl.healthcheck.DatabaseRegistryEntry;
+import org.ensembl.healthcheck.DatabaseServer;
+import org.ensembl.healthcheck.DatabaseType;
+import org.ensembl.healthcheck.Species;
+import org.ensembl.healthcheck.util.TableStatistics.TableInfo;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class TableStatisticsTest {
+
+  private DatabaseRegistryEntry dbre = null;
+
+  @BeforeClass
+  void setupDb() {
+    DatabaseServer server = new DatabaseServer("localhost", "0", "sa", "", "org.h2.Driver");
+    server.setDatabaseURL("jdbc:h2:mem:");
+    dbre = new DatabaseRegistryEntry(server, "statstest;DB_CLOSE_DELAY=-1", Species.UNKNOWN, DatabaseType.CORE);
+    SqlTemplate t = new ConnectionBasedSqlTemplateImpl(dbre);
+    for (String table : new String[] { "exact", "stale", "small", "empty" }) {
+      t.execute("create table " + table + "(id int primary key)");
+    }
+    for (int i = 1; i <= 3; i++) {
+      t.update("insert into exact values(?)", i);
+    }
+    for (int i = 1; i <= 5; i++) {
+      t.update("insert into small values(?)", i);
+    }
+  }
+
+  /**
+   * H2 has no TABLE_ROWS, so give the statistics by hand. All of them are
+   * wrong, to show that they aren't used to decide anything: "exact" is
+   * MyISAM but its count is out of date, as it can be in MySQL 8, and "stale"
+   * is an InnoDB estimate big enough to look safely non-empty
+   */
+  private TableStatistics statistics() {
+    return new TableStatistics(dbre, Arrays.asList(
+        new TableInfo("exact", "BASE TABLE", "MyISAM", 42, 0, 0),
+        new TableInfo("stale", "BASE TABLE", "InnoDB", 1200, 0, 0),
+        new TableInfo("small", "BASE TABLE", "InnoDB", 0, 0, 0),
+        new TableInfo("empty", "BASE TABLE", "InnoDB", 0, 0, 0)), 2);
+  }
+
+  @Test
+  public void emptyTables() {
+    TableStatistics stats = statistics();
+    assertEquals(stats.getEmptyTables(Arrays.asList("exact", "stale", "small", "empty")),
+        new LinkedHashSet<String>(Arrays.asList("stale", "empty")));
+    assertEquals(stats.getEmptyTables(Arrays.asList("small")).size(), 0);
+  }
+
+  @Test
+  public void exactCounts() {
+    TableStatistics stats = statistics();
+    Map<String, Long> counts = stats.getRowCounts(Arrays.asList("exact", "stale", "small", "empty"));
+    assertEquals(counts.get("exact").longValue(), 3);
+    assertEquals(counts.get("stale").longValue(), 0);
+    assertEquals(counts.get("small").longValue(), 5);
+    assertEquals(counts.get("empty").longValue(), 0);
+    assertEquals(stats.getRowCount("small"), 5);
+    assertEquals(stats.getInfo("stale").getRows(), 1200);
+  }
+}